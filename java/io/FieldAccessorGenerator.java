@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.MethodVisitor;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import sun.misc.Unsafe;
+
+/**
+ * Spins classes that copy the serializable fields of one class between
+ * instances and the primitive data buffer and object value array used by
+ * default serialization.  Each generated method is straight-line code that
+ * accesses every field through Unsafe with its field offset and buffer
+ * position as constants, instead of looping over the offset arrays of
+ * ObjectStreamClass.FieldReflector and switching on the type code of each
+ * field.
+ */
+final class FieldAccessorGenerator implements Opcodes {
+
+    /** handle for performing unsafe operations, also used by spun code */
+    static final Unsafe unsafe = Unsafe.getUnsafe();
+
+    /**
+     * maximum number of fields for which a class is spun; a method covering
+     * more fields might exceed the size limit of a method
+     */
+    private static final int MAX_FIELDS = 1000;
+
+    private static final String SUPER =
+        "java/io/FieldAccessorGenerator$Accessor";
+    private static final String GENERATOR = "java/io/FieldAccessorGenerator";
+    private static final String BITS = "java/io/Bits";
+    private static final String UNSAFE = "sun/misc/Unsafe";
+    private static final String UNSAFE_DESC = "Lsun/misc/Unsafe;";
+    private static final String PRIM_DESC = "(Ljava/lang/Object;[B)V";
+    private static final String OBJ_DESC =
+        "(Ljava/lang/Object;[Ljava/lang/Object;)V";
+
+    private FieldAccessorGenerator() {}
+
+    /**
+     * Field accessors of one class, as spun by {@link #generate}.  The
+     * methods have the contracts of the FieldReflector methods of the same
+     * names, except that they do not check their arguments and that
+     * setObjFieldValues does not check the types of the values.
+     */
+    static abstract class Accessor {
+        abstract void getPrimFieldValues(Object obj, byte[] buf);
+        abstract void setPrimFieldValues(Object obj, byte[] buf);
+        abstract void getObjFieldValues(Object obj, Object[] vals);
+        abstract void setObjFieldValues(Object obj, Object[] vals);
+    }
+
+    /**
+     * Spins accessors for fields with the given unsafe read and write keys,
+     * data offsets and type codes, the first numPrimFields of which are
+     * primitive.  Invalid read keys yield default values, invalid write keys
+     * discard values.  Returns null if the fields are too many.
+     */
+    static Accessor generate(long[] readKeys, long[] writeKeys, int[] offsets,
+                             char[] typeCodes, int numPrimFields)
+    {
+        int nfields = typeCodes.length;
+        if (nfields > MAX_FIELDS) {
+            return null;
+        }
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+                 GENERATOR + "$Spun", null, SUPER, null);
+
+        MethodVisitor mv = cw.visitMethod(0, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, SUPER, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // getPrimFieldValues: buf[off..] = unsafe.getT(obj, key)
+        mv = begin(cw, "getPrimFieldValues", PRIM_DESC);
+        for (int i = 0; i < numPrimFields; i++) {
+            char tc = typeCodes[i];
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(offsets[i]);
+            if (readKeys[i] != Unsafe.INVALID_FIELD_OFFSET) {
+                unsafeAccess(mv, readKeys[i]);
+                mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "get" + typeName(tc),
+                    "(Ljava/lang/Object;J)" + tc, false);
+            } else {
+                defaultValue(mv, tc);
+            }
+            if (tc == 'B') {
+                mv.visitInsn(BASTORE);
+            } else {
+                mv.visitMethodInsn(INVOKESTATIC, BITS, "put" + typeName(tc),
+                    "([BI" + tc + ")V", false);
+            }
+        }
+        end(mv);
+
+        // setPrimFieldValues: unsafe.putT(obj, key, buf[off..])
+        mv = begin(cw, "setPrimFieldValues", PRIM_DESC);
+        for (int i = 0; i < numPrimFields; i++) {
+            if (writeKeys[i] == Unsafe.INVALID_FIELD_OFFSET) {
+                continue;           // discard value
+            }
+            char tc = typeCodes[i];
+            unsafeAccess(mv, writeKeys[i]);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(offsets[i]);
+            if (tc == 'B') {
+                mv.visitInsn(BALOAD);
+            } else {
+                mv.visitMethodInsn(INVOKESTATIC, BITS, "get" + typeName(tc),
+                    "([BI)" + tc, false);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "put" + typeName(tc),
+                "(Ljava/lang/Object;J" + tc + ")V", false);
+        }
+        end(mv);
+
+        // getObjFieldValues: vals[off] = unsafe.getObject(obj, key)
+        mv = begin(cw, "getObjFieldValues", OBJ_DESC);
+        for (int i = numPrimFields; i < nfields; i++) {
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(offsets[i]);
+            if (readKeys[i] != Unsafe.INVALID_FIELD_OFFSET) {
+                unsafeAccess(mv, readKeys[i]);
+                mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "getObject",
+                    "(Ljava/lang/Object;J)Ljava/lang/Object;", false);
+            } else {
+                mv.visitInsn(ACONST_NULL);
+            }
+            mv.visitInsn(AASTORE);
+        }
+        end(mv);
+
+        // setObjFieldValues: unsafe.putObject(obj, key, vals[off])
+        mv = begin(cw, "setObjFieldValues", OBJ_DESC);
+        for (int i = numPrimFields; i < nfields; i++) {
+            if (writeKeys[i] == Unsafe.INVALID_FIELD_OFFSET) {
+                continue;           // discard value
+            }
+            unsafeAccess(mv, writeKeys[i]);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(offsets[i]);
+            mv.visitInsn(AALOAD);
+            mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "putObject",
+                "(Ljava/lang/Object;JLjava/lang/Object;)V", false);
+        }
+        end(mv);
+
+        cw.visitEnd();
+        final byte[] bytes = cw.toByteArray();
+        return AccessController.doPrivileged(
+            new PrivilegedAction<Accessor>() {
+                public Accessor run() {
+                    Class<?> c = unsafe.defineAnonymousClass(
+                        FieldAccessorGenerator.class, bytes, null);
+                    try {
+                        return (Accessor) unsafe.allocateInstance(c);
+                    } catch (InstantiationException ex) {
+                        throw new InternalError(ex);
+                    }
+                }
+            });
+    }
+
+    private static MethodVisitor begin(ClassWriter cw, String name,
+                                       String desc)
+    {
+        MethodVisitor mv = cw.visitMethod(0, name, desc, null, null);
+        mv.visitCode();
+        return mv;
+    }
+
+    private static void end(MethodVisitor mv) {
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /** Pushes unsafe, obj and the given field key. */
+    private static void unsafeAccess(MethodVisitor mv, long key) {
+        mv.visitFieldInsn(GETSTATIC, GENERATOR, "unsafe", UNSAFE_DESC);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn(key);
+    }
+
+    /** Pushes the default value of the given primitive type. */
+    private static void defaultValue(MethodVisitor mv, char tc) {
+        switch (tc) {
+            case 'J':
+                mv.visitInsn(LCONST_0);
+                break;
+            case 'F':
+                mv.visitInsn(FCONST_0);
+                break;
+            case 'D':
+                mv.visitInsn(DCONST_0);
+                break;
+            default:
+                mv.visitInsn(ICONST_0);
+        }
+    }
+
+    /** Returns the name of a primitive type as used by Unsafe and Bits. */
+    private static String typeName(char tc) {
+        switch (tc) {
+            case 'Z': return "Boolean";
+            case 'B': return "Byte";
+            case 'C': return "Char";
+            case 'S': return "Short";
+            case 'I': return "Int";
+            case 'F': return "Float";
+            case 'J': return "Long";
+            case 'D': return "Double";
+            default:
+                throw new InternalError();
+        }
+    }
+}
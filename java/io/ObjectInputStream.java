@@ -30,6 +30,7 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -258,6 +259,14 @@ public class ObjectInputStream
     /** buffer for reading primitive field values */
     private byte[] primVals;
 
+    /** adapter reused by rebind(ByteBuffer), allocated on first use */
+    private ByteBufferInput bufferInput;
+
+    /** class descriptors shared with the peer, indexed by id, or null */
+    private ObjectStreamClass[] sharedDescs;
+    /** number of class descriptors shared with the peer */
+    private int numSharedDescs;
+
     /** if true, invoke readObjectOverride() instead of readObject() */
     private final boolean enableOverride;
     /** if true, invoke resolveObject() */
@@ -897,6 +906,113 @@ public class ObjectInputStream
         bin.close();
     }
 
+    /**
+     * Rebinds this stream to a new underlying input stream, so that it can be
+     * reused to read a new, independent serialization stream, such as one
+     * written by an {@link ObjectOutputStream} that was itself created or
+     * {@link ObjectOutputStream#rebind(OutputStream) rebound} for that
+     * stream.  Any data remaining in the current underlying stream is
+     * discarded, and that stream is not closed.  The state of this stream,
+     * including the table of objects already read and any registered
+     * validation callbacks, is discarded, and the stream header is read from
+     * the new underlying stream.  A closed stream may be rebound.
+     *
+     * <p>Rebinding an existing stream avoids the cost of constructing a new
+     * ObjectInputStream, and of allocating its buffers, for every message.
+     * Applications that deserialize many small messages may keep a rebindable
+     * stream per thread, or in a pool.
+     *
+     * @param   in the input stream to read from
+     * @throws  StreamCorruptedException if the stream header is incorrect
+     * @throws  IOException if an I/O error occurs while reading the stream
+     *          header, or if {@code readObject} is in progress
+     * @throws  IllegalStateException if this stream was created by a subclass
+     *          that uses {@link #readObjectOverride}
+     * @since   1.8
+     */
+    public void rebind(InputStream in) throws IOException {
+        if (in == null) {
+            throw new NullPointerException();
+        }
+        if (enableOverride) {
+            throw new IllegalStateException("rebind not supported");
+        }
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        clear();
+        closed = false;
+        passHandle = NULL_HANDLE;
+        defaultDataEnd = false;
+        bin.rebind(in);
+        readStreamHeader();
+        bin.setBlockDataMode(true);
+    }
+
+    /**
+     * Starts a new session in which class descriptors are shared with the
+     * peer that writes the streams read by this stream.  Within a session,
+     * every class descriptor read in full is recorded, even across {@link
+     * ObjectOutputStream#reset resets} and {@link #rebind(InputStream)
+     * rebinds}, and compact references to recorded descriptors written by a
+     * peer {@link ObjectOutputStream} in a sharing session are resolved to
+     * them without reading or resolving the class again.  Any descriptors
+     * shared in a previous session are forgotten.
+     *
+     * <p>This method must be invoked at the point in the sequence of streams
+     * at which the peer invoked {@link
+     * ObjectOutputStream#shareClassDescriptors()}, and all streams written in
+     * the session must then be read in order.
+     *
+     * @throws  IOException if {@code readObject} is in progress
+     * @throws  IllegalStateException if this stream was created by a subclass
+     *          that uses {@link #readObjectOverride}
+     * @since   1.8
+     */
+    public void shareClassDescriptors() throws IOException {
+        if (enableOverride) {
+            throw new IllegalStateException("descriptor sharing not supported");
+        }
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        sharedDescs = new ObjectStreamClass[10];
+        numSharedDescs = 0;
+    }
+
+    /**
+     * Rebinds this stream to read a new, independent serialization stream
+     * from the given buffer, starting at its current position.  This method
+     * behaves as {@link #rebind(InputStream)} with an input stream that reads
+     * from the buffer, except that no such stream is allocated for each
+     * invocation.  The buffer's position is advanced as data is read.
+     *
+     * @param   buf the buffer to read from
+     * @throws  StreamCorruptedException if the stream header is incorrect
+     * @throws  IOException if an I/O error occurs while reading the stream
+     *          header, or if {@code readObject} is in progress
+     * @throws  IllegalStateException if this stream was created by a subclass
+     *          that uses {@link #readObjectOverride}
+     * @since   1.8
+     */
+    public void rebind(ByteBuffer buf) throws IOException {
+        if (buf == null) {
+            throw new NullPointerException();
+        }
+        if (enableOverride) {
+            throw new IllegalStateException("rebind not supported");
+        }
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        ByteBufferInput bbin = bufferInput;
+        if (bbin == null) {
+            bufferInput = bbin = new ByteBufferInput();
+        }
+        bbin.buf = buf;
+        rebind(bbin);
+    }
+
     /**
      * Reads in a boolean.
      *
@@ -1337,6 +1453,7 @@ public class ObjectInputStream
 
                 case TC_CLASSDESC:
                 case TC_PROXYCLASSDESC:
+                case TC_SHAREDCLASSDESC:
                     return readClassDesc(unshared);
 
                 case TC_STRING:
@@ -1520,6 +1637,9 @@ public class ObjectInputStream
             case TC_CLASSDESC:
                 descriptor = readNonProxyDesc(unshared);
                 break;
+            case TC_SHAREDCLASSDESC:
+                descriptor = readSharedDesc(unshared);
+                break;
             default:
                 throw new StreamCorruptedException(
                     String.format("invalid type code: %02X", tc));
@@ -1627,13 +1747,58 @@ public class ObjectInputStream
         }
         skipCustomData();
 
-        desc.initNonProxy(readDesc, cl, resolveEx, readClassDesc(false));
+        ObjectStreamClass superDesc = readClassDesc(false);
+        if (resolveEx == null) {
+            // reuse the descriptor resolved by an earlier stream, if any
+            desc = ObjectStreamClass.lookupNonProxy(readDesc, cl, superDesc);
+            if (!unshared) {
+                handles.setObject(descHandle, desc);
+            }
+        } else {
+            desc.initNonProxy(readDesc, cl, resolveEx, superDesc);
+        }
+
+        if (sharedDescs != null &&
+            numSharedDescs < ObjectOutputStream.MAX_SHARED_CLASS_DESCS)
+        {
+            if (numSharedDescs == sharedDescs.length) {
+                sharedDescs = Arrays.copyOf(sharedDescs, numSharedDescs << 1);
+            }
+            sharedDescs[numSharedDescs++] = desc;
+        }
 
         handles.finish(descHandle);
         passHandle = descHandle;
         return desc;
     }
 
+    /**
+     * Reads in and returns a class descriptor shared with the peer in the
+     * current descriptor sharing session.  Sets passHandle to the class
+     * descriptor's assigned handle.
+     */
+    private ObjectStreamClass readSharedDesc(boolean unshared)
+        throws IOException
+    {
+        if (bin.readByte() != TC_SHAREDCLASSDESC) {
+            throw new InternalError();
+        }
+        if (sharedDescs == null) {
+            throw new StreamCorruptedException(
+                "shared class descriptor outside of sharing session");
+        }
+
+        int id = bin.readInt();
+        if (id < 0 || id >= numSharedDescs) {
+            throw new StreamCorruptedException(
+                "invalid shared class descriptor id: " + id);
+        }
+        ObjectStreamClass desc = sharedDescs[id];
+        passHandle = handles.assign(unshared ? unsharedMarker : desc);
+        handles.finish(passHandle);
+        return desc;
+    }
+
     /**
      * Reads in and returns new string.  Sets passHandle to new string's
      * assigned handle.
@@ -2296,13 +2461,47 @@ public class ObjectInputStream
         }
     }
 
+    /**
+     * Input stream that reads from a ByteBuffer, reused by rebind(ByteBuffer).
+     */
+    private static final class ByteBufferInput extends InputStream {
+        /** buffer to read from */
+        ByteBuffer buf;
+
+        public int read() {
+            return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, buf.remaining());
+            if (n == 0) {
+                return -1;
+            }
+            buf.get(b, off, n);
+            return n;
+        }
+
+        public long skip(long n) {
+            int k = (int) Math.max(0L, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
     /**
      * Input stream supporting single-byte peek operations.
      */
     private static class PeekInputStream extends InputStream {
 
         /** underlying stream */
-        private final InputStream in;
+        private InputStream in;
         /** peeked byte */
         private int peekb = -1;
 
@@ -2313,6 +2512,14 @@ public class ObjectInputStream
             this.in = in;
         }
 
+        /**
+         * Switches to the given underlying stream, discarding any peeked byte.
+         */
+        void rebind(InputStream in) {
+            this.in = in;
+            peekb = -1;
+        }
+
         /**
          * Peeks at next byte value in stream.  Similar to read(), except
          * that it does not consume the read value.
@@ -2430,6 +2637,18 @@ public class ObjectInputStream
             din = new DataInputStream(this);
         }
 
+        /**
+         * Switches to the given underlying stream, discarding any buffered
+         * data.  Block data mode is turned off.
+         */
+        void rebind(InputStream in) {
+            this.in.rebind(in);
+            blkmode = false;
+            pos = 0;
+            end = -1;
+            unread = 0;
+        }
+
         /**
          * Sets block data mode to the given mode (true == on, false == off)
          * and returns the previous mode value.  If the new mode is the same as
@@ -27,6 +27,7 @@ package java.io;
 
 import java.io.ObjectStreamClass.WeakClassKey;
 import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -205,6 +206,18 @@ public class ObjectOutputStream
     /** custom storage for debug trace info */
     private final DebugTraceInfoStack debugInfoStack;
 
+    /** adapter reused by rebind(ByteBuffer), allocated on first use */
+    private ByteBufferOutput bufferOutput;
+
+    /** maximum number of class descriptors shared in a sharing session */
+    static final int MAX_SHARED_CLASS_DESCS = 4096;
+
+    /**
+     * obj -> id mapping for class descriptors shared with the peer, or null
+     * if class descriptors are not shared
+     */
+    private HandleTable sharedDescs;
+
     /**
      * value of "sun.io.serialization.extendedDebugInfo" property,
      * as true or false for extended information about exception's place
@@ -503,6 +516,124 @@ public class ObjectOutputStream
         bout.setBlockDataMode(true);
     }
 
+    /**
+     * Rebinds this stream to a new underlying output stream, so that it can be
+     * reused to write a new, independent serialization stream.  Any buffered
+     * data is first flushed to the current underlying stream, which is not
+     * closed.  The state of this stream is then discarded as if by {@link
+     * #reset reset}, except that no reset marker is written, and a new stream
+     * header is written to the new underlying stream.  The data written after
+     * this method returns can be read by a new {@link ObjectInputStream}.
+     *
+     * <p>Rebinding an existing stream avoids the cost of constructing a new
+     * ObjectOutputStream for every message: its buffers and the tables that
+     * it uses to track objects already written are retained, and clearing
+     * those tables takes time proportional to the number of objects written
+     * since the stream was last reset or rebound rather than to their
+     * capacity.  Applications that serialize many small messages may keep a
+     * rebindable stream per thread, or in a pool.
+     *
+     * @param   out the output stream to write to
+     * @throws  IOException if an I/O error occurs while flushing buffered
+     *          data or writing the stream header, or if {@code writeObject}
+     *          is in progress
+     * @throws  IllegalStateException if this stream was created by a subclass
+     *          that uses {@link #writeObjectOverride}
+     * @since   1.8
+     */
+    public void rebind(OutputStream out) throws IOException {
+        if (out == null) {
+            throw new NullPointerException();
+        }
+        if (enableOverride) {
+            throw new IllegalStateException("rebind not supported");
+        }
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        bout.setBlockDataMode(false);
+        bout.flush();
+        clear();
+        bout.rebind(out);
+        writeStreamHeader();
+        bout.setBlockDataMode(true);
+    }
+
+    /**
+     * Starts a new session in which class descriptors are shared with the
+     * peer that reads the streams written by this stream.  Within a session,
+     * the first time a class descriptor is written it is written in full as
+     * usual; whenever it is written again, even after this stream has been
+     * {@link #reset reset} or {@link #rebind(OutputStream) rebound}, only a
+     * compact reference to the earlier descriptor is written.  This greatly
+     * reduces the size of streams that contain few objects of the same
+     * classes, such as messages exchanged over a connection.  Any descriptors
+     * shared in a previous session are forgotten.
+     *
+     * <p>Streams written in a sharing session can only be read by an {@link
+     * ObjectInputStream} that has itself started a sharing session, by
+     * invoking {@link ObjectInputStream#shareClassDescriptors()} at the same
+     * point, and that reads all streams written in the session, in order.
+     * Class annotations written by {@link #annotateClass annotateClass} are
+     * only written with the full descriptor.
+     *
+     * @throws  IOException if {@code writeObject} is in progress
+     * @throws  IllegalStateException if this stream was created by a subclass
+     *          that uses {@link #writeObjectOverride}
+     * @since   1.8
+     */
+    public void shareClassDescriptors() throws IOException {
+        if (enableOverride) {
+            throw new IllegalStateException("descriptor sharing not supported");
+        }
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        sharedDescs = new HandleTable(10, (float) 3.00);
+    }
+
+    /**
+     * Rebinds this stream to write a new, independent serialization stream
+     * into the given buffer, starting at its current position.  This method
+     * behaves as {@link #rebind(OutputStream)} with an output stream that
+     * writes to the buffer, except that no such stream is allocated for each
+     * invocation.  Data written to this stream is held in its internal
+     * buffer and transferred to the given buffer whenever the internal
+     * buffer fills, and when this stream is {@link #flush flushed}; the
+     * given buffer therefore may not receive all the data until then.
+     *
+     * @param   buf the buffer to write to
+     * @throws  IOException if an I/O error occurs while flushing buffered
+     *          data, or if {@code writeObject} is in progress
+     * @throws  java.nio.BufferOverflowException if the buffer does not have
+     *          enough space for the data transferred to it
+     * @throws  java.nio.ReadOnlyBufferException if the buffer is read-only
+     * @throws  IllegalStateException if this stream was created by a subclass
+     *          that uses {@link #writeObjectOverride}
+     * @since   1.8
+     */
+    public void rebind(ByteBuffer buf) throws IOException {
+        if (buf == null) {
+            throw new NullPointerException();
+        }
+        if (enableOverride) {
+            throw new IllegalStateException("rebind not supported");
+        }
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        // flush data still destined for the previous target before the
+        // shared adapter is retargeted
+        bout.setBlockDataMode(false);
+        bout.flush();
+        ByteBufferOutput bbout = bufferOutput;
+        if (bbout == null) {
+            bufferOutput = bbout = new ByteBufferOutput();
+        }
+        bbout.buf = buf;
+        rebind(bbout);
+    }
+
     /**
      * Subclasses may implement this method to allow class data to be stored in
      * the stream. By default this method does nothing.  The corresponding
@@ -1272,6 +1403,16 @@ public class ObjectOutputStream
     private void writeNonProxyDesc(ObjectStreamClass desc, boolean unshared)
         throws IOException
     {
+        int id;
+        if (sharedDescs != null && !unshared &&
+            (id = sharedDescs.lookup(desc)) != -1)
+        {
+            bout.writeByte(TC_SHAREDCLASSDESC);
+            handles.assign(desc);
+            bout.writeInt(id);
+            return;
+        }
+
         bout.writeByte(TC_CLASSDESC);
         handles.assign(unshared ? null : desc);
 
@@ -1292,6 +1433,14 @@ public class ObjectOutputStream
         bout.writeByte(TC_ENDBLOCKDATA);
 
         writeClassDesc(desc.getSuperDesc(), false);
+
+        // ids are assigned in the order in which descriptors are completed,
+        // matching the order in which the peer records them
+        if (sharedDescs != null &&
+            sharedDescs.size() < MAX_SHARED_CLASS_DESCS)
+        {
+            sharedDescs.assign(desc);
+        }
     }
 
     /**
@@ -1759,7 +1908,7 @@ public class ObjectOutputStream
         private int pos = 0;
 
         /** underlying output stream */
-        private final OutputStream out;
+        private OutputStream out;
         /** loopback stream (for data writes that span data blocks) */
         private final DataOutputStream dout;
 
@@ -1772,6 +1921,15 @@ public class ObjectOutputStream
             dout = new DataOutputStream(this);
         }
 
+        /**
+         * Switches to the given underlying stream.  Block data mode must be
+         * off, so that no buffered data remains.
+         */
+        void rebind(OutputStream out) {
+            assert !blkmode && pos == 0;
+            this.out = out;
+        }
+
         /**
          * Sets block data mode to the given mode (true == on, false == off)
          * and returns the previous mode value.  If the new mode is the same as
@@ -2236,6 +2394,22 @@ public class ObjectOutputStream
         }
     }
 
+    /**
+     * Output stream that writes to a ByteBuffer, reused by rebind(ByteBuffer).
+     */
+    private static final class ByteBufferOutput extends OutputStream {
+        /** buffer to write to */
+        ByteBuffer buf;
+
+        public void write(int b) {
+            buf.put((byte) b);
+        }
+
+        public void write(byte[] b, int off, int len) {
+            buf.put(b, off, len);
+        }
+    }
+
     /**
      * Lightweight identity hash table which maps objects to integer handles,
      * assigned in ascending order.
@@ -2250,6 +2424,10 @@ public class ObjectOutputStream
         private final float loadFactor;
         /* maps hash value -> candidate handle value */
         private int[] spine;
+        /* maps hash value -> generation in which spine entry was set */
+        private int[] stamps;
+        /* current generation; spine entries of other generations are empty */
+        private int generation = 1;
         /* maps handle value -> next candidate handle value */
         private int[] next;
         /* maps handle value -> associated object */
@@ -2261,6 +2439,7 @@ public class ObjectOutputStream
         HandleTable(int initialCapacity, float loadFactor) {
             this.loadFactor = loadFactor;
             spine = new int[initialCapacity];
+            stamps = new int[initialCapacity];
             next = new int[initialCapacity];
             objs = new Object[initialCapacity];
             threshold = (int) (initialCapacity * loadFactor);
@@ -2291,7 +2470,7 @@ public class ObjectOutputStream
                 return -1;
             }
             int index = hash(obj) % spine.length;
-            for (int i = spine[index]; i >= 0; i = next[i]) {
+            for (int i = head(index); i >= 0; i = next[i]) {
                 if (objs[i] == obj) {
                     return i;
                 }
@@ -2300,12 +2479,18 @@ public class ObjectOutputStream
         }
 
         /**
-         * Resets table to its initial (empty) state.
+         * Resets table to its initial (empty) state.  Rather than refilling
+         * the spine, the generation is advanced so that all existing spine
+         * entries become stale; only the entries in use are cleared.
          */
         void clear() {
-            Arrays.fill(spine, -1);
             Arrays.fill(objs, 0, size, null);
             size = 0;
+            if (++generation == 0) {
+                // wrapped around: stamps from old generations could match
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
         }
 
         /**
@@ -2322,8 +2507,17 @@ public class ObjectOutputStream
         private void insert(Object obj, int handle) {
             int index = hash(obj) % spine.length;
             objs[handle] = obj;
-            next[handle] = spine[index];
+            next[handle] = head(index);
             spine[index] = handle;
+            stamps[index] = generation;
+        }
+
+        /**
+         * Returns the first candidate handle for the given spine index, or -1
+         * if the spine entry was not set in the current generation.
+         */
+        private int head(int index) {
+            return (stamps[index] == generation) ? spine[index] : -1;
         }
 
         /**
@@ -2332,8 +2526,8 @@ public class ObjectOutputStream
          */
         private void growSpine() {
             spine = new int[(spine.length << 1) + 1];
+            stamps = new int[spine.length];
             threshold = (int) (spine.length * loadFactor);
-            Arrays.fill(spine, -1);
             for (int i = 0; i < size; i++) {
                 insert(objs[i], i);
             }
@@ -45,6 +45,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -84,6 +85,25 @@ public class ObjectStreamClass implements Serializable {
         AccessController.doPrivileged(
             new ReflectionFactory.GetReflectionFactoryAction());
 
+    /**
+     * maximum number of resolved stream class descriptors shared across
+     * input streams; zero disables sharing
+     */
+    private static final int streamDescCacheSize =
+        AccessController.doPrivileged(
+            new sun.security.action.GetIntegerAction(
+                "jdk.serialDescriptorCacheSize", 1024)).intValue();
+
+    /**
+     * value of "jdk.serialGeneratedAccessors" property; if true, the fields
+     * of each class are copied by a class spun for it rather than by a loop
+     * over unsafe field keys
+     */
+    private static final boolean generatedAccessors =
+        AccessController.doPrivileged(
+            new sun.security.action.GetBooleanAction(
+                "jdk.serialGeneratedAccessors")).booleanValue();
+
     private static class Caches {
         /** cache mapping local classes -> descriptors */
         static final ConcurrentMap<WeakClassKey,Reference<?>> localDescs =
@@ -99,6 +119,14 @@ public class ObjectStreamClass implements Serializable {
         /** queue for WeakReferences to field reflectors keys */
         private static final ReferenceQueue<Class<?>> reflectorsQueue =
             new ReferenceQueue<>();
+
+        /** cache mapping stream descriptor contents -> resolved descriptors */
+        static final ConcurrentMap<StreamDescKey,Reference<?>> streamDescs =
+            new ConcurrentHashMap<>();
+
+        /** queue for WeakReferences to stream descriptor keys */
+        private static final ReferenceQueue<Class<?>> streamDescsQueue =
+            new ReferenceQueue<>();
     }
 
     /** class associated with this descriptor (if any) */
@@ -672,6 +700,51 @@ public class ObjectStreamClass implements Serializable {
         initialized = true;
     }
 
+    /**
+     * Returns a class descriptor initialized as if by invoking
+     * initNonProxy(model, cl, null, superDesc) on a new descriptor.  If an
+     * earlier stream read a descriptor with the same name, serialVersionUID,
+     * flags and fields that was resolved to the same class, with the same
+     * superclass descriptor, the descriptor created for that stream is
+     * returned instead, avoiding repeated compatibility checks and field
+     * matching.  Resolved descriptors are immutable, so they may be shared by
+     * any number of streams.
+     */
+    static ObjectStreamClass lookupNonProxy(ObjectStreamClass model,
+                                            Class<?> cl,
+                                            ObjectStreamClass superDesc)
+        throws InvalidClassException
+    {
+        if (streamDescCacheSize <= 0) {
+            ObjectStreamClass desc = new ObjectStreamClass();
+            desc.initNonProxy(model, cl, null, superDesc);
+            return desc;
+        }
+        processQueue(Caches.streamDescsQueue, Caches.streamDescs);
+        StreamDescKey key =
+            new StreamDescKey(model, cl, Caches.streamDescsQueue);
+        Reference<?> ref = Caches.streamDescs.get(key);
+        if (ref != null) {
+            ObjectStreamClass desc = (ObjectStreamClass) ref.get();
+            if (desc != null && desc.superDesc == superDesc) {
+                return desc;
+            }
+        }
+
+        ObjectStreamClass desc = new ObjectStreamClass();
+        desc.initNonProxy(model, cl, null, superDesc);
+        if (Caches.streamDescs.size() >= streamDescCacheSize) {
+            // evict an arbitrary entry to keep the cache bounded
+            Iterator<StreamDescKey> it = Caches.streamDescs.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        Caches.streamDescs.put(key, new SoftReference<Object>(desc));
+        return desc;
+    }
+
     /**
      * Reads non-proxy class descriptor information from given input stream.
      * The resulting class descriptor is not fully functional; it can only be
@@ -1917,6 +1990,8 @@ public class ObjectStreamClass implements Serializable {
         private final char[] typeCodes;
         /** field types */
         private final Class<?>[] types;
+        /** spun field accessors, or null to loop over unsafe field keys */
+        private final FieldAccessorGenerator.Accessor accessor;
 
         /**
          * Constructs FieldReflector capable of setting/getting values from the
@@ -1953,6 +2028,10 @@ public class ObjectStreamClass implements Serializable {
 
             types = typeList.toArray(new Class<?>[typeList.size()]);
             numPrimFields = nfields - types.length;
+            accessor = (generatedAccessors && nfields > 0) ?
+                FieldAccessorGenerator.generate(readKeys, writeKeys, offsets,
+                                                typeCodes, numPrimFields) :
+                null;
         }
 
         /**
@@ -1974,6 +2053,10 @@ public class ObjectStreamClass implements Serializable {
             if (obj == null) {
                 throw new NullPointerException();
             }
+            if (accessor != null) {
+                accessor.getPrimFieldValues(obj, buf);
+                return;
+            }
             /* assuming checkDefaultSerialize() has been called on the class
              * descriptor this FieldReflector was obtained from, no field keys
              * in array should be equal to Unsafe.INVALID_FIELD_OFFSET.
@@ -2029,6 +2112,10 @@ public class ObjectStreamClass implements Serializable {
             if (obj == null) {
                 throw new NullPointerException();
             }
+            if (accessor != null) {
+                accessor.setPrimFieldValues(obj, buf);
+                return;
+            }
             for (int i = 0; i < numPrimFields; i++) {
                 long key = writeKeys[i];
                 if (key == Unsafe.INVALID_FIELD_OFFSET) {
@@ -2083,6 +2170,10 @@ public class ObjectStreamClass implements Serializable {
             if (obj == null) {
                 throw new NullPointerException();
             }
+            if (accessor != null) {
+                accessor.getObjFieldValues(obj, vals);
+                return;
+            }
             /* assuming checkDefaultSerialize() has been called on the class
              * descriptor this FieldReflector was obtained from, no field keys
              * in array should be equal to Unsafe.INVALID_FIELD_OFFSET.
@@ -2132,13 +2223,19 @@ public class ObjectStreamClass implements Serializable {
                                 f.getType().getName() + " in instance of " +
                                 obj.getClass().getName());
                         }
-                        unsafe.putObject(obj, key, val);
+                        if (accessor == null) {
+                            unsafe.putObject(obj, key, val);
+                        }
                         break;
 
                     default:
                         throw new InternalError();
                 }
             }
+            if (accessor != null) {
+                // every value has been checked, store them all at once
+                accessor.setObjFieldValues(obj, vals);
+            }
         }
     }
 
@@ -2257,6 +2354,73 @@ public class ObjectStreamClass implements Serializable {
         }
     }
 
+    /**
+     * Stream descriptor cache key: the contents of a class descriptor read
+     * from a stream, together with the local class to which it was resolved.
+     */
+    private static class StreamDescKey extends WeakReference<Class<?>> {
+
+        private final String name;
+        private final long suid;
+        private final int flags;
+        private final String sigs;
+        private final int hash;
+
+        StreamDescKey(ObjectStreamClass model, Class<?> cl,
+                      ReferenceQueue<Class<?>> queue)
+        {
+            super(cl, queue);
+            name = model.name;
+            suid = model.getSerialVersionUID();
+            flags = (model.isEnum ? 0x01 : 0) |
+                (model.serializable ? 0x02 : 0) |
+                (model.externalizable ? 0x04 : 0) |
+                (model.hasWriteObjectData ? 0x08 : 0) |
+                (model.hasBlockExternalData ? 0x10 : 0);
+            /*
+             * Names and signatures come from the stream and may contain any
+             * character, so each is prefixed with its length to keep
+             * different field lists from producing the same string.
+             */
+            StringBuilder sbuf = new StringBuilder();
+            ObjectStreamField[] fields = model.fields;
+            for (int i = 0; i < fields.length; i++) {
+                ObjectStreamField f = fields[i];
+                String fname = f.getName();
+                String sig = f.getSignature();
+                sbuf.append(fname.length()).append(':').append(fname)
+                    .append(sig.length()).append(':').append(sig);
+            }
+            sigs = sbuf.toString();
+            hash = System.identityHashCode(cl) +
+                31 * (name.hashCode() + 31 * Long.hashCode(suid)) +
+                sigs.hashCode();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            if (obj instanceof StreamDescKey) {
+                StreamDescKey other = (StreamDescKey) obj;
+                Class<?> referent;
+                return ((referent = get()) != null) &&
+                    (referent == other.get()) &&
+                    suid == other.suid &&
+                    flags == other.flags &&
+                    name.equals(other.name) &&
+                    sigs.equals(other.sigs);
+            } else {
+                return false;
+            }
+        }
+    }
+
     /**
      * Matches given set of serializable fields with serializable fields
      * obtained from the given local class descriptor (which contain bindings
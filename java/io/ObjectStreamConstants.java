@@ -129,10 +129,18 @@ public interface ObjectStreamConstants {
      */
     final static byte TC_ENUM =         (byte)0x7E;
 
+    /**
+     * Reference to a class descriptor shared by the peers of a sequence of
+     * streams.
+     * @see java.io.ObjectOutputStream#shareClassDescriptors()
+     * @since 1.8
+     */
+    final static byte TC_SHAREDCLASSDESC = (byte)0x7F;
+
     /**
      * Last tag value.
      */
-    final static byte TC_MAX =          (byte)0x7E;
+    final static byte TC_MAX =          (byte)0x7F;
 
     /**
      * First wire handle to be assigned.
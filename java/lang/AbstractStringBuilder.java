@@ -25,7 +25,6 @@
 
 package java.lang;
 
-import sun.misc.FloatingDecimal;
 import java.util.Arrays;
 
 /**
@@ -716,7 +715,8 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  a reference to this object.
      */
     public AbstractStringBuilder append(float f) {
-        FloatingDecimal.appendTo(f,this);
+        ensureCapacityInternal(count + DoubleToDecimal.MAX_FLOAT_CHARS);
+        count = DoubleToDecimal.toChars(f, value, count);
         return this;
     }
 
@@ -733,7 +733,8 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  a reference to this object.
      */
     public AbstractStringBuilder append(double d) {
-        FloatingDecimal.appendTo(d,this);
+        ensureCapacityInternal(count + DoubleToDecimal.MAX_DOUBLE_CHARS);
+        count = DoubleToDecimal.toChars(d, value, count);
         return this;
     }
 
@@ -25,7 +25,6 @@
 
 package java.lang;
 
-import sun.misc.FloatingDecimal;
 import sun.misc.FpUtils;
 import sun.misc.DoubleConsts;
 
@@ -201,7 +200,46 @@ public final class Double extends Number implements Comparable<Double> {
      * @return a string representation of the argument.
      */
     public static String toString(double d) {
-        return FloatingDecimal.toJavaFormatString(d);
+        return DoubleToDecimal.toString(d);
+    }
+
+    /**
+     * Writes the string representation of the {@code double} argument,
+     * as returned by {@link #toString(double)}, into the array {@code dst}
+     * starting at {@code dstBegin}, without creating a {@code String}.
+     * The representation is at most 24 characters long.
+     *
+     * @param   d   the {@code double} to be converted.
+     * @param   dst the destination array.
+     * @param   dstBegin the start offset in the destination array.
+     * @return  the index in {@code dst} after the last character written.
+     * @throws  NullPointerException if {@code dst} is null
+     * @throws  IndexOutOfBoundsException if {@code dstBegin} is negative
+     *          or the representation does not fit in {@code dst} at
+     *          {@code dstBegin}; no characters are written then.
+     * @since 1.8
+     */
+    public static int getChars(double d, char[] dst, int dstBegin) {
+        return DoubleToDecimal.toChars(d, dst, dstBegin);
+    }
+
+    /**
+     * Appends the string representation of the {@code double} argument,
+     * as returned by {@link #toString(double)}, to the given
+     * {@code Appendable}.  For a {@code StringBuilder}, a
+     * {@code StringBuffer} or a {@code Writer}, no {@code String} is
+     * created.
+     *
+     * @param   d   the {@code double} to be converted.
+     * @param   a   the {@code Appendable} to append to.
+     * @throws  NullPointerException if {@code a} is null
+     * @throws  java.io.IOException if an I/O error occurs
+     * @since 1.8
+     */
+    public static void appendTo(double d, Appendable a)
+        throws java.io.IOException
+    {
+        DoubleToDecimal.appendTo(d, a);
     }
 
     /**
@@ -535,7 +573,32 @@ public final class Double extends Number implements Comparable<Double> {
      * @since 1.2
      */
     public static double parseDouble(String s) throws NumberFormatException {
-        return FloatingDecimal.parseDouble(s);
+        return DecimalToDouble.parseDouble(s);
+    }
+
+    /**
+     * Returns the {@code double} value represented by {@code count}
+     * characters of the array {@code src}, starting at {@code offset}.
+     * The characters are parsed as by {@link #parseDouble(String)}; this
+     * method does not create a {@code String} unless the characters are
+     * in one of the uncommon forms, such as hexadecimal, that are not
+     * parsed directly.
+     *
+     * @param  src the characters to be parsed.
+     * @param  offset the index of the first character.
+     * @param  count the number of characters.
+     * @return the {@code double} value represented by the characters.
+     * @throws NullPointerException if {@code src} is null
+     * @throws IndexOutOfBoundsException if {@code offset} or
+     *         {@code count} is negative, or {@code offset + count} is
+     *         larger than {@code src.length}
+     * @throws NumberFormatException if the characters do not form a
+     *         parsable {@code double}.
+     * @see    #parseDouble(String)
+     * @since 1.8
+     */
+    public static double parseDouble(char[] src, int offset, int count) {
+        return DecimalToDouble.parseDouble(src, offset, count);
     }
 
     /**
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.io.IOException;
+import java.io.Writer;
+import sun.misc.ShortestDecimal;
+
+/**
+ * Renders doubles and floats as the shortest decimals that round to them,
+ * in the format of {@link Double#toString(double)} and
+ * {@link Float#toString(float)}, directly into a character array, or into
+ * an {@code Appendable}.
+ *
+ * <p>The conversion itself is the Schubfach implementation of
+ * <code>ShortestDecimal</code>, which the compiled decimal formats of
+ * <code>java.text</code> share.  Unlike the conversion by
+ * <code>FloatingDecimal</code>, it needs no big integer arithmetic, and
+ * rendering into a character array or a string builder allocates nothing.
+ */
+final class DoubleToDecimal {
+
+    /** The maximum number of characters rendered for a double */
+    static final int MAX_DOUBLE_CHARS = ShortestDecimal.MAX_DOUBLE_CHARS;
+
+    /** The maximum number of characters rendered for a float */
+    static final int MAX_FLOAT_CHARS = ShortestDecimal.MAX_FLOAT_CHARS;
+
+    private DoubleToDecimal() {}
+
+    /**
+     * Returns the string representation of v, as specified by
+     * Double.toString(double).
+     */
+    static String toString(double v) {
+        char[] buf = new char[MAX_DOUBLE_CHARS];
+        return new String(buf, 0, toChars(v, buf, 0));
+    }
+
+    /**
+     * Returns the string representation of v, as specified by
+     * Float.toString(float).
+     */
+    static String toString(float v) {
+        char[] buf = new char[MAX_FLOAT_CHARS];
+        return new String(buf, 0, toChars(v, buf, 0));
+    }
+
+    /**
+     * Appends the string representation of v to the given appendable.
+     */
+    static void appendTo(double v, Appendable a) throws IOException {
+        if (a instanceof AbstractStringBuilder) {
+            ((AbstractStringBuilder) a).append(v);
+        } else {
+            char[] buf = new char[MAX_DOUBLE_CHARS];
+            write(buf, toChars(v, buf, 0), a);
+        }
+    }
+
+    /**
+     * Appends the string representation of v to the given appendable.
+     */
+    static void appendTo(float v, Appendable a) throws IOException {
+        if (a instanceof AbstractStringBuilder) {
+            ((AbstractStringBuilder) a).append(v);
+        } else {
+            char[] buf = new char[MAX_FLOAT_CHARS];
+            write(buf, toChars(v, buf, 0), a);
+        }
+    }
+
+    private static void write(char[] buf, int len, Appendable a)
+        throws IOException
+    {
+        if (a instanceof Writer) {
+            ((Writer) a).write(buf, 0, len);
+        } else {
+            for (int i = 0; i < len; i++)
+                a.append(buf[i]);
+        }
+    }
+
+    /**
+     * Renders v into buf at index and returns the index after the last
+     * character.
+     *
+     * @throws IndexOutOfBoundsException if buf is too short; nothing is
+     *         written then
+     */
+    static int toChars(double v, char[] buf, int index) {
+        return ShortestDecimal.toChars(v, buf, index);
+    }
+
+    /**
+     * Renders v into buf at index and returns the index after the last
+     * character.
+     *
+     * @throws IndexOutOfBoundsException if buf is too short; nothing is
+     *         written then
+     */
+    static int toChars(float v, char[] buf, int index) {
+        return ShortestDecimal.toChars(v, buf, index);
+    }
+}
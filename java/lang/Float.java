@@ -25,7 +25,6 @@
 
 package java.lang;
 
-import sun.misc.FloatingDecimal;
 import sun.misc.FloatConsts;
 import sun.misc.DoubleConsts;
 
@@ -203,7 +202,46 @@ public final class Float extends Number implements Comparable<Float> {
      * @return a string representation of the argument.
      */
     public static String toString(float f) {
-        return FloatingDecimal.toJavaFormatString(f);
+        return DoubleToDecimal.toString(f);
+    }
+
+    /**
+     * Writes the string representation of the {@code float} argument,
+     * as returned by {@link #toString(float)}, into the array {@code dst}
+     * starting at {@code dstBegin}, without creating a {@code String}.
+     * The representation is at most 15 characters long.
+     *
+     * @param   f   the {@code float} to be converted.
+     * @param   dst the destination array.
+     * @param   dstBegin the start offset in the destination array.
+     * @return  the index in {@code dst} after the last character written.
+     * @throws  NullPointerException if {@code dst} is null
+     * @throws  IndexOutOfBoundsException if {@code dstBegin} is negative
+     *          or the representation does not fit in {@code dst} at
+     *          {@code dstBegin}; no characters are written then.
+     * @since 1.8
+     */
+    public static int getChars(float f, char[] dst, int dstBegin) {
+        return DoubleToDecimal.toChars(f, dst, dstBegin);
+    }
+
+    /**
+     * Appends the string representation of the {@code float} argument,
+     * as returned by {@link #toString(float)}, to the given
+     * {@code Appendable}.  For a {@code StringBuilder}, a
+     * {@code StringBuffer} or a {@code Writer}, no {@code String} is
+     * created.
+     *
+     * @param   f   the {@code float} to be converted.
+     * @param   a   the {@code Appendable} to append to.
+     * @throws  NullPointerException if {@code a} is null
+     * @throws  java.io.IOException if an I/O error occurs
+     * @since 1.8
+     */
+    public static void appendTo(float f, Appendable a)
+        throws java.io.IOException
+    {
+        DoubleToDecimal.appendTo(f, a);
     }
 
     /**
@@ -448,7 +486,32 @@ public final class Float extends Number implements Comparable<Float> {
      * @since 1.2
      */
     public static float parseFloat(String s) throws NumberFormatException {
-        return FloatingDecimal.parseFloat(s);
+        return DecimalToDouble.parseFloat(s);
+    }
+
+    /**
+     * Returns the {@code float} value represented by {@code count}
+     * characters of the array {@code src}, starting at {@code offset}.
+     * The characters are parsed as by {@link #parseFloat(String)}; this
+     * method does not create a {@code String} unless the characters are
+     * in one of the uncommon forms, such as hexadecimal, that are not
+     * parsed directly.
+     *
+     * @param  src the characters to be parsed.
+     * @param  offset the index of the first character.
+     * @param  count the number of characters.
+     * @return the {@code float} value represented by the characters.
+     * @throws NullPointerException if {@code src} is null
+     * @throws IndexOutOfBoundsException if {@code offset} or
+     *         {@code count} is negative, or {@code offset + count} is
+     *         larger than {@code src.length}
+     * @throws NumberFormatException if the characters do not form a
+     *         parsable {@code float}.
+     * @see    #parseFloat(String)
+     * @since 1.8
+     */
+    public static float parseFloat(char[] src, int offset, int count) {
+        return DecimalToDouble.parseFloat(src, offset, count);
     }
 
     /**
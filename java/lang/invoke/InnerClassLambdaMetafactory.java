@@ -28,6 +28,7 @@ package java.lang.invoke;
 import jdk.internal.org.objectweb.asm.*;
 import sun.invoke.util.BytecodeDescriptor;
 import sun.misc.Unsafe;
+import sun.reflect.misc.ReflectUtil;
 import sun.security.action.GetPropertyAction;
 
 import java.io.FilePermission;
@@ -94,6 +95,12 @@ import static jdk.internal.org.objectweb.asm.Opcodes.*;
         dumper = (null == path) ? null : ProxyClassesDumper.getInstance(path);
     }
 
+    // For reusing classes spun in an earlier run, to skip their generation.
+    // Archived bytes carry the class name of the run that spun them, so
+    // dumping, which names files after the class of this run, bypasses it.
+    private static final ProxyClassesArchive archive =
+        (dumper == null) ? ProxyClassesArchive.getInstance() : null;
+
     // See context values in AbstractValidatingLambdaMetafactory
     private final String implMethodClassName;        // Name of type containing implementation "CC"
     private final String implMethodName;             // Name of implementation method "impl"
@@ -242,11 +249,59 @@ import static jdk.internal.org.objectweb.asm.Opcodes.*;
      * and we make no guarantees about the reflective properties of lambda
      * objects.
      *
+     * <p>If a {@link ProxyClassesArchive} is in use, the bytes archived for
+     * the same call-site descriptor are defined instead of spinning them
+     * again.
+     *
      * @return a Class which implements the functional interface
      * @throws LambdaConversionException If properly formed functional interface
      * is not found
      */
     private Class<?> spinInnerClass() throws LambdaConversionException {
+        String key = (archive != null) ? archiveKey() : null;
+        if (key != null) {
+            byte[] archived = archive.lookup(key);
+            if (archived != null) {
+                try {
+                    return defineInnerClass(archived);
+                } catch (LinkageError e) {
+                    // stale or damaged entry, spin the class again
+                    archive.discard(key);
+                }
+            }
+        }
+        byte[] classBytes = generateInnerClass();
+        if (key != null)
+            archive.record(key, classBytes);
+        return defineInnerClass(classBytes);
+    }
+
+    /**
+     * Define the class with the given bytes in this VM.
+     */
+    private Class<?> defineInnerClass(final byte[] classBytes) {
+        // If requested, dump out to a file for debugging purposes
+        if (dumper != null) {
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                @Override
+                public Void run() {
+                    dumper.dumpClass(lambdaClassName, classBytes);
+                    return null;
+                }
+            }, null,
+            new FilePermission("<<ALL FILES>>", "read, write"),
+            // createDirectories may need it
+            new PropertyPermission("user.dir", "read"));
+        }
+
+        return UNSAFE.defineAnonymousClass(targetClass, classBytes, null);
+    }
+
+    /**
+     * Generate the bytes of the class file which implements the functional
+     * interface.
+     */
+    private byte[] generateInnerClass() {
         String[] interfaces;
         String samIntf = samBase.getName().replace('.', '/');
         boolean accidentallySerializable = !isSerializable && Serializable.class.isAssignableFrom(samBase);
@@ -305,25 +360,43 @@ import static jdk.internal.org.objectweb.asm.Opcodes.*;
 
         cw.visitEnd();
 
-        // Define the generated class in this VM.
-
-        final byte[] classBytes = cw.toByteArray();
+        return cw.toByteArray();
+    }
 
-        // If requested, dump out to a file for debugging purposes
-        if (dumper != null) {
-            AccessController.doPrivileged(new PrivilegedAction<Void>() {
-                @Override
-                public Void run() {
-                    dumper.dumpClass(lambdaClassName, classBytes);
-                    return null;
-                }
-            }, null,
-            new FilePermission("<<ALL FILES>>", "read, write"),
-            // createDirectories may need it
-            new PropertyPermission("user.dir", "read"));
+    /**
+     * Build the key under which the class spun for this call site is
+     * archived. The key covers every input of {@link #generateInnerClass},
+     * except the generated class name, so archived bytes are only reused for
+     * a call site with the same descriptor. Returns null if the call site
+     * involves VM-anonymous classes, whose names differ in every run.
+     */
+    private String archiveKey() {
+        if (ReflectUtil.isVMAnonymousClass(targetClass) ||
+                ReflectUtil.isVMAnonymousClass(implDefiningClass))
+            return null;
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("lambda:").append(targetClass.getName())
+          .append(' ').append(invokedType.toMethodDescriptorString())
+          .append(' ').append(samBase.getName())
+          .append('.').append(samMethodName)
+          .append(samMethodType.toMethodDescriptorString())
+          .append(' ').append(implKind)
+          .append(' ').append(implDefiningClass.getName())
+          .append(implDefiningClass.isInterface() ? "/I" : "/C")
+          .append('.').append(implMethodName).append(implMethodDesc)
+          .append(' ').append(instantiatedMethodType.toMethodDescriptorString())
+          .append(' ').append(isSerializable ? 'S' : '-')
+          .append(Serializable.class.isAssignableFrom(samBase) ? 's' : '-');
+        for (Class<?> markerInterface : markerInterfaces) {
+            sb.append(" &").append(markerInterface.getName())
+              .append(Serializable.class.isAssignableFrom(markerInterface) ? "/s" : "");
         }
-
-        return UNSAFE.defineAnonymousClass(targetClass, classBytes, null);
+        if (additionalBridges != null) {
+            for (MethodType mt : additionalBridges) {
+                sb.append(" +").append(mt.toMethodDescriptorString());
+            }
+        }
+        return sb.toString();
     }
 
     /**
@@ -269,6 +269,34 @@ class InvokerBytecodeGenerator {
         return ((classFile[8] & 0xFF) << 8) | (classFile[9] & 0xFF);
     }
 
+    /**
+     * The archive for invoker classes spun in an earlier run, or null if
+     * there is none.  Only invokers whose class files take no constant pool
+     * patches, and are therefore fully described by their signature, are
+     * archived.  Class file dumping names every class uniquely and so
+     * bypasses the archive.
+     */
+    private static ProxyClassesArchive archive() {
+        return DUMP_CLASS_FILES ? null : ProxyClassesArchive.getInstance();
+    }
+
+    /**
+     * Extract the MemberName of the method defined by the archived class file
+     * stored under key, or return null if there is none or it fails to load.
+     */
+    private MemberName loadArchived(ProxyClassesArchive archive, String key) {
+        byte[] classFile = archive.lookup(key);
+        if (classFile == null)
+            return null;
+        try {
+            return loadMethod(classFile);
+        } catch (LinkageError | InternalError e) {
+            // stale or damaged entry, the caller spins the class again
+            archive.discard(key);
+            return null;
+        }
+    }
+
     /**
      * Extract the MemberName of a newly-defined method.
      */
@@ -1310,7 +1338,15 @@ class InvokerBytecodeGenerator {
         MethodType type = signatureType(sig);  // sig includes leading argument
         type = type.changeParameterType(0, MethodHandle.class);
         InvokerBytecodeGenerator g = new InvokerBytecodeGenerator("LFI", name, type);
-        return g.loadMethod(g.generateLambdaFormInterpreterEntryPointBytes());
+        ProxyClassesArchive archive = archive();
+        String key = "LFI:" + sig;
+        MemberName member = (archive != null) ? g.loadArchived(archive, key) : null;
+        if (member != null)
+            return member;
+        byte[] classFile = g.generateLambdaFormInterpreterEntryPointBytes();
+        if (archive != null)
+            archive.record(key, classFile);
+        return g.loadMethod(classFile);
     }
 
     private byte[] generateLambdaFormInterpreterEntryPointBytes() {
@@ -1368,7 +1404,15 @@ class InvokerBytecodeGenerator {
         MethodType invokerType = NamedFunction.INVOKER_METHOD_TYPE;
         String invokerName = "invoke_" + shortenSignature(basicTypeSignature(typeForm.erasedType()));
         InvokerBytecodeGenerator g = new InvokerBytecodeGenerator("NFI", invokerName, invokerType);
-        return g.loadMethod(g.generateNamedFunctionInvokerImpl(typeForm));
+        ProxyClassesArchive archive = archive();
+        String key = "NFI:" + typeForm.erasedType().toMethodDescriptorString();
+        MemberName member = (archive != null) ? g.loadArchived(archive, key) : null;
+        if (member != null)
+            return member;
+        byte[] classFile = g.generateNamedFunctionInvokerImpl(typeForm);
+        if (archive != null)
+            archive.record(key, classFile);
+        return g.loadMethod(classFile);
     }
 
     private byte[] generateNamedFunctionInvokerImpl(MethodTypeForm typeForm) {
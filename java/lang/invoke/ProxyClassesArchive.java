@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.invoke;
+
+import sun.security.action.GetPropertyAction;
+import sun.util.logging.PlatformLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.PropertyPermission;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Archive of classes spun at run time by InnerClassLambdaMetafactory and
+ * InvokerBytecodeGenerator, used to skip bytecode generation on the next
+ * start.
+ *
+ * <p> The archive is enabled by setting the system property
+ * {@code jdk.internal.lambda.archive} to the path of the archive file. If
+ * the file exists when the archive is first used, the class bytes it holds
+ * are loaded into memory. Each class is stored under a key that describes
+ * everything its bytes are generated from, for a lambda proxy the full
+ * call-site descriptor, so an entry is only ever returned to a caller that
+ * would have generated the very same bytes. On exit, the classes looked up
+ * or generated in this run are written back, up to {@code MAX_CLASSES}
+ * classes and {@code MAX_BYTES} bytes of them; entries no run uses any
+ * more are thereby dropped.
+ *
+ * <p> Every entry carries a checksum of its key and bytes. An archive
+ * written by a different runtime version, or one that is larger than the
+ * limits, truncated or fails a checksum, is ignored as a whole and
+ * rewritten on exit. The file is written under a unique temporary name
+ * and renamed into place, so that processes exiting together each leave a
+ * complete archive, which only its owner may write.
+ *
+ * <p> The archived bytes are defined like the generated ones, which for
+ * boot classes means without verification. An existing file is therefore
+ * only read if it is owned by the user running the VM and, where the file
+ * system supports POSIX permissions, cannot be written by its group or by
+ * others; any other file is ignored and replaced on exit.
+ *
+ * @implNote
+ * <p> This class must not use lambdas or method references, since it is
+ * used while they are being linked.
+ */
+final class ProxyClassesArchive {
+    private static final int MAGIC = 0xCAFE1A3B;
+    private static final int FORMAT_VERSION = 2;
+
+    /** Maximum number of classes kept, and written */
+    private static final int MAX_CLASSES = 8192;
+    /** Maximum total size of the class bytes kept, and written */
+    private static final long MAX_BYTES = 32L << 20;
+
+    private static final ProxyClassesArchive INSTANCE;
+
+    static {
+        final String key = "jdk.internal.lambda.archive";
+        String path = AccessController.doPrivileged(
+                new GetPropertyAction(key), null,
+                new PropertyPermission(key, "read"));
+        INSTANCE = (null == path) ? null : getInstance(path);
+    }
+
+    private final File file;
+    private final String runtimeVersion;
+    /** The classes read from the file */
+    private final Map<String, byte[]> archived = new ConcurrentHashMap<>();
+    /** The classes looked up or generated in this run, to be written */
+    private final Map<String, byte[]> retained = new ConcurrentHashMap<>();
+    /** Total size of the retained class bytes, guarded by this */
+    private long retainedBytes;
+    /** Whether the file differs from the classes to be written */
+    private volatile boolean modified;
+
+    /**
+     * Returns the archive named by the {@code jdk.internal.lambda.archive}
+     * system property, or {@code null} if archiving is disabled.
+     */
+    static ProxyClassesArchive getInstance() {
+        return INSTANCE;
+    }
+
+    private static ProxyClassesArchive getInstance(String path) {
+        path = path.trim();
+        if (path.length() == 0) {
+            PlatformLogger.getLogger(ProxyClassesArchive.class.getName())
+                          .warning("Empty archive path - archiving disabled");
+            return null;
+        }
+        final ProxyClassesArchive archive = new ProxyClassesArchive(
+                new File(path).getAbsoluteFile(),
+                AccessController.doPrivileged(
+                        new GetPropertyAction("java.runtime.version", "")));
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                @Override
+                public Void run() {
+                    archive.load();
+                    try {
+                        Runtime.getRuntime().addShutdownHook(new Thread() {
+                            @Override
+                            public void run() {
+                                archive.store();
+                            }
+                        });
+                    } catch (IllegalStateException ignore) {
+                        // shutdown in progress, nothing will be recorded
+                    }
+                    return null;
+                }
+            });
+        return archive;
+    }
+
+    private ProxyClassesArchive(File file, String runtimeVersion) {
+        this.file = file;
+        this.runtimeVersion = runtimeVersion;
+    }
+
+    /**
+     * Returns the archived bytes of the class stored under the given key, or
+     * {@code null} if there are none.
+     */
+    byte[] lookup(String key) {
+        byte[] classBytes = archived.get(key);
+        if (classBytes != null)
+            retain(key, classBytes);
+        return classBytes;
+    }
+
+    /**
+     * Records the bytes of a class generated in this run, to be written to
+     * the archive on exit if the limits allow.
+     */
+    void record(String key, byte[] classBytes) {
+        if (retain(key, classBytes))
+            modified = true;
+    }
+
+    /**
+     * Drops the entry stored under the given key, whose bytes could not be
+     * defined.
+     */
+    void discard(String key) {
+        archived.remove(key);
+        synchronized (this) {
+            byte[] classBytes = retained.remove(key);
+            if (classBytes != null)
+                retainedBytes -= classBytes.length;
+        }
+        modified = true;
+    }
+
+    private synchronized boolean retain(String key, byte[] classBytes) {
+        if (retained.containsKey(key) || retained.size() >= MAX_CLASSES ||
+                retainedBytes + classBytes.length > MAX_BYTES)
+            return false;
+        retained.put(key, classBytes);
+        retainedBytes += classBytes.length;
+        return true;
+    }
+
+    private static long checksum(String key, byte[] classBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        crc.update(classBytes);
+        return crc.getValue();
+    }
+
+    private void load() {
+        try {
+            if (!isTrusted(file.toPath())) {
+                modified = true;
+                PlatformLogger.getLogger(ProxyClassesArchive.class.getName())
+                              .warning("Archive " + file + " is not owned by " +
+                                       "the current user or is writable by " +
+                                       "others - ignored");
+                return;
+            }
+        } catch (NoSuchFileException ignore) {
+            // first run, the archive is written on exit
+            modified = true;
+            return;
+        } catch (IOException ex) {
+            modified = true;
+            PlatformLogger.getLogger(ProxyClassesArchive.class.getName())
+                          .warning("Cannot check archive " + file + " - ignored", ex);
+            return;
+        }
+        long size = file.length();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (size > MAX_BYTES * 2 || in.readInt() != MAGIC ||
+                    in.readInt() != FORMAT_VERSION ||
+                    !in.readUTF().equals(runtimeVersion)) {
+                modified = true;
+                return;
+            }
+            int count = in.readInt();
+            if (count < 0 || count > MAX_CLASSES)
+                throw new IOException("Invalid class count");
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int length = in.readInt();
+                long crc = in.readLong();
+                // bound the allocation by what the file can hold
+                total += length;
+                if (length < 0 || total > size)
+                    throw new IOException("Invalid class length");
+                byte[] classBytes = new byte[length];
+                in.readFully(classBytes);
+                if (checksum(key, classBytes) != crc)
+                    throw new IOException("Checksum mismatch");
+                archived.put(key, classBytes);
+            }
+        } catch (FileNotFoundException ignore) {
+            // first run, the archive is written on exit
+            modified = true;
+        } catch (IOException ex) {
+            archived.clear();
+            modified = true;
+            PlatformLogger.getLogger(ProxyClassesArchive.class.getName())
+                          .warning("Cannot read archive " + file + " - ignored", ex);
+        }
+    }
+
+    /**
+     * Tells whether the archive file is owned by the current user and is not
+     * writable by its group or by others.
+     */
+    private static boolean isTrusted(Path path) throws IOException {
+        UserPrincipal owner = Files.getOwner(path);
+        UserPrincipal user = path.getFileSystem()
+                                 .getUserPrincipalLookupService()
+                                 .lookupPrincipalByName(
+                                     System.getProperty("user.name"));
+        if (!owner.equals(user))
+            return false;
+        PosixFileAttributeView view =
+            Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (view != null) {
+            Set<PosixFilePermission> perms = view.readAttributes().permissions();
+            if (perms.contains(PosixFilePermission.GROUP_WRITE) ||
+                    perms.contains(PosixFilePermission.OTHERS_WRITE))
+                return false;
+        }
+        return true;
+    }
+
+    private void store() {
+        // unused entries are dropped by rewriting the file
+        if (!modified && retained.size() == archived.size())
+            return;
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("lambda", ".tmp", file.getParentFile());
+            // whatever the umask, only the owner may write the archive
+            tmp.setWritable(false, false);
+            tmp.setWritable(true, true);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(runtimeVersion);
+                // a snapshot, as classes may still be spun concurrently;
+                // keys longer than writeUTF allows are not archived
+                Object[] entries = retained.entrySet().toArray();
+                int count = 0;
+                for (Object o : entries) {
+                    String key = ((Map.Entry<?,?>) o).getKey().toString();
+                    if (utfLength(key) <= 0xFFFF)
+                        entries[count++] = o;
+                }
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    @SuppressWarnings("unchecked")
+                    Map.Entry<String, byte[]> e =
+                        (Map.Entry<String, byte[]>) entries[i];
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    out.writeLong(checksum(e.getKey(), e.getValue()));
+                    out.write(e.getValue());
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file))
+                    throw new IOException("Cannot rename " + tmp);
+            }
+            tmp = null;
+        } catch (IOException | SecurityException ex) {
+            PlatformLogger.getLogger(ProxyClassesArchive.class.getName())
+                          .warning("Exception writing archive " + file, ex);
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+    }
+
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+}
@@ -53,6 +53,7 @@ import java.security.PrivilegedExceptionAction;
 import javax.management.JMX;
 import sun.management.ManagementFactoryHelper;
 import sun.management.ExtendedPlatformComponent;
+import sun.misc.BufferPoolRegistry;
 
 /**
  * The {@code ManagementFactory} class is a factory class for getting
@@ -496,6 +497,9 @@ public class ManagementFactory {
                     addMXBean(platformMBeanServer, o);
                 }
             }
+            // Buffer pools created by the application from now on
+            // register themselves
+            BufferPoolRegistry.setPlatformMBeanServer(platformMBeanServer);
         }
         return platformMBeanServer;
     }
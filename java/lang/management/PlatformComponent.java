@@ -40,6 +40,7 @@ import com.sun.management.UnixOperatingSystemMXBean;
 
 import sun.management.ManagementFactoryHelper;
 import sun.management.Util;
+import sun.misc.BufferPoolRegistry;
 
 /**
  * This enum class defines the list of platform components
@@ -212,7 +213,10 @@ enum PlatformComponent {
         false, // zero or more instances
         new MXBeanFetcher<BufferPoolMXBean>() {
             public List<BufferPoolMXBean> getMXBeans() {
-                return ManagementFactoryHelper.getBufferPoolMXBeans();
+                List<BufferPoolMXBean> pools =
+                    new ArrayList<>(ManagementFactoryHelper.getBufferPoolMXBeans());
+                pools.addAll(BufferPoolRegistry.getBufferPools());
+                return pools;
             }
         }),
 
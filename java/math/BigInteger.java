@@ -35,6 +35,10 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamField;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
 import sun.misc.DoubleConsts;
 import sun.misc.FloatConsts;
@@ -242,6 +246,23 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      */
     private static final int TOOM_COOK_SQUARE_THRESHOLD = 216;
 
+    /**
+     * The threshold value for using multiplication by number theoretic
+     * transforms.  If the number of ints in both mag arrays are greater
+     * than this number, and the product is not too long for the
+     * transforms, then {@link NTTMultiplier} will be used.  This value is
+     * found experimentally to work well.
+     */
+    private static final int FFT_THRESHOLD = 98304;
+
+    /**
+     * The threshold value for squaring by number theoretic transforms.  If
+     * the number of ints in the number are larger than this value, and the
+     * square is not too long for the transforms, then {@link NTTMultiplier}
+     * will be used.  This value is found experimentally to work well.
+     */
+    private static final int FFT_SQUARE_THRESHOLD = 98304;
+
     /**
      * The threshold value for using Burnikel-Ziegler division.  If the number
      * of ints in the divisor are larger than this value, Burnikel-Ziegler
@@ -460,10 +481,28 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
             reportOverflow();
         }
         int numWords = (int) (numBits + 31) >>> 5;
+        if (numWords <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD)
+            mag = parseMagnitude(val, cursor, len, radix, numWords);
+        else
+            mag = parse(val, cursor, len, radix).mag;
+        if (mag.length >= MAX_MAG_LENGTH) {
+            checkRange();
+        }
+    }
+
+    /**
+     * Parses the digits of {@code val} from index {@code from} to index
+     * {@code to} in the given radix, a digit group at a time, into a
+     * magnitude of at most {@code numWords} ints.  This takes time
+     * quadratic in the number of digits.
+     */
+    private static int[] parseMagnitude(String val, int from, int to,
+                                        int radix, int numWords) {
+        int cursor = from;
         int[] magnitude = new int[numWords];
 
         // Process first (potentially short) digit group
-        int firstGroupLen = numDigits % digitsPerInt[radix];
+        int firstGroupLen = (to - from) % digitsPerInt[radix];
         if (firstGroupLen == 0)
             firstGroupLen = digitsPerInt[radix];
         String group = val.substring(cursor, cursor += firstGroupLen);
@@ -474,7 +513,7 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         // Process remaining digit groups
         int superRadix = intRadix[radix];
         int groupVal = 0;
-        while (cursor < len) {
+        while (cursor < to) {
             group = val.substring(cursor, cursor += digitsPerInt[radix]);
             groupVal = Integer.parseInt(group, radix);
             if (groupVal < 0)
@@ -482,10 +521,37 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
             destructiveMulAdd(magnitude, superRadix, groupVal);
         }
         // Required for cases where the array was overallocated.
-        mag = trustedStripLeadingZeroInts(magnitude);
-        if (mag.length >= MAX_MAG_LENGTH) {
-            checkRange();
+        return trustedStripLeadingZeroInts(magnitude);
+    }
+
+    /**
+     * Parses the digits of {@code val} from index {@code from} to index
+     * {@code to} in the given radix into a non-negative BigInteger.  This
+     * is the inverse of the recursive Schoenhage conversion done by
+     * {@link #toString(BigInteger, char[], int, int, int, boolean, int)
+     * toString}: the low-order {@code 2^n} digits and the remaining
+     * high-order digits are parsed recursively, and combined as {@code
+     * high * radix^(2^n) + low} with a power from the cache.  With
+     * sub-quadratic multiplication, this takes time {@code O(M(n) log n)}
+     * rather than quadratic time.
+     */
+    private static BigInteger parse(String val, int from, int to,
+                                    int radix) {
+        int numDigits = to - from;
+        int numWords = (int) ((((numDigits * bitsPerDigit[radix]) >>> 10)
+                               + 32) >>> 5);
+        if (numWords <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD) {
+            int[] magnitude = parseMagnitude(val, from, to, radix, numWords);
+            return (magnitude.length == 0) ? ZERO
+                                           : new BigInteger(magnitude, 1);
         }
+
+        // The largest power of two less than the number of digits
+        int n = 31 - Integer.numberOfLeadingZeros(numDigits - 1);
+        int split = to - (1 << n);
+        BigInteger high = parse(val, from, split, radix);
+        BigInteger low = parse(val, split, to, radix);
+        return high.multiply(getRadixConversionCache(radix, n)).add(low);
     }
 
     /*
@@ -1482,13 +1548,55 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * @return {@code this * val}
      */
     public BigInteger multiply(BigInteger val) {
+        return multiply(val, false, 0);
+    }
+
+    /**
+     * Returns a BigInteger whose value is {@code (this * val)}.
+     * When both {@code this} and {@code val} are large, typically
+     * in the thousands of bits, the product is computed in
+     * parallel: the sub-products of the 3-way Toom-Cook algorithm, and
+     * the transforms of the FFT algorithm for larger numbers, are
+     * computed as tasks in the {@link java.util.concurrent.ForkJoinPool
+     * ForkJoinPool} of the calling thread, or in the common pool.  This
+     * method returns the exact same mathematical result as
+     * {@link #multiply}.
+     *
+     * @implNote An implementation may offer better algorithmic
+     * performance when {@code val == this}.
+     *
+     * @implNote Compared to {@link #multiply}, the parallel multiplication
+     * algorithm uses more CPU resources to compute the result faster, and
+     * may do so with a slight increase in memory consumption.
+     *
+     * @param  val value to be multiplied by this BigInteger.
+     * @return {@code this * val}
+     * @see #multiply
+     * @since 1.8
+     */
+    public BigInteger parallelMultiply(BigInteger val) {
+        return multiply(val, true, 0);
+    }
+
+    /**
+     * Returns a BigInteger whose value is {@code (this * val)}.  If
+     * parallel is true, the sub-products of Toom-Cook multiplication are
+     * forked as tasks, down to a recursion depth that depends on the
+     * parallelism of the pool.
+     *
+     * @param  val value to be multiplied by this BigInteger.
+     * @param  parallel whether the multiplication may be done in parallel.
+     * @param  depth the depth of recursive calls.
+     * @return {@code this * val}
+     */
+    private BigInteger multiply(BigInteger val, boolean parallel, int depth) {
         if (val.signum == 0 || signum == 0)
             return ZERO;
 
         int xlen = mag.length;
 
         if (val == this && xlen > MULTIPLY_SQUARE_THRESHOLD) {
-            return square();
+            return square(parallel, depth);
         }
 
         int ylen = val.mag.length;
@@ -1508,8 +1616,13 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         } else {
             if ((xlen < TOOM_COOK_THRESHOLD) && (ylen < TOOM_COOK_THRESHOLD)) {
                 return multiplyKaratsuba(this, val);
+            } else if (xlen < FFT_THRESHOLD || ylen < FFT_THRESHOLD ||
+                       !NTTMultiplier.fits(xlen, ylen)) {
+                return multiplyToomCook3(this, val, parallel, depth);
             } else {
-                return multiplyToomCook3(this, val);
+                int[] result = NTTMultiplier.multiply(mag, val.mag, parallel);
+                return new BigInteger(trustedStripLeadingZeroInts(result),
+                                      signum == val.signum ? 1 : -1);
             }
         }
     }
@@ -1685,7 +1798,8 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * LNCS #4547. Springer, Madrid, Spain, June 21-22, 2007.
      *
      */
-    private static BigInteger multiplyToomCook3(BigInteger a, BigInteger b) {
+    private static BigInteger multiplyToomCook3(BigInteger a, BigInteger b,
+                                                boolean parallel, int depth) {
         int alen = a.mag.length;
         int blen = b.mag.length;
 
@@ -1709,16 +1823,24 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
 
         BigInteger v0, v1, v2, vm1, vinf, t1, t2, tm1, da1, db1;
 
-        v0 = a0.multiply(b0);
+        depth++;
+        RecursiveOp v0Task = RecursiveOp.multiply(a0, b0, parallel, depth);
         da1 = a2.add(a0);
         db1 = b2.add(b0);
-        vm1 = da1.subtract(a1).multiply(db1.subtract(b1));
+        RecursiveOp vm1Task = RecursiveOp.multiply(da1.subtract(a1),
+                                                   db1.subtract(b1),
+                                                   parallel, depth);
         da1 = da1.add(a1);
         db1 = db1.add(b1);
-        v1 = da1.multiply(db1);
-        v2 = da1.add(a2).shiftLeft(1).subtract(a0).multiply(
-             db1.add(b2).shiftLeft(1).subtract(b0));
-        vinf = a2.multiply(b2);
+        RecursiveOp v1Task = RecursiveOp.multiply(da1, db1, parallel, depth);
+        RecursiveOp v2Task = RecursiveOp.multiply(
+            da1.add(a2).shiftLeft(1).subtract(a0),
+            db1.add(b2).shiftLeft(1).subtract(b0), parallel, depth);
+        vinf = a2.multiply(b2, parallel, depth);
+        v0 = v0Task.join();
+        vm1 = vm1Task.join();
+        v1 = v1Task.join();
+        v2 = v2Task.join();
 
         // The algorithm requires two divisions by 2 and one by 3.
         // All divisions are known to be exact, that is, they do not produce
@@ -1884,6 +2006,20 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * @return {@code this<sup>2</sup>}
      */
     private BigInteger square() {
+        return square(false, 0);
+    }
+
+    /**
+     * Returns a BigInteger whose value is {@code (this<sup>2</sup>)}.  If
+     * parallel is true, the sub-squares of Toom-Cook squaring are forked
+     * as tasks, down to a recursion depth that depends on the parallelism
+     * of the pool.
+     *
+     * @param parallel whether the squaring may be done in parallel.
+     * @param depth the depth of recursive calls.
+     * @return {@code this<sup>2</sup>}
+     */
+    private BigInteger square(boolean parallel, int depth) {
         if (signum == 0) {
             return ZERO;
         }
@@ -1895,8 +2031,12 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         } else {
             if (len < TOOM_COOK_SQUARE_THRESHOLD) {
                 return squareKaratsuba();
+            } else if (len < FFT_SQUARE_THRESHOLD ||
+                       !NTTMultiplier.fits(len, len)) {
+                return squareToomCook3(parallel, depth);
             } else {
-                return squareToomCook3();
+                int[] z = NTTMultiplier.multiply(mag, mag, parallel);
+                return new BigInteger(trustedStripLeadingZeroInts(z), 1);
             }
         }
     }
@@ -2029,7 +2169,7 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * that has better asymptotic performance than the algorithm used in
      * squareToLen or squareKaratsuba.
      */
-    private BigInteger squareToomCook3() {
+    private BigInteger squareToomCook3(boolean parallel, int depth) {
         int len = mag.length;
 
         // k is the size (in ints) of the lower-order slices.
@@ -2046,13 +2186,18 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         a0 = getToomSlice(k, r, 2, len);
         BigInteger v0, v1, v2, vm1, vinf, t1, t2, tm1, da1;
 
-        v0 = a0.square();
+        depth++;
+        RecursiveOp v0Task = RecursiveOp.square(a0, parallel, depth);
         da1 = a2.add(a0);
-        vm1 = da1.subtract(a1).square();
+        RecursiveOp vm1Task = RecursiveOp.square(da1.subtract(a1), parallel,
+                                                 depth);
         da1 = da1.add(a1);
-        v1 = da1.square();
-        vinf = a2.square();
-        v2 = da1.add(a2).shiftLeft(1).subtract(a0).square();
+        RecursiveOp v1Task = RecursiveOp.square(da1, parallel, depth);
+        vinf = a2.square(parallel, depth);
+        v2 = da1.add(a2).shiftLeft(1).subtract(a0).square(parallel, depth);
+        v0 = v0Task.join();
+        vm1 = vm1Task.join();
+        v1 = v1Task.join();
 
         // The algorithm requires two divisions by 2 and one by 3.
         // All divisions are known to be exact, that is, they do not produce
@@ -2074,6 +2219,102 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         return vinf.shiftLeft(ss).add(t2).shiftLeft(ss).add(t1).shiftLeft(ss).add(tm1).shiftLeft(ss).add(v0);
     }
 
+    /**
+     * A multiplication or squaring in the recursion of Toom-Cook
+     * multiplication, which is forked when the multiplication is parallel
+     * and not too deep, and computed by the caller otherwise.  The
+     * maximum depth of forking is the bit length of the parallelism of the
+     * pool, so that there are enough tasks to keep all its workers busy.
+     */
+    private abstract static class RecursiveOp
+            extends RecursiveTask<BigInteger> {
+        private static final long serialVersionUID = 1L;
+
+        /** The maximum depth of forking in the common pool */
+        private static final int PARALLEL_FORK_DEPTH_THRESHOLD =
+            calculateMaximumDepth(ForkJoinPool.getCommonPoolParallelism());
+
+        private static int calculateMaximumDepth(int parallelism) {
+            return 32 - Integer.numberOfLeadingZeros(parallelism);
+        }
+
+        final boolean parallel;
+
+        /**
+         * The current recursing depth. Since it is a logarithmic algorithm,
+         * we do not need an int to hold the number.
+         */
+        final byte depth;
+
+        RecursiveOp(boolean parallel, int depth) {
+            this.parallel = parallel;
+            this.depth = (byte) depth;
+        }
+
+        private static int getParallelForkDepthThreshold() {
+            Thread t = Thread.currentThread();
+            if (t instanceof ForkJoinWorkerThread) {
+                return calculateMaximumDepth(
+                    ((ForkJoinWorkerThread) t).getPool().getParallelism());
+            } else {
+                return PARALLEL_FORK_DEPTH_THRESHOLD;
+            }
+        }
+
+        RecursiveOp forkOrInvoke() {
+            if (parallel && depth <= getParallelForkDepthThreshold()) {
+                fork();
+            } else {
+                invoke();
+            }
+            return this;
+        }
+
+        static RecursiveOp multiply(BigInteger a, BigInteger b,
+                                    boolean parallel, int depth) {
+            return new RecursiveMultiply(a, b, parallel, depth)
+                .forkOrInvoke();
+        }
+
+        static RecursiveOp square(BigInteger a, boolean parallel,
+                                  int depth) {
+            return new RecursiveSquare(a, parallel, depth).forkOrInvoke();
+        }
+
+        private static final class RecursiveMultiply extends RecursiveOp {
+            private static final long serialVersionUID = 1L;
+            private final BigInteger a;
+            private final BigInteger b;
+
+            RecursiveMultiply(BigInteger a, BigInteger b, boolean parallel,
+                              int depth) {
+                super(parallel, depth);
+                this.a = a;
+                this.b = b;
+            }
+
+            @Override
+            protected BigInteger compute() {
+                return a.multiply(b, parallel, depth);
+            }
+        }
+
+        private static final class RecursiveSquare extends RecursiveOp {
+            private static final long serialVersionUID = 1L;
+            private final BigInteger a;
+
+            RecursiveSquare(BigInteger a, boolean parallel, int depth) {
+                super(parallel, depth);
+                this.a = a;
+            }
+
+            @Override
+            protected BigInteger compute() {
+                return a.square(parallel, depth);
+            }
+        }
+    }
+
     // Division
 
     /**
@@ -3687,6 +3928,31 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * @see    #BigInteger(java.lang.String, int)
      */
     public String toString(int radix) {
+        return toString(radix, false);
+    }
+
+    /**
+     * Returns the String representation of this BigInteger in the
+     * given radix, as {@link #toString(int)} does.  When this BigInteger
+     * is large, typically in the tens of thousands of bits, the digits
+     * are computed in parallel: the two halves of each step of the
+     * recursive base conversion are converted as tasks in the {@link
+     * java.util.concurrent.ForkJoinPool ForkJoinPool} of the calling
+     * thread, or in the common pool.
+     *
+     * @implNote Compared to {@link #toString(int)}, the parallel
+     * conversion uses more CPU resources to compute the result faster.
+     *
+     * @param  radix  radix of the String representation.
+     * @return String representation of this BigInteger in the given radix.
+     * @see    #toString(int)
+     * @since  1.8
+     */
+    public String parallelToString(int radix) {
+        return toString(radix, true);
+    }
+
+    private String toString(int radix, boolean parallel) {
         if (signum == 0)
             return "0";
         if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX)
@@ -3696,17 +3962,16 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         if (mag.length <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD)
            return smallToString(radix);
 
-        // Otherwise use recursive toString, which requires positive arguments.
-        // The results will be concatenated into this StringBuilder
-        StringBuilder sb = new StringBuilder();
-        if (signum < 0) {
-            toString(this.negate(), sb, radix, 0);
-            sb.insert(0, '-');
-        }
-        else
-            toString(this, sb, radix, 0);
-
-        return sb.toString();
+        // Otherwise use recursive toString, which requires positive
+        // arguments.  The digits are written right-aligned into buf,
+        // which is large enough for the digits and the sign.
+        int maxDigits = (int) (bitLength() * LOG_TWO / logCache[radix]) + 2;
+        char[] buf = new char[maxDigits + 1];
+        int start = toString(this.abs(), buf, buf.length, radix, 0,
+                             parallel, 0);
+        if (signum < 0)
+            buf[--start] = '-';
+        return new String(buf, start, buf.length - start);
     }
 
     /** This method is used to perform toString when arguments are small. */
@@ -3756,35 +4021,40 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
     }
 
     /**
-     * Converts the specified BigInteger to a string and appends to
-     * {@code sb}.  This implements the recursive Schoenhage algorithm
-     * for base conversions.
+     * Converts the specified BigInteger to a string and writes its digits
+     * into {@code buf}, ending at index {@code end}.  This implements the
+     * recursive Schoenhage algorithm for base conversions.  If {@code
+     * parallel} is true, the low half of each step is converted as a
+     * forked task, down to a recursion depth that depends on the
+     * parallelism of the pool; the two halves are written to disjoint
+     * parts of {@code buf}.
      * <p/>
      * See Knuth, Donald,  _The Art of Computer Programming_, Vol. 2,
      * Answers to Exercises (4.4) Question 14.
      *
-     * @param u      The number to convert to a string.
-     * @param sb     The StringBuilder that will be appended to in place.
-     * @param radix  The base to convert to.
-     * @param digits The minimum number of digits to pad to.
-     */
-    private static void toString(BigInteger u, StringBuilder sb, int radix,
-                                 int digits) {
+     * @param u        The number to convert to a string.
+     * @param buf      The buffer the digits are written into.
+     * @param end      The index after the last digit.
+     * @param radix    The base to convert to.
+     * @param digits   The minimum number of digits to pad to.
+     * @param parallel Whether the conversion may be done in parallel.
+     * @param depth    The depth of recursive calls.
+     * @return the index of the first digit written.
+     */
+    private static int toString(BigInteger u, char[] buf, int end, int radix,
+                                int digits, boolean parallel, int depth) {
         /* If we're smaller than a certain threshold, use the smallToString
            method, padding with leading zeroes when necessary. */
         if (u.mag.length <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD) {
             String s = u.smallToString(radix);
+            int start = end - s.length();
+            s.getChars(0, s.length(), buf, start);
 
-            // Pad with internal zeros if necessary.
-            // Don't pad if we're at the beginning of the string.
-            if ((s.length() < digits) && (sb.length() > 0)) {
-                for (int i=s.length(); i < digits; i++) { // May be a faster way to
-                    sb.append('0');                    // do this?
-                }
-            }
-
-            sb.append(s);
-            return;
+            // Pad with internal zeros if necessary.  The high half at the
+            // beginning of the string is never padded, as digits < 0.
+            while (end - start < digits)
+                buf[--start] = '0';
+            return start;
         }
 
         int b, n;
@@ -3801,8 +4071,49 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         int expectedDigits = 1 << n;
 
         // Now recursively build the two halves of each number.
-        toString(results[0], sb, radix, digits-expectedDigits);
-        toString(results[1], sb, radix, expectedDigits);
+        if (parallel &&
+            depth <= RecursiveOp.getParallelForkDepthThreshold()) {
+            RecursiveToString low = new RecursiveToString(results[1], buf,
+                end, radix, expectedDigits, depth + 1);
+            low.fork();
+            int start = toString(results[0], buf, end - expectedDigits,
+                                 radix, digits - expectedDigits, true,
+                                 depth + 1);
+            low.join();
+            return start;
+        }
+        toString(results[1], buf, end, radix, expectedDigits, false, 0);
+        return toString(results[0], buf, end - expectedDigits, radix,
+                        digits - expectedDigits, false, 0);
+    }
+
+    /**
+     * The conversion of the low half of a step of a parallel recursive
+     * base conversion.
+     */
+    private static final class RecursiveToString extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BigInteger u;
+        private final char[] buf;
+        private final int end;
+        private final int radix;
+        private final int digits;
+        private final int depth;
+
+        RecursiveToString(BigInteger u, char[] buf, int end, int radix,
+                          int digits, int depth) {
+            this.u = u;
+            this.buf = buf;
+            this.end = end;
+            this.radix = radix;
+            this.digits = digits;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            BigInteger.toString(u, buf, end, radix, digits, true, depth);
+        }
     }
 
     /**
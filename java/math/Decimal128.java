@@ -0,0 +1,1233 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.math;
+
+/**
+ * An immutable, fixed-width decimal number.  A {@code Decimal128}
+ * consists of a 128-bit two's complement <i>unscaled value</i> and a
+ * 32-bit <i>scale</i>; its value is <code>(unscaledValue &times;
+ * 10<sup>-scale</sup>)</code>, as for {@link BigDecimal}.  The unscaled
+ * value holds any integer of up to 38 decimal digits.
+ *
+ * <p>Arithmetic on {@code Decimal128} values is carried out in 128-bit
+ * integer arithmetic, widened to 256 bits where an intermediate result
+ * needs it, and never inflates to {@link BigInteger}: an operation
+ * allocates only its result.  The results are those of the
+ * corresponding {@code BigDecimal} operations, provided that they fit;
+ * an operation whose result does not fit in 128 bits throws an {@code
+ * ArithmeticException} rather than returning a wider value.
+ *
+ * <p>In addition to the usual operations, {@code Decimal128} provides
+ * fused operations that round only once: {@link
+ * #multiplyAdd(Decimal128, Decimal128, int, RoundingMode) multiplyAdd}
+ * computes {@code this * multiplicand + augend} exactly and then rounds
+ * it to a given scale, and {@link #multiply(Decimal128, int,
+ * RoundingMode) multiply} and {@link #divide(Decimal128, int,
+ * RoundingMode) divide} round the exact product or quotient.  These suit
+ * aggregations such as the accumulation of prices times quantities,
+ * which would otherwise create and round intermediate {@code BigDecimal}
+ * values.
+ *
+ * <p>As for {@code BigDecimal}, the {@link #equals equals} method
+ * considers two values equal only if they have the same scale, while
+ * {@link #compareTo compareTo} compares their numerical values.
+ *
+ * @see     BigDecimal
+ * @see     RoundingMode
+ * @since   1.8
+ */
+public final class Decimal128 extends Number implements Comparable<Decimal128> {
+
+    /** use serialVersionUID for interoperability */
+    private static final long serialVersionUID = -1438211744052310283L;
+
+    /**
+     * The high 64 bits of the unscaled value.
+     *
+     * @serial
+     */
+    private final long hi;
+
+    /**
+     * The low 64 bits of the unscaled value.
+     *
+     * @serial
+     */
+    private final long lo;
+
+    /**
+     * The scale of this Decimal128, as returned by {@link #scale}.
+     *
+     * @serial
+     */
+    private final int scale;
+
+    /**
+     * The value 0, with a scale of 0.
+     */
+    public static final Decimal128 ZERO = new Decimal128(0, 0, 0);
+
+    /**
+     * The value 1, with a scale of 0.
+     */
+    public static final Decimal128 ONE = new Decimal128(0, 1, 0);
+
+    /**
+     * The value 10, with a scale of 0.
+     */
+    public static final Decimal128 TEN = new Decimal128(0, 10, 0);
+
+    // Wide intermediate values are magnitudes of LIMBS unsigned ints,
+    // least significant first.
+    private static final int LIMBS = 8;
+
+    private static final long LONG_MASK = 0xffffffffL;
+
+    /** The powers of ten that fit in an int */
+    private static final int[] INT_TEN_POWERS = {
+        1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+        1000000000
+    };
+
+    /** The powers of ten that fit in a long */
+    private static final long[] LONG_TEN_POWERS = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+        100000000L, 1000000000L, 10000000000L, 100000000000L,
+        1000000000000L, 10000000000000L, 100000000000000L,
+        1000000000000000L, 10000000000000000L, 100000000000000000L,
+        1000000000000000000L
+    };
+
+    private Decimal128(long hi, long lo, int scale) {
+        this.hi = hi;
+        this.lo = lo;
+        this.scale = scale;
+    }
+
+    // Static factory methods
+
+    /**
+     * Returns a {@code Decimal128} whose value is {@code (unscaledVal
+     * &times; 10<sup>-scale</sup>)}.
+     *
+     * @param  unscaledVal unscaled value of the {@code Decimal128}.
+     * @param  scale scale of the {@code Decimal128}.
+     * @return a {@code Decimal128} whose value is
+     *         <code>(unscaledVal &times; 10<sup>-scale</sup>)</code>.
+     */
+    public static Decimal128 valueOf(long unscaledVal, int scale) {
+        return new Decimal128(unscaledVal >> 63, unscaledVal, scale);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is equal to that of the
+     * specified {@code long}, with a scale of zero.
+     *
+     * @param  val value of the {@code Decimal128}.
+     * @return a {@code Decimal128} whose value is {@code val}.
+     */
+    public static Decimal128 valueOf(long val) {
+        return valueOf(val, 0);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value and scale are those of the
+     * specified {@code BigDecimal}.
+     *
+     * @param  val the {@code BigDecimal} to convert.
+     * @return a {@code Decimal128} equal to {@code val}, with the same scale.
+     * @throws ArithmeticException if the unscaled value of {@code val}
+     *         does not fit in 128 bits.
+     */
+    public static Decimal128 valueOf(BigDecimal val) {
+        BigInteger unscaled = val.unscaledValue();
+        if (unscaled.bitLength() > 127)
+            throw new ArithmeticException("Overflow");
+        return new Decimal128(unscaled.shiftRight(64).longValue(),
+                              unscaled.longValue(), val.scale());
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is that of the given string
+     * representation of a decimal number, which has the syntax accepted by
+     * {@link BigDecimal#BigDecimal(String)}.  The scale of the result is
+     * the number of digits after the decimal point, less the exponent.
+     *
+     * @param  val string representation of a {@code Decimal128}.
+     * @return a {@code Decimal128} whose value is that of {@code val}.
+     * @throws NumberFormatException if {@code val} is not a valid
+     *         representation of a {@code BigDecimal}, or its unscaled value
+     *         does not fit in 128 bits, or its scale in an {@code int}.
+     */
+    public static Decimal128 valueOf(String val) {
+        int len = val.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (val.charAt(0) == '-' || val.charAt(0) == '+')) {
+            negative = val.charAt(0) == '-';
+            i++;
+        }
+        int[] m = new int[LIMBS];
+        long scl = 0;
+        boolean anyDigits = false;
+        boolean dot = false;
+        for (; i < len; i++) {
+            char c = val.charAt(i);
+            int digit = Character.digit(c, 10);
+            if (digit >= 0) {
+                anyDigits = true;
+                if (mulSmall(m, 10) != 0 || addSmall(m, digit) != 0)
+                    throw new NumberFormatException("Too many digits");
+                if (dot)
+                    scl++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigits)
+            throw new NumberFormatException("No digits found");
+        if (i < len) {
+            char c = val.charAt(i++);
+            if ((c != 'e' && c != 'E') || i == len)
+                throw new NumberFormatException("Character " + c +
+                    " is neither a decimal digit number, decimal point, nor" +
+                    " \"e\" notation exponential mark.");
+            boolean negativeExp = false;
+            c = val.charAt(i);
+            if (c == '-' || c == '+') {
+                negativeExp = c == '-';
+                if (++i == len)
+                    throw new NumberFormatException("No exponent digits");
+            }
+            long exp = 0;
+            for (; i < len; i++) {
+                int digit = Character.digit(val.charAt(i), 10);
+                if (digit < 0)
+                    throw new NumberFormatException("Exponent not a number");
+                exp = exp * 10 + digit;
+                if (exp > Integer.MAX_VALUE + 1L)
+                    throw new NumberFormatException("Exponent overflow.");
+            }
+            scl -= negativeExp ? -exp : exp;
+        }
+        if (scl != (int)scl)
+            throw new NumberFormatException("Scale out of range.");
+        try {
+            return toDecimal(m, negative, (int)scl);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Too many digits");
+        }
+    }
+
+    // Arithmetic Operations
+
+    /**
+     * Returns a {@code Decimal128} whose value is {@code (this +
+     * augend)}, and whose scale is {@code max(this.scale(),
+     * augend.scale())}.
+     *
+     * @param  augend value to be added to this {@code Decimal128}.
+     * @return {@code this + augend}
+     * @throws ArithmeticException if the result overflows.
+     */
+    public Decimal128 add(Decimal128 augend) {
+        return add(augend, false);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is {@code (this -
+     * subtrahend)}, and whose scale is {@code max(this.scale(),
+     * subtrahend.scale())}.
+     *
+     * @param  subtrahend value to be subtracted from this {@code Decimal128}.
+     * @return {@code this - subtrahend}
+     * @throws ArithmeticException if the result overflows.
+     */
+    public Decimal128 subtract(Decimal128 subtrahend) {
+        return add(subtrahend, true);
+    }
+
+    private Decimal128 add(Decimal128 augend, boolean negateAugend) {
+        if (scale == augend.scale) {
+            long ahi = augend.hi, alo = augend.lo;
+            long rlo, rhi;
+            if (negateAugend) {
+                // subtract with borrow; the augend is not negated first, as
+                // the negation of MIN_VALUE does not fit
+                rlo = lo - alo;
+                rhi = hi - ahi - ((Long.compareUnsigned(lo, alo) < 0) ? 1 : 0);
+                if (((hi ^ ahi) & (hi ^ rhi)) < 0)
+                    throw overflow();
+            } else {
+                rlo = lo + alo;
+                rhi = hi + ahi + ((Long.compareUnsigned(rlo, lo) < 0) ? 1 : 0);
+                if (((hi ^ rhi) & (ahi ^ rhi)) < 0)
+                    throw overflow();
+            }
+            return new Decimal128(rhi, rlo, scale);
+        }
+        int rscale = Math.max(scale, augend.scale);
+        int[] x = magnitude(hi, lo);
+        int[] y = magnitude(augend.hi, augend.lo);
+        if (!mulPow10(x, (long)rscale - scale) ||
+            !mulPow10(y, (long)rscale - augend.scale))
+            throw overflow();
+        boolean negative = addSigned(x, hi < 0,
+                                     y, (augend.hi < 0) != negateAugend);
+        return toDecimal(x, negative, rscale);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is <code>(this &times;
+     * multiplicand)</code>, and whose scale is {@code (this.scale() +
+     * multiplicand.scale())}.
+     *
+     * @param  multiplicand value to be multiplied by this {@code Decimal128}.
+     * @return {@code this * multiplicand}
+     * @throws ArithmeticException if the result overflows.
+     */
+    public Decimal128 multiply(Decimal128 multiplicand) {
+        int rscale = checkScale((long)scale + multiplicand.scale);
+        if (fitsLong() && multiplicand.fitsLong()) {
+            long x = lo, y = multiplicand.lo;
+            return new Decimal128(multiplyHigh(x, y), x * y, rscale);
+        }
+        int[] p = multiplyMag(magnitude(hi, lo),
+                              magnitude(multiplicand.hi, multiplicand.lo));
+        return toDecimal(p, (hi < 0) != (multiplicand.hi < 0), rscale);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is <code>(this &times;
+     * multiplicand)</code>, and whose scale is as specified.  The exact
+     * product is rounded once, with the specified rounding mode.
+     *
+     * @param  multiplicand value to be multiplied by this {@code Decimal128}.
+     * @param  scale scale of the {@code Decimal128} product to be returned.
+     * @param  roundingMode rounding mode to apply.
+     * @return {@code this * multiplicand}, rounded as necessary.
+     * @throws ArithmeticException if the result overflows, or if
+     *         {@code roundingMode==RoundingMode.UNNECESSARY} and the
+     *         specified scale is insufficient to represent the product
+     *         exactly.
+     */
+    public Decimal128 multiply(Decimal128 multiplicand, int scale,
+                               RoundingMode roundingMode) {
+        if (roundingMode == null)
+            throw new NullPointerException();
+        int[] p = multiplyMag(magnitude(hi, lo),
+                              magnitude(multiplicand.hi, multiplicand.lo));
+        return rescale(p, (hi < 0) != (multiplicand.hi < 0),
+                       (long)this.scale + multiplicand.scale, scale,
+                       roundingMode);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is <code>(this &times;
+     * multiplicand + augend)</code>, computed exactly, and whose scale is
+     * {@code max(this.scale() + multiplicand.scale(), augend.scale())}.
+     *
+     * @param  multiplicand value to be multiplied by this {@code Decimal128}.
+     * @param  augend value to be added to the product.
+     * @return {@code this * multiplicand + augend}
+     * @throws ArithmeticException if the result overflows.
+     */
+    public Decimal128 multiplyAdd(Decimal128 multiplicand, Decimal128 augend) {
+        long pscale = (long)scale + multiplicand.scale;
+        int rscale = checkScale(Math.max(pscale, augend.scale));
+        if (pscale == augend.scale && fitsLong() && multiplicand.fitsLong()
+            && augend.fitsLong()) {
+            // |product| <= 2^126 and |augend| <= 2^63: the sum fits
+            long x = lo, y = multiplicand.lo;
+            long plo = x * y;
+            long phi = multiplyHigh(x, y);
+            long rlo = plo + augend.lo;
+            long rhi = phi + (augend.lo >> 63) +
+                       ((Long.compareUnsigned(rlo, plo) < 0) ? 1 : 0);
+            return new Decimal128(rhi, rlo, rscale);
+        }
+        int[] s = new int[LIMBS];
+        boolean negative = exactMultiplyAdd(multiplicand, augend, rscale, s);
+        return toDecimal(s, negative, rscale);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is <code>(this &times;
+     * multiplicand + augend)</code>, and whose scale is as specified.
+     * The product and the sum are computed exactly, and the sum is rounded
+     * once, with the specified rounding mode.
+     *
+     * @param  multiplicand value to be multiplied by this {@code Decimal128}.
+     * @param  augend value to be added to the product.
+     * @param  scale scale of the {@code Decimal128} result to be returned.
+     * @param  roundingMode rounding mode to apply.
+     * @return {@code this * multiplicand + augend}, rounded as necessary.
+     * @throws ArithmeticException if the result overflows, or if {@code
+     *         roundingMode==RoundingMode.UNNECESSARY} and the specified
+     *         scale is insufficient to represent the sum exactly.
+     */
+    public Decimal128 multiplyAdd(Decimal128 multiplicand, Decimal128 augend,
+                                  int scale, RoundingMode roundingMode) {
+        if (roundingMode == null)
+            throw new NullPointerException();
+        long pscale = (long)this.scale + multiplicand.scale;
+        long escale = Math.max(pscale, augend.scale);
+        if (scale >= escale) {
+            int[] s = new int[LIMBS];
+            boolean negative = exactMultiplyAdd(multiplicand, augend, escale, s);
+            return rescale(s, negative, escale, scale, roundingMode);
+        }
+        // The operand of lower scale is aligned exactly to a working scale
+        // of at least one digit more than the result; the other is
+        // truncated to it, and its discarded digits kept as a sticky bit.
+        int[] p = multiplyMag(magnitude(hi, lo),
+                              magnitude(multiplicand.hi, multiplicand.lo));
+        boolean pNegative = (hi < 0) != (multiplicand.hi < 0);
+        int[] a = magnitude(augend.hi, augend.lo);
+        boolean aNegative = augend.hi < 0;
+        boolean productFirst = pscale <= augend.scale;
+        int[] x = productFirst ? p : a, y = productFirst ? a : p;
+        boolean xNegative = productFirst ? pNegative : aNegative;
+        boolean yNegative = productFirst ? aNegative : pNegative;
+        long xscale = Math.min(pscale, augend.scale);
+        long wscale = Math.max(xscale, (long)scale + 1);
+        if (!mulPow10(x, wscale - xscale))
+            throw overflow();
+        boolean sticky = divideByPow10(y, escale - wscale);
+        boolean negative;
+        if (sticky && xNegative != yNegative && compareMag(x, y) > 0) {
+            // |x| - (|y| + f), for 0 < f < 1, lies strictly between
+            // |x| - |y| - 1 and |x| - |y|
+            increment(y);
+            addSigned(x, xNegative, y, yNegative);
+            negative = xNegative;
+        } else {
+            negative = addSigned(x, xNegative, y, yNegative);
+            if (sticky)
+                negative = yNegative;
+        }
+        divideByPow10AndRound(x, wscale - scale, negative, roundingMode,
+                              sticky);
+        return toDecimal(x, negative, scale);
+    }
+
+    /**
+     * Sets s to the magnitude of this * multiplicand + augend at the given
+     * scale, which is at least that of the product and of the augend, and
+     * returns whether the sum is negative.
+     */
+    private boolean exactMultiplyAdd(Decimal128 multiplicand, Decimal128 augend,
+                                     long sumScale, int[] s) {
+        int[] p = multiplyMag(magnitude(hi, lo),
+                              magnitude(multiplicand.hi, multiplicand.lo));
+        int[] a = magnitude(augend.hi, augend.lo);
+        if (!mulPow10(p, sumScale - scale - multiplicand.scale) ||
+            !mulPow10(a, sumScale - augend.scale))
+            throw overflow();
+        boolean negative = addSigned(p, (hi < 0) != (multiplicand.hi < 0),
+                                     a, augend.hi < 0);
+        System.arraycopy(p, 0, s, 0, LIMBS);
+        return negative;
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is {@code (this /
+     * divisor)}, and whose scale is as specified.  If rounding must
+     * be performed to generate a result with the specified scale, the
+     * specified rounding mode is applied.
+     *
+     * @param  divisor value by which this {@code Decimal128} is to be divided.
+     * @param  scale scale of the {@code Decimal128} quotient to be returned.
+     * @param  roundingMode rounding mode to apply.
+     * @return {@code this / divisor}
+     * @throws ArithmeticException if {@code divisor} is zero, if the
+     *         result overflows, or if {@code
+     *         roundingMode==RoundingMode.UNNECESSARY} and the specified
+     *         scale is insufficient to represent the result of the
+     *         division exactly.
+     */
+    public Decimal128 divide(Decimal128 divisor, int scale,
+                             RoundingMode roundingMode) {
+        if (roundingMode == null)
+            throw new NullPointerException();
+        if (divisor.signum() == 0) {
+            if (signum() == 0)
+                throw new ArithmeticException("Division undefined");
+            throw new ArithmeticException("Division by zero");
+        }
+        if (signum() == 0)
+            return new Decimal128(0, 0, scale);
+        boolean negative = (hi < 0) != (divisor.hi < 0);
+        // this / divisor = (x 10^e / y) 10^-scale
+        long e = (long)scale - this.scale + divisor.scale;
+        if (fitsLong() && divisor.fitsLong() && 0 <= e && e <= 18 &&
+            lo != Long.MIN_VALUE && divisor.lo != Long.MIN_VALUE) {
+            long x = Math.abs(lo), y = Math.abs(divisor.lo);
+            long p = LONG_TEN_POWERS[(int)e];
+            long nlo = x * p;
+            if (multiplyHigh(x, p) == 0 && nlo >= 0) {
+                long q = nlo / y, r = nlo - q * y;
+                if (r != 0 && roundUp(roundingMode, negative,
+                                      Long.compare(r, y - r), (q & 1) != 0))
+                    q++;
+                return valueOf(negative ? -q : q, scale);
+            }
+        }
+        int[] x = magnitude(hi, lo);
+        int[] y = magnitude(divisor.hi, divisor.lo);
+        if (e > 0) {
+            if (!mulPow10(x, e))
+                throw overflow();
+        } else if (e < 0 && !mulPow10(y, -e)) {
+            // the divisor exceeds 2^256, so the quotient is below one half
+            return roundUp(roundingMode, negative, -1, false)
+                ? valueOf(negative ? -1 : 1, scale)
+                : new Decimal128(0, 0, scale);
+        }
+        divideAndRound(x, y, negative, roundingMode);
+        return toDecimal(x, negative, scale);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is {@code (this /
+     * divisor)}, and whose scale is {@code this.scale()}.  If rounding
+     * must be performed to generate a result with the given scale, the
+     * specified rounding mode is applied.
+     *
+     * @param  divisor value by which this {@code Decimal128} is to be divided.
+     * @param  roundingMode rounding mode to apply.
+     * @return {@code this / divisor}
+     * @throws ArithmeticException if {@code divisor} is zero, if the
+     *         result overflows, or if {@code
+     *         roundingMode==RoundingMode.UNNECESSARY} and {@code
+     *         this.scale()} is insufficient to represent the result of the
+     *         division exactly.
+     */
+    public Decimal128 divide(Decimal128 divisor, RoundingMode roundingMode) {
+        return divide(divisor, scale, roundingMode);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is {@code (-this)}, and
+     * whose scale is {@code this.scale()}.
+     *
+     * @return {@code -this}.
+     * @throws ArithmeticException if the result overflows.
+     */
+    public Decimal128 negate() {
+        if (hi == Long.MIN_VALUE && lo == 0)
+            throw overflow();
+        long nlo = -lo;
+        return new Decimal128(~hi + ((nlo == 0) ? 1 : 0), nlo, scale);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose value is the absolute value
+     * of this {@code Decimal128}, and whose scale is {@code
+     * this.scale()}.
+     *
+     * @return {@code abs(this)}
+     * @throws ArithmeticException if the result overflows.
+     */
+    public Decimal128 abs() {
+        return (hi < 0) ? negate() : this;
+    }
+
+    /**
+     * Returns the signum function of this {@code Decimal128}.
+     *
+     * @return -1, 0, or 1 as the value of this {@code Decimal128}
+     *         is negative, zero, or positive.
+     */
+    public int signum() {
+        return (hi < 0) ? -1 : ((hi | lo) == 0) ? 0 : 1;
+    }
+
+    /**
+     * Returns the <i>scale</i> of this {@code Decimal128}.
+     *
+     * @return the scale of this {@code Decimal128}.
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Returns a {@code BigInteger} whose value is the <i>unscaled
+     * value</i> of this {@code Decimal128}.
+     *
+     * @return the unscaled value of this {@code Decimal128}.
+     */
+    public BigInteger unscaledValue() {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte)(hi >>> (56 - 8 * i));
+            bytes[8 + i] = (byte)(lo >>> (56 - 8 * i));
+        }
+        return new BigInteger(bytes);
+    }
+
+    // Scaling/Rounding Operations
+
+    /**
+     * Returns a {@code Decimal128} whose scale is the specified value,
+     * and whose unscaled value is determined by multiplying or dividing
+     * this {@code Decimal128}'s unscaled value by the appropriate
+     * power of ten to maintain its overall value.  If the scale is
+     * reduced by the operation, the unscaled value must be divided
+     * (rather than multiplied), and the value may be changed; in this
+     * case, the specified rounding mode is applied to the division.
+     *
+     * @param  newScale scale of the {@code Decimal128} value to be returned.
+     * @param  roundingMode The rounding mode to apply.
+     * @return a {@code Decimal128} whose scale is the specified value,
+     *         and whose unscaled value is determined by multiplying or
+     *         dividing this {@code Decimal128}'s unscaled value by the
+     *         appropriate power of ten to maintain its overall value.
+     * @throws ArithmeticException if the result overflows, or if {@code
+     *         roundingMode==UNNECESSARY} and the specified scaling
+     *         operation would require rounding.
+     */
+    public Decimal128 setScale(int newScale, RoundingMode roundingMode) {
+        if (roundingMode == null)
+            throw new NullPointerException();
+        if (newScale == scale)
+            return this;
+        long k = (long)newScale - scale;
+        if (fitsLong() && -18 <= k && k <= 18) {
+            if (k > 0) {
+                long p = LONG_TEN_POWERS[(int)k];
+                return new Decimal128(multiplyHigh(lo, p), lo * p, newScale);
+            }
+            long p = LONG_TEN_POWERS[(int)-k];
+            long q = lo / p, r = Math.abs(lo - q * p);
+            if (r != 0 && roundUp(roundingMode, lo < 0,
+                                  Long.compare(r, p - r), (q & 1) != 0))
+                q += (lo < 0) ? -1 : 1;
+            return valueOf(q, newScale);
+        }
+        return rescale(magnitude(hi, lo), hi < 0, scale, newScale,
+                       roundingMode);
+    }
+
+    /**
+     * Returns a {@code Decimal128} whose scale is the specified value, and
+     * whose value is numerically equal to this {@code Decimal128}'s.
+     *
+     * @param  newScale scale of the {@code Decimal128} value to be returned.
+     * @return a {@code Decimal128} whose scale is the specified value, and
+     *         whose unscaled value is determined by multiplying or dividing
+     *         this {@code Decimal128}'s unscaled value by the appropriate
+     *         power of ten to maintain its overall value.
+     * @throws ArithmeticException if the result overflows, or if the
+     *         specified scaling operation would require rounding.
+     */
+    public Decimal128 setScale(int newScale) {
+        return setScale(newScale, RoundingMode.UNNECESSARY);
+    }
+
+    // Comparison Operations
+
+    /**
+     * Compares this {@code Decimal128} with the specified {@code
+     * Decimal128}.  Two {@code Decimal128} objects that are equal in
+     * value but have a different scale (like 2.0 and 2.00) are
+     * considered equal by this method.
+     *
+     * @param  val {@code Decimal128} to which this {@code Decimal128} is
+     *         to be compared.
+     * @return -1, 0, or 1 as this {@code Decimal128} is numerically
+     *          less than, equal to, or greater than {@code val}.
+     */
+    @Override
+    public int compareTo(Decimal128 val) {
+        if (scale == val.scale) {
+            int c = Long.compare(hi, val.hi);
+            return (c != 0) ? c : Long.compareUnsigned(lo, val.lo);
+        }
+        int xs = signum(), ys = val.signum();
+        if (xs != ys)
+            return (xs > ys) ? 1 : -1;
+        if (xs == 0)
+            return 0;
+        int[] x = magnitude(hi, lo);
+        int[] y = magnitude(val.hi, val.lo);
+        long diff = (long)scale - val.scale;
+        int c;
+        if (diff > 0)
+            c = mulPow10(y, diff) ? compareMag(x, y) : -1;
+        else
+            c = mulPow10(x, -diff) ? compareMag(x, y) : 1;
+        return (xs > 0) ? c : -c;
+    }
+
+    /**
+     * Compares this {@code Decimal128} with the specified {@code Object}
+     * for equality.  Unlike {@link #compareTo compareTo}, this method
+     * considers two {@code Decimal128} objects equal only if they are
+     * equal in value and scale (thus 2.0 is not equal to 2.00 when
+     * compared by this method).
+     *
+     * @param  x {@code Object} to which this {@code Decimal128} is
+     *         to be compared.
+     * @return {@code true} if and only if the specified {@code Object} is a
+     *         {@code Decimal128} whose value and scale are equal to this
+     *         {@code Decimal128}'s.
+     */
+    @Override
+    public boolean equals(Object x) {
+        if (!(x instanceof Decimal128))
+            return false;
+        Decimal128 d = (Decimal128) x;
+        return hi == d.hi && lo == d.lo && scale == d.scale;
+    }
+
+    /**
+     * Returns the hash code for this {@code Decimal128}.  Note that two
+     * {@code Decimal128} objects that are numerically equal but differ
+     * in scale (like 2.0 and 2.00) will generally <i>not</i> have the same
+     * hash code.
+     *
+     * @return hash code for this {@code Decimal128}.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(hi) + Long.hashCode(lo)) + scale;
+    }
+
+    // Format Converters
+
+    /**
+     * Returns the string representation of this {@code Decimal128},
+     * using scientific notation if an exponent is needed.  The
+     * representation is the one that {@link BigDecimal#toString()} gives
+     * for the same unscaled value and scale.
+     *
+     * @return string representation of this {@code Decimal128}.
+     */
+    @Override
+    public String toString() {
+        return layoutChars(true);
+    }
+
+    /**
+     * Returns a string representation of this {@code Decimal128}
+     * without an exponent field, as {@link BigDecimal#toPlainString()}
+     * does.
+     *
+     * @return a string representation of this {@code Decimal128}
+     *         without an exponent field.
+     */
+    public String toPlainString() {
+        return layoutChars(false);
+    }
+
+    /**
+     * Lays out this Decimal128 as BigDecimal.layoutChars does, or with no
+     * exponent if sci is false.
+     */
+    private String layoutChars(boolean sci) {
+        // the digits of the magnitude, least significant last
+        char[] coeff = new char[45];
+        int offset = coeff.length;
+        if (fitsLong() && lo != Long.MIN_VALUE) {
+            long v = Math.abs(lo);
+            do {
+                coeff[--offset] = (char)('0' + v % 10);
+                v /= 10;
+            } while (v != 0);
+        } else {
+            int[] m = magnitude(hi, lo);
+            while (!isZero(m)) {
+                int r = divSmall(m, INT_TEN_POWERS[9]);
+                for (int i = 0; i < 9; i++) {
+                    coeff[--offset] = (char)('0' + r % 10);
+                    r /= 10;
+                }
+            }
+            while (coeff[offset] == '0')
+                offset++;
+        }
+        int coeffLen = coeff.length - offset;
+
+        StringBuilder buf = new StringBuilder(coeffLen + 14);
+        if (hi < 0)
+            buf.append('-');
+        if (scale == 0) {
+            buf.append(coeff, offset, coeffLen);
+            return buf.toString();
+        }
+        long adjusted = -(long)scale + (coeffLen - 1);
+        if (!sci && scale < 0) {
+            buf.append(coeff, offset, coeffLen);
+            if (signum() != 0) {
+                for (int i = scale; i < 0; i++)
+                    buf.append('0');
+            }
+        } else if (!sci || (scale > 0 && adjusted >= -6)) {
+            // plain number
+            int pad = scale - coeffLen;
+            if (pad >= 0) {
+                buf.append('0');
+                buf.append('.');
+                for (; pad > 0; pad--)
+                    buf.append('0');
+                buf.append(coeff, offset, coeffLen);
+            } else {
+                buf.append(coeff, offset, -pad);
+                buf.append('.');
+                buf.append(coeff, offset - pad, scale);
+            }
+        } else {
+            // E-notation
+            buf.append(coeff[offset]);
+            if (coeffLen > 1) {
+                buf.append('.');
+                buf.append(coeff, offset + 1, coeffLen - 1);
+            }
+            if (adjusted != 0) {
+                buf.append('E');
+                if (adjusted > 0)
+                    buf.append('+');
+                buf.append(adjusted);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Converts this {@code Decimal128} to a {@code BigDecimal} with the
+     * same unscaled value and scale.
+     *
+     * @return this {@code Decimal128} as a {@code BigDecimal}.
+     */
+    public BigDecimal toBigDecimal() {
+        if (fitsLong())
+            return BigDecimal.valueOf(lo, scale);
+        return new BigDecimal(unscaledValue(), scale);
+    }
+
+    /**
+     * Converts this {@code Decimal128} to a {@code long}, discarding any
+     * fractional part; if the integer part is too big to fit in a {@code
+     * long}, only the low-order 64 bits are returned, as by {@link
+     * BigDecimal#longValue()}.
+     *
+     * @return this {@code Decimal128} converted to a {@code long}.
+     */
+    @Override
+    public long longValue() {
+        if (scale > 0)
+            return setScale(0, RoundingMode.DOWN).lo;
+        // the low 64 bits of lo 10^-scale depend only on lo
+        long result = lo;
+        long p = 10;
+        for (int k = -scale; k != 0; k >>>= 1) {
+            if ((k & 1) != 0)
+                result *= p;
+            p *= p;
+        }
+        return result;
+    }
+
+    /**
+     * Converts this {@code Decimal128} to an {@code int}, discarding any
+     * fractional part and all but the low-order 32 bits of the integer
+     * part, as by {@link BigDecimal#intValue()}.
+     *
+     * @return this {@code Decimal128} converted to an {@code int}.
+     */
+    @Override
+    public int intValue() {
+        return (int)longValue();
+    }
+
+    /**
+     * Converts this {@code Decimal128} to a {@code float}, as by
+     * {@link BigDecimal#floatValue()}.
+     *
+     * @return this {@code Decimal128} converted to a {@code float}.
+     */
+    @Override
+    public float floatValue() {
+        if (scale == 0 && fitsLong())
+            return (float)lo;
+        return Float.parseFloat(toString());
+    }
+
+    /**
+     * Converts this {@code Decimal128} to a {@code double}, as by
+     * {@link BigDecimal#doubleValue()}.
+     *
+     * @return this {@code Decimal128} converted to a {@code double}.
+     */
+    @Override
+    public double doubleValue() {
+        if (fitsLong()) {
+            if (scale == 0)
+                return (double)lo;
+            // both operands are exact, so the result is correctly rounded
+            if (Math.abs(lo) < 1L << 53 && -22 <= scale && scale <= 22) {
+                return (scale > 0) ? (double)lo / DOUBLE_TEN_POWERS[scale]
+                                   : (double)lo * DOUBLE_TEN_POWERS[-scale];
+            }
+        }
+        return Double.parseDouble(toString());
+    }
+
+    /** The powers of ten that are exactly representable as doubles */
+    private static final double[] DOUBLE_TEN_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Private support methods
+
+    private boolean fitsLong() {
+        return hi == (lo >> 63);
+    }
+
+    private static ArithmeticException overflow() {
+        return new ArithmeticException("Overflow");
+    }
+
+    private static int checkScale(long scale) {
+        if (scale != (int)scale)
+            throw new ArithmeticException((scale > 0) ? "Underflow"
+                                                      : "Overflow");
+        return (int)scale;
+    }
+
+    /**
+     * Returns the Decimal128 with the magnitude m, at most 2^127, or
+     * 2^127 if negative, the given sign and scale.
+     */
+    private static Decimal128 toDecimal(int[] m, boolean negative, int scale) {
+        for (int i = 4; i < LIMBS; i++) {
+            if (m[i] != 0)
+                throw overflow();
+        }
+        long lo = (m[1] & LONG_MASK) << 32 | (m[0] & LONG_MASK);
+        long hi = (long)m[3] << 32 | (m[2] & LONG_MASK);
+        if (negative) {
+            if (hi < 0 && (hi != Long.MIN_VALUE || lo != 0))
+                throw overflow();
+            lo = -lo;
+            hi = ~hi + ((lo == 0) ? 1 : 0);
+        } else if (hi < 0) {
+            throw overflow();
+        }
+        return new Decimal128(hi, lo, scale);
+    }
+
+    /**
+     * Rounds the magnitude m at scale from to the scale to with the given
+     * rounding mode, and returns it as a Decimal128.
+     */
+    private static Decimal128 rescale(int[] m, boolean negative, long from,
+                                      int to, RoundingMode roundingMode) {
+        if (to > from) {
+            if (!mulPow10(m, to - from))
+                throw overflow();
+        } else if (to < from) {
+            divideByPow10AndRound(m, from - to, negative, roundingMode,
+                                  false);
+        }
+        return toDecimal(m, negative, to);
+    }
+
+    /**
+     * Returns whether a quotient is to be incremented in magnitude, when
+     * rounding an inexact quotient whose remainder compares to half the
+     * divisor as cmpHalf does.
+     */
+    private static boolean roundUp(RoundingMode roundingMode,
+                                   boolean negative, int cmpHalf,
+                                   boolean odd) {
+        switch (roundingMode) {
+        case UP:
+            return true;
+        case DOWN:
+            return false;
+        case CEILING:
+            return !negative;
+        case FLOOR:
+            return negative;
+        case HALF_UP:
+            return cmpHalf >= 0;
+        case HALF_DOWN:
+            return cmpHalf > 0;
+        case HALF_EVEN:
+            return cmpHalf > 0 || (cmpHalf == 0 && odd);
+        case UNNECESSARY:
+            throw new ArithmeticException("Rounding necessary");
+        default:
+            throw new AssertionError("Unexpected rounding mode " +
+                                     roundingMode);
+        }
+    }
+
+    /**
+     * Returns the signed high 64 bits of the 128 bit product of x and y.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32, x2 = x & LONG_MASK;
+        long y1 = y >> 32, y2 = y & LONG_MASK;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & LONG_MASK) + x2 * y1;
+        long z0 = t >> 32;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    // Wide magnitude arithmetic
+
+    /**
+     * Returns the magnitude of the 128 bit value hi:lo.
+     */
+    private static int[] magnitude(long hi, long lo) {
+        if (hi < 0) {
+            lo = -lo;
+            hi = ~hi + ((lo == 0) ? 1 : 0);
+        }
+        int[] m = new int[LIMBS];
+        m[0] = (int)lo;
+        m[1] = (int)(lo >>> 32);
+        m[2] = (int)hi;
+        m[3] = (int)(hi >>> 32);
+        return m;
+    }
+
+    private static boolean isZero(int[] m) {
+        for (int i = 0; i < LIMBS; i++) {
+            if (m[i] != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static int compareMag(int[] x, int[] y) {
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            if (x[i] != y[i])
+                return Integer.compareUnsigned(x[i], y[i]);
+        }
+        return 0;
+    }
+
+    /**
+     * Multiplies m by the unsigned f in place, and returns the carry out.
+     */
+    private static int mulSmall(int[] m, int f) {
+        long fl = f & LONG_MASK;
+        long carry = 0;
+        for (int i = 0; i < LIMBS; i++) {
+            long p = (m[i] & LONG_MASK) * fl + carry;
+            m[i] = (int)p;
+            carry = p >>> 32;
+        }
+        return (int)carry;
+    }
+
+    /**
+     * Adds the unsigned a to m in place, and returns the carry out.
+     */
+    private static int addSmall(int[] m, int a) {
+        long carry = a & LONG_MASK;
+        for (int i = 0; i < LIMBS && carry != 0; i++) {
+            long s = (m[i] & LONG_MASK) + carry;
+            m[i] = (int)s;
+            carry = s >>> 32;
+        }
+        return (int)carry;
+    }
+
+    /**
+     * Multiplies m by 10^k in place, for k >= 0, and returns false if the
+     * product does not fit.
+     */
+    private static boolean mulPow10(int[] m, long k) {
+        if (k == 0 || isZero(m))
+            return true;
+        if (k > 77)
+            return false;
+        for (int n = (int)k; n > 0; n -= 9) {
+            if (mulSmall(m, INT_TEN_POWERS[Math.min(n, 9)]) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Divides m in place by d, which is less than 2^31, and returns the
+     * remainder.
+     */
+    private static int divSmall(int[] m, int d) {
+        long r = 0;
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            long cur = (r << 32) | (m[i] & LONG_MASK);
+            long q = cur / d;
+            m[i] = (int)q;
+            r = cur - q * d;
+        }
+        return (int)r;
+    }
+
+    /**
+     * Divides m in place by 10^k, for k >= 0, truncating the quotient, and
+     * returns whether the remainder is nonzero.
+     */
+    private static boolean divideByPow10(int[] m, long k) {
+        // 10^78 exceeds any magnitude: all further digits are zeros
+        int n = (int)Math.min(k, 78);
+        boolean inexact = false;
+        for (; n > 0; n -= 9) {
+            if (divSmall(m, INT_TEN_POWERS[Math.min(n, 9)]) != 0)
+                inexact = true;
+        }
+        return inexact;
+    }
+
+    /**
+     * Divides m in place by 10^k, for k > 0, and rounds the quotient.  If
+     * sticky is set, m stands for a value slightly greater in magnitude,
+     * by less than one unit.
+     */
+    private static void divideByPow10AndRound(int[] m, long k,
+                                              boolean negative,
+                                              RoundingMode roundingMode,
+                                              boolean sticky) {
+        if (divideByPow10(m, k - 1))
+            sticky = true;
+        int last = divSmall(m, 10);
+        if (last != 0 || sticky) {
+            int cmpHalf = (last != 5) ? last - 5 : (sticky ? 1 : 0);
+            if (roundUp(roundingMode, negative, cmpHalf, (m[0] & 1) != 0))
+                increment(m);
+        }
+    }
+
+    /**
+     * Divides x in place by the nonzero y, and rounds the quotient.
+     */
+    private static void divideAndRound(int[] x, int[] y, boolean negative,
+                                       RoundingMode roundingMode) {
+        int ylen = LIMBS;
+        while (y[ylen - 1] == 0)
+            ylen--;
+        int cmpHalf;
+        if (ylen == 1 && y[0] > 0) {
+            int d = y[0];
+            int r = divSmall(x, d);
+            if (r == 0)
+                return;
+            cmpHalf = Integer.compare(r, d - r);
+        } else {
+            MutableBigInteger dividend = new MutableBigInteger(bigEndian(x));
+            MutableBigInteger divisor = new MutableBigInteger(bigEndian(y));
+            MutableBigInteger quotient = new MutableBigInteger();
+            MutableBigInteger r = dividend.divide(divisor, quotient);
+            int[] q = quotient.toIntArray();
+            for (int i = 0; i < LIMBS; i++)
+                x[i] = (i < q.length) ? q[q.length - 1 - i] : 0;
+            if (r.isZero())
+                return;
+            cmpHalf = r.compareHalf(divisor);
+        }
+        if (roundUp(roundingMode, negative, cmpHalf, (x[0] & 1) != 0))
+            increment(x);
+    }
+
+    /**
+     * Returns the magnitude m, most significant int first, without
+     * leading zeros.
+     */
+    private static int[] bigEndian(int[] m) {
+        int len = LIMBS;
+        while (len > 0 && m[len - 1] == 0)
+            len--;
+        int[] result = new int[len];
+        for (int i = 0; i < len; i++)
+            result[i] = m[len - 1 - i];
+        return result;
+    }
+
+    private static void increment(int[] m) {
+        for (int i = 0; i < LIMBS && ++m[i] == 0; i++)
+            ;
+    }
+
+    /**
+     * Returns the product of two magnitudes of at most four ints.
+     */
+    private static int[] multiplyMag(int[] x, int[] y) {
+        int[] p = new int[LIMBS];
+        for (int i = 0; i < 4; i++) {
+            long xi = x[i] & LONG_MASK;
+            if (xi == 0)
+                continue;
+            long carry = 0;
+            for (int j = 0; j < 4; j++) {
+                long t = xi * (y[j] & LONG_MASK) + (p[i + j] & LONG_MASK)
+                         + carry;
+                p[i + j] = (int)t;
+                carry = t >>> 32;
+            }
+            p[i + 4] = (int)carry;
+        }
+        return p;
+    }
+
+    /**
+     * Adds the signed magnitude y to the signed magnitude x in place, and
+     * returns whether the sum is negative.
+     */
+    private static boolean addSigned(int[] x, boolean xNegative,
+                                     int[] y, boolean yNegative) {
+        if (xNegative == yNegative) {
+            long carry = 0;
+            for (int i = 0; i < LIMBS; i++) {
+                long s = (x[i] & LONG_MASK) + (y[i] & LONG_MASK) + carry;
+                x[i] = (int)s;
+                carry = s >>> 32;
+            }
+            if (carry != 0)
+                throw overflow();
+            return xNegative;
+        }
+        int c = compareMag(x, y);
+        long borrow = 0;
+        for (int i = 0; i < LIMBS; i++) {
+            long d = (c >= 0) ? (x[i] & LONG_MASK) - (y[i] & LONG_MASK)
+                              : (y[i] & LONG_MASK) - (x[i] & LONG_MASK);
+            d += borrow;
+            x[i] = (int)d;
+            borrow = d >> 32;
+        }
+        return (c > 0) ? xNegative : (c < 0) ? yNegative : false;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.math;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multiplies huge magnitudes with fast Fourier transforms over finite
+ * fields (number theoretic transforms).
+ *
+ * The magnitudes are split into 16 bit digits, which are convolved modulo
+ * three primes of the form c 2<sup>k</sup> + 1 that have 2<sup>23</sup>-th
+ * roots of unity.  The exact coefficients of the convolution, which are
+ * less than 2<sup>23</sup> 2<sup>32</sup>, are then recovered from their
+ * residues by the Chinese remainder theorem, and the carries propagated.
+ * The running time is O(n log n) in the length of the product, against
+ * O(n<sup>1.465</sup>) for 3-way Toom-Cook multiplication, at the cost of
+ * a large constant factor, so the transforms are used only above a
+ * threshold of some millions of bits.  The three transforms
+ * are independent and may be computed in parallel.
+ *
+ * Products of more than 2<sup>23</sup> digits, that is 2<sup>27</sup>
+ * bits, are beyond the transform length of the primes; callers split
+ * their operands, for example by a step of Toom-Cook multiplication,
+ * before calling this class.
+ *
+ * @see     BigInteger
+ * @since   1.8
+ */
+final class NTTMultiplier {
+
+    /** The primes, each 1 modulo 2^23, that the convolution is done modulo */
+    private static final int[] PRIMES = { 998244353, 167772161, 469762049 };
+
+    /** A primitive root of each prime */
+    private static final int GENERATOR = 3;
+
+    /** The log2 of the largest transform length */
+    private static final int MAX_LOG_LENGTH = 23;
+
+    /** The number of bits in a digit */
+    private static final int DIGIT_BITS = 16;
+
+    /** p0^-1 mod p1 and (p0 p1)^-1 mod p2 */
+    private static final long INV_P0_MOD_P1;
+    private static final long INV_P0P1_MOD_P2;
+
+    static {
+        long p0 = PRIMES[0], p1 = PRIMES[1], p2 = PRIMES[2];
+        INV_P0_MOD_P1 = pow(p0 % p1, p1 - 2, p1);
+        INV_P0P1_MOD_P2 = pow((p0 % p2) * (p1 % p2) % p2, p2 - 2, p2);
+    }
+
+    private NTTMultiplier() {}
+
+    /**
+     * Returns whether a product of magnitudes of the given lengths, in
+     * ints, is within the transform length.
+     */
+    static boolean fits(int xlen, int ylen) {
+        return (long)xlen + ylen <= (1L << MAX_LOG_LENGTH) / (32 / DIGIT_BITS);
+    }
+
+    /**
+     * Returns the magnitude of the product of the magnitudes x and y, or
+     * of the square of x if y is x.  The result may have a leading zero
+     * int.  If parallel is true, the convolutions modulo the three primes
+     * are computed as fork/join tasks.
+     */
+    static int[] multiply(int[] x, int[] y, boolean parallel) {
+        final boolean square = (x == y);
+        int xDigits = x.length * 2;
+        int yDigits = y.length * 2;
+        int logLength = 32 - Integer.numberOfLeadingZeros(xDigits + yDigits - 2);
+        final int n = 1 << logLength;
+        final int[] xd = toDigits(x, n);
+        final int[] yd = square ? xd : toDigits(y, n);
+
+        final int[][] residues = new int[PRIMES.length][];
+        if (parallel) {
+            RecursiveAction[] tasks = new RecursiveAction[PRIMES.length];
+            for (int i = 0; i < PRIMES.length; i++) {
+                final int prime = i;
+                tasks[i] = new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+                    protected void compute() {
+                        residues[prime] = convolve(xd, yd, square, n,
+                                                   PRIMES[prime]);
+                    }
+                };
+            }
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (int i = 0; i < PRIMES.length; i++)
+                residues[i] = convolve(xd, yd, square, n, PRIMES[i]);
+        }
+        return combine(residues, x.length + y.length);
+    }
+
+    /**
+     * Splits a magnitude into its 16 bit digits, least significant first,
+     * in an array of length n.
+     */
+    private static int[] toDigits(int[] mag, int n) {
+        int[] digits = new int[n];
+        for (int i = 0, j = mag.length - 1; j >= 0; j--) {
+            int m = mag[j];
+            digits[i++] = m & 0xffff;
+            digits[i++] = m >>> 16;
+        }
+        return digits;
+    }
+
+    /**
+     * Returns the cyclic convolution of length n of x and y modulo p.
+     *
+     * The forward transform is computed by decimation in frequency, which
+     * leaves its result in bit reversed order, and the inverse transform
+     * by decimation in time from bit reversed order, so that neither
+     * needs a permutation.  Products are reduced by Montgomery reduction
+     * with R = 2^32; the powers of the roots of unity are kept multiplied
+     * by R, so that the transforms work on plain residues.
+     */
+    private static int[] convolve(int[] x, int[] y, boolean square, int n,
+                                  int p) {
+        // -p^-1 mod 2^32, by Newton iteration
+        int inv = p;
+        for (int i = 0; i < 4; i++)
+            inv *= 2 - p * inv;
+        int pNegInv = -inv;
+
+        int[] roots = roots(n, p, false);
+        int[] a = x.clone();
+        forward(a, roots, p, pNegInv);
+        if (square) {
+            for (int i = 0; i < n; i++)
+                a[i] = reduce((long)a[i] * a[i], p, pNegInv);
+        } else {
+            int[] b = y.clone();
+            forward(b, roots, p, pNegInv);
+            for (int i = 0; i < n; i++)
+                a[i] = reduce((long)a[i] * b[i], p, pNegInv);
+        }
+        inverse(a, roots(n, p, true), p, pNegInv);
+
+        // the products carry a factor R^-1 and the inverse transform a
+        // factor n: multiply by R n^-1, that is reduce a product by R^2 n^-1
+        long r = (1L << 32) % p;
+        long scale = r * r % p * pow(n, p - 2, p) % p;
+        for (int i = 0; i < n; i++)
+            a[i] = reduce(a[i] * scale, p, pNegInv);
+        return a;
+    }
+
+    /**
+     * Returns t R^-1 mod p, for 0 <= t < p 2^32, where R = 2^32.
+     */
+    private static int reduce(long t, int p, int pNegInv) {
+        long m = ((int)t * pNegInv) & LONG_MASK;
+        int u = (int)((t + m * p) >>> 32);
+        return (u >= p) ? u - p : u;
+    }
+
+    private static final long LONG_MASK = 0xffffffffL;
+
+    /**
+     * Returns the powers of the primitive roots of unity of orders 2,
+     * 4, ..., n modulo p, or of their inverses, times R: the powers
+     * w^0 ... w^(h-1) of the root of order 2h are at indices h ... 2h-1.
+     */
+    private static int[] roots(int n, int p, boolean inverse) {
+        int[] roots = new int[Math.max(2, n)];
+        long r = (1L << 32) % p;
+        for (int h = 1; h < n; h <<= 1) {
+            long w = pow(GENERATOR, (p - 1) / (2 * h), p);
+            if (inverse)
+                w = pow(w, p - 2, p);
+            long wj = r;
+            for (int j = 0; j < h; j++) {
+                roots[h + j] = (int)wj;
+                wj = wj * w % p;
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Transforms a in place, by decimation in frequency, from natural to
+     * bit reversed order.
+     */
+    private static void forward(int[] a, int[] roots, int p, int pNegInv) {
+        int n = a.length;
+        for (int h = n >> 1; h >= 1; h >>= 1) {
+            for (int i = 0; i < n; i += 2 * h) {
+                for (int j = 0; j < h; j++) {
+                    int u = a[i + j];
+                    int v = a[i + j + h];
+                    int s = u + v;
+                    a[i + j] = (s >= p) ? s - p : s;
+                    int d = u - v;
+                    if (d < 0)
+                        d += p;
+                    a[i + j + h] = reduce((long)d * roots[h + j], p, pNegInv);
+                }
+            }
+        }
+    }
+
+    /**
+     * Transforms a in place, by decimation in time, from bit reversed to
+     * natural order.
+     */
+    private static void inverse(int[] a, int[] roots, int p, int pNegInv) {
+        int n = a.length;
+        for (int h = 1; h < n; h <<= 1) {
+            for (int i = 0; i < n; i += 2 * h) {
+                for (int j = 0; j < h; j++) {
+                    int u = a[i + j];
+                    int v = reduce((long)a[i + j + h] * roots[h + j], p,
+                                   pNegInv);
+                    int s = u + v;
+                    a[i + j] = (s >= p) ? s - p : s;
+                    int d = u - v;
+                    a[i + j + h] = (d < 0) ? d + p : d;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recovers the coefficients of the convolution from their residues and
+     * returns the magnitude they sum to, in an array of the given length.
+     */
+    private static int[] combine(int[][] residues, int length) {
+        long p0 = PRIMES[0], p1 = PRIMES[1], p2 = PRIMES[2];
+        long p0p1 = p0 * p1;
+        int[] r0 = residues[0], r1 = residues[1], r2 = residues[2];
+        int[] result = new int[length];
+
+        // the carry is the 128 bit integer carryHi 2^64 + carryLo, where
+        // carryLo is taken as unsigned
+        long carryHi = 0, carryLo = 0;
+        int digits = 2 * length;
+        int resultIndex = length - 1;
+        int word = 0;
+        for (int i = 0; i < digits; i++) {
+            if (i < r0.length) {
+                // Garner's algorithm: c = a + p0 t1 + p0 p1 t2
+                long a = r0[i];
+                long t1 = (r1[i] - a % p1 + p1) % p1 * INV_P0_MOD_P1 % p1;
+                long c01 = a + p0 * t1;
+                long t2 = (r2[i] - c01 % p2 + p2) % p2 * INV_P0P1_MOD_P2 % p2;
+                // add c01 + p0p1 t2 to the carry
+                long lo = p0p1 * t2;
+                long hi = multiplyHigh(p0p1, t2);
+                long sum = lo + c01;
+                if (Long.compareUnsigned(sum, lo) < 0)
+                    hi++;
+                long newLo = carryLo + sum;
+                carryHi += hi + ((Long.compareUnsigned(newLo, carryLo) < 0)
+                                 ? 1 : 0);
+                carryLo = newLo;
+            }
+            int digit = (int)carryLo & 0xffff;
+            carryLo = (carryLo >>> DIGIT_BITS) | (carryHi << (64 - DIGIT_BITS));
+            carryHi >>>= DIGIT_BITS;
+            if ((i & 1) == 0) {
+                word = digit;
+            } else {
+                result[resultIndex--] = word | (digit << 16);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the high 64 bits of the 128 bit product of the non-negative
+     * x and y.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >>> 32, x0 = x & 0xffffffffL;
+        long y1 = y >>> 32, y0 = y & 0xffffffffL;
+        long t = x1 * y0 + ((x0 * y0) >>> 32);
+        long u = x0 * y1 + (t & 0xffffffffL);
+        return x1 * y1 + (t >>> 32) + (u >>> 32);
+    }
+
+    /**
+     * Returns b^e mod m.
+     */
+    private static long pow(long b, long e, long m) {
+        long r = 1;
+        b %= m;
+        while (e > 0) {
+            if ((e & 1) != 0)
+                r = r * b % m;
+            b = b * b % m;
+            e >>= 1;
+        }
+        return r;
+    }
+}
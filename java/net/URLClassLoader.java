@@ -77,6 +77,27 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
     /* The context to be used when loading classes and resources */
     private final AccessControlContext acc;
 
+    /* The stream handler factory of the search path, or null */
+    private final URLStreamHandlerFactory factory;
+
+    /*
+     * The index of the search path, built on first use and replaced when
+     * URLs are appended; null if not built yet or if the loader is
+     * closed. Lookups read it without locking, so that threads loading
+     * different classes under their own locks from ClassLoader's
+     * parallelLockMap never wait for each other here; only building the
+     * index is serialized, on indexLock.
+     */
+    private volatile URLClassPathIndex index;
+
+    /* The number of calls to addURL, to tell when the index is stale */
+    private volatile int generation;
+
+    /* Set by close(); guarded by indexLock */
+    private boolean closed;
+
+    private final Object indexLock = new Object();
+
     /**
      * Constructs a new URLClassLoader for the given URLs. The URLs will be
      * searched in the order specified for classes and resources after first
@@ -105,6 +126,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         ucp = new URLClassPath(urls);
         this.acc = AccessController.getContext();
+        this.factory = null;
     }
 
     URLClassLoader(URL[] urls, ClassLoader parent,
@@ -117,6 +139,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         ucp = new URLClassPath(urls);
         this.acc = acc;
+        this.factory = null;
     }
 
     /**
@@ -149,6 +172,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         ucp = new URLClassPath(urls);
         this.acc = AccessController.getContext();
+        this.factory = null;
     }
 
     URLClassLoader(URL[] urls, AccessControlContext acc) {
@@ -160,6 +184,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         ucp = new URLClassPath(urls);
         this.acc = acc;
+        this.factory = null;
     }
 
     /**
@@ -193,6 +218,7 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         }
         ucp = new URLClassPath(urls, factory);
         acc = AccessController.getContext();
+        this.factory = factory;
     }
 
     /* A map (used as a set) to keep track of closeable local resources
@@ -288,7 +314,16 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         if (security != null) {
             security.checkPermission(new RuntimePermission("closeClassLoader"));
         }
+        URLClassPathIndex idx;
+        synchronized (indexLock) {
+            closed = true;
+            idx = index;
+            index = null;
+        }
         List<IOException> errors = ucp.closeLoaders();
+        if (idx != null) {
+            idx.close(errors);
+        }
 
         // now close any remaining streams.
 
@@ -330,6 +365,38 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
      */
     protected void addURL(URL url) {
         ucp.addURL(url);
+        synchronized (indexLock) {
+            generation++;
+        }
+    }
+
+    /**
+     * Returns the index of the search path, building or updating it if
+     * needed, or null if lookups should search {@code ucp} directly
+     * because indexing is disabled, the search path is too short to be
+     * worth indexing, or the loader is closed. Must be called with the
+     * privileges of {@code acc}, as it may open the JAR files of the
+     * search path.
+     */
+    private URLClassPathIndex index() {
+        URLClassPathIndex idx = index;
+        if (idx == null || idx.generation != generation) {
+            if (!URLClassPathIndex.ENABLED) {
+                return null;
+            }
+            synchronized (indexLock) {
+                idx = index;
+                int gen = generation;
+                if (closed) {
+                    return null;
+                }
+                if (idx == null || idx.generation != gen) {
+                    index = idx = URLClassPathIndex.update(
+                        idx, ucp.getURLs(), factory, gen);
+                }
+            }
+        }
+        return (idx.size > 0) ? idx : null;
     }
 
     /**
@@ -362,7 +429,10 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
                 new PrivilegedExceptionAction<Class<?>>() {
                     public Class<?> run() throws ClassNotFoundException {
                         String path = name.replace('.', '/').concat(".class");
-                        Resource res = ucp.getResource(path, false);
+                        URLClassPathIndex idx = index();
+                        Resource res = (idx != null)
+                            ? idx.getResource(path, false)
+                            : ucp.getResource(path, false);
                         if (res != null) {
                             try {
                                 return defineClass(name, res);
@@ -566,7 +636,9 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         URL url = AccessController.doPrivileged(
             new PrivilegedAction<URL>() {
                 public URL run() {
-                    return ucp.findResource(name, true);
+                    URLClassPathIndex idx = index();
+                    return (idx != null) ? idx.findResource(name, true)
+                                         : ucp.findResource(name, true);
                 }
             }, acc);
 
@@ -585,7 +657,16 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
     public Enumeration<URL> findResources(final String name)
         throws IOException
     {
-        final Enumeration<URL> e = ucp.findResources(name, true);
+        final Enumeration<URL> e = AccessController.doPrivileged(
+            new PrivilegedAction<Enumeration<URL>>() {
+                public Enumeration<URL> run() {
+                    URLClassPathIndex idx = index();
+                    if (idx == null) {
+                        return ucp.findResources(name, true);
+                    }
+                    return idx.findResources(name, true);
+                }
+            }, acc);
 
         return new Enumeration<URL>() {
             private URL url = null;
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.AccessController;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import sun.misc.Resource;
+import sun.misc.URLClassPath;
+import sun.net.www.ParseUtil;
+import sun.security.action.GetPropertyAction;
+
+/**
+ * An indexed view of the search path of a {@link URLClassLoader}.
+ *
+ * <p> The search path is split into single-URL {@code URLClassPath}s,
+ * and the index maps each package directory to the positions of the
+ * JAR files that have entries in it, so that a lookup probes only those
+ * JAR files instead of every element of the path in turn.  The
+ * directories of a JAR file are taken from the JAR file's own section
+ * of its {@code META-INF/INDEX.LIST} when there is one, and otherwise
+ * from its entries.  Path elements whose contents cannot be known in
+ * advance (directories, non-file URLs, JAR files whose manifest has a
+ * {@code Class-Path} attribute, unreadable files) are probed for every
+ * name, in their place in the search order, so lookups find exactly
+ * what a linear search would.  Names under {@code META-INF/} are looked
+ * up in every element.
+ *
+ * <p> Instances are immutable and safe to use from any number of
+ * threads without locking.  When URLs are appended to the search path
+ * the loader creates a new instance with {@link #update}; trailing URLs
+ * are searched linearly until there are enough of them to be worth
+ * indexing.
+ *
+ * <p> If the system property {@code java.net.URLClassLoader.indexCache}
+ * names a directory, the directories of each JAR file are saved there
+ * and reused by later runs for as long as the length and modification
+ * time of the JAR file are unchanged.  Setting the system property
+ * {@code java.net.URLClassLoader.index} to {@code false} disables
+ * indexing altogether.
+ */
+final class URLClassPathIndex {
+
+    /** Whether URLClassLoaders index their search paths */
+    static final boolean ENABLED;
+
+    /** Directory in which JAR file directories are cached, or null */
+    private static final File CACHE_DIR;
+
+    static {
+        ENABLED = !"false".equalsIgnoreCase(AccessController.doPrivileged(
+            new GetPropertyAction("java.net.URLClassLoader.index", "true")));
+        String dir = AccessController.doPrivileged(
+            new GetPropertyAction("java.net.URLClassLoader.indexCache"));
+        CACHE_DIR = (dir == null || dir.isEmpty()) ? null : new File(dir);
+    }
+
+    /**
+     * Search paths with fewer URLs than this are not indexed, and
+     * appended URLs are searched linearly until there are at least
+     * this many of them.
+     */
+    static final int MIN_URLS = 4;
+
+    private static final String INDEX_NAME = "META-INF/INDEX.LIST";
+    private static final String META_INF = "META-INF/";
+
+    private static final int CACHE_MAGIC = 0x55435049;  // "UCPI"
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /** The single-URL search paths, in search order */
+    final URLClassPath[] paths;
+
+    /** The number of leading paths covered by the index */
+    final int size;
+
+    /** The value of the loader's URL count this instance reflects */
+    final int generation;
+
+    /** Positions of the indexed paths that may hold each directory */
+    private final Map<String,int[]> map;
+
+    /** Positions of the indexed paths that are searched for all names */
+    private final int[] unindexed;
+
+    /** Positions 0 .. size-1 */
+    private final int[] all;
+
+    private URLClassPathIndex(URLClassPath[] paths, int size, int generation,
+                              Map<String,int[]> map, int[] unindexed) {
+        this.paths = paths;
+        this.size = size;
+        this.generation = generation;
+        this.map = map;
+        this.unindexed = unindexed;
+        int[] a = new int[size];
+        for (int i = 0; i < size; i++)
+            a[i] = i;
+        this.all = a;
+    }
+
+    /**
+     * Returns an index of the given search path, reusing the paths and
+     * the index of a previous instance for a prefix of the same path.
+     *
+     * @param prev the previous index, or null
+     * @param urls the current search path
+     * @param factory the URLStreamHandlerFactory of the loader, or null
+     * @param generation the loader's count of appended URLs
+     */
+    static URLClassPathIndex update(URLClassPathIndex prev, URL[] urls,
+                                    URLStreamHandlerFactory factory,
+                                    int generation) {
+        int n = urls.length;
+        URLClassPath[] paths = new URLClassPath[n];
+        int start = 0;
+        if (prev != null) {
+            start = Math.min(prev.paths.length, n);
+            System.arraycopy(prev.paths, 0, paths, 0, start);
+        }
+        for (int i = start; i < n; i++)
+            paths[i] = (factory == null)
+                ? new URLClassPath(new URL[] { urls[i] })
+                : new URLClassPath(new URL[] { urls[i] }, factory);
+
+        int size = (prev == null) ? 0 : prev.size;
+        Map<String,int[]> map = (prev == null)
+            ? new HashMap<String,int[]>() : prev.map;
+        int[] unindexed = (prev == null) ? NO_POSITIONS : prev.unindexed;
+        if (n - size >= Math.max(MIN_URLS, size >> 2)) {
+            map = new HashMap<>(map);
+            for (int i = size; i < n; i++) {
+                File f = jarFile(urls[i]);
+                String[] keys = (f == null) ? null : keys(f);
+                if (keys == null) {
+                    unindexed = append(unindexed, i);
+                    for (Map.Entry<String,int[]> e : map.entrySet())
+                        e.setValue(append(e.getValue(), i));
+                } else {
+                    for (String k : keys) {
+                        int[] p = map.get(k);
+                        map.put(k, append((p != null) ? p : unindexed, i));
+                    }
+                }
+            }
+            size = n;
+        }
+        return new URLClassPathIndex(paths, size, generation, map, unindexed);
+    }
+
+    private static int[] append(int[] a, int i) {
+        int n = a.length;
+        int[] b = new int[n + 1];
+        System.arraycopy(a, 0, b, 0, n);
+        b[n] = i;
+        return b;
+    }
+
+    /**
+     * Returns the index key of a resource name: its directory, or the
+     * name itself for names in the root directory, as in INDEX.LIST.
+     */
+    private static String key(String name) {
+        int i = name.lastIndexOf('/');
+        return (i < 0) ? name : name.substring(0, i);
+    }
+
+    /**
+     * Returns the positions of the indexed paths that may contain the
+     * named resource, in search order.
+     */
+    private int[] lookup(String name) {
+        if (name.startsWith(META_INF))
+            return all;
+        int[] p = map.get(key(name));
+        return (p != null) ? p : unindexed;
+    }
+
+    /* ------------------------------------------------------------ */
+    /*  Lookups, mirroring those of URLClassPath                    */
+
+    Resource getResource(String name, boolean check) {
+        for (int i : lookup(name)) {
+            Resource res = paths[i].getResource(name, check);
+            if (res != null)
+                return res;
+        }
+        for (int i = size; i < paths.length; i++) {
+            Resource res = paths[i].getResource(name, check);
+            if (res != null)
+                return res;
+        }
+        return null;
+    }
+
+    URL findResource(String name, boolean check) {
+        for (int i : lookup(name)) {
+            URL url = paths[i].findResource(name, check);
+            if (url != null)
+                return url;
+        }
+        for (int i = size; i < paths.length; i++) {
+            URL url = paths[i].findResource(name, check);
+            if (url != null)
+                return url;
+        }
+        return null;
+    }
+
+    /**
+     * Returns all URLs of the named resource in search order, looking up
+     * each path element only as the enumeration reaches it.  URLs
+     * reachable through more than one path element, as JAR files named
+     * in a {@code Class-Path} attribute may be, are reported once; they
+     * are compared by their external forms, since {@code URL.equals} may
+     * resolve host names.
+     */
+    Enumeration<URL> findResources(final String name, final boolean check) {
+        final int[] positions = lookup(name);
+        return new Enumeration<URL>() {
+            private final Set<String> seen = new HashSet<>();
+            private int next;           // count of path elements started
+            private Enumeration<URL> e;
+            private URL url;
+
+            private boolean next() {
+                while (url == null) {
+                    if (e != null && e.hasMoreElements()) {
+                        URL u = e.nextElement();
+                        if (seen.add(u.toExternalForm()))
+                            url = u;
+                        continue;
+                    }
+                    int i = (next < positions.length)
+                        ? positions[next]
+                        : size + next - positions.length;
+                    if (i >= paths.length)
+                        return false;
+                    next++;
+                    e = paths[i].findResources(name, check);
+                }
+                return true;
+            }
+
+            public boolean hasMoreElements() {
+                return next();
+            }
+
+            public URL nextElement() {
+                if (!next())
+                    throw new NoSuchElementException();
+                URL u = url;
+                url = null;
+                return u;
+            }
+        };
+    }
+
+    /**
+     * Closes the single-URL paths.
+     */
+    void close(List<IOException> errors) {
+        for (URLClassPath path : paths)
+            errors.addAll(path.closeLoaders());
+    }
+
+    /* ------------------------------------------------------------ */
+    /*  Scanning JAR files                                          */
+
+    /**
+     * Returns the local JAR file a search path URL refers to, or null
+     * if it is not a readable local file.
+     */
+    private static File jarFile(URL url) {
+        if (!"file".equals(url.getProtocol()))
+            return null;
+        String host = url.getHost();
+        if (host != null && !host.isEmpty() && !host.equals("localhost"))
+            return null;
+        String path = url.getFile();
+        if (path.endsWith("/"))
+            return null;
+        File f = new File(ParseUtil.decode(path).replace('/',
+                                                         File.separatorChar));
+        try {
+            return f.isFile() ? f : null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index keys of a JAR file, or null if it must be
+     * searched for all names.
+     */
+    private static String[] keys(File f) {
+        String[] keys = (CACHE_DIR != null) ? readCache(f) : null;
+        if (keys != null)
+            return (keys.length == 1 && keys[0] == null) ? null : keys;
+        try {
+            keys = scan(f);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+        if (CACHE_DIR != null)
+            writeCache(f, keys);
+        return keys;
+    }
+
+    /**
+     * Reads the index keys of a JAR file, or returns null if it has a
+     * Class-Path attribute.
+     */
+    private static String[] scan(File f) throws IOException {
+        try (JarFile jar = new JarFile(f, false)) {
+            Manifest man = jar.getManifest();
+            if (man != null && man.getMainAttributes()
+                    .getValue(Attributes.Name.CLASS_PATH) != null)
+                return null;
+            Set<String> keys = new HashSet<>();
+            JarEntry index = jar.getJarEntry(INDEX_NAME);
+            if (index == null ||
+                !readIndexList(jar, index, f.getName(), keys)) {
+                Enumeration<JarEntry> e = jar.entries();
+                while (e.hasMoreElements())
+                    keys.add(key(e.nextElement().getName()));
+            }
+            return keys.toArray(new String[keys.size()]);
+        }
+    }
+
+    /**
+     * Adds to keys the directories that the INDEX.LIST of a JAR file
+     * lists for the JAR file itself.
+     *
+     * @return true if the INDEX.LIST has a section for the JAR file
+     */
+    private static boolean readIndexList(JarFile jar, JarEntry index,
+                                         String jarName, Set<String> keys)
+        throws IOException
+    {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                jar.getInputStream(index), "UTF8"))) {
+            String line;
+            boolean found = false, inSection = false, atStart = true;
+            // Skip the version header, which ends at the first blank line
+            while ((line = br.readLine()) != null && !line.isEmpty())
+                ;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    atStart = true;
+                    inSection = false;
+                } else if (atStart) {
+                    atStart = false;
+                    inSection = line.equals(jarName) ||
+                        line.endsWith("/" + jarName);
+                    found |= inSection;
+                } else if (inSection) {
+                    keys.add(line);
+                }
+            }
+            return found;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /*  Persistence                                                 */
+
+    private static File cacheFile(File jar) throws IOException {
+        String path = jar.getCanonicalPath();
+        return new File(CACHE_DIR,
+                        "ucp-" + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+
+    /**
+     * Returns the cached keys of a JAR file, an array holding just null
+     * if it is cached as searched for all names, or null if it is not
+     * cached or the JAR file has changed.
+     */
+    private static String[] readCache(File jar) {
+        try {
+            File cache = cacheFile(jar);
+            if (!cache.isFile())
+                return null;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(cache)))) {
+                if (in.readInt() != CACHE_MAGIC ||
+                    !in.readUTF().equals(jar.getCanonicalPath()) ||
+                    in.readLong() != jar.length() ||
+                    in.readLong() != jar.lastModified())
+                    return null;
+                int n = in.readInt();
+                if (n < 0)
+                    return new String[1];
+                String[] keys = new String[n];
+                for (int i = 0; i < n; i++)
+                    keys[i] = in.readUTF();
+                return keys;
+            }
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Caches the keys of a JAR file, or the fact that it is searched for
+     * all names if keys is null.  Failures are ignored.
+     */
+    private static void writeCache(File jar, String[] keys) {
+        File tmp = null;
+        try {
+            File cache = cacheFile(jar);
+            CACHE_DIR.mkdirs();
+            tmp = File.createTempFile("ucp", ".tmp", CACHE_DIR);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeUTF(jar.getCanonicalPath());
+                out.writeLong(jar.length());
+                out.writeLong(jar.lastModified());
+                if (keys == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(keys.length);
+                    for (String k : keys)
+                        out.writeUTF(k);
+                }
+            }
+            if (!tmp.renameTo(cache)) {
+                cache.delete();
+                if (tmp.renameTo(cache))
+                    tmp = null;
+            } else {
+                tmp = null;
+            }
+        } catch (IOException | SecurityException e) {
+            // the cache is only an optimization
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,576 @@
+/*
+ * Copyright (c) 2000, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import sun.misc.BufferPoolRegistry;
+
+
+/**
+ * A pool of direct byte buffers that are recycled explicitly rather than
+ * freed by the garbage collector.
+ *
+ * <p> Direct buffers created by {@link ByteBuffer#allocateDirect(int)
+ * allocateDirect} are costly to allocate, may cause the allocating thread to
+ * trigger a garbage collection and wait for it when the direct memory limit
+ * is reached, and are only freed once they have been found to be unreachable.
+ * A buffer {@link #acquire acquired} from a pool is instead carved out of a
+ * larger block of direct memory (a <i>slab</i>) owned by the pool, and is
+ * returned to the pool by {@link #release release} as soon as it is no longer
+ * needed, so that its memory can be handed out again without involving the
+ * garbage collector.
+ *
+ * <p> Requests are rounded up to a <i>size class</i>: a power of two between
+ * {@value #MIN_SIZE_CLASS} bytes and the pool's {@link #getMaxPooledSize()
+ * maximum pooled size}.  Each thread keeps a small cache of free buffers of
+ * each size class, so that a thread that repeatedly acquires and releases
+ * buffers does not contend with other threads; the buffers cached by a thread
+ * that has terminated are returned to the pool.  Requests larger than the
+ * maximum pooled size are satisfied by {@code allocateDirect} and are not
+ * recycled.
+ *
+ * <p> The content of a buffer returned by {@code acquire} is undefined; unlike
+ * {@code allocateDirect}, memory is not zeroed when it is recycled.  The
+ * buffer's capacity is the requested capacity, its position is zero, its
+ * limit is its capacity and its byte order is {@link ByteOrder#BIG_ENDIAN
+ * BIG_ENDIAN}.  When a buffer is released it is invalidated: its capacity,
+ * limit and position become zero, so that a later attempt to access it
+ * through the released buffer object fails.  Views, slices and duplicates of
+ * a pooled buffer are <i>not</i> invalidated and must not be used once the
+ * buffer has been released.
+ *
+ * <p> If a pool is created with leak detection enabled, it keeps track of the
+ * buffers it has handed out.  A buffer that becomes unreachable without
+ * having been released is counted as a {@link #getLeakCount() leak} and its
+ * memory is reclaimed by the pool.  Leak detection costs one phantom
+ * reference and some bookkeeping per {@code acquire}.
+ *
+ * <p> A pool implements {@link BufferPoolMXBean} so that its usage may be
+ * monitored in the same way as the platform's {@code direct} and {@code
+ * mapped} buffer pools; the name of the management object is {@code
+ * java.nio:type=BufferPool,name=}<i>pool name</i>.  A pool is included in
+ * the list returned by {@link
+ * java.lang.management.ManagementFactory#getPlatformMXBeans(Class)
+ * ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)} and is
+ * registered with the {@link
+ * java.lang.management.ManagementFactory#getPlatformMBeanServer platform
+ * MBeanServer}, unless a management object of the same name is already
+ * registered there.  Once registered, a pool stays registered, and hence
+ * its slabs stay allocated, for the lifetime of the virtual machine.
+ *
+ * <p> Pools are safe for use by multiple concurrent threads.  </p>
+ *
+ * @since 1.8
+ */
+
+public final class DirectBufferPool implements BufferPoolMXBean {
+
+    /**
+     * The smallest size class, in bytes.
+     */
+    public static final int MIN_SIZE_CLASS = 64;
+
+    private static final int MIN_SHIFT = 6;
+
+    // Buffers of size classes below this size are carved out of slabs of
+    // this size; larger size classes are allocated one buffer per slab
+    private static final int SLAB_SIZE = 256 * 1024;
+
+    // Maximum number of free buffers of each size class cached per thread
+    private static final int THREAD_CACHE_SIZE = 8;
+
+    // Number of acquire calls between polls for leaked buffers
+    private static final int LEAK_POLL_INTERVAL = 64;
+
+    private final String name;
+    private final int maxPooledSize;
+    private final boolean detectLeaks;
+
+    // Global free lists, indexed by size class
+    private final ConcurrentLinkedQueue<Slot>[] freeLists;
+
+    private final ThreadLocal<ThreadCache> threadCaches =
+        new ThreadLocal<ThreadCache>() {
+            @Override
+            protected ThreadCache initialValue() {
+                reclaimDeadThreadCaches();
+                ThreadCache tc = new ThreadCache(Thread.currentThread(),
+                                                 freeLists.length);
+                allThreadCaches.add(tc);
+                return tc;
+            }
+        };
+
+    // The caches of all threads that have used the pool, so that the slots
+    // cached by threads that have terminated can be put back on the free
+    // lists
+    private final ConcurrentLinkedQueue<ThreadCache> allThreadCaches =
+        new ConcurrentLinkedQueue<>();
+
+    // Leak detection: outstanding leases and the queue of unreachable ones
+    private final Set<LeakRef> leases;
+    private final ReferenceQueue<ByteBuffer> leakQueue;
+
+    // -- Statistics --
+    private final AtomicLong leasedCount = new AtomicLong();
+    private final AtomicLong leasedCapacity = new AtomicLong();
+    private final AtomicLong slabMemory = new AtomicLong();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong slabCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private DirectBufferPool(String name, int maxPooledSize, boolean detectLeaks) {
+        this.name = name;
+        this.maxPooledSize = maxPooledSize;
+        this.detectLeaks = detectLeaks;
+        int nClasses = sizeClass(maxPooledSize) + 1;
+        this.freeLists = new ConcurrentLinkedQueue[nClasses];
+        for (int i = 0; i < nClasses; i++)
+            freeLists[i] = new ConcurrentLinkedQueue<>();
+        if (detectLeaks) {
+            this.leases = ConcurrentHashMap.newKeySet();
+            this.leakQueue = new ReferenceQueue<>();
+        } else {
+            this.leases = null;
+            this.leakQueue = null;
+        }
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param  name
+     *         The name of the pool, used to identify it for management
+     *
+     * @param  maxPooledSize
+     *         The largest buffer capacity, in bytes, that is recycled by the
+     *         pool; must be a power of two no smaller than {@value
+     *         #MIN_SIZE_CLASS}
+     *
+     * @param  detectLeaks
+     *         Whether to detect and reclaim buffers that become unreachable
+     *         without having been released
+     *
+     * @return  A new pool
+     *
+     * @throws  IllegalArgumentException
+     *          If {@code maxPooledSize} is not a power of two or is smaller
+     *          than {@value #MIN_SIZE_CLASS}
+     */
+    public static DirectBufferPool create(String name, int maxPooledSize,
+                                          boolean detectLeaks)
+    {
+        if (name == null)
+            throw new NullPointerException();
+        if (maxPooledSize < MIN_SIZE_CLASS
+            || Integer.bitCount(maxPooledSize) != 1)
+            throw new IllegalArgumentException("Illegal maximum pooled size: "
+                                               + maxPooledSize);
+        DirectBufferPool pool = new DirectBufferPool(name, maxPooledSize,
+                                                     detectLeaks);
+        BufferPoolRegistry.register(pool);
+        return pool;
+    }
+
+    // Returns the index of the size class for the given capacity
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_SIZE_CLASS)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * Acquires a direct byte buffer with the given capacity from this pool.
+     *
+     * <p> The returned buffer should be returned to the pool with the {@link
+     * #release release} method once it is no longer needed.  </p>
+     *
+     * @param  capacity
+     *         The new buffer's capacity, in bytes
+     *
+     * @return  A direct byte buffer of the given capacity, whose content is
+     *          undefined
+     *
+     * @throws  IllegalArgumentException
+     *          If the <tt>capacity</tt> is a negative integer
+     */
+    public ByteBuffer acquire(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        if (capacity > maxPooledSize)
+            return ByteBuffer.allocateDirect(capacity);
+
+        if (detectLeaks && (acquireCount.get() % LEAK_POLL_INTERVAL) == 0)
+            reclaimLeaks();
+        acquireCount.incrementAndGet();
+
+        int sc = sizeClass(capacity);
+        Slot slot = null;
+        Slot[] cache = threadCaches.get().slots[sc];
+        for (int i = cache.length - 1; i >= 0; i--) {
+            if ((slot = cache[i]) != null) {
+                cache[i] = null;
+                break;
+            }
+        }
+        if (slot == null && (slot = freeLists[sc].poll()) == null)
+            slot = refill(sc);
+
+        Lease lease = new Lease(this, slot, capacity);
+        DirectByteBuffer bb = new DirectByteBuffer(slot.address, capacity, lease);
+        if (detectLeaks) {
+            lease.ref = new LeakRef(bb, lease, leakQueue);
+            leases.add(lease.ref);
+        }
+        leasedCount.incrementAndGet();
+        leasedCapacity.addAndGet(capacity);
+        return bb;
+    }
+
+    /**
+     * Allocates a new slab for the given size class, places all but one of
+     * its buffers on the global free list and returns the remaining one.
+     * The slots cached by threads that have terminated are reclaimed first,
+     * and one of them is returned instead if any is of the size class.
+     */
+    private Slot refill(int sc) {
+        if (reclaimDeadThreadCaches()) {
+            Slot slot = freeLists[sc].poll();
+            if (slot != null)
+                return slot;
+        }
+        int size = MIN_SIZE_CLASS << sc;
+        int slabSize = Math.max(size, SLAB_SIZE);
+        DirectByteBuffer slab = (DirectByteBuffer)ByteBuffer.allocateDirect(slabSize);
+        slabMemory.addAndGet(slabSize);
+        slabCount.incrementAndGet();
+        long base = slab.address();
+        for (int off = size; off < slabSize; off += size)
+            freeLists[sc].offer(new Slot(slab, base + off, sc));
+        return new Slot(slab, base, sc);
+    }
+
+    /**
+     * Releases a buffer previously acquired from this pool, making its memory
+     * available to later requests.  The buffer is invalidated and must not be
+     * used after it has been released.
+     *
+     * <p> Buffers larger than the pool's maximum pooled size, which are not
+     * recycled, may also be passed to this method, which then has no effect.
+     * </p>
+     *
+     * @param  buffer
+     *         The buffer to release
+     *
+     * @throws  IllegalArgumentException
+     *          If the buffer was not acquired from this pool
+     *
+     * @throws  IllegalStateException
+     *          If the buffer has already been released
+     */
+    public void release(ByteBuffer buffer) {
+        if (!(buffer instanceof DirectByteBuffer))
+            throw new IllegalArgumentException("Not a pooled buffer");
+        Object att = ((DirectByteBuffer)buffer).attachment();
+        if (!(att instanceof Lease) || ((Lease)att).pool != this) {
+            if (att == null && buffer.capacity() > maxPooledSize)
+                return;
+            throw new IllegalArgumentException("Buffer not acquired from this pool");
+        }
+        Lease lease = (Lease)att;
+        if (!lease.released.compareAndSet(false, true))
+            throw new IllegalStateException("Buffer already released");
+        buffer.truncate();
+        if (detectLeaks) {
+            leases.remove(lease.ref);
+            lease.ref.clear();
+        }
+        leasedCount.decrementAndGet();
+        leasedCapacity.addAndGet(-lease.capacity);
+        recycle(lease.slot);
+    }
+
+    private void recycle(Slot slot) {
+        Slot[] cache = threadCaches.get().slots[slot.sizeClass];
+        for (int i = 0; i < cache.length; i++) {
+            if (cache[i] == null) {
+                cache[i] = slot;
+                return;
+            }
+        }
+        freeLists[slot.sizeClass].offer(slot);
+    }
+
+    /**
+     * Reclaims the memory of buffers that have become unreachable without
+     * having been released.
+     */
+    private void reclaimLeaks() {
+        LeakRef ref;
+        while ((ref = (LeakRef)leakQueue.poll()) != null) {
+            Lease lease = ref.lease;
+            if (leases.remove(ref) && lease.released.compareAndSet(false, true)) {
+                leakCount.incrementAndGet();
+                leasedCount.decrementAndGet();
+                leasedCapacity.addAndGet(-lease.capacity);
+                freeLists[lease.slot.sizeClass].offer(lease.slot);
+            }
+        }
+    }
+
+    /**
+     * Moves the slots cached by threads that have terminated to the global
+     * free lists.  A terminated thread no longer touches its cache, and
+     * finding that it has terminated orders its last updates to the cache
+     * before the reads made here.  The cache is removed from the list before
+     * its slots are moved so that concurrent callers do not move them twice.
+     *
+     * @return  {@code true} if any slot was moved
+     */
+    private boolean reclaimDeadThreadCaches() {
+        boolean moved = false;
+        for (ThreadCache tc : allThreadCaches) {
+            Thread t = tc.get();
+            if ((t == null || !t.isAlive()) && allThreadCaches.remove(tc)) {
+                for (Slot[] cache : tc.slots) {
+                    for (int i = 0; i < cache.length; i++) {
+                        if (cache[i] != null) {
+                            freeLists[cache[i].sizeClass].offer(cache[i]);
+                            cache[i] = null;
+                            moved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Discards the free buffers cached by the calling thread and by threads
+     * that have terminated, and those held in the pool's free lists, so that
+     * slabs that no longer have buffers in use can be freed.  Buffers cached
+     * by other live threads are not affected.
+     */
+    public void trim() {
+        reclaimDeadThreadCaches();
+        for (Slot[] cache : threadCaches.get().slots) {
+            for (int i = 0; i < cache.length; i++)
+                cache[i] = null;
+        }
+        for (ConcurrentLinkedQueue<Slot> freeList : freeLists)
+            freeList.clear();
+    }
+
+    /**
+     * Returns the largest buffer capacity, in bytes, that is recycled by this
+     * pool.
+     *
+     * @return  The maximum pooled size
+     */
+    public int getMaxPooledSize() {
+        return maxPooledSize;
+    }
+
+    /**
+     * Tells whether this pool detects leaked buffers.
+     *
+     * @return  {@code true} if leak detection is enabled
+     */
+    public boolean isLeakDetectionEnabled() {
+        return detectLeaks;
+    }
+
+    /**
+     * Returns the number of buffers that became unreachable without having
+     * been released, as detected so far.  Always zero if leak detection is
+     * not enabled.
+     *
+     * @return  The number of leaked buffers
+     */
+    public long getLeakCount() {
+        if (detectLeaks)
+            reclaimLeaks();
+        return leakCount.get();
+    }
+
+    /**
+     * Returns the number of pooled buffers acquired from this pool.
+     *
+     * @return  The number of calls to {@code acquire} for pooled sizes
+     */
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Returns the number of slabs allocated by this pool since it was
+     * created.
+     *
+     * @return  The number of slabs
+     */
+    public long getSlabCount() {
+        return slabCount.get();
+    }
+
+    // -- BufferPoolMXBean --
+
+    @Override
+    public ObjectName getObjectName() {
+        try {
+            return ObjectName.getInstance("java.nio:type=BufferPool,name="
+                                          + ObjectName.quote(name));
+        } catch (MalformedObjectNameException x) {
+            throw new IllegalArgumentException(x);
+        }
+    }
+
+    /**
+     * Returns the name of this pool.
+     *
+     * @return  The name of this pool
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns an estimate of the number of pooled buffers that have been
+     * acquired and not yet released.
+     *
+     * @return  An estimate of the number of buffers in use
+     */
+    @Override
+    public long getCount() {
+        return leasedCount.get();
+    }
+
+    /**
+     * Returns an estimate of the total capacity of the pooled buffers that
+     * have been acquired and not yet released.
+     *
+     * @return  An estimate of the total capacity of the buffers in use
+     */
+    @Override
+    public long getTotalCapacity() {
+        return leasedCapacity.get();
+    }
+
+    /**
+     * Returns an estimate of the direct memory, in bytes, that the pool has
+     * allocated for its slabs.
+     *
+     * @return  An estimate of the memory reserved by this pool
+     */
+    @Override
+    public long getMemoryUsed() {
+        return slabMemory.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName()
+            + "[name=" + name
+            + " inUse=" + getCount()
+            + " capacity=" + getTotalCapacity()
+            + " memory=" + getMemoryUsed() + "]";
+    }
+
+    /**
+     * A buffer-sized region of a slab.
+     */
+    private static final class Slot {
+        // the slab is referenced to keep its memory from being freed while
+        // any of its slots is reachable
+        final DirectByteBuffer slab;
+        final long address;
+        final int sizeClass;
+
+        Slot(DirectByteBuffer slab, long address, int sizeClass) {
+            this.slab = slab;
+            this.address = address;
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    /**
+     * The free slots cached by a thread, indexed by size class.  The thread
+     * is referenced weakly so that the cache does not keep a terminated
+     * thread reachable.
+     */
+    private static final class ThreadCache extends WeakReference<Thread> {
+        final Slot[][] slots;
+
+        ThreadCache(Thread thread, int nClasses) {
+            super(thread);
+            this.slots = new Slot[nClasses][THREAD_CACHE_SIZE];
+        }
+    }
+
+    /**
+     * The lease of a slot to an acquired buffer.  The lease is the buffer's
+     * attachment, so that {@code release} can find the slot and reject a
+     * second release of the same buffer.
+     */
+    private static final class Lease {
+        final DirectBufferPool pool;
+        final Slot slot;
+        final int capacity;
+        final AtomicBoolean released = new AtomicBoolean();
+        LeakRef ref;
+
+        Lease(DirectBufferPool pool, Slot slot, int capacity) {
+            this.pool = pool;
+            this.slot = slot;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Enqueued when an acquired buffer becomes unreachable, if leak detection
+     * is enabled.
+     */
+    private static final class LeakRef extends PhantomReference<ByteBuffer> {
+        final Lease lease;
+
+        LeakRef(ByteBuffer bb, Lease lease, ReferenceQueue<ByteBuffer> q) {
+            super(bb, q);
+            this.lease = lease;
+        }
+    }
+}
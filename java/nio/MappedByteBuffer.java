@@ -112,6 +112,17 @@ public abstract class MappedByteBuffer
         return (long)capacity() + mappingOffset;
     }
 
+    // Checks a range of this buffer, given as an index and a length, and
+    // returns the page-aligned offset of its start from the buffer's address
+    private long rangeOffset(int index, int length) {
+        if ((index | length | (index + length) | (capacity() - (index + length))) < 0)
+            throw new IndexOutOfBoundsException();
+        long a = address + index;
+        int ps = Bits.pageSize();
+        long offset = a % ps;
+        return (offset >= 0) ? offset : (ps + offset);
+    }
+
     /**
      * Tells whether or not this buffer's content is resident in physical
      * memory.
@@ -205,6 +216,42 @@ public abstract class MappedByteBuffer
         return this;
     }
 
+    /**
+     * Forces any changes made to a region of this buffer's content to be
+     * written to the storage device containing the mapped file.
+     *
+     * <p> This method behaves in the same way as the {@link #force() force}
+     * method, except that only changes made to the given region of the buffer
+     * are guaranteed to have been written when the method returns.  Changes
+     * made to the rest of the buffer may or may not have been written.  As
+     * the file is written in units of pages, the region is extended to the
+     * enclosing page boundaries. </p>
+     *
+     * @param  index
+     *         The index of the first byte of the region; must be non-negative
+     *         and no larger than the buffer's capacity
+     *
+     * @param  length
+     *         The length of the region; must be non-negative and no larger
+     *         than the buffer's capacity minus {@code index}
+     *
+     * @return  This buffer
+     *
+     * @throws IndexOutOfBoundsException
+     *         If the preconditions on the {@code index} and {@code length}
+     *         parameters do not hold
+     *
+     * @since 1.8
+     */
+    public final MappedByteBuffer force(int index, int length) {
+        checkMapped();
+        long offset = rangeOffset(index, length);
+        if ((address != 0) && (length != 0)) {
+            force0(fd, address + index - offset, (long)length + offset);
+        }
+        return this;
+    }
+
     private native boolean isLoaded0(long address, long length, int pageCount);
     private native void load0(long address, long length);
     private native void force0(FileDescriptor fd, long address, long length);
@@ -777,6 +777,282 @@ public abstract class FileChannel
      */
     public abstract int write(ByteBuffer src, long position) throws IOException;
 
+    /**
+     * Reads a sequence of bytes from this channel into a subsequence of the
+     * given buffers, starting at the given file position.
+     *
+     * <p> This method works in the same manner as the {@link
+     * #read(ByteBuffer[],int,int)} method, except that bytes are read starting
+     * at the given file position rather than at the channel's current
+     * position.  This method does not modify this channel's position.  If the
+     * given position is greater than the file's current size then no bytes
+     * are read.  Bytes are transferred into the buffers in order, each buffer
+     * being filled before the next one is used, until all of the buffers are
+     * full or the end of the file is reached.  </p>
+     *
+     * @implSpec The default implementation of this method invokes {@link
+     * #read(ByteBuffer,long)} for each buffer in turn, and so performs at
+     * least one read operation per buffer.
+     *
+     * @param  dsts
+     *         The buffers into which bytes are to be transferred
+     *
+     * @param  offset
+     *         The offset within the buffer array of the first buffer into
+     *         which bytes are to be transferred; must be non-negative and no
+     *         larger than <tt>dsts.length</tt>
+     *
+     * @param  length
+     *         The maximum number of buffers to be accessed; must be
+     *         non-negative and no larger than
+     *         <tt>dsts.length</tt>&nbsp;-&nbsp;<tt>offset</tt>
+     *
+     * @param  position
+     *         The file position at which the transfer is to begin;
+     *         must be non-negative
+     *
+     * @return  The number of bytes read, possibly zero, or <tt>-1</tt> if the
+     *          given position is greater than or equal to the file's current
+     *          size
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the preconditions on the <tt>offset</tt> and <tt>length</tt>
+     *          parameters do not hold
+     *
+     * @throws  IllegalArgumentException
+     *          If the position is negative
+     *
+     * @throws  NonReadableChannelException
+     *          If this channel was not opened for reading
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the read operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the read operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 1.8
+     */
+    public long read(ByteBuffer[] dsts, int offset, int length, long position)
+        throws IOException
+    {
+        if ((offset < 0) || (length < 0) || (offset > dsts.length - length))
+            throw new IndexOutOfBoundsException();
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer dst = dsts[i];
+            while (dst.hasRemaining()) {
+                int n = read(dst, position + total);
+                if (n < 0)
+                    return (total == 0) ? -1 : total;
+                if (n == 0)
+                    return total;
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes a sequence of bytes to this channel from a subsequence of the
+     * given buffers, starting at the given file position.
+     *
+     * <p> This method works in the same manner as the {@link
+     * #write(ByteBuffer[],int,int)} method, except that bytes are written
+     * starting at the given file position rather than at the channel's current
+     * position.  This method does not modify this channel's position.  If the
+     * given position is greater than the file's current size then the file
+     * will be grown to accommodate the new bytes; the values of any bytes
+     * between the previous end-of-file and the newly-written bytes are
+     * unspecified.  </p>
+     *
+     * @implSpec The default implementation of this method invokes {@link
+     * #write(ByteBuffer,long)} for each buffer in turn, and so performs at
+     * least one write operation per buffer.
+     *
+     * @param  srcs
+     *         The buffers from which bytes are to be retrieved
+     *
+     * @param  offset
+     *         The offset within the buffer array of the first buffer from
+     *         which bytes are to be retrieved; must be non-negative and no
+     *         larger than <tt>srcs.length</tt>
+     *
+     * @param  length
+     *         The maximum number of buffers to be accessed; must be
+     *         non-negative and no larger than
+     *         <tt>srcs.length</tt>&nbsp;-&nbsp;<tt>offset</tt>
+     *
+     * @param  position
+     *         The file position at which the transfer is to begin;
+     *         must be non-negative
+     *
+     * @return  The number of bytes written, possibly zero
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the preconditions on the <tt>offset</tt> and <tt>length</tt>
+     *          parameters do not hold
+     *
+     * @throws  IllegalArgumentException
+     *          If the position is negative
+     *
+     * @throws  NonWritableChannelException
+     *          If this channel was not opened for writing
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the write operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the write operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 1.8
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length, long position)
+        throws IOException
+    {
+        if ((offset < 0) || (length < 0) || (offset > srcs.length - length))
+            throw new IndexOutOfBoundsException();
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer src = srcs[i];
+            while (src.hasRemaining()) {
+                int n = write(src, position + total);
+                if (n <= 0)
+                    return total;
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Reads sequences of bytes from several regions of this channel's file,
+     * each into its own buffer.
+     *
+     * <p> For each index <i>i</i>, bytes are read into <tt>dsts[i]</tt>
+     * starting at file position <tt>positions[i]</tt>, in the same manner as
+     * by the {@link #read(ByteBuffer,long)} method, until the buffer is full
+     * or the end of the file is reached.  The regions may be given in any
+     * order and may overlap.  This method does not modify this channel's
+     * position.  On return, the position of each buffer has been advanced by
+     * the number of bytes read into it.  </p>
+     *
+     * @implSpec The default implementation of this method invokes {@link
+     * #read(ByteBuffer,long)} for each region in order of increasing file
+     * position, and so performs at least one read operation per region.
+     *
+     * @param  positions
+     *         The file positions at which the transfers are to begin;
+     *         must be non-negative
+     *
+     * @param  dsts
+     *         The buffers into which bytes are to be transferred
+     *
+     * @return  The total number of bytes read, possibly zero
+     *
+     * @throws  IllegalArgumentException
+     *          If the arrays have different lengths or a position is negative
+     *
+     * @throws  NonReadableChannelException
+     *          If this channel was not opened for reading
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the read operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the read operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 1.8
+     */
+    public long read(long[] positions, ByteBuffer[] dsts) throws IOException {
+        int n = positions.length;
+        if (dsts.length != n)
+            throw new IllegalArgumentException("Length mismatch");
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            if (positions[i] < 0)
+                throw new IllegalArgumentException("Negative position");
+            if (dsts[i] == null)
+                throw new NullPointerException();
+            if (i > 0 && positions[i - 1] > positions[i])
+                sorted = false;
+        }
+        // Visit the regions in file order so that the reads are sequential
+        // where the regions allow
+        int[] order = null;
+        if (!sorted) {
+            order = new int[n];
+            for (int i = 0; i < n; i++)
+                order[i] = i;
+            sortByPosition(order, order.clone(), 0, n, positions);
+        }
+        long total = 0;
+        for (int k = 0; k < n; k++) {
+            int i = (order == null) ? k : order[k];
+            ByteBuffer dst = dsts[i];
+            long pos = positions[i];
+            while (dst.hasRemaining()) {
+                int r = read(dst, pos);
+                if (r <= 0)
+                    break;
+                pos += r;
+                total += r;
+            }
+        }
+        return total;
+    }
+
+    // Sorts dst[lo..hi), a copy of src[lo..hi), into order of increasing
+    // position, keeping regions at the same position in their given order
+    private static void sortByPosition(int[] dst, int[] src, int lo, int hi,
+                                       long[] positions) {
+        if (hi - lo < 2)
+            return;
+        int mid = (lo + hi) >>> 1;
+        sortByPosition(src, dst, lo, mid, positions);
+        sortByPosition(src, dst, mid, hi, positions);
+        for (int i = lo, p = lo, q = mid; i < hi; i++) {
+            if (q >= hi || (p < mid && positions[src[p]] <= positions[src[q]]))
+                dst[i] = src[p++];
+            else
+                dst[i] = src[q++];
+        }
+    }
+
 
     // -- Memory-mapped buffers --
 
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2007, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.channels.spi;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared engine that performs the I/O operations of any number of
+ * asynchronous file channels using a small, fixed number of completion
+ * threads.
+ *
+ * <p> Channels opened by an engine with the {@link #open open} method do not
+ * dispatch each operation to a thread of their own. Instead, operations are
+ * placed on a submission queue shared by all channels of the engine. Each
+ * completion thread removes a batch of up to {@link #getBatchSize batchSize}
+ * pending operations at a time, orders the batch by channel and file position
+ * so that the underlying positional reads and writes access the file
+ * sequentially where possible, performs the operations and then invokes the
+ * completion handlers, or completes the futures, of the batch. The number of
+ * operations that may be outstanding is therefore bounded by memory, not by
+ * the number of threads.
+ *
+ * <p> Read operations in the same batch that target the same channel,
+ * position and number of bytes are coalesced: the bytes are read from the
+ * file once and copied into the buffers of the other operations, and each of
+ * the operations completes with the same result.
+ *
+ * <p> Completion handlers are invoked by the completion threads. A handler
+ * that blocks or takes a long time to complete delays the completion of
+ * other operations of the engine, and should hand off lengthy work to
+ * another thread. File locks are acquired by the {@link
+ * ForkJoinPool#commonPool() common pool} rather than by the completion
+ * threads, as acquiring a lock may block indefinitely.
+ *
+ * <p> The engine is not a kernel-level asynchronous I/O facility. The
+ * completion threads perform each operation with a blocking positional read
+ * or write on a {@link FileChannel}, so at most as many operations as there
+ * are completion threads are in progress in the operating system at any
+ * time. Batching, ordering and coalescing reduce the number of such calls,
+ * but for random reads that miss the file system cache the throughput is
+ * comparable to that of the default thread-pool based channel with the same
+ * number of threads; what the engine bounds is the number of threads, not
+ * the latency of each read.
+ *
+ * <p> All of the methods in this class are safe for use by multiple concurrent
+ * threads.  </p>
+ *
+ * @since 1.8
+ */
+
+public final class AsynchronousFileIoEngine {
+
+    /** Default maximum number of operations removed from the queue at once */
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** Orders operations by channel, then by file position */
+    private static final Comparator<Request> BY_CHANNEL_AND_POSITION =
+        new Comparator<Request>() {
+            public int compare(Request a, Request b) {
+                if (a.channel != b.channel) {
+                    return Integer.compare(a.channel.id, b.channel.id);
+                }
+                return Long.compare(a.position, b.position);
+            }
+        };
+
+    // lazy initialization of default engine
+    private static class DefaultHolder {
+        static final AsynchronousFileIoEngine engine =
+            new AsynchronousFileIoEngine(
+                Math.max(1, Runtime.getRuntime().availableProcessors() >> 1),
+                DEFAULT_BATCH_SIZE, null);
+    }
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger channelIds = new AtomicInteger();
+    private final Thread[] threads;
+    private final int batchSize;
+    private volatile boolean shutdown;
+
+    private AsynchronousFileIoEngine(int nThreads, int batchSize,
+                                     ThreadFactory factory)
+    {
+        this.batchSize = batchSize;
+        this.threads = new Thread[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            Runnable task = new Runnable() {
+                public void run() {
+                    completionLoop();
+                }
+            };
+            Thread t;
+            if (factory != null) {
+                t = factory.newThread(task);
+            } else {
+                t = new Thread(task, "AsynchronousFileIoEngine-" + i);
+                t.setDaemon(true);
+            }
+            threads[i] = t;
+        }
+        for (Thread t : threads)
+            t.start();
+    }
+
+    /**
+     * Returns the system-wide default engine, which uses one completion
+     * thread for every two available processors and daemon threads that
+     * are never shut down.
+     *
+     * @return  The default engine
+     */
+    public static AsynchronousFileIoEngine defaultEngine() {
+        return DefaultHolder.engine;
+    }
+
+    /**
+     * Creates a new engine.
+     *
+     * @param   nThreads
+     *          The number of completion threads
+     * @param   batchSize
+     *          The maximum number of pending operations that a completion
+     *          thread removes from the submission queue at a time
+     * @param   threadFactory
+     *          The factory used to create the completion threads, or {@code
+     *          null} to create daemon threads
+     *
+     * @return  A new engine
+     *
+     * @throws  IllegalArgumentException
+     *          If {@code nThreads} or {@code batchSize} is not positive
+     */
+    public static AsynchronousFileIoEngine create(int nThreads, int batchSize,
+                                                  ThreadFactory threadFactory)
+    {
+        if (nThreads <= 0)
+            throw new IllegalArgumentException("'nThreads' must be > 0");
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("'batchSize' must be > 0");
+        return new AsynchronousFileIoEngine(nThreads, batchSize, threadFactory);
+    }
+
+    /**
+     * Returns the number of completion threads of this engine.
+     *
+     * @return  The number of completion threads
+     */
+    public int getThreadCount() {
+        return threads.length;
+    }
+
+    /**
+     * Returns the maximum number of pending operations that a completion
+     * thread removes from the submission queue at a time.
+     *
+     * @return  The batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of operations that have been submitted to this
+     * engine but not yet taken up by a completion thread.
+     *
+     * @return  The number of queued operations
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Opens or creates a file, returning an asynchronous file channel whose
+     * I/O operations are performed by this engine.
+     *
+     * <p> The {@code options} and {@code attrs} parameters have the same
+     * meaning as for the {@link FileChannel#open(Path,Set,FileAttribute[])
+     * FileChannel.open} method, which is used to open the file.
+     *
+     * @param   file
+     *          The path of the file to open or create
+     * @param   options
+     *          Options specifying how the file is opened
+     * @param   attrs
+     *          An optional list of file attributes to set atomically when
+     *          creating the file
+     *
+     * @return  A new asynchronous file channel
+     *
+     * @throws  ShutdownChannelGroupException
+     *          If this engine has been shut down
+     * @throws  IllegalArgumentException
+     *          If the set contains an invalid combination of options
+     * @throws  UnsupportedOperationException
+     *          If the {@code file} is associated with a provider that does not
+     *          support creating file channels, or an unsupported open option is
+     *          specified
+     * @throws  IOException
+     *          If an I/O error occurs
+     * @throws  SecurityException
+     *          If a security manager is installed and it denies an
+     *          unspecified permission required by the implementation
+     */
+    public AsynchronousFileChannel open(Path file,
+                                        Set<? extends OpenOption> options,
+                                        FileAttribute<?>... attrs)
+        throws IOException
+    {
+        if (shutdown)
+            throw new ShutdownChannelGroupException();
+        boolean reading = options.contains(StandardOpenOption.READ) ||
+            !options.contains(StandardOpenOption.WRITE) &&
+            !options.contains(StandardOpenOption.APPEND);
+        boolean writing = options.contains(StandardOpenOption.WRITE) ||
+            options.contains(StandardOpenOption.APPEND);
+        FileChannel fc = FileChannel.open(file, options, attrs);
+        return new EngineFileChannel(this, channelIds.incrementAndGet(), fc,
+                                     reading, writing);
+    }
+
+    /**
+     * Initiates an orderly shutdown of this engine. Operations already
+     * submitted are performed, after which the completion threads terminate.
+     * Operations submitted after this method is invoked fail with {@link
+     * ShutdownChannelGroupException}. This method has no effect on the
+     * {@link #defaultEngine() default engine}.
+     */
+    public void shutdown() {
+        if (this == DefaultHolder.engine || shutdown)
+            return;
+        shutdown = true;
+        // passed on from thread to thread, see completionLoop
+        queue.add(Request.POISON);
+    }
+
+    /**
+     * Tells whether or not this engine has been shut down.
+     *
+     * @return  {@code true} if this engine has been shut down
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Submits an operation, failing it immediately if this engine has been
+     * shut down.
+     */
+    void submit(Request r) {
+        if (shutdown) {
+            r.fail(new ShutdownChannelGroupException());
+            return;
+        }
+        queue.add(r);
+        // if shutdown raced with the add, the request may be queued after
+        // the poison; whoever removes it from the queue is responsible for it
+        if (shutdown && queue.remove(r))
+            r.fail(new ShutdownChannelGroupException());
+    }
+
+    /**
+     * Runs an operation that may block indefinitely, such as acquiring a
+     * file lock, outside of the completion threads.
+     */
+    void submitBlocking(final Callable<?> op, final Request r) {
+        ForkJoinPool.commonPool().execute(new Runnable() {
+            public void run() {
+                final Object[] result = new Object[1];
+                try {
+                    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                        private boolean done;
+                        public boolean block() throws InterruptedException {
+                            try {
+                                result[0] = op.call();
+                            } catch (InterruptedException x) {
+                                throw x;
+                            } catch (Exception x) {
+                                result[0] = x;
+                            }
+                            return done = true;
+                        }
+                        public boolean isReleasable() {
+                            return done;
+                        }
+                    });
+                } catch (InterruptedException x) {
+                    result[0] = new FileLockInterruptionException();
+                }
+                if (result[0] instanceof Throwable) {
+                    r.fail((Throwable)result[0]);
+                } else {
+                    r.complete(result[0]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Performs batches of operations until the poison queued by shutdown is
+     * taken. Operations submitted before shutdown are queued ahead of the
+     * poison, so they are all taken first. The thread that takes the poison
+     * fails any operations queued behind it, then queues it again for the
+     * next thread to take.
+     */
+    private void completionLoop() {
+        ArrayList<Request> batch = new ArrayList<>(batchSize);
+        for (;;) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException x) {
+                // the poison is needed to stop
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            boolean stop = batch.remove(Request.POISON);
+            try {
+                process(batch);
+            } finally {
+                batch.clear();
+                if (stop) {
+                    queue.drainTo(batch);
+                    for (Request r : batch) {
+                        if (r != Request.POISON)
+                            r.fail(new ShutdownChannelGroupException());
+                    }
+                    queue.add(Request.POISON);
+                }
+            }
+            if (stop)
+                return;
+        }
+    }
+
+    /**
+     * Performs a batch of operations, coalescing reads of the same range of
+     * the same channel, and completes them.
+     */
+    private void process(ArrayList<Request> batch) {
+        int n = batch.size();
+        Request[] ops = batch.toArray(new Request[n]);
+        if (n > 1)
+            Arrays.sort(ops, BY_CHANNEL_AND_POSITION);
+        int i = 0;
+        while (i < n) {
+            Request r = ops[i];
+            int j = i + 1;
+            if (r.kind == Request.READ) {
+                while (j < n && r.sameRange(ops[j]))
+                    j++;
+            }
+            Object result;
+            try {
+                result = r.perform();
+            } catch (ClosedChannelException x) {
+                result = new AsynchronousCloseException();
+            } catch (Throwable x) {
+                result = x;
+            }
+            r.finish(result);
+            for (int k = i + 1; k < j; k++) {
+                Request dup = ops[k];
+                if (result instanceof Integer && ((Integer)result) > 0) {
+                    ByteBuffer src = r.buffer.duplicate();
+                    src.limit(src.position());
+                    src.position(src.limit() - (Integer)result);
+                    dup.buffer.put(src);
+                }
+                dup.finish(result);
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * A pending operation on a channel of this engine.
+     */
+    static final class Request {
+        static final int READ = 0;
+        static final int WRITE = 1;
+        static final int OTHER = 2;
+
+        static final Request POISON = new Request(OTHER, null, null, -1L, null,
+                                                  null, null);
+
+        final int kind;
+        final EngineFileChannel channel;
+        final ByteBuffer buffer;
+        final long position;
+        final Object attachment;
+        final CompletionHandler<Object,Object> handler;
+        final CompletableFuture<Object> future;
+
+        @SuppressWarnings("unchecked")
+        Request(int kind, EngineFileChannel channel, ByteBuffer buffer,
+                long position, Object attachment,
+                CompletionHandler<?,?> handler, CompletableFuture<?> future)
+        {
+            this.kind = kind;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.position = position;
+            this.attachment = attachment;
+            this.handler = (CompletionHandler<Object,Object>)handler;
+            this.future = (CompletableFuture<Object>)future;
+        }
+
+        boolean sameRange(Request other) {
+            return other.kind == READ &&
+                other.channel == channel &&
+                other.position == position &&
+                other.buffer.remaining() == buffer.remaining();
+        }
+
+        Object perform() throws IOException {
+            FileChannel fc = channel.fc;
+            switch (kind) {
+                case READ:
+                    return fc.read(buffer, position);
+                case WRITE:
+                    return fc.write(buffer, position);
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        void finish(Object result) {
+            if (result instanceof Throwable) {
+                fail((Throwable)result);
+            } else {
+                complete(result);
+            }
+        }
+
+        void complete(Object result) {
+            if (future != null) {
+                future.complete(result);
+                return;
+            }
+            try {
+                handler.completed(result, attachment);
+            } catch (Throwable x) {
+                uncaught(x);
+            }
+        }
+
+        void fail(Throwable exc) {
+            if (future != null) {
+                future.completeExceptionally(exc);
+                return;
+            }
+            try {
+                handler.failed(exc, attachment);
+            } catch (Throwable x) {
+                uncaught(x);
+            }
+        }
+
+        // completion handlers must not terminate the completion threads
+        private static void uncaught(Throwable x) {
+            Thread t = Thread.currentThread();
+            Thread.UncaughtExceptionHandler ueh = t.getUncaughtExceptionHandler();
+            if (ueh != null)
+                ueh.uncaughtException(t, x);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2007, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.channels.spi;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * An asynchronous file channel whose I/O operations are performed by the
+ * completion threads of an {@link AsynchronousFileIoEngine}, on top of the
+ * positional read and write methods of a {@link FileChannel}.
+ */
+
+final class EngineFileChannel extends AsynchronousFileChannel {
+    private final AsynchronousFileIoEngine engine;
+    final int id;
+    final FileChannel fc;
+    private final boolean reading;
+    private final boolean writing;
+
+    EngineFileChannel(AsynchronousFileIoEngine engine, int id, FileChannel fc,
+                      boolean reading, boolean writing)
+    {
+        this.engine = engine;
+        this.id = id;
+        this.fc = fc;
+        this.reading = reading;
+        this.writing = writing;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return fc.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fc.close();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return fc.size();
+    }
+
+    @Override
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        if (size < 0L)
+            throw new IllegalArgumentException("Negative size");
+        if (!writing)
+            throw new NonWritableChannelException();
+        fc.truncate(size);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        fc.force(metaData);
+    }
+
+    @Override
+    public <A> void lock(long position, long size, boolean shared,
+                         A attachment,
+                         CompletionHandler<FileLock,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        submitLock(position, size, shared, attachment, handler, null);
+    }
+
+    @Override
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        CompletableFuture<FileLock> result = new CompletableFuture<>();
+        submitLock(position, size, shared, null, null, result);
+        return result;
+    }
+
+    private void submitLock(final long position, final long size,
+                            final boolean shared, Object attachment,
+                            CompletionHandler<?,?> handler,
+                            CompletableFuture<?> future)
+    {
+        checkLock(shared);
+        AsynchronousFileIoEngine.Request r =
+            new AsynchronousFileIoEngine.Request(
+                AsynchronousFileIoEngine.Request.OTHER, this, null, position,
+                attachment, handler, future);
+        if (!isOpen()) {
+            r.fail(new ClosedChannelException());
+            return;
+        }
+        engine.submitBlocking(new Callable<FileLock>() {
+            public FileLock call() throws IOException {
+                FileLock fl = fc.lock(position, size, shared);
+                return new EngineFileLock(EngineFileChannel.this, fl);
+            }
+        }, r);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared)
+        throws IOException
+    {
+        checkLock(shared);
+        FileLock fl = fc.tryLock(position, size, shared);
+        return (fl == null) ? null : new EngineFileLock(this, fl);
+    }
+
+    private void checkLock(boolean shared) {
+        if (shared && !reading)
+            throw new NonReadableChannelException();
+        if (!shared && !writing)
+            throw new NonWritableChannelException();
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, long position, A attachment,
+                         CompletionHandler<Integer,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        submitRead(dst, position, attachment, handler, null);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        submitRead(dst, position, null, null, result);
+        return result;
+    }
+
+    private void submitRead(ByteBuffer dst, long position, Object attachment,
+                            CompletionHandler<?,?> handler,
+                            CompletableFuture<?> future)
+    {
+        if (dst == null)
+            throw new NullPointerException();
+        if (position < 0L)
+            throw new IllegalArgumentException("Negative position");
+        if (!reading)
+            throw new NonReadableChannelException();
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("Read-only buffer");
+        submit(AsynchronousFileIoEngine.Request.READ, dst, position,
+               attachment, handler, future);
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, long position, A attachment,
+                          CompletionHandler<Integer,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        submitWrite(src, position, attachment, handler, null);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src, long position) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        submitWrite(src, position, null, null, result);
+        return result;
+    }
+
+    private void submitWrite(ByteBuffer src, long position, Object attachment,
+                             CompletionHandler<?,?> handler,
+                             CompletableFuture<?> future)
+    {
+        if (src == null)
+            throw new NullPointerException();
+        if (position < 0L)
+            throw new IllegalArgumentException("Negative position");
+        if (!writing)
+            throw new NonWritableChannelException();
+        submit(AsynchronousFileIoEngine.Request.WRITE, src, position,
+               attachment, handler, future);
+    }
+
+    private void submit(int kind, ByteBuffer buf, long position,
+                        Object attachment, CompletionHandler<?,?> handler,
+                        CompletableFuture<?> future)
+    {
+        AsynchronousFileIoEngine.Request r =
+            new AsynchronousFileIoEngine.Request(kind, this, buf, position,
+                                                 attachment, handler, future);
+        if (!isOpen()) {
+            r.fail(new ClosedChannelException());
+            return;
+        }
+        // no-op if the buffer has no space/bytes remaining
+        if (!buf.hasRemaining()) {
+            r.complete(0);
+            return;
+        }
+        engine.submit(r);
+    }
+
+    /**
+     * A file lock whose channel is the asynchronous channel rather than the
+     * underlying file channel.
+     */
+    private static final class EngineFileLock extends FileLock {
+        private final FileLock delegate;
+
+        EngineFileLock(EngineFileChannel channel, FileLock delegate) {
+            super(channel, delegate.position(), delegate.size(),
+                  delegate.isShared());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isValid() {
+            return delegate.isValid();
+        }
+
+        @Override
+        public void release() throws IOException {
+            delegate.release();
+        }
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.text;
+
+import static java.text.DateFormatSymbols.*;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, thread-safe snapshot of a {@link SimpleDateFormat} that
+ * formats dates into a <code>StringBuilder</code>.
+ *
+ * <p>A <code>SimpleDateFormat</code> is not safe for use by concurrent
+ * threads, since it formats a date by setting the time of its calendar.  A
+ * compiled format captures the compiled pattern, the date format symbols,
+ * the time zone and the names of the calendar fields of a simple date
+ * format once, when it is created by {@link SimpleDateFormat#compile()} or
+ * {@link #of(String, Locale)}, and can then be shared freely.  It computes
+ * the calendar fields of a date arithmetically, without a
+ * <code>Calendar</code>:
+ *
+ * <blockquote><pre>
+ * private static final CompiledDateFormat STAMP =
+ *     CompiledDateFormat.of("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
+ * ...
+ * STAMP.format(System.currentTimeMillis(), sb).append(' ');
+ * </pre></blockquote>
+ *
+ * <p>The text produced for a date is the text that the simple date format
+ * would produce.  Dates up to the end of the Gregorian cutover year,
+ * calendars other than <code>GregorianCalendar</code>, and patterns using
+ * week fields (<code>Y</code>, <code>w</code>, <code>W</code>), time zone names
+ * (<code>z</code>) or stand-alone month names are supported, but are
+ * formatted by a copy of the simple date format, which is created once for
+ * each thread that uses the compiled format.
+ *
+ * @see SimpleDateFormat
+ * @since 1.8
+ */
+public final class CompiledDateFormat {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /** The default Gregorian cutover, 1582-10-15T00:00:00Z */
+    private static final long DEFAULT_CUTOVER = -12219292800000L;
+
+    /** Days before the first of each month in a common year */
+    private static final int[] DAYS_BEFORE_MONTH = {
+        0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334
+    };
+
+    /** Compiled formats created by of(String, Locale) */
+    private static final ConcurrentMap<String, CompiledDateFormat> cache
+        = new ConcurrentHashMap<>();
+
+    /** Bounds the size of the cache */
+    private static final int CACHE_LIMIT = 256;
+
+    /** The format captured, never modified; cloned for fallback */
+    private final SimpleDateFormat prototype;
+
+    /** Whether dates are formatted by a clone of prototype */
+    private final boolean fallback;
+
+    /** The clone of prototype used by each thread for fallback */
+    private final ThreadLocal<SimpleDateFormat> fallbackFormat
+        = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return toFormat();
+            }
+        };
+
+    private final char[] compiledPattern;
+    private final TimeZone zone;
+    private final char zeroDigit;
+
+    /**
+     * For each field of the compiled pattern, in order, the names of its
+     * values, or null if the field is numeric.
+     */
+    private final String[][] names;
+
+    /**
+     * Creates a compiled format with the state of the given simple date
+     * format, which must not be modified.  zeroDigit is 0 if the digits of
+     * the format's number format are not known.
+     */
+    CompiledDateFormat(SimpleDateFormat format, char[] compiledPattern,
+                       DateFormatSymbols formatData,
+                       boolean useDateFormatSymbols,
+                       boolean forceStandaloneForm, Locale locale,
+                       char zeroDigit) {
+        this.prototype = format;
+        this.compiledPattern = compiledPattern;
+        this.zeroDigit = zeroDigit;
+        Calendar calendar = format.getCalendar();
+        this.zone = calendar.getTimeZone();
+
+        boolean supported = zeroDigit != 0
+            && calendar.getClass() == GregorianCalendar.class
+            && ((GregorianCalendar) calendar).getGregorianChange().getTime()
+               == DEFAULT_CUTOVER;
+        int fields = 0;
+        for (int i = 0; i < compiledPattern.length; ) {
+            int tag = compiledPattern[i] >>> 8;
+            int count = compiledPattern[i++] & 0xff;
+            if (count == 255) {
+                count = compiledPattern[i++] << 16;
+                count |= compiledPattern[i++];
+            }
+            if (tag == SimpleDateFormat.TAG_QUOTE_CHARS)
+                i += count;
+            else if (tag != SimpleDateFormat.TAG_QUOTE_ASCII_CHAR)
+                fields++;
+        }
+        names = new String[fields][];
+
+        int f = 0;
+        for (int i = 0; supported && i < compiledPattern.length; ) {
+            int tag = compiledPattern[i] >>> 8;
+            int count = compiledPattern[i++] & 0xff;
+            if (count == 255) {
+                count = compiledPattern[i++] << 16;
+                count |= compiledPattern[i++];
+            }
+            int style = (count >= 4) ? Calendar.LONG : Calendar.SHORT;
+            switch (tag) {
+            case SimpleDateFormat.TAG_QUOTE_ASCII_CHAR:
+                continue;
+            case SimpleDateFormat.TAG_QUOTE_CHARS:
+                i += count;
+                continue;
+            case PATTERN_ERA:
+                names[f] = useDateFormatSymbols ? formatData.getEras()
+                    : displayNames(calendar, Calendar.ERA, 2, style, locale);
+                break;
+            case PATTERN_MONTH:
+                if (count >= 3) {
+                    if (useDateFormatSymbols) {
+                        names[f] = (count >= 4) ? formatData.getMonths()
+                                                : formatData.getShortMonths();
+                    } else if (forceStandaloneForm) {
+                        supported = false;
+                    } else {
+                        names[f] = displayNames(calendar, Calendar.MONTH, 12,
+                                                style, locale);
+                    }
+                }
+                break;
+            case PATTERN_MONTH_STANDALONE:
+                if (count >= 3) {
+                    if (locale == null) {
+                        names[f] = (count >= 4) ? formatData.getMonths()
+                                                : formatData.getShortMonths();
+                    } else {
+                        supported = false;
+                    }
+                }
+                break;
+            case PATTERN_DAY_OF_WEEK:
+                names[f] = !useDateFormatSymbols
+                    ? displayNames(calendar, Calendar.DAY_OF_WEEK, 8, style,
+                                   locale)
+                    : (count >= 4) ? formatData.getWeekdays()
+                                   : formatData.getShortWeekdays();
+                break;
+            case PATTERN_AM_PM:
+                names[f] = useDateFormatSymbols ? formatData.getAmPmStrings()
+                    : displayNames(calendar, Calendar.AM_PM, 2, style, locale);
+                break;
+            case PATTERN_WEEK_OF_YEAR:
+            case PATTERN_WEEK_OF_MONTH:
+            case PATTERN_WEEK_YEAR:
+            case PATTERN_ZONE_NAME:
+                supported = false;
+                break;
+            default:
+                break;
+            }
+            f++;
+        }
+        this.fallback = !supported;
+    }
+
+    /**
+     * Returns the display names of the values of a calendar field, in an
+     * array indexed by value, as SimpleDateFormat obtains them from its
+     * calendar.
+     */
+    private static String[] displayNames(Calendar calendar, int field,
+                                         int length, int style,
+                                         Locale locale) {
+        Calendar cal = (Calendar) calendar.clone();
+        String[] names = new String[length];
+        for (int value = cal.getActualMinimum(field);
+             value <= cal.getActualMaximum(field) && value < length; value++) {
+            cal.set(field, value);
+            names[value] = cal.getDisplayName(field, style, locale);
+        }
+        return names;
+    }
+
+    /**
+     * Returns a compiled format for the given pattern and the date format
+     * symbols of the given locale, in the default time zone.  Compiled
+     * formats are cached, so that formats for the same pattern, locale and
+     * time zone share their state.
+     *
+     * @param pattern a pattern as described in {@link SimpleDateFormat}
+     * @param locale the locale whose date format symbols are used
+     * @return the compiled format
+     * @exception NullPointerException if <code>pattern</code> or
+     *            <code>locale</code> is null
+     * @exception IllegalArgumentException if the given pattern is invalid
+     */
+    public static CompiledDateFormat of(String pattern, Locale locale) {
+        TimeZone zone = TimeZone.getDefault();
+        String key = locale.toLanguageTag() + '\u0000' + zone.getID() +
+                     '\u0000' + pattern;
+        CompiledDateFormat format = cache.get(key);
+        if (format == null) {
+            SimpleDateFormat sdf = new SimpleDateFormat(pattern, locale);
+            sdf.setTimeZone(zone);
+            format = sdf.compile();
+            if (cache.size() >= CACHE_LIMIT)
+                cache.clear();
+            CompiledDateFormat prev = cache.putIfAbsent(key, format);
+            if (prev != null)
+                format = prev;
+        }
+        return format;
+    }
+
+    /**
+     * Returns a new simple date format with the state captured by this
+     * compiled format, for example to parse text that it produced.
+     *
+     * @return a new <code>SimpleDateFormat</code>
+     */
+    public SimpleDateFormat toFormat() {
+        return (SimpleDateFormat) prototype.clone();
+    }
+
+    /**
+     * Returns the pattern of the captured simple date format.
+     *
+     * @return the pattern
+     * @see SimpleDateFormat#toPattern()
+     */
+    public String toPattern() {
+        return prototype.toPattern();
+    }
+
+    /**
+     * Returns the time zone in which dates are formatted.
+     *
+     * @return a copy of the time zone
+     */
+    public TimeZone getTimeZone() {
+        return (TimeZone) zone.clone();
+    }
+
+    /**
+     * Formats a date.
+     *
+     * @param date the date to format
+     * @return the formatted string
+     */
+    public String format(Date date) {
+        return format(date.getTime(), new StringBuilder()).toString();
+    }
+
+    /**
+     * Formats a date given as milliseconds from the epoch.
+     *
+     * @param millis the date, in milliseconds from 1970-01-01T00:00:00Z
+     * @return the formatted string
+     */
+    public String format(long millis) {
+        return format(millis, new StringBuilder()).toString();
+    }
+
+    /**
+     * Formats a date, appending the result to the given builder.
+     *
+     * @param date the date to format
+     * @param result where the text is to be appended
+     * @return <code>result</code>
+     */
+    public StringBuilder format(Date date, StringBuilder result) {
+        return format(date.getTime(), result);
+    }
+
+    /**
+     * Formats a date given as milliseconds from the epoch, appending the
+     * result to the given builder.
+     *
+     * @param millis the date, in milliseconds from 1970-01-01T00:00:00Z
+     * @param result where the text is to be appended
+     * @return <code>result</code>
+     */
+    public StringBuilder format(long millis, StringBuilder result) {
+        Objects.requireNonNull(result);
+        int offset = zone.getOffset(millis);
+        long local = millis + offset;
+        long days = Math.floorDiv(local, DAY_MILLIS);
+        if (fallback || local < DEFAULT_CUTOVER) {
+            return result.append(fallbackFormat.get().format(new Date(millis)));
+        }
+        int millisOfDay = (int) Math.floorMod(local, DAY_MILLIS);
+
+        // proleptic Gregorian date of the day number, with years starting
+        // in March so that the leap day is last
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doyMarch = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doyMarch + 2) / 153;
+        int dayOfMonth = doyMarch - (153 * mp + 2) / 5 + 1;
+        int month = (mp < 10) ? mp + 2 : mp - 10;    // 0-based
+        int year = (int) (yoe + era * 400) + ((month <= 1) ? 1 : 0);
+        if (year == 1582) {
+            // the days of the cutover year are numbered from its Julian start
+            return result.append(fallbackFormat.get().format(new Date(millis)));
+        }
+        boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+        int dayOfYear = DAYS_BEFORE_MONTH[month] + dayOfMonth
+                        + ((leap && month > 1) ? 1 : 0);
+        int dayOfWeek = (int) Math.floorMod(days + 4, 7L) + 1;  // SUNDAY is 1
+        int hourOfDay = millisOfDay / 3600000;
+
+        int f = 0;
+        for (int i = 0; i < compiledPattern.length; ) {
+            int tag = compiledPattern[i] >>> 8;
+            int count = compiledPattern[i++] & 0xff;
+            if (count == 255) {
+                count = compiledPattern[i++] << 16;
+                count |= compiledPattern[i++];
+            }
+
+            String[] fieldNames;
+            switch (tag) {
+            case SimpleDateFormat.TAG_QUOTE_ASCII_CHAR:
+                result.append((char)count);
+                continue;
+            case SimpleDateFormat.TAG_QUOTE_CHARS:
+                result.append(compiledPattern, i, count);
+                i += count;
+                continue;
+            default:
+                fieldNames = names[f++];
+                break;
+            }
+
+            switch (tag) {
+            case PATTERN_ERA:
+                String eraName = fieldNames[GregorianCalendar.AD];
+                result.append(eraName == null ? "" : eraName);
+                break;
+            case PATTERN_YEAR:
+                if (count != 2)
+                    zeroPaddingNumber(year, count, false, result);
+                else
+                    zeroPaddingNumber(year, 2, true, result);
+                break;
+            case PATTERN_MONTH:
+            case PATTERN_MONTH_STANDALONE:
+                appendName(fieldNames, month, month + 1, count, result);
+                break;
+            case PATTERN_DAY_OF_MONTH:
+                zeroPaddingNumber(dayOfMonth, count, false, result);
+                break;
+            case PATTERN_HOUR_OF_DAY1:
+                zeroPaddingNumber(hourOfDay == 0 ? 24 : hourOfDay, count, false,
+                                  result);
+                break;
+            case PATTERN_HOUR_OF_DAY0:
+                zeroPaddingNumber(hourOfDay, count, false, result);
+                break;
+            case PATTERN_MINUTE:
+                zeroPaddingNumber(millisOfDay / 60000 % 60, count, false,
+                                  result);
+                break;
+            case PATTERN_SECOND:
+                zeroPaddingNumber(millisOfDay / 1000 % 60, count, false, result);
+                break;
+            case PATTERN_MILLISECOND:
+                zeroPaddingNumber(millisOfDay % 1000, count, false, result);
+                break;
+            case PATTERN_DAY_OF_WEEK:
+                String dayName = fieldNames[dayOfWeek];
+                if (dayName != null)
+                    result.append(dayName);
+                break;
+            case PATTERN_DAY_OF_YEAR:
+                zeroPaddingNumber(dayOfYear, count, false, result);
+                break;
+            case PATTERN_DAY_OF_WEEK_IN_MONTH:
+                zeroPaddingNumber((dayOfMonth - 1) / 7 + 1, count, false,
+                                  result);
+                break;
+            case PATTERN_AM_PM:
+                String amPm = fieldNames[hourOfDay / 12];
+                if (amPm != null)
+                    result.append(amPm);
+                break;
+            case PATTERN_HOUR1:
+                int hour = hourOfDay % 12;
+                zeroPaddingNumber(hour == 0 ? 12 : hour, count, false, result);
+                break;
+            case PATTERN_HOUR0:
+                zeroPaddingNumber(hourOfDay % 12, count, false, result);
+                break;
+            case PATTERN_ISO_DAY_OF_WEEK:
+                zeroPaddingNumber(dayOfWeek == Calendar.SUNDAY
+                                  ? 7 : dayOfWeek - 1, count, false, result);
+                break;
+            case PATTERN_ZONE_VALUE: {
+                // "-/+hhmm"
+                int value = offset / 60000;
+                result.append(value >= 0 ? '+' : '-');
+                int num = (value / 60) * 100 + (value % 60);
+                appendDigits(Math.abs(num), 4, result);
+                break;
+            }
+            case PATTERN_ISO_ZONE: {
+                if (offset == 0) {
+                    result.append('Z');
+                    break;
+                }
+                int value = offset / 60000;
+                result.append(value >= 0 ? '+' : '-');
+                value = Math.abs(value);
+                appendDigits(value / 60, 2, result);
+                if (count == 1)
+                    break;
+                if (count == 3)
+                    result.append(':');
+                appendDigits(value % 60, 2, result);
+                break;
+            }
+            default:
+                throw new AssertionError(tag);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends the name of a value if there is one, and otherwise its
+     * number.
+     */
+    private void appendName(String[] fieldNames, int value, int number,
+                            int count, StringBuilder result) {
+        String name = (fieldNames != null) ? fieldNames[value] : null;
+        if (name != null)
+            result.append(name);
+        else
+            zeroPaddingNumber(number, count, false, result);
+    }
+
+    /**
+     * Appends a non-negative number with at least minDigits digits, and
+     * only its last two if twoDigits is true, as SimpleDateFormat does.
+     */
+    private void zeroPaddingNumber(int value, int minDigits, boolean twoDigits,
+                                   StringBuilder result) {
+        if (twoDigits)
+            value %= 100;
+        int n = 1;
+        for (int v = value; v >= 10; v /= 10)
+            n++;
+        for (int i = n; i < minDigits; i++)
+            result.append(zeroDigit);
+        for (int d = n - 1; d >= 0; d--) {
+            int p = 1;
+            for (int j = 0; j < d; j++)
+                p *= 10;
+            result.append((char)(zeroDigit + value / p % 10));
+        }
+    }
+
+    /**
+     * Appends a non-negative number in ASCII digits, padded with zeros to
+     * the given width.
+     */
+    private static void appendDigits(int value, int width,
+                                     StringBuilder result) {
+        int p = 1;
+        for (int i = 1; i < width; i++)
+            p *= 10;
+        for (; p > 1 && value < p; p /= 10)
+            result.append('0');
+        result.append(value);
+    }
+
+    /**
+     * Returns a string identifying this compiled format.
+     *
+     * @return a string identifying this compiled format
+     */
+    @Override
+    public String toString() {
+        return "CompiledDateFormat[" + toPattern() + "]";
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.text;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, thread-safe snapshot of a {@link DecimalFormat} that formats
+ * <code>double</code> and <code>long</code> values into a
+ * <code>StringBuilder</code>.
+ *
+ * <p>A <code>DecimalFormat</code> is not safe for use by concurrent
+ * threads, and formats a <code>double</code> by way of its
+ * <code>Double.toString</code> digits.  A compiled format captures the
+ * prefixes, suffixes, symbols, digit counts, grouping, multiplier and
+ * rounding mode of a decimal format once, when it is created by {@link
+ * DecimalFormat#compile()} or {@link #of(String, Locale)}, and can then be
+ * shared freely.  It obtains the digits of a <code>double</code> directly
+ * from its binary representation, using the shortest decimal that rounds to
+ * it, and writes the result without intermediate strings:
+ *
+ * <blockquote><pre>
+ * private static final CompiledDecimalFormat AMOUNT =
+ *     CompiledDecimalFormat.of("#,##0.00", Locale.US);
+ * ...
+ * AMOUNT.format(total, sb).append('\n');
+ * </pre></blockquote>
+ *
+ * <p>The text produced for a value is the text that the decimal format
+ * would produce, except that values lying exactly halfway between two
+ * results are always rounded according to their exact binary value.
+ * Patterns in scientific notation are supported, but are formatted by a
+ * copy of the decimal format, as are <code>double</code> values whose
+ * magnitude, after applying the multiplier, is 2<sup>53</sup> or more.  The
+ * copy is created once for each thread that uses the compiled format.
+ *
+ * @see DecimalFormat
+ * @since 1.8
+ */
+public final class CompiledDecimalFormat {
+
+    /** Powers of ten that fit in a long */
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    /** Compiled formats created by of(String, Locale) */
+    private static final ConcurrentMap<String, CompiledDecimalFormat> cache
+        = new ConcurrentHashMap<>();
+
+    /** Bounds the size of the cache */
+    private static final int CACHE_LIMIT = 256;
+
+    /** The format captured, never modified; cloned for fallback */
+    private final DecimalFormat prototype;
+
+    /** Whether values are formatted by a clone of prototype */
+    private final boolean fallback;
+
+    /** The clone of prototype used by each thread for fallback */
+    private final ThreadLocal<DecimalFormat> fallbackFormat
+        = new ThreadLocal<DecimalFormat>() {
+            @Override
+            protected DecimalFormat initialValue() {
+                return toFormat();
+            }
+        };
+
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+    private final String nan;
+    private final char zero;
+    private final char grouping;
+    private final char decimal;
+    private final int groupingSize;    // 0 if grouping is not used
+    private final boolean decimalSeparatorAlwaysShown;
+    private final int multiplier;
+    private final RoundingMode roundingMode;
+    private final int maxIntDigits;
+    private final int minIntDigits;
+    private final int maxFraDigits;
+    private final int minFraDigits;
+
+    /**
+     * Creates a compiled format with the state of the given decimal format,
+     * which must not be modified, and the digit counts it applies to
+     * <code>double</code> and <code>long</code> values.
+     */
+    CompiledDecimalFormat(DecimalFormat format, boolean isCurrencyFormat,
+                          boolean useExponentialNotation,
+                          int maxIntDigits, int minIntDigits,
+                          int maxFraDigits, int minFraDigits) {
+        this.prototype = format;
+        this.fallback = useExponentialNotation;
+        DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+        positivePrefix = format.getPositivePrefix();
+        positiveSuffix = format.getPositiveSuffix();
+        negativePrefix = format.getNegativePrefix();
+        negativeSuffix = format.getNegativeSuffix();
+        nan = symbols.getNaN();
+        zero = symbols.getZeroDigit();
+        grouping = symbols.getGroupingSeparator();
+        decimal = isCurrencyFormat ? symbols.getMonetaryDecimalSeparator()
+                                   : symbols.getDecimalSeparator();
+        groupingSize = format.isGroupingUsed() ? format.getGroupingSize() : 0;
+        decimalSeparatorAlwaysShown = format.isDecimalSeparatorAlwaysShown();
+        multiplier = format.getMultiplier();
+        roundingMode = format.getRoundingMode();
+        this.maxIntDigits = maxIntDigits;
+        this.minIntDigits = minIntDigits;
+        this.maxFraDigits = maxFraDigits;
+        this.minFraDigits = minFraDigits;
+    }
+
+    /**
+     * Returns a compiled format for the given pattern and the symbols of the
+     * given locale.  Compiled formats are cached, so that formats for the
+     * same pattern and locale share their state.
+     *
+     * @param pattern a pattern as described in {@link DecimalFormat}
+     * @param locale the locale whose symbols are used
+     * @return the compiled format
+     * @exception NullPointerException if <code>pattern</code> or
+     *            <code>locale</code> is null
+     * @exception IllegalArgumentException if the given pattern is invalid
+     */
+    public static CompiledDecimalFormat of(String pattern, Locale locale) {
+        String key = locale.toLanguageTag() + '\u0000' + pattern;
+        CompiledDecimalFormat format = cache.get(key);
+        if (format == null) {
+            format = new DecimalFormat(
+                pattern, DecimalFormatSymbols.getInstance(locale)).compile();
+            if (cache.size() >= CACHE_LIMIT)
+                cache.clear();
+            CompiledDecimalFormat prev = cache.putIfAbsent(key, format);
+            if (prev != null)
+                format = prev;
+        }
+        return format;
+    }
+
+    /**
+     * Returns a new decimal format with the state captured by this compiled
+     * format, for example to parse text that it produced.
+     *
+     * @return a new <code>DecimalFormat</code>
+     */
+    public DecimalFormat toFormat() {
+        return (DecimalFormat) prototype.clone();
+    }
+
+    /**
+     * Returns the pattern of the captured decimal format.
+     *
+     * @return the pattern
+     * @see DecimalFormat#toPattern()
+     */
+    public String toPattern() {
+        return prototype.toPattern();
+    }
+
+    /**
+     * Formats a double.
+     *
+     * @param number the double to format
+     * @return the formatted string
+     * @exception ArithmeticException if rounding is needed with rounding
+     *            mode being set to RoundingMode.UNNECESSARY
+     */
+    public String format(double number) {
+        return format(number, new StringBuilder()).toString();
+    }
+
+    /**
+     * Formats a long.
+     *
+     * @param number the long to format
+     * @return the formatted string
+     * @exception ArithmeticException if rounding is needed with rounding
+     *            mode being set to RoundingMode.UNNECESSARY
+     */
+    public String format(long number) {
+        return format(number, new StringBuilder()).toString();
+    }
+
+    /**
+     * Formats a double, appending the result to the given builder.
+     *
+     * @param number the double to format
+     * @param result where the text is to be appended
+     * @return <code>result</code>
+     * @exception ArithmeticException if rounding is needed with rounding
+     *            mode being set to RoundingMode.UNNECESSARY
+     */
+    public StringBuilder format(double number, StringBuilder result) {
+        Objects.requireNonNull(result);
+        // Above 2^53 the digits of a double used by the decimal format are
+        // not always the shortest ones, so they are left to the format.
+        if (fallback || Math.abs(number * multiplier) >= 0x1p53)
+            return result.append(fallbackFormat.get().format(number));
+        if (Double.isNaN(number) ||
+           (Double.isInfinite(number) && multiplier == 0)) {
+            return result.append(nan);
+        }
+
+        // -0.0 is formatted as negative, as by DecimalFormat
+        boolean isNegative = ((number < 0.0) ||
+                              (number == 0.0 && 1/number < 0.0)) ^
+                             (multiplier < 0);
+        if (multiplier != 1) {
+            number *= multiplier;
+        }
+        if (isNegative) {
+            number = -number;
+        }
+
+        if (number == 0.0) {
+            return subformat(result, isNegative, false, 0L, 0, 0);
+        }
+        if (number == (long) number) {
+            // below 2^53, integral values are exact
+            return subformat(result, isNegative, false, (long) number);
+        }
+        ShortestDigits sd = new ShortestDigits().set(number);
+        long digits = sd.digits;
+        int count = sd.length;
+        int decimalAt = count + sd.exponent;
+
+        // Round to the maximum fraction digits, as DigitList does.
+        if (-decimalAt > maxFraDigits) {
+            // underflow to zero, as when rounding 0.0009 to 2 digits
+            count = 0;
+        } else {
+            int keep = maxFraDigits + decimalAt;
+            if (keep < count) {
+                int drop = count - keep;
+                long q = digits / POW10[drop];
+                long r = digits - q * POW10[drop];
+                if (shouldRoundUp(q, r, 5 * POW10[drop - 1], number, digits,
+                                  sd.exponent, isNegative)) {
+                    q++;
+                    if (keep == 0 || q == POW10[keep]) {
+                        // 0.09 to 1 digit, or 9.99 to 10.0
+                        q = 1;
+                        decimalAt++;
+                        keep = 1;
+                    }
+                }
+                if (q == 0) {
+                    count = 0;
+                } else {
+                    while (q % 10 == 0) {
+                        q /= 10;
+                        keep--;
+                    }
+                    digits = q;
+                    count = keep;
+                }
+            }
+        }
+        if (count == 0) {
+            digits = 0;
+            decimalAt = 0;
+        }
+        return subformat(result, isNegative, false, digits, count, decimalAt);
+    }
+
+    /**
+     * Returns true if q, the digits kept, is to be incremented given r, the
+     * value of the digits rounded away, and half, the value of r halfway
+     * between two results.  The digits rounded away are not all zero.
+     */
+    private boolean shouldRoundUp(long q, long r, long half, double number,
+                                  long digits, int exponent,
+                                  boolean isNegative) {
+        switch (roundingMode) {
+        case UP:
+            return true;
+        case DOWN:
+            return false;
+        case CEILING:
+            return !isNegative;
+        case FLOOR:
+            return isNegative;
+        case HALF_UP:
+        case HALF_DOWN:
+        case HALF_EVEN:
+            if (r < half)
+                return false;
+            if (r > half)
+                return true;
+            // The shortest digits are a tie; the exact binary value is
+            // above, below or at the tie.
+            int cmp = new BigDecimal(number).compareTo(
+                BigDecimal.valueOf(digits, -exponent));
+            if (cmp != 0)
+                return cmp > 0;
+            if (roundingMode == RoundingMode.HALF_UP)
+                return true;
+            if (roundingMode == RoundingMode.HALF_DOWN)
+                return false;
+            return (q & 1) != 0;
+        case UNNECESSARY:
+            throw new ArithmeticException("Rounding needed with the rounding mode being set to RoundingMode.UNNECESSARY");
+        default:
+            throw new AssertionError(roundingMode);
+        }
+    }
+
+    /**
+     * Formats a long, appending the result to the given builder.
+     *
+     * @param number the long to format
+     * @param result where the text is to be appended
+     * @return <code>result</code>
+     * @exception ArithmeticException if rounding is needed with rounding
+     *            mode being set to RoundingMode.UNNECESSARY
+     */
+    public StringBuilder format(long number, StringBuilder result) {
+        Objects.requireNonNull(result);
+        boolean isNegative = (number < 0);
+        if (isNegative) {
+            number = -number;
+        }
+        // Values pushed out of the long range by the multiplier are
+        // formatted as BigIntegers by the decimal format.
+        boolean overflow = false;
+        if (number < 0) { // only if number == Long.MIN_VALUE
+            overflow = (multiplier != 0);
+        } else if (multiplier != 1 && multiplier != 0) {
+            long cutoff = Long.MAX_VALUE / multiplier;
+            overflow = (number > Math.abs(cutoff));
+        }
+        if (fallback || overflow) {
+            return result.append(fallbackFormat.get().format(isNegative ? -number
+                                                              : number));
+        }
+
+        number *= multiplier;
+        if (number == 0) {
+            isNegative = false;
+        } else if (multiplier < 0) {
+            number = -number;
+            isNegative = !isNegative;
+        }
+
+        return subformat(result, isNegative, true, number);
+    }
+
+    /**
+     * Appends the given non-negative integral value.
+     */
+    private StringBuilder subformat(StringBuilder result, boolean isNegative,
+                                    boolean isInteger, long number) {
+        int count = 0;
+        int decimalAt = 0;
+        if (number != 0) {
+            decimalAt = 1;
+            while (decimalAt < 19 && number >= POW10[decimalAt])
+                decimalAt++;
+            count = decimalAt;
+            while (number % 10 == 0) {
+                number /= 10;
+                count--;
+            }
+        }
+        return subformat(result, isNegative, isInteger, number, count,
+                         decimalAt);
+    }
+
+    /**
+     * Appends the number whose count digits, without trailing zeros, are
+     * those of digits, with the decimal point after the decimalAt'th digit.
+     * This follows DecimalFormat.subformat for fixed-point notation.
+     */
+    private StringBuilder subformat(StringBuilder result, boolean isNegative,
+                                    boolean isInteger, long digits, int count,
+                                    int decimalAt) {
+        result.append(isNegative ? negativePrefix : positivePrefix);
+
+        // Output the integer portion, including leading zeros required to
+        // satisfy the minimum integer digits; if there are more integer
+        // digits than the maximum, only the least significant are output.
+        int intCount = minIntDigits;
+        int digitIndex = 0;
+        if (decimalAt > 0 && intCount < decimalAt) {
+            intCount = decimalAt;
+        }
+        if (intCount > maxIntDigits) {
+            intCount = maxIntDigits;
+            digitIndex = decimalAt - intCount;
+        }
+
+        int sizeBeforeIntegerPart = result.length();
+        for (int i = intCount - 1; i >= 0; --i) {
+            if (i < decimalAt && digitIndex < count) {
+                result.append(digit(digits, count, digitIndex++));
+            } else {
+                result.append(zero);
+            }
+            if (groupingSize != 0 && i > 0 && i % groupingSize == 0) {
+                result.append(grouping);
+            }
+        }
+
+        boolean fractionPresent = (minFraDigits > 0) ||
+            (!isInteger && digitIndex < count);
+
+        // Print a zero if there would otherwise be no digits.
+        if (!fractionPresent && result.length() == sizeBeforeIntegerPart) {
+            result.append(zero);
+        }
+        if (decimalSeparatorAlwaysShown || fractionPresent) {
+            result.append(decimal);
+        }
+
+        for (int i = 0; i < maxFraDigits; ++i) {
+            if (i >= minFraDigits && (isInteger || digitIndex >= count)) {
+                break;
+            }
+            // leading fractional zeros of a number less than one
+            if (-1 - i > (decimalAt - 1)) {
+                result.append(zero);
+                continue;
+            }
+            if (!isInteger && digitIndex < count) {
+                result.append(digit(digits, count, digitIndex++));
+            } else {
+                result.append(zero);
+            }
+        }
+
+        return result.append(isNegative ? negativeSuffix : positiveSuffix);
+    }
+
+    /**
+     * Returns the localized digit at the given index, from the left, of the
+     * count digits of digits.
+     */
+    private char digit(long digits, int count, int index) {
+        return (char) (zero + (digits / POW10[count - 1 - index]) % 10);
+    }
+
+    /**
+     * Returns a string identifying this compiled format.
+     *
+     * @return a string identifying this compiled format
+     */
+    @Override
+    public String toString() {
+        return "CompiledDecimalFormat[" + toPattern() + "]";
+    }
+}
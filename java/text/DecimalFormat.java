@@ -3670,6 +3670,25 @@ public class DecimalFormat extends NumberFormat {
         fastPathCheckNeeded = true;
     }
 
+    /**
+     * Returns an immutable, thread-safe snapshot of this format for
+     * formatting <code>double</code> and <code>long</code> values.  Later
+     * changes to this format do not affect the compiled format.
+     *
+     * @return a compiled format with the current state of this format
+     * @see CompiledDecimalFormat
+     * @since 1.8
+     */
+    public CompiledDecimalFormat compile() {
+        DecimalFormat copy = (DecimalFormat) clone();
+        return new CompiledDecimalFormat(copy, isCurrencyFormat,
+                                         useExponentialNotation,
+                                         super.getMaximumIntegerDigits(),
+                                         super.getMinimumIntegerDigits(),
+                                         super.getMaximumFractionDigits(),
+                                         super.getMinimumFractionDigits());
+    }
+
     /**
      * Reads the default serializable fields from the stream and performs
      * validations and adjustments for older serialized versions. The
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.text;
+
+import sun.misc.ShortestDecimal;
+
+/**
+ * Computes the shortest decimal that rounds to a given double, so that a
+ * formatter can obtain the digits of a double without going through
+ * <code>Double.toString</code>.  The conversion is delegated to the
+ * Schubfach implementation of <code>ShortestDecimal</code>, which
+ * <code>Double.toString</code> shares.
+ *
+ * <p>Instances hold the result of the last conversion and are not
+ * thread-safe; they are cheap enough to create for each conversion.
+ */
+final class ShortestDigits {
+    private final ShortestDecimal decimal = new ShortestDecimal();
+
+    /** The digits of the decimal, without trailing zeros */
+    long digits;
+
+    /** The decimal is digits &times; 10<sup>exponent</sup> */
+    int exponent;
+
+    /** The number of digits in digits */
+    int length;
+
+    /**
+     * Sets this to the shortest decimal that rounds to v, which must be
+     * finite and positive.
+     */
+    ShortestDigits set(double v) {
+        decimal.set(v);
+        digits = decimal.digits();
+        exponent = decimal.exponent();
+        length = decimal.length();
+        return this;
+    }
+}
@@ -483,8 +483,8 @@ public class SimpleDateFormat extends DateFormat {
     /**
      * Tags for the compiled pattern.
      */
-    private final static int TAG_QUOTE_ASCII_CHAR       = 100;
-    private final static int TAG_QUOTE_CHARS            = 101;
+    final static int TAG_QUOTE_ASCII_CHAR       = 100;
+    final static int TAG_QUOTE_CHARS            = 101;
 
     /**
      * Locale dependent digit zero.
@@ -2326,6 +2326,34 @@ public class SimpleDateFormat extends DateFormat {
         return other;
     }
 
+    /**
+     * Returns an immutable, thread-safe snapshot of this
+     * <code>SimpleDateFormat</code> for formatting.  Later changes to this
+     * format, its calendar, time zone, number format or date format
+     * symbols do not affect the returned format.
+     *
+     * @return a compiled format producing the same text as this format
+     * @see CompiledDateFormat
+     * @since 1.8
+     */
+    public CompiledDateFormat compile() {
+        SimpleDateFormat copy = (SimpleDateFormat) clone();
+        char digit = 0;
+        if (copy.numberFormat instanceof DecimalFormat) {
+            DecimalFormat df = (DecimalFormat) copy.numberFormat;
+            if (!df.isGroupingUsed() && df.getMultiplier() == 1
+                && df.getPositivePrefix().isEmpty()
+                && df.getPositiveSuffix().isEmpty()) {
+                digit = df.getDecimalFormatSymbols().getZeroDigit();
+            }
+        }
+        return new CompiledDateFormat(copy, copy.compiledPattern,
+                                      copy.formatData,
+                                      copy.useDateFormatSymbols(),
+                                      copy.forceStandaloneForm, copy.locale,
+                                      digit);
+    }
+
     /**
      * Returns the hash code value for this <code>SimpleDateFormat</code> object.
      *
@@ -36,6 +36,7 @@ import java.util.function.IntToDoubleFunction;
 import java.util.function.IntToLongFunction;
 import java.util.function.IntUnaryOperator;
 import java.util.function.LongBinaryOperator;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
@@ -963,6 +964,220 @@ public class Arrays {
                  MIN_ARRAY_SORT_GRAN : g).invoke();
     }
 
+    /*
+     * Radix sorting methods.  These order the same keys as the
+     * corresponding sort methods, but in time linear in the length of
+     * the array, with a working space of the same length.
+     */
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * @implNote The sorting algorithm is a least significant digit radix
+     * sort, with one byte per digit, that skips the digits whose value is
+     * the same for all elements.  If the length of the specified array is
+     * small, it is sorted using the appropriate {@link Arrays#sort(int[])
+     * Arrays.sort} method.  The algorithm requires a working space of the
+     * size of the original array.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void radixSort(int[] a) {
+        RadixSort.sort(a, 0, a.length);
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * @implNote The sorting algorithm is a least significant digit radix
+     * sort, with one byte per digit, that skips the digits whose value is
+     * the same for all elements.  If the length of the specified range is
+     * small, it is sorted using the appropriate {@link Arrays#sort(int[])
+     * Arrays.sort} method.  The algorithm requires a working space of the
+     * size of the specified range of the original array.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void radixSort(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        RadixSort.sort(a, fromIndex, toIndex);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * @implNote The sorting algorithm is a least significant digit radix
+     * sort, with one byte per digit, that skips the digits whose value is
+     * the same for all elements.  If the length of the specified array is
+     * small, it is sorted using the appropriate {@link Arrays#sort(long[])
+     * Arrays.sort} method.  The algorithm requires a working space of the
+     * size of the original array.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void radixSort(long[] a) {
+        RadixSort.sort(a, 0, a.length);
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * @implNote The sorting algorithm is a least significant digit radix
+     * sort, with one byte per digit, that skips the digits whose value is
+     * the same for all elements.  If the length of the specified range is
+     * small, it is sorted using the appropriate {@link Arrays#sort(long[])
+     * Arrays.sort} method.  The algorithm requires a working space of the
+     * size of the specified range of the original array.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void radixSort(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        RadixSort.sort(a, fromIndex, toIndex);
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * @implNote The sorting algorithm is a parallel radix sort that
+     * distributes the elements into 256 buckets on their most significant
+     * byte, with the array split into chunks that are counted and
+     * distributed in parallel, and then sorts the buckets in parallel
+     * using the algorithm of {@link Arrays#radixSort(int[])
+     * Arrays.radixSort}.  If the length of the specified array is small,
+     * it is sorted using the appropriate {@link Arrays#radixSort(int[])
+     * Arrays.radixSort} method.  The algorithm requires a working space
+     * of the size of the original array.  The {@link
+     * ForkJoinPool#commonPool() ForkJoin common pool} is used to execute
+     * any parallel tasks.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(int[] a) {
+        RadixSort.parallelSort(a, 0, a.length,
+                               ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * @implNote The sorting algorithm is a parallel radix sort that
+     * distributes the elements into 256 buckets on their most significant
+     * byte, with the range split into chunks that are counted and
+     * distributed in parallel, and then sorts the buckets in parallel
+     * using the algorithm of {@link Arrays#radixSort(int[])
+     * Arrays.radixSort}.  If the length of the specified range is small,
+     * it is sorted using the appropriate {@link Arrays#radixSort(int[])
+     * Arrays.radixSort} method.  The algorithm requires a working space
+     * of the size of the specified range of the original array.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        RadixSort.parallelSort(a, fromIndex, toIndex,
+                               ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Sorts the specified array into ascending numerical order.
+     *
+     * @implNote The sorting algorithm is a parallel radix sort that
+     * distributes the elements into 256 buckets on their most significant
+     * byte, with the array split into chunks that are counted and
+     * distributed in parallel, and then sorts the buckets in parallel
+     * using the algorithm of {@link Arrays#radixSort(long[])
+     * Arrays.radixSort}.  If the length of the specified array is small,
+     * it is sorted using the appropriate {@link Arrays#radixSort(long[])
+     * Arrays.radixSort} method.  The algorithm requires a working space
+     * of the size of the original array.  The {@link
+     * ForkJoinPool#commonPool() ForkJoin common pool} is used to execute
+     * any parallel tasks.
+     *
+     * @param a the array to be sorted
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(long[] a) {
+        RadixSort.parallelSort(a, 0, a.length,
+                               ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Sorts the specified range of the array into ascending numerical order.
+     * The range to be sorted extends from the index {@code fromIndex},
+     * inclusive, to the index {@code toIndex}, exclusive. If
+     * {@code fromIndex == toIndex}, the range to be sorted is empty.
+     *
+     * @implNote The sorting algorithm is a parallel radix sort that
+     * distributes the elements into 256 buckets on their most significant
+     * byte, with the range split into chunks that are counted and
+     * distributed in parallel, and then sorts the buckets in parallel
+     * using the algorithm of {@link Arrays#radixSort(long[])
+     * Arrays.radixSort}.  If the length of the specified range is small,
+     * it is sorted using the appropriate {@link Arrays#radixSort(long[])
+     * Arrays.radixSort} method.  The algorithm requires a working space
+     * of the size of the specified range of the original array.  The
+     * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
+     * execute any parallel tasks.
+     *
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element, inclusive, to be sorted
+     * @param toIndex the index of the last element, exclusive, to be sorted
+     *
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException
+     *     if {@code fromIndex < 0} or {@code toIndex > a.length}
+     *
+     * @since 1.8
+     */
+    public static void parallelRadixSort(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        RadixSort.parallelSort(a, fromIndex, toIndex,
+                               ForkJoinPool.getCommonPoolParallelism());
+    }
+
     /**
      * Sorts the specified array of objects into ascending order, according
      * to the {@linkplain Comparable natural ordering} of its elements.
@@ -1180,6 +1395,116 @@ public class Arrays {
                  MIN_ARRAY_SORT_GRAN : g, cmp).invoke();
     }
 
+    /**
+     * Sorts the specified array of objects into the ascending numerical
+     * order of the {@code long} keys extracted from them by the specified
+     * function.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  equal elements will
+     * not be reordered as a result of the sort.
+     *
+     * <p>The key of each element is extracted exactly once, before the
+     * array is modified; if the function throws an exception, the array
+     * is left unchanged.
+     *
+     * @implNote The keys are extracted into an array of {@code long},
+     * which is sorted together with the original indices of the elements
+     * by the algorithm of {@link Arrays#radixSort(long[])
+     * Arrays.radixSort}; the elements are then permuted into place.  No
+     * elements are compared, and no element is accessed after its key
+     * has been extracted, other than to be moved.  The algorithm requires
+     * a working space of two {@code long} and two {@code int} values, and
+     * an object reference, per element.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function extracting the sort key of each
+     *        element
+     * @throws NullPointerException if {@code keyExtractor} is null
+     *
+     * @since 1.8
+     */
+    public static <T> void sortByLongKey(T[] a,
+                                         ToLongFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        RadixSort.sort(a, 0, a.length, keyExtractor, 1);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects into the
+     * ascending numerical order of the {@code long} keys extracted from
+     * them by the specified function.  The range to be sorted extends from
+     * index {@code fromIndex}, inclusive, to index {@code toIndex},
+     * exclusive.  (If {@code fromIndex==toIndex}, the range to be sorted
+     * is empty.)
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  equal elements will
+     * not be reordered as a result of the sort.
+     *
+     * <p>The key of each element is extracted exactly once, before the
+     * array is modified; if the function throws an exception, the array
+     * is left unchanged.
+     *
+     * @implNote The algorithm is that of {@link
+     * Arrays#sortByLongKey(Object[], ToLongFunction)}.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function extracting the sort key of each
+     *        element
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if {@code keyExtractor} is null
+     *
+     * @since 1.8
+     */
+    public static <T> void sortByLongKey(T[] a, int fromIndex, int toIndex,
+                                         ToLongFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        rangeCheck(a.length, fromIndex, toIndex);
+        RadixSort.sort(a, fromIndex, toIndex, keyExtractor, 1);
+    }
+
+    /**
+     * Sorts the specified array of objects into the ascending numerical
+     * order of the {@code long} keys extracted from them by the specified
+     * function.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  equal elements will
+     * not be reordered as a result of the sort.
+     *
+     * <p>The key of each element is extracted exactly once, before the
+     * array is modified; if the function throws an exception, the array
+     * is left unchanged.  The function may be applied concurrently to
+     * different elements.
+     *
+     * @implNote The keys are extracted in parallel into an array of
+     * {@code long}, which is sorted together with the original indices of
+     * the elements by the algorithm of {@link
+     * Arrays#parallelRadixSort(long[]) Arrays.parallelRadixSort}; the
+     * elements are then permuted into place.  The {@link
+     * ForkJoinPool#commonPool() ForkJoin common pool} is used to execute
+     * any parallel tasks.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function extracting the sort key of each
+     *        element
+     * @throws NullPointerException if {@code keyExtractor} is null
+     *
+     * @since 1.8
+     */
+    public static <T> void parallelSortByLongKey(T[] a,
+                                                 ToLongFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        RadixSort.sort(a, 0, a.length, keyExtractor,
+                       ForkJoinPool.getCommonPoolParallelism());
+    }
+
     /*
      * Sorting of complex type arrays.
      */
@@ -0,0 +1,2339 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.Serializable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * A B+-tree based {@link NavigableMap} implementation.  The map is sorted
+ * according to the {@linkplain Comparable natural ordering} of its keys,
+ * or by a {@link Comparator} provided at map creation time, depending on
+ * which constructor is used.
+ *
+ * <p>This class is a drop-in alternative to {@link TreeMap} for large
+ * maps.  Rather than one node object per mapping, it keeps its mappings
+ * in wide nodes: the leaves of the tree hold up to {@value
+ * #NODE_CAPACITY} keys and values in a pair of arrays, and the interior
+ * nodes hold up to as many children with the separating keys between
+ * them.  A lookup therefore visits a handful of nodes, each searched with
+ * a binary search over a contiguous array, rather than a long chain of
+ * individually allocated entries, and the garbage collector has about
+ * sixty times fewer objects to trace.  The leaves are linked to their
+ * neighbours, so that iteration over the map or a range of it proceeds
+ * leaf by leaf without revisiting the interior of the tree, and the
+ * {@link Spliterator}s of the map's collection views split by subtree,
+ * which balances the work of a parallel stream over the map.
+ *
+ * <p>This implementation provides guaranteed log(n) time cost for the
+ * {@code containsKey}, {@code get}, {@code put} and {@code remove}
+ * operations, and the same semantics as {@code TreeMap} for all the
+ * methods of the {@code NavigableMap} interface and of its views.  As
+ * with {@code TreeMap}, the ordering maintained by the map must be
+ * <em>consistent with {@code equals}</em> if the map is to correctly
+ * implement the {@code Map} interface.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <em>must</em> be synchronized
+ * externally, for example by wrapping it with {@link
+ * Collections#synchronizedSortedMap Collections.synchronizedSortedMap}.
+ *
+ * <p>The iterators returned by the {@code iterator} method of the
+ * collections returned by all of this class's "collection view methods"
+ * are <em>fail-fast</em>: if the map is structurally modified at any time
+ * after the iterator is created, in any way except through the iterator's
+ * own {@code remove} method, the iterator will throw a {@link
+ * ConcurrentModificationException} on a best-effort basis.
+ *
+ * <p>The {@code Map.Entry} pairs returned by the navigation methods of
+ * this class and its views, such as {@code firstEntry}, represent
+ * snapshots of mappings at the time they were produced, and do
+ * <strong>not</strong> support the {@code Entry.setValue} method.  The
+ * entries returned by the iterators of the entry set views do support
+ * it, and write through to the map.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see TreeMap
+ * @since 1.8
+ */
+public class BTreeMap<K,V>
+    extends AbstractMap<K,V>
+    implements NavigableMap<K,V>, Cloneable, java.io.Serializable
+{
+    /**
+     * The maximum number of mappings in a leaf, and of children of an
+     * interior node.  Nodes other than the root have at least half as
+     * many, except that a leaf split off the end of the map when keys
+     * are added in ascending order starts out with a single mapping.
+     */
+    static final int NODE_CAPACITY = 64;
+
+    /** The number of mappings or children below which a node is merged. */
+    static final int MIN_NODE_SIZE = NODE_CAPACITY / 2;
+
+    /** Relation flags for findNear, as in ConcurrentSkipListMap. */
+    private static final int EQ = 1;
+    private static final int LT = 2;
+    private static final int GT = 0; // Actually checked as !LT
+
+    /**
+     * The comparator used to maintain order in this map, or
+     * null if it uses the natural ordering of its keys.
+     *
+     * @serial
+     */
+    private final Comparator<? super K> comparator;
+
+    /** The root of the tree, or null if the map is empty. */
+    private transient Node<K,V> root;
+
+    /** The number of levels of interior nodes above the leaves. */
+    private transient int height;
+
+    /**
+     * The number of entries in the map.
+     */
+    private transient int size = 0;
+
+    /**
+     * The number of structural modifications to the map.
+     */
+    private transient int modCount = 0;
+
+    /**
+     * Constructs a new, empty map, using the natural ordering of its
+     * keys.  All keys inserted into the map must implement the {@link
+     * Comparable} interface.  Furthermore, all such keys must be
+     * <em>mutually comparable</em>: {@code k1.compareTo(k2)} must not throw
+     * a {@code ClassCastException} for any keys {@code k1} and
+     * {@code k2} in the map.
+     */
+    public BTreeMap() {
+        comparator = null;
+    }
+
+    /**
+     * Constructs a new, empty map, ordered according to the given
+     * comparator.  All keys inserted into the map must be <em>mutually
+     * comparable</em> by the given comparator.
+     *
+     * @param comparator the comparator that will be used to order this map.
+     *        If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public BTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given
+     * map, ordered according to the <em>natural ordering</em> of its keys.
+     * This method runs in n*log(n) time.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in m are not {@link Comparable},
+     *         or are not mutually comparable
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(Map<? extends K, ? extends V> m) {
+        comparator = null;
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.  This method runs in
+     * linear time, and packs the leaves of the map full.
+     *
+     * @param  m the sorted map whose mappings are to be placed in this map,
+     *         and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(SortedMap<K, ? extends V> m) {
+        comparator = m.comparator();
+        buildFromSorted(m.size(), m.entrySet().iterator());
+    }
+
+    // Query Operations
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified
+     * key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public boolean containsKey(Object key) {
+        Leaf<K,V> l = leafFor(key);
+        return l != null && search(l, key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the map
+     * size, but scans the value arrays of the leaves sequentially.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if a mapping to {@code value} exists;
+     *         {@code false} otherwise
+     */
+    public boolean containsValue(Object value) {
+        for (Leaf<K,V> l = firstLeaf(); l != null; l = l.next) {
+            Object[] vals = l.vals;
+            for (int i = 0, n = l.n; i < n; i++) {
+                if (Objects.equals(value, vals[i]))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * <p>A return value of {@code null} does not <em>necessarily</em>
+     * indicate that the map contains no mapping for the key; it's also
+     * possible that the map explicitly maps the key to {@code null}.
+     * The {@link #containsKey containsKey} operation may be used to
+     * distinguish these two cases.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf<K,V> l = leafFor(key);
+        int i;
+        return (l == null || (i = search(l, key)) < 0) ? null : (V)l.vals[i];
+    }
+
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K firstKey() {
+        return key(firstLeaf(), 0);
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K lastKey() {
+        Leaf<K,V> l = lastLeaf();
+        return key(l, (l == null) ? 0 : l.n - 1);
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     * These mappings replace any mappings that this map had for any
+     * of the keys currently in the specified map.  If this map is empty
+     * and the specified map is a sorted map with the same ordering, the
+     * map is built in linear time.
+     *
+     * @param  map mappings to be stored in this map
+     * @throws ClassCastException if the class of a key or value in
+     *         the specified map prevents it from being stored in this map
+     * @throws NullPointerException if the specified map is null or
+     *         the specified map contains a null key and this map does not
+     *         permit null keys
+     */
+    public void putAll(Map<? extends K, ? extends V> map) {
+        int mapSize = map.size();
+        if (size == 0 && mapSize != 0 && map instanceof SortedMap) {
+            Comparator<?> c = ((SortedMap<?,?>)map).comparator();
+            if (c == comparator || (c != null && c.equals(comparator))) {
+                ++modCount;
+                buildFromSorted(mapSize, map.entrySet().iterator());
+                return;
+            }
+        }
+        super.putAll(map);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Leaf<K,V> l = leafFor(key);
+        if (l == null) {
+            l = new Leaf<>();
+            l.keys[0] = key;
+            l.vals[0] = value;
+            l.n = 1;
+            root = l;
+            size = 1;
+            modCount++;
+            return null;
+        }
+        int i = search(l, key);
+        if (i >= 0) {
+            V oldValue = (V)l.vals[i];
+            l.vals[i] = value;
+            return oldValue;
+        }
+        if (l.n < NODE_CAPACITY)
+            l.insert(-(i + 1), key, value);
+        else
+            splitAndInsert(key, value);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    /**
+     * Removes the mapping for this key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Leaf<K,V> l = leafFor(key);
+        int i;
+        if (l == null || (i = search(l, key)) < 0)
+            return null;
+        V oldValue = (V)l.vals[i];
+        deleteAt(l, i);
+        return oldValue;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        modCount++;
+        size = 0;
+        root = null;
+        height = 0;
+    }
+
+    /**
+     * Returns a shallow copy of this {@code BTreeMap} instance. (The keys and
+     * values themselves are not cloned.)  The leaves of the copy are packed
+     * full.
+     *
+     * @return a shallow copy of this map
+     */
+    public Object clone() {
+        BTreeMap<?,?> clone;
+        try {
+            clone = (BTreeMap<?,?>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+
+        // Put clone into "virgin" state (except for comparator)
+        clone.root = null;
+        clone.height = 0;
+        clone.size = 0;
+        clone.modCount = 0;
+        clone.entrySet = null;
+        clone.navigableKeySet = null;
+        clone.descendingMap = null;
+
+        // Initialize clone with our mappings
+        clone.buildFromSorted(size, new EntryIterator(null, true));
+        return clone;
+    }
+
+    // NavigableMap API methods
+
+    public Map.Entry<K,V> firstEntry() {
+        return exportEntry(firstLeaf(), 0);
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        Leaf<K,V> l = lastLeaf();
+        return exportEntry(l, (l == null) ? 0 : l.n - 1);
+    }
+
+    public Map.Entry<K,V> pollFirstEntry() {
+        Leaf<K,V> l = firstLeaf();
+        Map.Entry<K,V> result = exportEntry(l, 0);
+        if (l != null)
+            deleteAt(l, 0);
+        return result;
+    }
+
+    public Map.Entry<K,V> pollLastEntry() {
+        Leaf<K,V> l = lastLeaf();
+        if (l == null)
+            return null;
+        Map.Entry<K,V> result = exportEntry(l, l.n - 1);
+        deleteAt(l, l.n - 1);
+        return result;
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return getNearEntry(key, LT);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K lowerKey(K key) {
+        return getNearKey(key, LT);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        return getNearEntry(key, LT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K floorKey(K key) {
+        return getNearKey(key, LT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return getNearEntry(key, GT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K ceilingKey(K key) {
+        return getNearKey(key, GT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        return getNearEntry(key, GT);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K higherKey(K key) {
+        return getNearKey(key, GT);
+    }
+
+    // Views
+
+    /**
+     * Fields initialized to contain an instance of the entry set view
+     * the first time this view is requested.  Views are stateless, so
+     * there's no reason to create more than one.
+     */
+    private transient Set<Map.Entry<K,V>> entrySet;
+    private transient KeySet<K> navigableKeySet;
+    private transient NavigableMap<K,V> descendingMap;
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map.
+     *
+     * <p>The set's iterator returns the keys in ascending order.
+     * The set's spliterator is
+     * <em><a href="Spliterator.html#binding">late-binding</a></em>,
+     * <em>fail-fast</em>, and additionally reports {@link Spliterator#SORTED}
+     * and {@link Spliterator#ORDERED} with an encounter order that is ascending
+     * key order.  It splits by subtree.
+     *
+     * <p>The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, which removes the corresponding mapping from the map, via
+     * the {@code Iterator.remove}, {@code Set.remove}, {@code removeAll},
+     * {@code retainAll}, and {@code clear} operations.  It does not support
+     * the {@code add} or {@code addAll} operations.
+     */
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> nks = navigableKeySet;
+        return (nks != null) ? nks : (navigableKeySet = new KeySet<>(this));
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this map.
+     *
+     * <p>The collection's iterator returns the values in ascending order
+     * of the corresponding keys. The collection's spliterator is
+     * <em><a href="Spliterator.html#binding">late-binding</a></em>,
+     * <em>fail-fast</em>, and additionally reports {@link Spliterator#ORDERED}
+     * with an encounter order that is ascending order of the corresponding
+     * keys.  It splits by subtree.
+     *
+     * <p>The collection is backed by the map, so changes to the map are
+     * reflected in the collection, and vice-versa.  The collection
+     * supports element removal, but not the {@code add} or {@code addAll}
+     * operations.
+     */
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        if (vs == null) {
+            vs = new Values<>(this);
+            values = vs;
+        }
+        return vs;
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     *
+     * <p>The set's iterator returns the entries in ascending key order. The
+     * sets's spliterator is
+     * <em><a href="Spliterator.html#binding">late-binding</a></em>,
+     * <em>fail-fast</em>, and additionally reports {@link Spliterator#SORTED} and
+     * {@link Spliterator#ORDERED} with an encounter order that is ascending key
+     * order.  It splits by subtree.
+     *
+     * <p>The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, but not the {@code add} or {@code addAll} operations.  The
+     * entries returned by its iterator support {@code setValue}.
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet<>(this));
+    }
+
+    public NavigableMap<K,V> descendingMap() {
+        NavigableMap<K,V> km = descendingMap;
+        return (km != null) ? km :
+            (descendingMap = new SubMap<>(this,
+                                          true, null, true,
+                                          true, null, true, true));
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                    K toKey,   boolean toInclusive) {
+        return new SubMap<>(this,
+                            false, fromKey, fromInclusive,
+                            false, toKey,   toInclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        return new SubMap<>(this,
+                            true,  null,  true,
+                            false, toKey, inclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap<>(this,
+                            false, fromKey, inclusive,
+                            true,  null,    true, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (Leaf<K,V> l = firstLeaf(); l != null; l = l.next) {
+            for (int i = 0; i < l.n; i++) {
+                action.accept((K)l.keys[i], (V)l.vals[i]);
+                if (expectedModCount != modCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        int expectedModCount = modCount;
+        for (Leaf<K,V> l = firstLeaf(); l != null; l = l.next) {
+            for (int i = 0; i < l.n; i++) {
+                l.vals[i] = function.apply((K)l.keys[i], (V)l.vals[i]);
+                if (expectedModCount != modCount)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // View class support
+
+    static final class Values<E> extends AbstractCollection<E> {
+        private final NavigableMap<?, E> m;
+        Values(NavigableMap<?, E> map) {
+            m = map;
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<?,E>)m).valueIterator();
+            else
+                return ((SubMap<?,E>)m).valueIterator();
+        }
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+        public int size() {
+            return m.size();
+        }
+        public boolean contains(Object o) {
+            return m.containsValue(o);
+        }
+        public void clear() {
+            m.clear();
+        }
+        @SuppressWarnings("unchecked")
+        public Spliterator<E> spliterator() {
+            if (m instanceof BTreeMap)
+                return new ValueSpliterator<>((BTreeMap<?,E>)m);
+            else
+                return Spliterators.spliterator(this, Spliterator.ORDERED);
+        }
+    }
+
+    static final class EntrySet<K,V> extends AbstractSet<Map.Entry<K,V>> {
+        private final NavigableMap<K,V> m;
+        EntrySet(NavigableMap<K,V> map) {
+            m = map;
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<Map.Entry<K,V>> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<K,V>)m).entryIterator();
+            else
+                return ((SubMap<K,V>)m).entryIterator();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object key = e.getKey();
+            return m.containsKey(key) && Objects.equals(m.get(key), e.getValue());
+        }
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                m.remove(((Map.Entry<?,?>)o).getKey());
+                return true;
+            }
+            return false;
+        }
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+        public int size() {
+            return m.size();
+        }
+        public void clear() {
+            m.clear();
+        }
+        @SuppressWarnings("unchecked")
+        public Spliterator<Map.Entry<K,V>> spliterator() {
+            if (m instanceof BTreeMap)
+                return new EntrySpliterator<>((BTreeMap<K,V>)m);
+            else
+                return Spliterators.spliterator(this, Spliterator.DISTINCT |
+                                                Spliterator.ORDERED);
+        }
+    }
+
+    static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+        private final NavigableMap<E, ?> m;
+        KeySet(NavigableMap<E,?> map) { m = map; }
+
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<E,?>)m).keyIterator();
+            else
+                return ((SubMap<E,?>)m).keyIterator();
+        }
+
+        @SuppressWarnings("unchecked")
+        public Iterator<E> descendingIterator() {
+            if (m instanceof BTreeMap)
+                return ((BTreeMap<E,?>)m).descendingKeyIterator();
+            else
+                return ((SubMap<E,?>)m).descendingKeyIterator();
+        }
+
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public void clear() { m.clear(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E pollFirst() {
+            Map.Entry<E,?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public E pollLast() {
+            Map.Entry<E,?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public boolean remove(Object o) {
+            if (m.containsKey(o)) {
+                m.remove(o);
+                return true;
+            }
+            return false;
+        }
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive,
+                                      E toElement,   boolean toInclusive) {
+            return new KeySet<>(m.subMap(fromElement, fromInclusive,
+                                         toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(m.tailMap(fromElement, inclusive));
+        }
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(m.descendingMap());
+        }
+
+        @SuppressWarnings("unchecked")
+        public Spliterator<E> spliterator() {
+            if (m instanceof BTreeMap)
+                return new KeySpliterator<>((BTreeMap<E,?>)m);
+            else
+                return NavigableSet.super.spliterator();
+        }
+    }
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator(null, true);
+    }
+
+    Iterator<K> descendingKeyIterator() {
+        return new KeyIterator(null, false);
+    }
+
+    Iterator<V> valueIterator() {
+        return new ValueIterator(null, true);
+    }
+
+    Iterator<Map.Entry<K,V>> entryIterator() {
+        return new EntryIterator(null, true);
+    }
+
+    /**
+     * Base class for iterators over the map or a submap.  An iterator
+     * walks the linked leaves, and after a removal through the iterator,
+     * which may have moved mappings between leaves, finds its place again
+     * by searching for the key it was to return next.
+     */
+    abstract class Iter<T> implements Iterator<T> {
+        /** The bounds of the iteration, or null for the whole map. */
+        final SubMap<K,V> bounds;
+        final boolean ascending;
+        /** The leaf and index of the next mapping, or null leaf if none. */
+        Leaf<K,V> leaf;
+        int index;
+        /** The leaf and index of the last mapping returned, if any. */
+        Leaf<K,V> lastLeaf;
+        int lastIndex;
+        int expectedModCount;
+
+        Iter(SubMap<K,V> bounds, boolean ascending) {
+            this.bounds = bounds;
+            this.ascending = ascending;
+            expectedModCount = modCount;
+            if (ascending) {
+                if (bounds == null || bounds.fromStart) {
+                    leaf = firstLeaf();
+                    index = 0;
+                } else {
+                    seek(bounds.lo, bounds.loInclusive ? GT|EQ : GT);
+                }
+            } else {
+                if (bounds == null || bounds.toEnd) {
+                    leaf = lastLeaf();
+                    index = (leaf == null) ? 0 : leaf.n - 1;
+                } else {
+                    seek(bounds.hi, bounds.hiInclusive ? LT|EQ : LT);
+                }
+            }
+            checkFence();
+        }
+
+        private void seek(Object key, int rel) {
+            Leaf<K,V> l = leafFor(key);
+            int i = (l == null) ? 0 : nearIndex(l, key, rel);
+            if (l != null && i >= l.n) {
+                l = l.next;
+                i = 0;
+            } else if (i < 0) {
+                l = l.prev;
+                i = (l == null) ? 0 : l.n - 1;
+            }
+            leaf = l;
+            index = i;
+        }
+
+        /** Ends the iteration if the next mapping is out of bounds. */
+        private void checkFence() {
+            SubMap<K,V> b = bounds;
+            Leaf<K,V> l = leaf;
+            if (b != null && l != null) {
+                Object k = l.keys[index];
+                if (ascending ? b.tooHigh(k) : b.tooLow(k))
+                    leaf = null;
+            }
+        }
+
+        public final boolean hasNext() {
+            return leaf != null;
+        }
+
+        /** Advances, and returns the leaf of the mapping passed over. */
+        final Leaf<K,V> nextLeaf() {
+            Leaf<K,V> l = leaf;
+            if (l == null)
+                throw new NoSuchElementException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int i = index;
+            lastLeaf = l;
+            lastIndex = i;
+            if (ascending) {
+                if (++i == l.n) {
+                    l = l.next;
+                    i = 0;
+                }
+            } else if (--i < 0) {
+                l = l.prev;
+                i = (l == null) ? 0 : l.n - 1;
+            }
+            leaf = l;
+            index = i;
+            checkFence();
+            return lastLeaf;
+        }
+
+        public void remove() {
+            Leaf<K,V> l = lastLeaf;
+            if (l == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            Object nextKey = (leaf == null) ? null : leaf.keys[index];
+            deleteAt(l, lastIndex);
+            lastLeaf = null;
+            expectedModCount = modCount;
+            if (leaf != null)
+                seek(nextKey, ascending ? GT|EQ : LT|EQ);
+        }
+    }
+
+    final class EntryIterator extends Iter<Map.Entry<K,V>> {
+        EntryIterator(SubMap<K,V> bounds, boolean ascending) {
+            super(bounds, ascending);
+        }
+        public Map.Entry<K,V> next() {
+            return new IterEntry(nextLeaf(), lastIndex);
+        }
+    }
+
+    final class ValueIterator extends Iter<V> {
+        ValueIterator(SubMap<K,V> bounds, boolean ascending) {
+            super(bounds, ascending);
+        }
+        @SuppressWarnings("unchecked")
+        public V next() {
+            return (V)nextLeaf().vals[lastIndex];
+        }
+    }
+
+    final class KeyIterator extends Iter<K> {
+        KeyIterator(SubMap<K,V> bounds, boolean ascending) {
+            super(bounds, ascending);
+        }
+        @SuppressWarnings("unchecked")
+        public K next() {
+            return (K)nextLeaf().keys[lastIndex];
+        }
+    }
+
+    /**
+     * An entry returned by an entry iterator, whose {@code setValue}
+     * writes through to the map as long as the map still contains the
+     * key.
+     */
+    final class IterEntry extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = -6296133883779457006L;
+
+        private transient Leaf<K,V> leaf;
+        private transient int index;
+
+        @SuppressWarnings("unchecked")
+        IterEntry(Leaf<K,V> leaf, int index) {
+            super((K)leaf.keys[index], (V)leaf.vals[index]);
+            this.leaf = leaf;
+            this.index = index;
+        }
+
+        public V setValue(V value) {
+            K key = getKey();
+            Leaf<K,V> l = leaf;
+            int i = index;
+            // mappings move between leaves on structural modifications
+            if (l == null || i >= l.n || l.keys[i] != key) {
+                l = leafFor(key);
+                i = (l == null) ? -1 : search(l, key);
+                leaf = (i < 0) ? null : l;
+                index = i;
+            }
+            if (i >= 0)
+                l.vals[i] = value;
+            return super.setValue(value);
+        }
+    }
+
+    // SubMaps
+
+    /**
+     * A view of a range of the map, ascending or descending.  The bounds
+     * are in the ascending order of the map.
+     *
+     * @serial include
+     */
+    static final class SubMap<K,V> extends AbstractMap<K,V>
+        implements NavigableMap<K,V>, java.io.Serializable {
+        private static final long serialVersionUID = 4283412926853426357L;
+
+        /**
+         * The backing map.
+         */
+        final BTreeMap<K,V> m;
+
+        /**
+         * Endpoints are represented as triples (fromStart, lo,
+         * loInclusive) and (toEnd, hi, hiInclusive). If fromStart is
+         * true, then the low (absolute) bound is the start of the
+         * backing map, and the other values are ignored. Otherwise,
+         * if loInclusive is true, lo is an inclusive bound, else lo
+         * is exclusive. Similarly for the upper bound.
+         */
+        final K lo, hi;
+        final boolean fromStart, toEnd;
+        final boolean loInclusive, hiInclusive;
+
+        /** Whether this is a descending view. */
+        final boolean descending;
+
+        SubMap(BTreeMap<K,V> m,
+               boolean fromStart, K lo, boolean loInclusive,
+               boolean toEnd,     K hi, boolean hiInclusive,
+               boolean descending) {
+            if (!fromStart && !toEnd) {
+                if (m.compare(lo, hi) > 0)
+                    throw new IllegalArgumentException("fromKey > toKey");
+            } else {
+                if (!fromStart) // type check
+                    m.compare(lo, lo);
+                if (!toEnd)
+                    m.compare(hi, hi);
+            }
+
+            this.m = m;
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        // internal utilities
+
+        final boolean tooLow(Object key) {
+            if (!fromStart) {
+                int c = m.compare(key, lo);
+                if (c < 0 || (c == 0 && !loInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        final boolean tooHigh(Object key) {
+            if (!toEnd) {
+                int c = m.compare(key, hi);
+                if (c > 0 || (c == 0 && !hiInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        final boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        final boolean inClosedRange(Object key) {
+            return (fromStart || m.compare(key, lo) >= 0)
+                && (toEnd || m.compare(hi, key) >= 0);
+        }
+
+        final boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        /*
+         * Absolute versions of relation operations, in the ascending
+         * order of the backing map.
+         */
+
+        final Map.Entry<K,V> absLowest() {
+            Map.Entry<K,V> e =
+                (fromStart ?  m.firstEntry() :
+                 m.getNearEntry(lo, loInclusive ? GT|EQ : GT));
+            return (e == null || tooHigh(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absHighest() {
+            Map.Entry<K,V> e =
+                (toEnd ?  m.lastEntry() :
+                 m.getNearEntry(hi, hiInclusive ? LT|EQ : LT));
+            return (e == null || tooLow(e.getKey())) ? null : e;
+        }
+
+        final Map.Entry<K,V> absNear(K key, int rel) {
+            if (descending) // adjust relation for direction
+                rel ^= LT;
+            if (tooLow(key))
+                return ((rel & LT) != 0) ? null : absLowest();
+            if (tooHigh(key))
+                return ((rel & LT) != 0) ? absHighest() : null;
+            Map.Entry<K,V> e = m.getNearEntry(key, rel);
+            return (e == null || !inRange(e.getKey())) ? null : e;
+        }
+
+        // public methods
+
+        public boolean isEmpty() {
+            return (fromStart && toEnd) ? m.isEmpty() : absLowest() == null;
+        }
+
+        public int size() {
+            if (fromStart && toEnd)
+                return m.size();
+            int count = 0;
+            for (Iterator<K> it = keyIterator(); it.hasNext(); it.next())
+                count++;
+            return count;
+        }
+
+        public final boolean containsKey(Object key) {
+            return inRange(key) && m.containsKey(key);
+        }
+
+        public final V put(K key, V value) {
+            if (!inRange(key))
+                throw new IllegalArgumentException("key out of range");
+            return m.put(key, value);
+        }
+
+        public final V get(Object key) {
+            return !inRange(key) ? null :  m.get(key);
+        }
+
+        public final V remove(Object key) {
+            return !inRange(key) ? null : m.remove(key);
+        }
+
+        public void clear() {
+            if (fromStart && toEnd) {
+                m.clear();
+                return;
+            }
+            for (Map.Entry<K,V> e; (e = absLowest()) != null; )
+                m.remove(e.getKey());
+        }
+
+        public Comparator<? super K> comparator() {
+            Comparator<? super K> cmp = m.comparator();
+            return descending ? Collections.reverseOrder(cmp) : cmp;
+        }
+
+        public final K firstKey() {
+            return key(firstEntry());
+        }
+
+        public final K lastKey() {
+            return key(lastEntry());
+        }
+
+        public final Map.Entry<K,V> firstEntry() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        public final Map.Entry<K,V> lastEntry() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        public final Map.Entry<K,V> pollFirstEntry() {
+            Map.Entry<K,V> e = firstEntry();
+            if (e != null)
+                m.remove(e.getKey());
+            return e;
+        }
+
+        public final Map.Entry<K,V> pollLastEntry() {
+            Map.Entry<K,V> e = lastEntry();
+            if (e != null)
+                m.remove(e.getKey());
+            return e;
+        }
+
+        public final Map.Entry<K,V> ceilingEntry(K key) {
+            return absNear(key, GT|EQ);
+        }
+
+        public final K ceilingKey(K key) {
+            return keyOrNull(absNear(key, GT|EQ));
+        }
+
+        public final Map.Entry<K,V> higherEntry(K key) {
+            return absNear(key, GT);
+        }
+
+        public final K higherKey(K key) {
+            return keyOrNull(absNear(key, GT));
+        }
+
+        public final Map.Entry<K,V> floorEntry(K key) {
+            return absNear(key, LT|EQ);
+        }
+
+        public final K floorKey(K key) {
+            return keyOrNull(absNear(key, LT|EQ));
+        }
+
+        public final Map.Entry<K,V> lowerEntry(K key) {
+            return absNear(key, LT);
+        }
+
+        public final K lowerKey(K key) {
+            return keyOrNull(absNear(key, LT));
+        }
+
+        // Views
+
+        transient KeySet<K> navigableKeySetView;
+        transient Set<Map.Entry<K,V>> entrySetView;
+        transient Collection<V> valuesView;
+
+        public final NavigableSet<K> navigableKeySet() {
+            KeySet<K> nksv = navigableKeySetView;
+            return (nksv != null) ? nksv :
+                (navigableKeySetView = new KeySet<>(this));
+        }
+
+        public final Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        public Collection<V> values() {
+            Collection<V> vs = valuesView;
+            return (vs != null) ? vs : (valuesView = new Values<>(this));
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            Set<Map.Entry<K,V>> es = entrySetView;
+            return (es != null) ? es : (entrySetView = new EntrySet<>(this));
+        }
+
+        public NavigableMap<K,V> descendingMap() {
+            return new SubMap<>(m, fromStart, lo, loInclusive,
+                                toEnd, hi, hiInclusive, !descending);
+        }
+
+        /**
+         * Returns a view of the given range, whose bounds are in the
+         * ascending order of the backing map.  A true fromStart or toEnd
+         * means the new view keeps the corresponding bound of this one.
+         */
+        private SubMap<K,V> view(boolean fs, K l, boolean li,
+                                 boolean te, K h, boolean hii) {
+            if (!fs && !inRange(l, li))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (!te && !inRange(h, hii))
+                throw new IllegalArgumentException("toKey out of range");
+            if (fs) {
+                fs = fromStart;
+                l = lo;
+                li = loInclusive;
+            }
+            if (te) {
+                te = toEnd;
+                h = hi;
+                hii = hiInclusive;
+            }
+            return new SubMap<>(m, fs, l, li, te, h, hii, descending);
+        }
+
+        public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                        K toKey,   boolean toInclusive) {
+            return descending
+                ? view(false, toKey, toInclusive, false, fromKey, fromInclusive)
+                : view(false, fromKey, fromInclusive, false, toKey, toInclusive);
+        }
+
+        public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+            return descending
+                ? view(false, toKey, inclusive, true, null, false)
+                : view(true, null, false, false, toKey, inclusive);
+        }
+
+        public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+            return descending
+                ? view(true, null, false, false, fromKey, inclusive)
+                : view(false, fromKey, inclusive, true, null, false);
+        }
+
+        public SortedMap<K,V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        public SortedMap<K,V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        public SortedMap<K,V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        Iterator<K> keyIterator() {
+            return m.new KeyIterator(this, !descending);
+        }
+
+        Iterator<K> descendingKeyIterator() {
+            return m.new KeyIterator(this, descending);
+        }
+
+        Iterator<V> valueIterator() {
+            return m.new ValueIterator(this, !descending);
+        }
+
+        Iterator<Map.Entry<K,V>> entryIterator() {
+            return m.new EntryIterator(this, !descending);
+        }
+    }
+
+    // Tree nodes
+
+    /**
+     * Node in the Tree.  For a leaf, n is the number of mappings; for an
+     * interior node, it is the number of children.
+     */
+    abstract static class Node<K,V> {
+        int n;
+    }
+
+    /**
+     * A leaf, holding up to NODE_CAPACITY mappings in ascending key
+     * order.  Slots at and beyond n are null.
+     */
+    static final class Leaf<K,V> extends Node<K,V> {
+        final Object[] keys = new Object[NODE_CAPACITY];
+        final Object[] vals = new Object[NODE_CAPACITY];
+        Leaf<K,V> prev, next;
+
+        /** Inserts a mapping at index i; the leaf must not be full. */
+        void insert(int i, Object key, Object value) {
+            int m = n - i;
+            if (m > 0) {
+                System.arraycopy(keys, i, keys, i + 1, m);
+                System.arraycopy(vals, i, vals, i + 1, m);
+            }
+            keys[i] = key;
+            vals[i] = value;
+            n++;
+        }
+
+        /** Removes the mapping at index i. */
+        void delete(int i) {
+            int m = n - i - 1;
+            if (m > 0) {
+                System.arraycopy(keys, i + 1, keys, i, m);
+                System.arraycopy(vals, i + 1, vals, i, m);
+            }
+            keys[--n] = null;
+            vals[n] = null;
+        }
+    }
+
+    /**
+     * An interior node, with n children and n - 1 separating keys.  All
+     * keys in children[i] are less than keys[i], which is less than or
+     * equal to all keys in children[i + 1].
+     */
+    static final class Inner<K,V> extends Node<K,V> {
+        final Object[] keys = new Object[NODE_CAPACITY - 1];
+        @SuppressWarnings("unchecked")
+        final Node<K,V>[] children = (Node<K,V>[])new Node<?,?>[NODE_CAPACITY];
+
+        /** Inserts key and child to the right of children[i]. */
+        void insert(int i, Object key, Node<K,V> child) {
+            int m = n - 1 - i;
+            if (m > 0) {
+                System.arraycopy(keys, i, keys, i + 1, m);
+                System.arraycopy(children, i + 1, children, i + 2, m);
+            }
+            keys[i] = key;
+            children[i + 1] = child;
+            n++;
+        }
+
+        /** Removes keys[i] and children[i + 1]. */
+        void delete(int i) {
+            int m = n - 2 - i;
+            if (m > 0) {
+                System.arraycopy(keys, i + 1, keys, i, m);
+                System.arraycopy(children, i + 2, children, i + 1, m);
+            }
+            keys[n - 2] = null;
+            children[--n] = null;
+        }
+    }
+
+    // Little utilities
+
+    /**
+     * Compares two keys using the correct comparison method for this
+     * BTreeMap.
+     */
+    @SuppressWarnings("unchecked")
+    final int compare(Object k1, Object k2) {
+        return comparator==null ? ((Comparable<? super K>)k1).compareTo((K)k2)
+            : comparator.compare((K)k1, (K)k2);
+    }
+
+    /**
+     * Returns the index of key in leaf l, or -(insertion point) - 1.
+     */
+    final int search(Leaf<K,V> l, Object key) {
+        Object[] keys = l.keys;
+        int low = 0, high = l.n - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(keys[mid], key);
+            if (c < 0)
+                low = mid + 1;
+            else if (c > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the index of the child of p whose subtree may hold key.
+     */
+    final int childIndex(Inner<K,V> p, Object key) {
+        Object[] keys = p.keys;
+        int low = 0, high = p.n - 2;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(keys[mid], key);
+            if (c < 0)
+                low = mid + 1;
+            else if (c > 0)
+                high = mid - 1;
+            else
+                return mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the leaf whose range holds key, or null if the map is
+     * empty, in which case the key is still checked for type and null.
+     */
+    final Leaf<K,V> leafFor(Object key) {
+        Node<K,V> p = root;
+        if (p == null) {
+            compare(key, key); // type (and possibly null) check
+            return null;
+        }
+        for (int h = height; h > 0; h--) {
+            Inner<K,V> in = (Inner<K,V>)p;
+            p = in.children[childIndex(in, key)];
+        }
+        return (Leaf<K,V>)p;
+    }
+
+    final Leaf<K,V> firstLeaf() {
+        Node<K,V> p = root;
+        for (int h = height; h > 0; h--)
+            p = ((Inner<K,V>)p).children[0];
+        return (Leaf<K,V>)p;
+    }
+
+    final Leaf<K,V> lastLeaf() {
+        Node<K,V> p = root;
+        for (int h = height; h > 0; h--) {
+            Inner<K,V> in = (Inner<K,V>)p;
+            p = in.children[in.n - 1];
+        }
+        return (Leaf<K,V>)p;
+    }
+
+    /**
+     * Returns the index in leaf l, the leaf whose range holds key, of
+     * the mapping nearest to key in relation rel: l.n if it is in a
+     * later leaf, or -1 if it is in an earlier one.
+     */
+    final int nearIndex(Leaf<K,V> l, Object key, int rel) {
+        int i = search(l, key);
+        if (i >= 0) {
+            if ((rel & EQ) != 0)
+                return i;
+            return ((rel & LT) != 0) ? i - 1 : i + 1;
+        }
+        i = -(i + 1);
+        return ((rel & LT) != 0) ? i - 1 : i;
+    }
+
+    /**
+     * Returns a snapshot of the mapping nearest to key in relation rel,
+     * or null if there is none.
+     */
+    final Map.Entry<K,V> getNearEntry(Object key, int rel) {
+        Leaf<K,V> l = leafFor(key);
+        if (l == null)
+            return null;
+        int i = nearIndex(l, key, rel);
+        if (i >= l.n) {
+            l = l.next;
+            i = 0;
+        } else if (i < 0) {
+            l = l.prev;
+            i = (l == null) ? 0 : l.n - 1;
+        }
+        return exportEntry(l, i);
+    }
+
+    @SuppressWarnings("unchecked")
+    final K getNearKey(Object key, int rel) {
+        Leaf<K,V> l = leafFor(key);
+        if (l == null)
+            return null;
+        int i = nearIndex(l, key, rel);
+        if (i >= l.n) {
+            l = l.next;
+            i = 0;
+        } else if (i < 0) {
+            l = l.prev;
+            i = (l == null) ? 0 : l.n - 1;
+        }
+        return (l == null) ? null : (K)l.keys[i];
+    }
+
+    /**
+     * Returns a SimpleImmutableEntry for the mapping at index i of leaf
+     * l, or null if l is null.
+     */
+    @SuppressWarnings("unchecked")
+    static <K,V> Map.Entry<K,V> exportEntry(Leaf<K,V> l, int i) {
+        return (l == null) ? null :
+            new AbstractMap.SimpleImmutableEntry<>((K)l.keys[i], (V)l.vals[i]);
+    }
+
+    /**
+     * Returns the key at index i of leaf l, or throws
+     * NoSuchElementException if l is null.
+     */
+    @SuppressWarnings("unchecked")
+    static <K> K key(Leaf<K,?> l, int i) {
+        if (l == null)
+            throw new NoSuchElementException();
+        return (K)l.keys[i];
+    }
+
+    /**
+     * Return key for entry, or null if null
+     */
+    static <K,V> K keyOrNull(Map.Entry<K,V> e) {
+        return (e == null) ? null : e.getKey();
+    }
+
+    /**
+     * Returns the key corresponding to the specified Entry.
+     * @throws NoSuchElementException if the Entry is null
+     */
+    static <K> K key(Map.Entry<K,?> e) {
+        if (e == null)
+            throw new NoSuchElementException();
+        return e.getKey();
+    }
+
+    // Insertion and deletion
+
+    /**
+     * Inserts a mapping for a key that is absent into its leaf, which is
+     * full: splits the leaf, and then each ancestor that is full in turn,
+     * growing the tree if the root splits.
+     */
+    private void splitAndInsert(K key, V value) {
+        int h = height;
+        @SuppressWarnings("unchecked")
+        Inner<K,V>[] path = (Inner<K,V>[])new Inner<?,?>[h];
+        int[] at = new int[h];
+        Node<K,V> p = root;
+        for (int d = 0; d < h; d++) {
+            Inner<K,V> in = (Inner<K,V>)p;
+            int c = childIndex(in, key);
+            path[d] = in;
+            at[d] = c;
+            p = in.children[c];
+        }
+        Leaf<K,V> l = (Leaf<K,V>)p;
+        Leaf<K,V> r = splitLeaf(l, -(search(l, key) + 1), key, value);
+        Object sep = r.keys[0];
+        Node<K,V> right = r;
+        for (int d = h - 1; d >= 0; d--) {
+            Inner<K,V> in = path[d];
+            if (in.n < NODE_CAPACITY) {
+                in.insert(at[d], sep, right);
+                return;
+            }
+            // Split the full node around its middle child, and promote
+            // the separator between the halves
+            int c = at[d];
+            Object[] keys = new Object[NODE_CAPACITY];
+            Object[] kids = new Object[NODE_CAPACITY + 1];
+            System.arraycopy(in.keys, 0, keys, 0, c);
+            keys[c] = sep;
+            System.arraycopy(in.keys, c, keys, c + 1, NODE_CAPACITY - 1 - c);
+            System.arraycopy(in.children, 0, kids, 0, c + 1);
+            kids[c + 1] = right;
+            System.arraycopy(in.children, c + 1, kids, c + 2,
+                             NODE_CAPACITY - 1 - c);
+            int half = (NODE_CAPACITY + 1) >>> 1;
+            Inner<K,V> rin = new Inner<>();
+            Arrays.fill(in.keys, null);
+            Arrays.fill(in.children, null);
+            System.arraycopy(keys, 0, in.keys, 0, half - 1);
+            System.arraycopy(kids, 0, in.children, 0, half);
+            in.n = half;
+            System.arraycopy(keys, half, rin.keys, 0, NODE_CAPACITY - half);
+            System.arraycopy(kids, half, rin.children, 0,
+                             NODE_CAPACITY + 1 - half);
+            rin.n = NODE_CAPACITY + 1 - half;
+            sep = keys[half - 1];
+            right = rin;
+        }
+        Inner<K,V> nr = new Inner<>();
+        nr.children[0] = root;
+        nr.children[1] = right;
+        nr.keys[0] = sep;
+        nr.n = 2;
+        root = nr;
+        height = h + 1;
+    }
+
+    /**
+     * Splits the full leaf l, inserting the mapping at index i, and
+     * returns the new right sibling.  Appending to the last leaf of the
+     * map leaves l full, so that ascending insertions pack the leaves.
+     */
+    private static <K,V> Leaf<K,V> splitLeaf(Leaf<K,V> l, int i,
+                                             Object key, Object value) {
+        Leaf<K,V> r = new Leaf<>();
+        if (i == NODE_CAPACITY && l.next == null) {
+            r.keys[0] = key;
+            r.vals[0] = value;
+            r.n = 1;
+        } else {
+            int half = (NODE_CAPACITY + 1) >>> 1;
+            int from = (i < half) ? half - 1 : half;
+            int m = NODE_CAPACITY - from;
+            System.arraycopy(l.keys, from, r.keys, 0, m);
+            System.arraycopy(l.vals, from, r.vals, 0, m);
+            Arrays.fill(l.keys, from, NODE_CAPACITY, null);
+            Arrays.fill(l.vals, from, NODE_CAPACITY, null);
+            l.n = from;
+            r.n = m;
+            if (i < half)
+                l.insert(i, key, value);
+            else
+                r.insert(i - from, key, value);
+        }
+        r.prev = l;
+        r.next = l.next;
+        if (l.next != null)
+            l.next.prev = r;
+        l.next = r;
+        return r;
+    }
+
+    /**
+     * Deletes the mapping at index i of leaf l, and rebalances the tree
+     * if the leaf underflows.
+     */
+    final void deleteAt(Leaf<K,V> l, int i) {
+        Object key = l.keys[i];
+        l.delete(i);
+        size--;
+        modCount++;
+        if (l.n >= MIN_NODE_SIZE)
+            return;
+        if (height == 0) {
+            if (l.n == 0)
+                root = null;
+            return;
+        }
+        rebalance(key);
+    }
+
+    /**
+     * Restores the minimum size of the nodes on the path to the leaf
+     * whose range holds key, bottom up, by moving a mapping or child
+     * from a sibling, or merging with a sibling, and shrinks the tree if
+     * the root is left with a single child.
+     */
+    private void rebalance(Object key) {
+        int h = height;
+        @SuppressWarnings("unchecked")
+        Inner<K,V>[] path = (Inner<K,V>[])new Inner<?,?>[h];
+        int[] at = new int[h];
+        Node<K,V> p = root;
+        for (int d = 0; d < h; d++) {
+            Inner<K,V> in = (Inner<K,V>)p;
+            int c = childIndex(in, key);
+            path[d] = in;
+            at[d] = c;
+            p = in.children[c];
+        }
+        for (int d = h - 1; d >= 0; d--) {
+            Inner<K,V> parent = path[d];
+            int c = at[d];
+            if (parent.children[c].n >= MIN_NODE_SIZE)
+                break;
+            fixChild(parent, c);
+        }
+        Node<K,V> r = root;
+        if (h > 0 && r.n == 1) {
+            root = ((Inner<K,V>)r).children[0];
+            height = h - 1;
+        }
+    }
+
+    /**
+     * Fixes the underflow of children[c] of parent, which has at least
+     * two children.
+     */
+    private static <K,V> void fixChild(Inner<K,V> parent, int c) {
+        Node<K,V> left = (c > 0) ? parent.children[c - 1] : null;
+        Node<K,V> right = (c + 1 < parent.n) ? parent.children[c + 1] : null;
+        if (left != null && left.n > MIN_NODE_SIZE)
+            borrowFromLeft(parent, c);
+        else if (right != null && right.n > MIN_NODE_SIZE)
+            borrowFromRight(parent, c);
+        else if (left != null)
+            merge(parent, c - 1);
+        else
+            merge(parent, c);
+    }
+
+    private static <K,V> void borrowFromLeft(Inner<K,V> parent, int c) {
+        Node<K,V> node = parent.children[c];
+        if (node instanceof Leaf) {
+            Leaf<K,V> l = (Leaf<K,V>)node, left = l.prev;
+            int j = left.n - 1;
+            l.insert(0, left.keys[j], left.vals[j]);
+            left.delete(j);
+            parent.keys[c - 1] = l.keys[0];
+        } else {
+            Inner<K,V> in = (Inner<K,V>)node;
+            Inner<K,V> left = (Inner<K,V>)parent.children[c - 1];
+            System.arraycopy(in.keys, 0, in.keys, 1, in.n - 1);
+            System.arraycopy(in.children, 0, in.children, 1, in.n);
+            in.keys[0] = parent.keys[c - 1];
+            in.children[0] = left.children[left.n - 1];
+            in.n++;
+            parent.keys[c - 1] = left.keys[left.n - 2];
+            left.keys[left.n - 2] = null;
+            left.children[--left.n] = null;
+        }
+    }
+
+    private static <K,V> void borrowFromRight(Inner<K,V> parent, int c) {
+        Node<K,V> node = parent.children[c];
+        if (node instanceof Leaf) {
+            Leaf<K,V> l = (Leaf<K,V>)node, right = l.next;
+            l.insert(l.n, right.keys[0], right.vals[0]);
+            right.delete(0);
+            parent.keys[c] = right.keys[0];
+        } else {
+            Inner<K,V> in = (Inner<K,V>)node;
+            Inner<K,V> right = (Inner<K,V>)parent.children[c + 1];
+            in.keys[in.n - 1] = parent.keys[c];
+            in.children[in.n++] = right.children[0];
+            parent.keys[c] = right.keys[0];
+            int m = right.n - 1;
+            System.arraycopy(right.keys, 1, right.keys, 0, m - 1);
+            System.arraycopy(right.children, 1, right.children, 0, m);
+            right.keys[m - 1] = null;
+            right.children[m] = null;
+            right.n = m;
+        }
+    }
+
+    /**
+     * Merges children[j + 1] of parent into children[j].
+     */
+    private static <K,V> void merge(Inner<K,V> parent, int j) {
+        Node<K,V> node = parent.children[j];
+        if (node instanceof Leaf) {
+            Leaf<K,V> l = (Leaf<K,V>)node, r = l.next;
+            System.arraycopy(r.keys, 0, l.keys, l.n, r.n);
+            System.arraycopy(r.vals, 0, l.vals, l.n, r.n);
+            l.n += r.n;
+            l.next = r.next;
+            if (r.next != null)
+                r.next.prev = l;
+            // empty the merged leaf, for the benefit of stale entries
+            Arrays.fill(r.keys, 0, r.n, null);
+            Arrays.fill(r.vals, 0, r.n, null);
+            r.n = 0;
+        } else {
+            Inner<K,V> l = (Inner<K,V>)node;
+            Inner<K,V> r = (Inner<K,V>)parent.children[j + 1];
+            l.keys[l.n - 1] = parent.keys[j];
+            System.arraycopy(r.keys, 0, l.keys, l.n, r.n - 1);
+            System.arraycopy(r.children, 0, l.children, l.n, r.n);
+            l.n += r.n;
+        }
+        parent.delete(j);
+    }
+
+    /**
+     * Builds the tree in linear time from n mappings in ascending key
+     * order, read from the iterator if it is non-null, or else as
+     * alternating keys and values from the stream.  The leaves are
+     * packed as full as possible, the mappings being spread evenly
+     * across them, and so are the nodes of each level above.
+     */
+    @SuppressWarnings("unchecked")
+    private void buildFromSorted(int n, Iterator<?> it,
+                                 java.io.ObjectInputStream str)
+        throws  java.io.IOException, ClassNotFoundException {
+        size = n;
+        if (n == 0) {
+            root = null;
+            height = 0;
+            return;
+        }
+        int count = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        Node<K,V>[] level = (Node<K,V>[])new Node<?,?>[count];
+        Object[] lows = new Object[count];
+        Leaf<K,V> prev = null;
+        for (int j = 0, q = n / count, r = n % count; j < count; j++) {
+            Leaf<K,V> l = new Leaf<>();
+            int m = (j < r) ? q + 1 : q;
+            for (int i = 0; i < m; i++) {
+                if (it != null) {
+                    Map.Entry<?,?> e = (Map.Entry<?,?>)it.next();
+                    l.keys[i] = e.getKey();
+                    l.vals[i] = e.getValue();
+                } else {
+                    l.keys[i] = str.readObject();
+                    l.vals[i] = str.readObject();
+                }
+            }
+            l.n = m;
+            l.prev = prev;
+            if (prev != null)
+                prev.next = l;
+            prev = l;
+            level[j] = l;
+            lows[j] = l.keys[0];
+        }
+        int h = 0;
+        while (count > 1) {
+            int parents = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            Node<K,V>[] up = (Node<K,V>[])new Node<?,?>[parents];
+            Object[] upLows = new Object[parents];
+            int k = 0;
+            for (int j = 0, q = count / parents, r = count % parents;
+                 j < parents; j++) {
+                Inner<K,V> in = new Inner<>();
+                int m = (j < r) ? q + 1 : q;
+                System.arraycopy(level, k, in.children, 0, m);
+                System.arraycopy(lows, k + 1, in.keys, 0, m - 1);
+                in.n = m;
+                up[j] = in;
+                upLows[j] = lows[k];
+                k += m;
+            }
+            level = up;
+            lows = upLows;
+            count = parents;
+            h++;
+        }
+        root = level[0];
+        height = h;
+    }
+
+    /**
+     * Intended to be called only from BTreeMap(SortedMap) and putAll.
+     */
+    private void buildFromSorted(int n, Iterator<?> it) {
+        try {
+            buildFromSorted(n, it, null);
+        } catch (java.io.IOException | ClassNotFoundException cannotHappen) {
+        }
+    }
+
+    // Serialization
+
+    private static final long serialVersionUID = -3478012374128379403L;
+
+    /**
+     * Save the state of the {@code BTreeMap} instance to a stream (i.e.,
+     * serialize it).
+     *
+     * @serialData The <em>size</em> of the BTreeMap (the number of key-value
+     *             mappings) is emitted (int), followed by the key (Object)
+     *             and value (Object) for each key-value mapping represented
+     *             by the BTreeMap. The key-value mappings are emitted in
+     *             key-order (as determined by the BTreeMap's Comparator,
+     *             or by the keys' natural ordering if the BTreeMap has no
+     *             Comparator).
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        // Write out the Comparator and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out size (number of Mappings)
+        s.writeInt(size);
+
+        // Write out keys and values (alternating)
+        for (Leaf<K,V> l = firstLeaf(); l != null; l = l.next) {
+            for (int i = 0; i < l.n; i++) {
+                s.writeObject(l.keys[i]);
+                s.writeObject(l.vals[i]);
+            }
+        }
+    }
+
+    /**
+     * Reconstitute the {@code BTreeMap} instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        // Read in the Comparator and any hidden stuff
+        s.defaultReadObject();
+
+        // Read in size
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Invalid size: " + size);
+
+        buildFromSorted(size, null, s);
+    }
+
+    // Spliterators
+
+    /**
+     * Base class for the spliterators of the collection views of the
+     * whole map.  A spliterator covers a range [lo, hi) of the children
+     * of a subtree; splitting halves the range, first descending while
+     * the range holds a single child.  Traversal binds the range to the
+     * leftmost leaf of its first child and the leaf after the rightmost
+     * leaf of its last child, and walks the linked leaves in between.
+     */
+    static class BTreeSpliterator<K,V> {
+        final BTreeMap<K,V> tree;
+        Node<K,V> node;     // subtree to split; null once traversal begins
+        int lo, hi;         // range of children of node, if interior
+        Leaf<K,V> leaf;     // traverser: next leaf and index
+        int index;
+        Leaf<K,V> fence;    // the leaf after the last, or null
+        boolean split;      // whether est is an estimate
+        int est;            // size estimate (exact only for top-level)
+        int expectedModCount; // for CME checks
+
+        BTreeSpliterator(BTreeMap<K,V> tree) {
+            this.tree = tree;
+            this.est = -1;
+        }
+
+        BTreeSpliterator(BTreeMap<K,V> tree, Node<K,V> node, int lo, int hi,
+                         int est, int expectedModCount) {
+            this.tree = tree;
+            this.node = node;
+            this.lo = lo;
+            this.hi = hi;
+            this.split = true;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getEstimate() { // force initialization
+            int s;
+            if ((s = est) < 0) {
+                BTreeMap<K,V> t = tree;
+                node = t.root;
+                lo = 0;
+                hi = (node == null) ? 0 : node.n;
+                s = est = t.size;
+                expectedModCount = t.modCount;
+            }
+            return s;
+        }
+
+        public final long estimateSize() {
+            return (long)getEstimate();
+        }
+
+        /**
+         * Narrows this spliterator to the upper half of its range, and
+         * returns the node of the lower half, whose range is [lo, mid)
+         * with mid the new value of lo, or null if it cannot split.
+         */
+        final Node<K,V> splitNode() {
+            getEstimate();
+            Node<K,V> p = node;
+            if (p == null || (p instanceof Leaf))
+                return null;
+            while (hi - lo == 1) {
+                p = ((Inner<K,V>)p).children[lo];
+                if (p instanceof Leaf) {
+                    node = p;
+                    return null;
+                }
+                node = p;
+                lo = 0;
+                hi = p.n;
+            }
+            split = true;
+            est >>>= 1;
+            return p;
+        }
+
+        /** Binds the traverser to the range, on first traversal. */
+        final void bind() {
+            Node<K,V> p = node;
+            if (p == null)
+                return;
+            node = null;
+            Node<K,V> first, last;
+            if (p instanceof Leaf) {
+                first = last = p;
+            } else {
+                first = ((Inner<K,V>)p).children[lo];
+                last = ((Inner<K,V>)p).children[hi - 1];
+                while (first instanceof Inner)
+                    first = ((Inner<K,V>)first).children[0];
+                while (last instanceof Inner) {
+                    Inner<K,V> in = (Inner<K,V>)last;
+                    last = in.children[in.n - 1];
+                }
+            }
+            leaf = (Leaf<K,V>)first;
+            index = 0;
+            fence = ((Leaf<K,V>)last).next;
+        }
+
+        final int characteristics(int c) {
+            return (split ? 0 : Spliterator.SIZED) | c;
+        }
+    }
+
+    static final class KeySpliterator<K,V>
+        extends BTreeSpliterator<K,V>
+        implements Spliterator<K> {
+        KeySpliterator(BTreeMap<K,V> tree) {
+            super(tree);
+        }
+
+        KeySpliterator(BTreeMap<K,V> tree, Node<K,V> node, int lo, int hi,
+                       int est, int expectedModCount) {
+            super(tree, node, lo, hi, est, expectedModCount);
+        }
+
+        public KeySpliterator<K,V> trySplit() {
+            Node<K,V> p = splitNode();
+            if (p == null)
+                return null;
+            int mid = (lo + hi) >>> 1, l = lo;
+            lo = mid;
+            return new KeySpliterator<>(tree, p, l, mid, est,
+                                        expectedModCount);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super K> action) {
+            if (action == null)
+                throw new NullPointerException();
+            getEstimate();
+            bind();
+            Leaf<K,V> l = leaf, f = fence;
+            int i = index;
+            leaf = f;
+            for (; l != f; l = l.next, i = 0) {
+                for (; i < l.n; i++)
+                    action.accept((K)l.keys[i]);
+            }
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super K> action) {
+            if (action == null)
+                throw new NullPointerException();
+            getEstimate();
+            bind();
+            Leaf<K,V> l = leaf;
+            if (l == fence)
+                return false;
+            K k = (K)l.keys[index];
+            if (++index == l.n) {
+                leaf = l.next;
+                index = 0;
+            }
+            action.accept(k);
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        public int characteristics() {
+            return characteristics(Spliterator.DISTINCT | Spliterator.SORTED |
+                                   Spliterator.ORDERED);
+        }
+
+        public final Comparator<? super K>  getComparator() {
+            return tree.comparator;
+        }
+    }
+
+    static final class ValueSpliterator<K,V>
+            extends BTreeSpliterator<K,V>
+            implements Spliterator<V> {
+        ValueSpliterator(BTreeMap<K,V> tree) {
+            super(tree);
+        }
+
+        ValueSpliterator(BTreeMap<K,V> tree, Node<K,V> node, int lo, int hi,
+                         int est, int expectedModCount) {
+            super(tree, node, lo, hi, est, expectedModCount);
+        }
+
+        public ValueSpliterator<K,V> trySplit() {
+            Node<K,V> p = splitNode();
+            if (p == null)
+                return null;
+            int mid = (lo + hi) >>> 1, l = lo;
+            lo = mid;
+            return new ValueSpliterator<>(tree, p, l, mid, est,
+                                          expectedModCount);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            getEstimate();
+            bind();
+            Leaf<K,V> l = leaf, f = fence;
+            int i = index;
+            leaf = f;
+            for (; l != f; l = l.next, i = 0) {
+                for (; i < l.n; i++)
+                    action.accept((V)l.vals[i]);
+            }
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if (action == null)
+                throw new NullPointerException();
+            getEstimate();
+            bind();
+            Leaf<K,V> l = leaf;
+            if (l == fence)
+                return false;
+            V v = (V)l.vals[index];
+            if (++index == l.n) {
+                leaf = l.next;
+                index = 0;
+            }
+            action.accept(v);
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        public int characteristics() {
+            return characteristics(Spliterator.ORDERED);
+        }
+    }
+
+    static final class EntrySpliterator<K,V>
+        extends BTreeSpliterator<K,V>
+        implements Spliterator<Map.Entry<K,V>> {
+        EntrySpliterator(BTreeMap<K,V> tree) {
+            super(tree);
+        }
+
+        EntrySpliterator(BTreeMap<K,V> tree, Node<K,V> node, int lo, int hi,
+                         int est, int expectedModCount) {
+            super(tree, node, lo, hi, est, expectedModCount);
+        }
+
+        public EntrySpliterator<K,V> trySplit() {
+            Node<K,V> p = splitNode();
+            if (p == null)
+                return null;
+            int mid = (lo + hi) >>> 1, l = lo;
+            lo = mid;
+            return new EntrySpliterator<>(tree, p, l, mid, est,
+                                          expectedModCount);
+        }
+
+        public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            getEstimate();
+            bind();
+            Leaf<K,V> l = leaf, f = fence;
+            int i = index;
+            leaf = f;
+            for (; l != f; l = l.next, i = 0) {
+                for (; i < l.n; i++)
+                    action.accept(tree.new IterEntry(l, i));
+            }
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        public boolean tryAdvance(Consumer<? super Map.Entry<K,V>> action) {
+            if (action == null)
+                throw new NullPointerException();
+            getEstimate();
+            bind();
+            Leaf<K,V> l = leaf;
+            if (l == fence)
+                return false;
+            Map.Entry<K,V> e = tree.new IterEntry(l, index);
+            if (++index == l.n) {
+                leaf = l.next;
+                index = 0;
+            }
+            action.accept(e);
+            if (tree.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        public int characteristics() {
+            return characteristics(Spliterator.DISTINCT | Spliterator.SORTED |
+                                   Spliterator.ORDERED);
+        }
+
+        @Override
+        public Comparator<Map.Entry<K, V>> getComparator() {
+            // Adapt or create a key-based comparator
+            if (tree.comparator != null) {
+                return Map.Entry.comparingByKey(tree.comparator);
+            }
+            else {
+                return (Comparator<Map.Entry<K, V>> & Serializable) (e1, e2) -> {
+                    @SuppressWarnings("unchecked")
+                    Comparable<? super K> k1 = (Comparable<? super K>) e1.getKey();
+                    return k1.compareTo(e2.getKey());
+                };
+            }
+        }
+    }
+}
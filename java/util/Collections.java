@@ -4960,6 +4960,132 @@ public class Collections {
         }
     }
 
+    // Immutable collections
+
+    /**
+     * Returns an immutable list containing the elements of the specified
+     * collection, in the order they are returned by its iterator.  The
+     * returned list is serializable and implements {@link RandomAccess}.
+     *
+     * <p>Unlike {@link #unmodifiableList(List)}, the returned list is not a
+     * view: it holds its own copy of the elements, and later changes to the
+     * specified collection are not reflected in it.  Lists of one or two
+     * elements keep them in fields, and longer lists keep them in an array
+     * trimmed to the size of the list, so the returned list is usually
+     * smaller than an {@code ArrayList} of the same elements.
+     *
+     * @param  <E> the class of the elements in the list
+     * @param  coll the collection whose elements are to be copied
+     * @return an immutable list containing the elements of the collection
+     * @throws NullPointerException if the collection is null or contains
+     *         any null elements
+     * @since 1.8
+     */
+    public static <E> List<E> immutableList(Collection<? extends E> coll) {
+        // the size of a concurrent collection may differ from that of the
+        // snapshot taken by toArray
+        Object[] a = coll.toArray();
+        return ImmutableCollections.listFromTrustedArray(
+            Arrays.copyOf(a, a.length, Object[].class));
+    }
+
+    /**
+     * Returns an immutable list containing the specified elements, in
+     * order.  The returned list is serializable and implements
+     * {@link RandomAccess}.
+     *
+     * @param  <E> the class of the elements in the list
+     * @param  elements the elements to be contained in the list
+     * @return an immutable list containing the specified elements
+     * @throws NullPointerException if the array is null or contains any
+     *         null elements
+     * @see #immutableList(Collection)
+     * @since 1.8
+     */
+    @SafeVarargs
+    public static <E> List<E> immutableListOf(E... elements) {
+        return ImmutableCollections.listFromTrustedArray(
+            Arrays.copyOf(elements, elements.length, Object[].class));
+    }
+
+    /**
+     * Returns an immutable set containing the elements of the specified
+     * collection.  If the collection contains duplicate elements, only one
+     * of them is kept.  The iteration order of the returned set is
+     * unspecified.  The returned set is serializable.
+     *
+     * <p>Unlike {@link #unmodifiableSet(Set)}, the returned set is not a
+     * view.  Sets of one or two elements keep them in fields, and larger
+     * sets keep them in a single open-addressed hash table without entry
+     * objects, so the returned set is usually much smaller than a
+     * {@code HashSet} of the same elements.
+     *
+     * @param  <E> the class of the elements in the set
+     * @param  coll the collection whose elements are to be copied
+     * @return an immutable set containing the elements of the collection
+     * @throws NullPointerException if the collection is null or contains
+     *         any null elements
+     * @since 1.8
+     */
+    public static <E> Set<E> immutableSet(Collection<? extends E> coll) {
+        return ImmutableCollections.setFromArray(coll.toArray(), false);
+    }
+
+    /**
+     * Returns an immutable set containing the specified elements.  The
+     * iteration order of the returned set is unspecified.  The returned
+     * set is serializable.
+     *
+     * @param  <E> the class of the elements in the set
+     * @param  elements the elements to be contained in the set
+     * @return an immutable set containing the specified elements
+     * @throws IllegalArgumentException if any of the elements are
+     *         duplicates
+     * @throws NullPointerException if the array is null or contains any
+     *         null elements
+     * @see #immutableSet(Collection)
+     * @since 1.8
+     */
+    @SafeVarargs
+    public static <E> Set<E> immutableSetOf(E... elements) {
+        return ImmutableCollections.setFromArray(elements.clone(), true);
+    }
+
+    /**
+     * Returns an immutable map containing the mappings of the specified
+     * map.  The iteration order of the returned map is unspecified.  The
+     * returned map is serializable.
+     *
+     * <p>Unlike {@link #unmodifiableMap(Map)}, the returned map is not a
+     * view.  Maps of one or two mappings keep them in fields, and larger
+     * maps keep their keys and values in alternate slots of a single
+     * open-addressed hash table, without entry objects; entries are
+     * created only when the entry set is iterated.
+     *
+     * @param  <K> the class of the map keys
+     * @param  <V> the class of the map values
+     * @param  map the map whose mappings are to be copied
+     * @return an immutable map containing the mappings of the map
+     * @throws IllegalArgumentException if any two keys of the map are equal
+     *         according to {@code equals}, which can only be the case for
+     *         maps that compare keys otherwise, such as an {@link
+     *         IdentityHashMap}
+     * @throws NullPointerException if the map is null or contains any null
+     *         keys or values
+     * @since 1.8
+     */
+    public static <K,V> Map<K,V> immutableMap(Map<? extends K,? extends V> map) {
+        Object[] entries = map.entrySet().toArray();
+        int n = entries.length;
+        Object[] keys = new Object[n], values = new Object[n];
+        for (int i = 0; i < n; i++) {
+            Map.Entry<?,?> e = (Map.Entry<?,?>) entries[i];
+            keys[i] = e.getKey();
+            values[i] = e.getValue();
+        }
+        return ImmutableCollections.mapFromArrays(keys, values);
+    }
+
     // Miscellaneous
 
     /**
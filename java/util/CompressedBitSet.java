@@ -0,0 +1,1943 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class implements a compressed set of bits, indexed by nonnegative
+ * integers, for sets that are large and sparse or clustered.  Like a
+ * {@link BitSet}, it can be examined and modified bit by bit or by
+ * ranges, and combined with other sets by logical AND, OR and AND NOT
+ * operations; unlike a {@code BitSet}, its size depends on the number
+ * and the distribution of its set bits rather than on the index of its
+ * highest set bit.
+ *
+ * <p>The bit indices are partitioned into chunks of 2<sup>16</sup> bits,
+ * by the high 16 bits of each index.  Only the chunks that contain set
+ * bits are stored, each in the most compact of three representations
+ * (the design is that of Roaring bitmaps):
+ * <ul>
+ * <li>a sorted array of the low 16 bits of the set bits, for chunks with
+ *     at most 4096 set bits;
+ * <li>a bitmap of 1024 {@code long} words, for denser chunks; and
+ * <li>a sorted array of runs of consecutive set bits, for chunks made of
+ *     a few long runs.
+ * </ul>
+ * Ranges of bits set by {@link #set(int, int)} are stored as runs; the
+ * {@link #runOptimize} method converts all the chunks for which it is
+ * more compact to runs.  The number of set bits is maintained as the set
+ * is modified, so that {@link #cardinality} takes constant time.
+ *
+ * <p>The logical operations combine the sets chunk by chunk.  The {@link
+ * #and(CompressedBitSet) and}, {@link #or(CompressedBitSet) or} and
+ * {@link #andNot(CompressedBitSet) andNot} methods modify this set, while
+ * {@link #parallelAnd parallelAnd}, {@link #parallelOr parallelOr} and
+ * {@link #parallelAndNot parallelAndNot} return a new set, combining the
+ * chunks of large sets in parallel in the {@link
+ * java.util.concurrent.ForkJoinPool#commonPool() ForkJoin common pool}.
+ *
+ * <p>A compressed bit set can be written to a {@link ByteBuffer} in a
+ * portable format, by {@link #writeTo writeTo}, and read back by {@link
+ * #valueOf(ByteBuffer)}.  A buffer holding this format, such as a
+ * {@link java.nio.MappedByteBuffer} mapping a file, can also be queried
+ * in place through the {@link Mapped} view returned by {@link #map map},
+ * without reading it into the heap.
+ *
+ * <p>Unless otherwise noted, passing a null parameter to any of the
+ * methods in a {@code CompressedBitSet} will result in a
+ * {@code NullPointerException}.
+ *
+ * <p>A {@code CompressedBitSet} is not safe for multithreaded use without
+ * external synchronization.
+ *
+ * @see BitSet
+ * @since 1.8
+ */
+public class CompressedBitSet implements Cloneable, java.io.Serializable {
+    /*
+     * The set is stored as the sorted high 16 bits ("keys") of its
+     * chunks, and a parallel array of containers holding the low 16 bits
+     * of the set bits of each chunk.  Every stored container is nonempty.
+     * Array and bitmap containers are mutable and are never shared
+     * between sets; run containers are immutable.  An operation that
+     * updates a container may return a different one, which replaces it.
+     */
+
+    /** The keys of the chunks, in ascending order. */
+    private transient char[] keys;
+
+    /** The containers of the chunks, parallel to {@code keys}. */
+    private transient Container[] containers;
+
+    /** The number of chunks in use. */
+    private transient int size;
+
+    /** The number of set bits. */
+    private transient long cardinality;
+
+    /* use serialVersionUID for interoperability */
+    private static final long serialVersionUID = 4329431648155102117L;
+
+    /**
+     * The maximum number of values in an array container.  Denser
+     * containers are bitmaps, which take as much space.
+     */
+    static final int ARRAY_MAX = 4096;
+
+    /** The number of words of a bitmap container. */
+    static final int BITMAP_WORDS = 1 << 10;
+
+    /** The number of bits of a chunk. */
+    static final int CHUNK_BITS = 1 << 16;
+
+    /**
+     * The minimum number of chunk pairs combined by a task of a parallel
+     * operation.
+     */
+    private static final int MIN_PARALLEL_CHUNKS = 64;
+
+    /**
+     * Creates a new, empty compressed bit set.
+     */
+    public CompressedBitSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    private CompressedBitSet(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+        long c = 0;
+        for (int i = 0; i < size; i++)
+            c += containers[i].cardinality();
+        this.cardinality = c;
+    }
+
+    /**
+     * Returns a new compressed bit set containing the bits set in the
+     * specified {@code BitSet}.
+     *
+     * @param bs the bit set to copy
+     * @return a {@code CompressedBitSet} with the same bits set as
+     *         {@code bs}
+     */
+    public static CompressedBitSet valueOf(BitSet bs) {
+        long[] words = bs.toLongArray();
+        int chunks = (words.length + BITMAP_WORDS - 1) / BITMAP_WORDS;
+        char[] keys = new char[Math.max(chunks, 1)];
+        Container[] containers = new Container[keys.length];
+        int size = 0;
+        for (int k = 0; k < chunks; k++) {
+            long[] w = new long[BITMAP_WORDS];
+            int from = k * BITMAP_WORDS;
+            System.arraycopy(words, from, w, 0,
+                             Math.min(BITMAP_WORDS, words.length - from));
+            Container c = Container.fromWords(w);
+            if (c != null) {
+                keys[size] = (char) k;
+                containers[size++] = c;
+            }
+        }
+        return new CompressedBitSet(keys, containers, size);
+    }
+
+    /**
+     * Returns a new {@code BitSet} containing the bits set in this set.
+     *
+     * @return a {@code BitSet} with the same bits set as this set
+     */
+    public BitSet toBitSet() {
+        if (size == 0)
+            return new BitSet();
+        long[] words = new long[(keys[size - 1] + 1) * BITMAP_WORDS];
+        for (int i = 0; i < size; i++)
+            containers[i].orInto(words, keys[i] * BITMAP_WORDS);
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Returns the index of the chunk with the given key, or
+     * {@code -(insertion point) - 1} if there is none.
+     */
+    private int indexOf(int key) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = keys[mid];
+            if (k < key)
+                lo = mid + 1;
+            else if (k > key)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private void insertAt(int i, int key, Container c) {
+        if (size == keys.length) {
+            int n = Math.max(4, size + (size >> 1));
+            keys = Arrays.copyOf(keys, n);
+            containers = Arrays.copyOf(containers, n);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = (char) key;
+        containers[i] = c;
+        size++;
+        cardinality += c.cardinality();
+    }
+
+    /**
+     * Replaces the container at index i, which had oldCardinality set bits
+     * before it was updated, by c, which may be null or empty.
+     */
+    private void replaceAt(int i, int oldCardinality, Container c) {
+        int card = (c == null) ? 0 : c.cardinality();
+        cardinality += card - oldCardinality;
+        if (card != 0) {
+            containers[i] = c;
+        } else {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        }
+    }
+
+    private static void checkIndex(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+    }
+
+    private static void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        if (toIndex < 0)
+            throw new IndexOutOfBoundsException("toIndex < 0: " + toIndex);
+        if (fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex +
+                                                " > toIndex: " + toIndex);
+    }
+
+    /**
+     * Returns the value of the bit with the specified index.
+     *
+     * @param  bitIndex   the bit index
+     * @return the value of the bit with the specified index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public boolean get(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOf(bitIndex >>> 16);
+        return i >= 0 && containers[i].contains(bitIndex & 0xffff);
+    }
+
+    /**
+     * Sets the bit at the specified index to {@code true}.
+     *
+     * @param  bitIndex a bit index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex) {
+        checkIndex(bitIndex);
+        int key = bitIndex >>> 16;
+        int i = indexOf(key);
+        if (i >= 0)
+            replaceAt(i, containers[i].cardinality(),
+                      containers[i].add(bitIndex & 0xffff));
+        else
+            insertAt(-i - 1, key,
+                     new ArrayContainer().add(bitIndex & 0xffff));
+    }
+
+    /**
+     * Sets the bit at the specified index to the specified value.
+     *
+     * @param  bitIndex a bit index
+     * @param  value a boolean value to set
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex, boolean value) {
+        if (value)
+            set(bitIndex);
+        else
+            clear(bitIndex);
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code true}.  The chunks
+     * that are not already present are stored as runs.
+     *
+     * @param  fromIndex index of the first bit to be set
+     * @param  toIndex index after the last bit to be set
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void set(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int lastKey = (toIndex - 1) >>> 16;
+        for (int key = fromIndex >>> 16; key <= lastKey; key++) {
+            int from = (key == fromIndex >>> 16) ? fromIndex & 0xffff : 0;
+            int to = (key == lastKey) ? ((toIndex - 1) & 0xffff) + 1
+                                      : CHUNK_BITS;
+            int i = indexOf(key);
+            if (i < 0)
+                insertAt(-i - 1, key, RunContainer.range(from, to));
+            else if (from == 0 && to == CHUNK_BITS)
+                replaceAt(i, containers[i].cardinality(),
+                          RunContainer.range(0, CHUNK_BITS));
+            else
+                replaceAt(i, containers[i].cardinality(),
+                          containers[i].addRange(from, to));
+        }
+    }
+
+    /**
+     * Sets the bit specified by the index to {@code false}.
+     *
+     * @param  bitIndex the index of the bit to be cleared
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void clear(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOf(bitIndex >>> 16);
+        if (i >= 0)
+            replaceAt(i, containers[i].cardinality(),
+                      containers[i].remove(bitIndex & 0xffff));
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code false}.
+     *
+     * @param  fromIndex index of the first bit to be cleared
+     * @param  toIndex index after the last bit to be cleared
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void clear(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int firstKey = fromIndex >>> 16, lastKey = (toIndex - 1) >>> 16;
+        int i = indexOf(firstKey);
+        if (i < 0)
+            i = -i - 1;
+        while (i < size && keys[i] <= lastKey) {
+            int key = keys[i];
+            int from = (key == firstKey) ? fromIndex & 0xffff : 0;
+            int to = (key == lastKey) ? ((toIndex - 1) & 0xffff) + 1
+                                      : CHUNK_BITS;
+            int before = size;
+            replaceAt(i, containers[i].cardinality(),
+                      containers[i].removeRange(from, to));
+            if (size == before)
+                i++;
+        }
+    }
+
+    /**
+     * Sets all of the bits in this set to {@code false}.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+        cardinality = 0;
+    }
+
+    /**
+     * Sets the bit at the specified index to the complement of its
+     * current value.
+     *
+     * @param  bitIndex the index of the bit to flip
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void flip(int bitIndex) {
+        if (get(bitIndex))
+            clear(bitIndex);
+        else
+            set(bitIndex);
+    }
+
+    /**
+     * Returns the number of bits set to {@code true} in this set.  The
+     * result is a {@code long}, as a set may have 2<sup>31</sup> bits set.
+     *
+     * @return the number of bits set to {@code true} in this set
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Returns true if this set contains no bits that are set
+     * to {@code true}.
+     *
+     * @return boolean indicating whether this set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the "logical size" of this set: the index of the highest
+     * set bit in the set plus one.  Returns zero if the set contains no
+     * set bits.  The result is a {@code long}, as the highest set bit may
+     * be {@link Integer#MAX_VALUE}.
+     *
+     * @return the logical size of this set
+     */
+    public long length() {
+        if (size == 0)
+            return 0;
+        return ((long) keys[size - 1] << 16) +
+               containers[size - 1].previousSetBit(CHUNK_BITS - 1) + 1;
+    }
+
+    /**
+     * Returns the index of the first bit that is set to {@code true}
+     * that occurs on or after the specified starting index.  If no such
+     * bit exists then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextSetBit(int fromIndex) {
+        checkIndex(fromIndex);
+        int key = fromIndex >>> 16;
+        int i = indexOf(key);
+        if (i >= 0) {
+            int low = containers[i].nextSetBit(fromIndex & 0xffff);
+            if (low >= 0)
+                return (key << 16) | low;
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        return (i < size) ? (keys[i] << 16) | containers[i].nextSetBit(0)
+                          : -1;
+    }
+
+    /**
+     * Returns the index of the nearest bit that is set to {@code true}
+     * that occurs on or before the specified starting index.  If no such
+     * bit exists, or if {@code -1} is given as the starting index, then
+     * {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the previous set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is less
+     *         than {@code -1}
+     */
+    public int previousSetBit(int fromIndex) {
+        if (fromIndex < 0) {
+            if (fromIndex == -1)
+                return -1;
+            throw new IndexOutOfBoundsException(
+                "fromIndex < -1: " + fromIndex);
+        }
+        int key = fromIndex >>> 16;
+        int i = indexOf(key);
+        if (i >= 0) {
+            int low = containers[i].previousSetBit(fromIndex & 0xffff);
+            if (low >= 0)
+                return (key << 16) | low;
+            i--;
+        } else {
+            i = -i - 2;
+        }
+        return (i >= 0)
+            ? (keys[i] << 16) | containers[i].previousSetBit(CHUNK_BITS - 1)
+            : -1;
+    }
+
+    /**
+     * Returns true if the specified set has any bits set to {@code true}
+     * that are also set to {@code true} in this set.
+     *
+     * @param  set set to intersect with
+     * @return boolean indicating whether this set intersects the
+     *         specified set
+     */
+    public boolean intersects(CompressedBitSet set) {
+        int i = 0, j = 0;
+        while (i < size && j < set.size) {
+            int c = keys[i] - set.keys[j];
+            if (c < 0) {
+                i++;
+            } else if (c > 0) {
+                j++;
+            } else {
+                if (Container.intersects(containers[i], set.containers[j]))
+                    return true;
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs a logical <b>AND</b> of this set with the argument set.
+     * This set is modified so that a bit in it has the value {@code true}
+     * if and only if it both initially had the value {@code true} and the
+     * corresponding bit in the set argument also had the value {@code
+     * true}.
+     *
+     * @param set a compressed bit set
+     */
+    public void and(CompressedBitSet set) {
+        combine(this, set, AND, true, false);
+    }
+
+    /**
+     * Performs a logical <b>OR</b> of this set with the argument set.
+     * This set is modified so that a bit in it has the value {@code true}
+     * if and only if it either already had the value {@code true} or the
+     * corresponding bit in the set argument has the value {@code true}.
+     *
+     * @param set a compressed bit set
+     */
+    public void or(CompressedBitSet set) {
+        combine(this, set, OR, true, false);
+    }
+
+    /**
+     * Clears all of the bits in this set whose corresponding bit is set
+     * in the specified set.
+     *
+     * @param  set the set with which to mask this set
+     */
+    public void andNot(CompressedBitSet set) {
+        combine(this, set, AND_NOT, true, false);
+    }
+
+    /**
+     * Returns a new set whose bits are set where they are set in both of
+     * the specified sets.  The chunks of large sets are combined in
+     * parallel.
+     *
+     * @param a a compressed bit set
+     * @param b a compressed bit set
+     * @return the logical <b>AND</b> of {@code a} and {@code b}
+     */
+    public static CompressedBitSet parallelAnd(CompressedBitSet a,
+                                               CompressedBitSet b) {
+        return combine(a, b, AND, false, true);
+    }
+
+    /**
+     * Returns a new set whose bits are set where they are set in either
+     * of the specified sets.  The chunks of large sets are combined in
+     * parallel.
+     *
+     * @param a a compressed bit set
+     * @param b a compressed bit set
+     * @return the logical <b>OR</b> of {@code a} and {@code b}
+     */
+    public static CompressedBitSet parallelOr(CompressedBitSet a,
+                                              CompressedBitSet b) {
+        return combine(a, b, OR, false, true);
+    }
+
+    /**
+     * Returns a new set whose bits are set where they are set in the
+     * first specified set but not in the second.  The chunks of large
+     * sets are combined in parallel.
+     *
+     * @param a a compressed bit set
+     * @param b the set with which to mask {@code a}
+     * @return the logical <b>AND NOT</b> of {@code a} and {@code b}
+     */
+    public static CompressedBitSet parallelAndNot(CompressedBitSet a,
+                                                  CompressedBitSet b) {
+        return combine(a, b, AND_NOT, false, true);
+    }
+
+    /* The logical operations, as passed to combine */
+    static final int AND = 0, OR = 1, AND_NOT = 2;
+
+    /**
+     * Combines the chunks of a and b with the given operation.  If
+     * inPlace is true, the result replaces the contents of a, whose
+     * containers may be reused, and a is returned; otherwise a new set is
+     * returned.
+     */
+    private static CompressedBitSet combine(CompressedBitSet a,
+                                            CompressedBitSet b, int op,
+                                            boolean inPlace,
+                                            boolean parallel) {
+        // Pair up the chunks of a and b that the operation needs
+        int n = (op == AND) ? Math.min(a.size, b.size)
+              : (op == OR) ? a.size + b.size : a.size;
+        char[] keys = new char[Math.max(n, 1)];
+        Container[] x = new Container[keys.length];
+        Container[] y = new Container[keys.length];
+        int m = 0, i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            int c = (i == a.size) ? 1 : (j == b.size) ? -1
+                                      : a.keys[i] - b.keys[j];
+            if (c == 0) {
+                keys[m] = a.keys[i];
+                x[m] = a.containers[i++];
+                y[m++] = b.containers[j++];
+            } else if (c < 0) {
+                if (op != AND) {
+                    keys[m] = a.keys[i];
+                    x[m++] = a.containers[i];
+                }
+                i++;
+            } else {
+                if (op == OR) {
+                    keys[m] = b.keys[j];
+                    y[m++] = b.containers[j];
+                }
+                j++;
+            }
+        }
+
+        Container[] result = new Container[keys.length];
+        if (parallel && m >= 2 * MIN_PARALLEL_CHUNKS)
+            new Combiner(x, y, result, op, inPlace, 0, m).invoke();
+        else
+            Combiner.combine(x, y, result, op, inPlace, 0, m);
+
+        // Drop the empty chunks
+        int size = 0;
+        for (int k = 0; k < m; k++) {
+            if (result[k] != null && result[k].cardinality() != 0) {
+                keys[size] = keys[k];
+                result[size++] = result[k];
+            }
+        }
+        Arrays.fill(result, size, m, null);
+        if (!inPlace)
+            return new CompressedBitSet(keys, result, size);
+        CompressedBitSet r = new CompressedBitSet(keys, result, size);
+        a.keys = keys;
+        a.containers = result;
+        a.size = size;
+        a.cardinality = r.cardinality;
+        return a;
+    }
+
+    /**
+     * Combines pairs of containers, splitting the pairs between subtasks
+     * when run in a ForkJoinPool.
+     */
+    static final class Combiner extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final Container[] x, y, result; final int op, lo, hi;
+        final boolean inPlace;
+        Combiner(Container[] x, Container[] y, Container[] result, int op,
+                 boolean inPlace, int lo, int hi) {
+            this.x = x; this.y = y; this.result = result; this.op = op;
+            this.inPlace = inPlace; this.lo = lo; this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo < 2 * MIN_PARALLEL_CHUNKS) {
+                combine(x, y, result, op, inPlace, lo, hi);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Combiner(x, y, result, op, inPlace, lo, mid),
+                          new Combiner(x, y, result, op, inPlace, mid, hi));
+            }
+        }
+
+        static void combine(Container[] x, Container[] y, Container[] result,
+                            int op, boolean inPlace, int lo, int hi) {
+            for (int k = lo; k < hi; k++) {
+                Container a = x[k], b = y[k];
+                if (b == null)
+                    result[k] = inPlace ? a : a.copy();
+                else if (a == null)
+                    result[k] = b.copy();
+                else if (op == AND)
+                    result[k] = Container.and(a, b);
+                else if (op == OR)
+                    result[k] = Container.or(a, b);
+                else
+                    result[k] = Container.andNot(a, b);
+            }
+        }
+    }
+
+    /**
+     * Converts the chunks to runs of set bits wherever that takes less
+     * space than their current representation, and converts runs back
+     * to arrays or bitmaps where those are smaller.
+     *
+     * @return true if any chunk was converted
+     */
+    public boolean runOptimize() {
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i], o = c.optimize();
+            if (o != c) {
+                containers[i] = o;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns a stream of indices for which this set contains a bit in
+     * the set state.  The indices are returned in order, from lowest to
+     * highest.
+     *
+     * <p>The stream binds to this set when the terminal stream operation
+     * commences (specifically, the spliterator for the stream is
+     * <a href="Spliterator.html#binding"><em>late-binding</em></a>).  If
+     * the set is modified during that operation then the result is
+     * undefined.
+     *
+     * @return a stream of integers representing set indices
+     */
+    public IntStream stream() {
+        return indexStream(this::nextSetBit, cardinality);
+    }
+
+    /** The nextSetBit method of a set or a mapped view. */
+    interface NextSetBit {
+        int nextSetBit(int fromIndex);
+    }
+
+    static IntStream indexStream(NextSetBit set, long cardinality) {
+        class SetIterator implements PrimitiveIterator.OfInt {
+            int next = set.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next != -1) {
+                    int ret = next;
+                    next = (ret == Integer.MAX_VALUE) ? -1
+                                                      : set.nextSetBit(ret + 1);
+                    return ret;
+                } else {
+                    throw new NoSuchElementException();
+                }
+            }
+        }
+
+        return StreamSupport.intStream(
+                () -> Spliterators.spliterator(
+                        new SetIterator(), cardinality,
+                        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED),
+                Spliterator.SIZED | Spliterator.SUBSIZED |
+                        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED,
+                false);
+    }
+
+    /**
+     * Compares this set against the specified object.  The result is
+     * {@code true} if and only if the argument is not {@code null} and is
+     * a {@code CompressedBitSet} object that has exactly the same set of
+     * bits set to {@code true} as this set, whatever the representation
+     * of their chunks.
+     *
+     * @param  obj the object to compare with
+     * @return {@code true} if the objects are the same;
+     *         {@code false} otherwise
+     */
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CompressedBitSet))
+            return false;
+        if (this == obj)
+            return true;
+        CompressedBitSet set = (CompressedBitSet) obj;
+        if (size != set.size || cardinality != set.cardinality)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != set.keys[i] ||
+                !Container.equal(containers[i], set.containers[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this set.  The hash code is the
+     * one that {@link BitSet#hashCode} returns for a {@code BitSet} with
+     * the same bits set.
+     *
+     * @return the hash code value for this set
+     */
+    public int hashCode() {
+        long h = 1234;
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < size; i++) {
+            containers[i].orInto(words, 0);
+            long base = (long) keys[i] * BITMAP_WORDS + 1;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                if (words[w] != 0) {
+                    h ^= words[w] * (base + w);
+                    words[w] = 0;
+                }
+            }
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    /**
+     * Cloning this {@code CompressedBitSet} produces a new set that is
+     * equal to it, and shares no state with it.
+     *
+     * @return a clone of this set
+     */
+    public Object clone() {
+        try {
+            CompressedBitSet result = (CompressedBitSet) super.clone();
+            result.keys = keys.clone();
+            result.containers = new Container[keys.length];
+            for (int i = 0; i < size; i++)
+                result.containers[i] = containers[i].copy();
+            return result;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Returns a string representation of this set, in the form of
+     * {@link BitSet#toString}.
+     *
+     * @return a string representation of this set
+     */
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append('{');
+        int i = nextSetBit(0);
+        if (i != -1) {
+            b.append(i);
+            while (i != Integer.MAX_VALUE && (i = nextSetBit(i + 1)) >= 0)
+                b.append(", ").append(i);
+        }
+        b.append('}');
+        return b.toString();
+    }
+
+    // Serialized format
+
+    /*
+     * The serialized format is little-endian, and made of:
+     *
+     *   int   MAGIC
+     *   int   the number n of chunks
+     *   long  the number of set bits
+     *   n descriptors of 16 bytes, in ascending order of keys:
+     *     int  the key of the chunk
+     *     int  the type of its container: ARRAY, BITMAP or RUN
+     *     int  the number of values of an array, of set bits of a bitmap,
+     *          or of runs of a run container
+     *     int  the offset of its payload from the start of the format
+     *   the payloads, each aligned on 8 bytes:
+     *     ARRAY   the values, as chars
+     *     BITMAP  1024 longs
+     *     RUN     the runs, as pairs of chars: start, length - 1
+     *
+     * Offsets are from the start of the format, so that a view can read
+     * any chunk with absolute reads; every payload is aligned so that a
+     * view of a mapped file reads words at aligned addresses.
+     */
+
+    static final int MAGIC = 0x52424d01;
+    static final int HEADER_BYTES = 16;
+    static final int DESCRIPTOR_BYTES = 16;
+    static final int ARRAY = 0, BITMAP = 1, RUN = 2;
+
+    /**
+     * Returns the number of bytes that {@link #writeTo writeTo} writes
+     * for this set.
+     *
+     * @return the size of the serialized form of this set
+     */
+    public long serializedSize() {
+        long n = HEADER_BYTES + (long) size * DESCRIPTOR_BYTES;
+        for (int i = 0; i < size; i++)
+            n = align(n) + containers[i].payloadBytes();
+        return n;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Writes this set to the specified buffer, from its current position,
+     * and advances the position past the bytes written.  The bytes are
+     * in a portable, little-endian format that can be read back by {@link
+     * #valueOf(ByteBuffer)} or queried in place by {@link #map map}.
+     *
+     * @param  buf the buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer has fewer than
+     *         {@link #serializedSize} bytes remaining
+     * @throws java.nio.ReadOnlyBufferException if the buffer is read-only
+     */
+    public void writeTo(ByteBuffer buf) {
+        long total = serializedSize();
+        if (total > buf.remaining())
+            throw new java.nio.BufferOverflowException();
+        ByteBuffer out = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(size).putLong(cardinality);
+        int offset = HEADER_BYTES + size * DESCRIPTOR_BYTES;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            offset = (int) align(offset);
+            out.putInt(HEADER_BYTES + i * DESCRIPTOR_BYTES, keys[i]);
+            out.putInt(HEADER_BYTES + i * DESCRIPTOR_BYTES + 4, c.type());
+            out.putInt(HEADER_BYTES + i * DESCRIPTOR_BYTES + 8, c.count());
+            out.putInt(HEADER_BYTES + i * DESCRIPTOR_BYTES + 12, offset);
+            c.writePayload(out, offset);
+            offset += c.payloadBytes();
+        }
+        buf.position(buf.position() + (int) total);
+    }
+
+    /**
+     * Returns a new compressed bit set read from the specified buffer,
+     * from its current position, in the format written by {@link
+     * #writeTo writeTo}.  The position of the buffer is advanced past
+     * the bytes read.
+     *
+     * @param  buf the buffer to read from
+     * @return the set read from the buffer
+     * @throws IllegalArgumentException if the buffer does not hold a
+     *         valid serialized set
+     */
+    public static CompressedBitSet valueOf(ByteBuffer buf) {
+        Mapped m = map(buf);
+        int n = m.size;
+        char[] keys = new char[Math.max(n, 1)];
+        Container[] containers = new Container[keys.length];
+        int end = HEADER_BYTES + n * DESCRIPTOR_BYTES;
+        for (int i = 0; i < n; i++) {
+            keys[i] = (char) m.key(i);
+            containers[i] = m.container(i);
+            end = Math.max(end, m.offset(i) + containers[i].payloadBytes());
+        }
+        buf.position(buf.position() + end);
+        return new CompressedBitSet(keys, containers, n);
+    }
+
+    /**
+     * Returns a read-only view of the set in the specified buffer, from
+     * its current position, in the format written by {@link #writeTo
+     * writeTo}.  The view reads the buffer on each query, and does not
+     * copy it: the buffer may be a {@link java.nio.MappedByteBuffer}
+     * mapping a file much larger than the heap.  The position of the
+     * buffer is not changed, and the buffer must not be modified while
+     * the view is in use.  The buffer is validated when the view is
+     * created, which reads it once in full.
+     *
+     * @param  buf the buffer holding the serialized set
+     * @return a view of the set in the buffer
+     * @throws IllegalArgumentException if the buffer does not hold a
+     *         valid serialized set
+     */
+    public static Mapped map(ByteBuffer buf) {
+        return new Mapped(buf.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * A read-only view of a compressed bit set serialized in a buffer.
+     * Queries read the chunks they need directly from the buffer, with
+     * a binary search of the chunk descriptors.
+     *
+     * @see CompressedBitSet#map
+     * @since 1.8
+     */
+    public static final class Mapped {
+        private final ByteBuffer buf;
+        private final int size;
+        private final long cardinality;
+
+        Mapped(ByteBuffer buf) {
+            if (buf.remaining() < HEADER_BYTES || buf.getInt(0) != MAGIC)
+                throw new IllegalArgumentException("Not a compressed bit set");
+            this.buf = buf;
+            this.size = buf.getInt(4);
+            this.cardinality = buf.getLong(8);
+            if (size < 0 || size > CHUNK_BITS / 2 ||
+                HEADER_BYTES + (long) size * DESCRIPTOR_BYTES > buf.limit())
+                throw new IllegalArgumentException("Invalid chunk count");
+            for (int i = 0; i < size; i++) {
+                int type = type(i), count = count(i);
+                long bytes = (type == ARRAY) ? 2L * count
+                           : (type == BITMAP) ? 8L * BITMAP_WORDS
+                           : (type == RUN) ? 4L * count : -1;
+                if (bytes < 0 || count <= 0 || key(i) >>> 15 != 0 ||
+                    (i > 0 && key(i) <= key(i - 1)) ||
+                    (offset(i) & 7) != 0 || offset(i) < 0 ||
+                    offset(i) + bytes > buf.limit())
+                    throw new IllegalArgumentException(
+                        "Invalid chunk descriptor " + i);
+            }
+            long card = 0;
+            for (int i = 0; i < size; i++)
+                card += payloadCardinality(i);
+            if (card != cardinality)
+                throw new IllegalArgumentException("Invalid cardinality");
+        }
+
+        /**
+         * Returns the number of values in the payload of chunk i, whose
+         * descriptor is valid, after checking that the payload is one
+         * that writeTo could have written: array values ascending and at
+         * most ARRAY_MAX of them, a bitmap with more than ARRAY_MAX bits
+         * set, or runs ascending, disjoint and within the chunk.
+         */
+        private int payloadCardinality(int i) {
+            int count = count(i), offset = offset(i);
+            switch (type(i)) {
+            case ARRAY: {
+                if (count > ARRAY_MAX)
+                    break;
+                int prev = -1;
+                for (int k = 0; k < count; k++) {
+                    int v = buf.getChar(offset + 2 * k);
+                    if (v <= prev)
+                        throw new IllegalArgumentException(
+                            "Invalid chunk payload " + i);
+                    prev = v;
+                }
+                return count;
+            }
+            case BITMAP: {
+                int card = 0;
+                for (int k = 0; k < BITMAP_WORDS; k++)
+                    card += Long.bitCount(buf.getLong(offset + 8 * k));
+                if (card != count || card <= ARRAY_MAX)
+                    break;
+                return card;
+            }
+            default: {
+                int card = 0, prevEnd = -1;
+                for (int k = 0; k < count; k++) {
+                    int start = buf.getChar(offset + 4 * k);
+                    int end = start + buf.getChar(offset + 4 * k + 2);
+                    if (start <= prevEnd || end >= CHUNK_BITS)
+                        throw new IllegalArgumentException(
+                            "Invalid chunk payload " + i);
+                    card += end - start + 1;
+                    prevEnd = end;
+                }
+                return card;
+            }
+            }
+            throw new IllegalArgumentException("Invalid chunk payload " + i);
+        }
+
+        int key(int i) {
+            return buf.getInt(HEADER_BYTES + i * DESCRIPTOR_BYTES);
+        }
+
+        int type(int i) {
+            return buf.getInt(HEADER_BYTES + i * DESCRIPTOR_BYTES + 4);
+        }
+
+        int count(int i) {
+            return buf.getInt(HEADER_BYTES + i * DESCRIPTOR_BYTES + 8);
+        }
+
+        int offset(int i) {
+            return buf.getInt(HEADER_BYTES + i * DESCRIPTOR_BYTES + 12);
+        }
+
+        private int indexOf(int key) {
+            int lo = 0, hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int k = key(mid);
+                if (k < key)
+                    lo = mid + 1;
+                else if (k > key)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -(lo + 1);
+        }
+
+        /** Reads the container of chunk i into the heap. */
+        Container container(int i) {
+            int count = count(i), offset = offset(i);
+            switch (type(i)) {
+            case ARRAY: {
+                char[] values = new char[count];
+                for (int k = 0; k < count; k++)
+                    values[k] = buf.getChar(offset + 2 * k);
+                return new ArrayContainer(values, count);
+            }
+            case BITMAP: {
+                long[] words = new long[BITMAP_WORDS];
+                int card = 0;
+                for (int k = 0; k < BITMAP_WORDS; k++) {
+                    words[k] = buf.getLong(offset + 8 * k);
+                    card += Long.bitCount(words[k]);
+                }
+                return new BitmapContainer(words, card);
+            }
+            default: {
+                char[] runs = new char[2 * count];
+                for (int k = 0; k < 2 * count; k++)
+                    runs[k] = buf.getChar(offset + 2 * k);
+                return new RunContainer(runs, count);
+            }
+            }
+        }
+
+        /**
+         * Returns the value of the bit with the specified index.
+         *
+         * @param  bitIndex   the bit index
+         * @return the value of the bit with the specified index
+         * @throws IndexOutOfBoundsException if the specified index is
+         *         negative
+         */
+        public boolean get(int bitIndex) {
+            checkIndex(bitIndex);
+            int i = indexOf(bitIndex >>> 16);
+            return i >= 0 && nextSetBit(i, bitIndex & 0xffff)
+                             == (bitIndex & 0xffff);
+        }
+
+        /**
+         * Returns the smallest value of chunk i at least x, or -1.
+         */
+        private int nextSetBit(int i, int x) {
+            int count = count(i), offset = offset(i);
+            switch (type(i)) {
+            case ARRAY: {
+                int lo = 0, hi = count;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (buf.getChar(offset + 2 * mid) < x)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                return (lo < count) ? buf.getChar(offset + 2 * lo) : -1;
+            }
+            case BITMAP: {
+                int w = x >>> 6;
+                long word = buf.getLong(offset + 8 * w) & (-1L << x);
+                while (true) {
+                    if (word != 0)
+                        return (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (++w == BITMAP_WORDS)
+                        return -1;
+                    word = buf.getLong(offset + 8 * w);
+                }
+            }
+            default: {
+                // the last run starting at or before x
+                int lo = 0, hi = count - 1, r = -1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (buf.getChar(offset + 4 * mid) <= x) {
+                        r = mid;
+                        lo = mid + 1;
+                    } else {
+                        hi = mid - 1;
+                    }
+                }
+                if (r >= 0 && x <= buf.getChar(offset + 4 * r) +
+                                   buf.getChar(offset + 4 * r + 2))
+                    return x;
+                return (r + 1 < count) ? buf.getChar(offset + 4 * (r + 1))
+                                       : -1;
+            }
+            }
+        }
+
+        /**
+         * Returns the index of the first bit that is set to {@code true}
+         * that occurs on or after the specified starting index.  If no
+         * such bit exists then {@code -1} is returned.
+         *
+         * @param  fromIndex the index to start checking from (inclusive)
+         * @return the index of the next set bit, or {@code -1} if there
+         *         is no such bit
+         * @throws IndexOutOfBoundsException if the specified index is
+         *         negative
+         */
+        public int nextSetBit(int fromIndex) {
+            checkIndex(fromIndex);
+            int key = fromIndex >>> 16;
+            int i = indexOf(key);
+            if (i >= 0) {
+                int low = nextSetBit(i, fromIndex & 0xffff);
+                if (low >= 0)
+                    return (key << 16) | low;
+                i++;
+            } else {
+                i = -i - 1;
+            }
+            return (i < size) ? (key(i) << 16) | nextSetBit(i, 0) : -1;
+        }
+
+        /**
+         * Returns the number of bits set to {@code true} in the set.
+         *
+         * @return the number of bits set to {@code true} in the set
+         */
+        public long cardinality() {
+            return cardinality;
+        }
+
+        /**
+         * Returns true if the set contains no bits that are set to
+         * {@code true}.
+         *
+         * @return boolean indicating whether the set is empty
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Returns a stream of indices for which the set contains a bit in
+         * the set state, from lowest to highest.
+         *
+         * @return a stream of integers representing set indices
+         */
+        public IntStream stream() {
+            return indexStream(this::nextSetBit, cardinality);
+        }
+
+        /**
+         * Returns a new {@code CompressedBitSet} with the bits of the set
+         * in the buffer.
+         *
+         * @return a copy of the set in the heap
+         */
+        public CompressedBitSet toCompressedBitSet() {
+            return valueOf(buf.duplicate());
+        }
+    }
+
+    // Serialization
+
+    /**
+     * Saves the state of the {@code CompressedBitSet} instance to a
+     * stream (i.e., serializes it).
+     *
+     * @serialData The length of the format written by {@link #writeTo
+     *             writeTo} (int), followed by the bytes of that format.
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        ByteBuffer buf = ByteBuffer.allocate((int) serializedSize());
+        writeTo(buf);
+        s.writeInt(buf.capacity());
+        s.write(buf.array());
+    }
+
+    /**
+     * Reconstitutes the {@code CompressedBitSet} instance from a stream
+     * (i.e., deserializes it).
+     */
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int n = s.readInt();
+        if (n < HEADER_BYTES)
+            throw new java.io.InvalidObjectException("Invalid length " + n);
+        // grow the array as bytes arrive, so that a corrupt length cannot
+        // allocate more than the stream holds
+        byte[] bytes = new byte[Math.min(n, 1 << 16)];
+        for (int len = 0; len < n; ) {
+            if (len == bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.min(n, 2L * len));
+            s.readFully(bytes, len, bytes.length - len);
+            len = bytes.length;
+        }
+        CompressedBitSet set;
+        try {
+            set = valueOf(ByteBuffer.wrap(bytes));
+        } catch (IllegalArgumentException e) {
+            throw new java.io.InvalidObjectException(e.getMessage());
+        }
+        keys = set.keys;
+        containers = set.containers;
+        size = set.size;
+        cardinality = set.cardinality;
+    }
+
+    // Containers
+
+    /**
+     * The low 16 bits of the set bits of a chunk.  The values passed to
+     * and returned by containers are in the range 0 to 65535, and ranges
+     * are given as a value and the value after the range, up to 65536.
+     * The methods that update a container return the container holding
+     * the result, which may be this container or a new one.
+     */
+    abstract static class Container {
+        abstract int cardinality();
+        abstract boolean contains(int x);
+        abstract Container add(int x);
+        abstract Container remove(int x);
+        abstract Container addRange(int from, int to);
+        abstract Container removeRange(int from, int to);
+        /** Returns the smallest value at least x, or -1. */
+        abstract int nextSetBit(int x);
+        /** Returns the largest value at most x, or -1. */
+        abstract int previousSetBit(int x);
+        /** Sets the bits of this container in words, from word offset. */
+        abstract void orInto(long[] words, int offset);
+        abstract Container copy();
+        abstract int type();
+        /** Returns the count written in the serialized descriptor. */
+        abstract int count();
+        abstract int payloadBytes();
+        abstract void writePayload(ByteBuffer buf, int offset);
+        /** Returns the number of runs of consecutive values. */
+        abstract int runCount();
+
+        /** Returns the words of a bitmap of this container. */
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words, 0);
+            return words;
+        }
+
+        /**
+         * Returns the smallest of the representations of this container,
+         * which is this container if it is already the smallest.
+         */
+        Container optimize() {
+            int card = cardinality(), runs = runCount();
+            int runBytes = 4 * runs;
+            int other = (card <= ARRAY_MAX) ? 2 * card : 8 * BITMAP_WORDS;
+            if (runBytes < other)
+                return (this instanceof RunContainer) ? this : toRuns();
+            if (this instanceof RunContainer)
+                return fromWords(toWords());
+            return this;
+        }
+
+        RunContainer toRuns() {
+            char[] runs = new char[2 * runCount()];
+            int n = 0;
+            int x = nextSetBit(0);
+            while (x >= 0) {
+                int end = x;
+                while (end + 1 < CHUNK_BITS && contains(end + 1))
+                    end++;
+                runs[2 * n] = (char) x;
+                runs[2 * n + 1] = (char) (end - x);
+                n++;
+                x = (end + 1 < CHUNK_BITS) ? nextSetBit(end + 1) : -1;
+            }
+            return new RunContainer(runs, n);
+        }
+
+        /**
+         * Returns the smallest of an array or bitmap container holding the
+         * bits of words, which it may use, a run container if all its bits
+         * are set, or null if none is.
+         */
+        static Container fromWords(long[] words) {
+            int card = 0;
+            for (long w : words)
+                card += Long.bitCount(w);
+            if (card == 0)
+                return null;
+            if (card == CHUNK_BITS)
+                return RunContainer.range(0, CHUNK_BITS);
+            if (card > ARRAY_MAX)
+                return new BitmapContainer(words, card);
+            char[] values = new char[card];
+            int n = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    values[n++] = (char) ((i << 6) +
+                                          Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(values, card);
+        }
+
+        static void setRange(long[] words, int offset, int from, int to) {
+            int first = offset + (from >>> 6);
+            int last = offset + ((to - 1) >>> 6);
+            long firstMask = -1L << from, lastMask = -1L >>> -to;
+            if (first == last) {
+                words[first] |= firstMask & lastMask;
+            } else {
+                words[first] |= firstMask;
+                for (int i = first + 1; i < last; i++)
+                    words[i] = -1L;
+                words[last] |= lastMask;
+            }
+        }
+
+        static void clearRange(long[] words, int from, int to) {
+            int first = from >>> 6, last = (to - 1) >>> 6;
+            long firstMask = -1L << from, lastMask = -1L >>> -to;
+            if (first == last) {
+                words[first] &= ~(firstMask & lastMask);
+            } else {
+                words[first] &= ~firstMask;
+                for (int i = first + 1; i < last; i++)
+                    words[i] = 0;
+                words[last] &= ~lastMask;
+            }
+        }
+
+        static Container and(Container a, Container b) {
+            if (a instanceof ArrayContainer)
+                return ((ArrayContainer) a).filter(b, true);
+            if (b instanceof ArrayContainer)
+                return ((ArrayContainer) b).filter(a, true);
+            long[] x = a.toWords();
+            long[] y = (b instanceof BitmapContainer)
+                ? ((BitmapContainer) b).words : b.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                x[i] &= y[i];
+            return fromWords(x);
+        }
+
+        static Container or(Container a, Container b) {
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+                a.cardinality() + b.cardinality() <= ARRAY_MAX)
+                return ((ArrayContainer) a).merge((ArrayContainer) b);
+            if (a.cardinality() == CHUNK_BITS)
+                return a.copy();
+            if (b.cardinality() == CHUNK_BITS)
+                return b.copy();
+            long[] x = a.toWords();
+            if (b instanceof BitmapContainer) {
+                long[] y = ((BitmapContainer) b).words;
+                for (int i = 0; i < BITMAP_WORDS; i++)
+                    x[i] |= y[i];
+            } else {
+                b.orInto(x, 0);
+            }
+            return fromWords(x);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a instanceof ArrayContainer)
+                return ((ArrayContainer) a).filter(b, false);
+            long[] x = a.toWords();
+            if (b instanceof ArrayContainer) {
+                ArrayContainer y = (ArrayContainer) b;
+                for (int i = 0; i < y.cardinality; i++) {
+                    int v = y.values[i];
+                    x[v >>> 6] &= ~(1L << v);
+                }
+            } else {
+                long[] y = (b instanceof BitmapContainer)
+                    ? ((BitmapContainer) b).words : b.toWords();
+                for (int i = 0; i < BITMAP_WORDS; i++)
+                    x[i] &= ~y[i];
+            }
+            return fromWords(x);
+        }
+
+        static boolean intersects(Container a, Container b) {
+            if (b instanceof ArrayContainer) {
+                Container t = a; a = b; b = t;
+            }
+            if (a instanceof ArrayContainer) {
+                ArrayContainer x = (ArrayContainer) a;
+                for (int i = 0; i < x.cardinality; i++) {
+                    if (b.contains(x.values[i]))
+                        return true;
+                }
+                return false;
+            }
+            long[] x = a.toWords(), y = b.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                if ((x[i] & y[i]) != 0)
+                    return true;
+            }
+            return false;
+        }
+
+        static boolean equal(Container a, Container b) {
+            if (a.cardinality() != b.cardinality())
+                return false;
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+                ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+                for (int i = 0; i < x.cardinality; i++) {
+                    if (x.values[i] != y.values[i])
+                        return false;
+                }
+                return true;
+            }
+            return Arrays.equals(a.toWords(), b.toWords());
+        }
+    }
+
+    /** A sorted array of at most ARRAY_MAX values. */
+    static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        /** Returns the index of the first value at least x. */
+        private int lowerBound(int x) {
+            int lo = 0, hi = cardinality;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < x)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(int x) {
+            int i = lowerBound(x);
+            return i < cardinality && values[i] == x;
+        }
+
+        Container add(int x) {
+            int i = lowerBound(x);
+            if (i < cardinality && values[i] == x)
+                return this;
+            if (cardinality == ARRAY_MAX) {
+                long[] words = toWords();
+                words[x >>> 6] |= 1L << x;
+                return new BitmapContainer(words, cardinality + 1);
+            }
+            if (cardinality == values.length)
+                values = Arrays.copyOf(values,
+                    Math.min(ARRAY_MAX, cardinality + (cardinality >> 1) + 4));
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = (char) x;
+            cardinality++;
+            return this;
+        }
+
+        Container remove(int x) {
+            int i = lowerBound(x);
+            if (i < cardinality && values[i] == x) {
+                System.arraycopy(values, i + 1, values, i,
+                                 cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        Container addRange(int from, int to) {
+            int lo = lowerBound(from), hi = lowerBound(to);
+            int card = cardinality - (hi - lo) + (to - from);
+            if (card > ARRAY_MAX) {
+                long[] words = toWords();
+                setRange(words, 0, from, to);
+                return fromWords(words);
+            }
+            char[] result = new char[card];
+            System.arraycopy(values, 0, result, 0, lo);
+            for (int i = 0; i < to - from; i++)
+                result[lo + i] = (char) (from + i);
+            System.arraycopy(values, hi, result, lo + to - from,
+                             cardinality - hi);
+            return new ArrayContainer(result, card);
+        }
+
+        Container removeRange(int from, int to) {
+            int lo = lowerBound(from), hi = lowerBound(to);
+            System.arraycopy(values, hi, values, lo, cardinality - hi);
+            cardinality -= hi - lo;
+            return this;
+        }
+
+        int nextSetBit(int x) {
+            int i = lowerBound(x);
+            return (i < cardinality) ? values[i] : -1;
+        }
+
+        int previousSetBit(int x) {
+            int i = lowerBound(x + 1);
+            return (i > 0) ? values[i - 1] : -1;
+        }
+
+        void orInto(long[] words, int offset) {
+            for (int i = 0; i < cardinality; i++) {
+                int v = values[i];
+                words[offset + (v >>> 6)] |= 1L << v;
+            }
+        }
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality),
+                                      cardinality);
+        }
+
+        int type() {
+            return ARRAY;
+        }
+
+        int count() {
+            return cardinality;
+        }
+
+        int payloadBytes() {
+            return 2 * cardinality;
+        }
+
+        void writePayload(ByteBuffer buf, int offset) {
+            for (int i = 0; i < cardinality; i++)
+                buf.putChar(offset + 2 * i, values[i]);
+        }
+
+        int runCount() {
+            int runs = (cardinality > 0) ? 1 : 0;
+            for (int i = 1; i < cardinality; i++) {
+                if (values[i] != values[i - 1] + 1)
+                    runs++;
+            }
+            return runs;
+        }
+
+        /** Returns the values that are (or are not) contained in c. */
+        ArrayContainer filter(Container c, boolean contained) {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (c.contains(values[i]) == contained)
+                    result[n++] = values[i];
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        /** Returns the union of the values of this and c. */
+        ArrayContainer merge(ArrayContainer c) {
+            char[] result = new char[cardinality + c.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality && j < c.cardinality) {
+                char x = values[i], y = c.values[j];
+                if (x <= y) {
+                    result[n++] = x;
+                    i++;
+                    if (x == y)
+                        j++;
+                } else {
+                    result[n++] = y;
+                    j++;
+                }
+            }
+            while (i < cardinality)
+                result[n++] = values[i++];
+            while (j < c.cardinality)
+                result[n++] = c.values[j++];
+            return new ArrayContainer(result, n);
+        }
+    }
+
+    /** A bitmap of more than ARRAY_MAX values. */
+    static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(int x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        Container add(int x) {
+            long w = words[x >>> 6];
+            if ((w & (1L << x)) == 0) {
+                words[x >>> 6] = w | (1L << x);
+                if (++cardinality == CHUNK_BITS)
+                    return RunContainer.range(0, CHUNK_BITS);
+            }
+            return this;
+        }
+
+        Container remove(int x) {
+            long w = words[x >>> 6];
+            if ((w & (1L << x)) != 0) {
+                words[x >>> 6] = w & ~(1L << x);
+                if (--cardinality == ARRAY_MAX)
+                    return fromWords(words);
+            }
+            return this;
+        }
+
+        Container addRange(int from, int to) {
+            setRange(words, 0, from, to);
+            return fromWords(words);
+        }
+
+        Container removeRange(int from, int to) {
+            clearRange(words, from, to);
+            return fromWords(words);
+        }
+
+        int nextSetBit(int x) {
+            int i = x >>> 6;
+            long w = words[i] & (-1L << x);
+            while (true) {
+                if (w != 0)
+                    return (i << 6) + Long.numberOfTrailingZeros(w);
+                if (++i == BITMAP_WORDS)
+                    return -1;
+                w = words[i];
+            }
+        }
+
+        int previousSetBit(int x) {
+            int i = x >>> 6;
+            long w = words[i] & (-1L >>> -(x + 1));
+            while (true) {
+                if (w != 0)
+                    return (i << 6) + 63 - Long.numberOfLeadingZeros(w);
+                if (i-- == 0)
+                    return -1;
+                w = words[i];
+            }
+        }
+
+        void orInto(long[] words, int offset) {
+            long[] w = this.words;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                words[offset + i] |= w[i];
+        }
+
+        long[] toWords() {
+            return words.clone();
+        }
+
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        int type() {
+            return BITMAP;
+        }
+
+        int count() {
+            return cardinality;
+        }
+
+        int payloadBytes() {
+            return 8 * BITMAP_WORDS;
+        }
+
+        void writePayload(ByteBuffer buf, int offset) {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                buf.putLong(offset + 8 * i, words[i]);
+        }
+
+        int runCount() {
+            // a run starts at each set bit whose lower neighbour is clear
+            int runs = 0;
+            long carry = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                runs += Long.bitCount(w & ~((w << 1) | carry));
+                carry = w >>> 63;
+            }
+            return runs;
+        }
+    }
+
+    /** A sorted array of runs of consecutive values. */
+    static final class RunContainer extends Container {
+        /** The runs, as pairs of start and length - 1 */
+        final char[] runs;
+        final int count;
+        final int cardinality;
+
+        RunContainer(char[] runs, int count) {
+            this.runs = runs;
+            this.count = count;
+            int card = 0;
+            for (int i = 0; i < count; i++)
+                card += runs[2 * i + 1] + 1;
+            this.cardinality = card;
+        }
+
+        static RunContainer range(int from, int to) {
+            return new RunContainer(new char[] { (char) from,
+                                                 (char) (to - from - 1) }, 1);
+        }
+
+        /** Returns the index of the last run starting at or before x. */
+        private int runBefore(int x) {
+            int lo = 0, hi = count - 1, r = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[2 * mid] <= x) {
+                    r = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return r;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(int x) {
+            int r = runBefore(x);
+            return r >= 0 && x <= runs[2 * r] + runs[2 * r + 1];
+        }
+
+        /** Returns this container as an array or a bitmap. */
+        private Container expand() {
+            if (cardinality <= ARRAY_MAX)
+                return toArray();
+            return new BitmapContainer(toWords(), cardinality);
+        }
+
+        private Container toArray() {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                for (int v = runs[2 * i], end = v + runs[2 * i + 1];
+                     v <= end; v++)
+                    values[n++] = (char) v;
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        Container add(int x) {
+            return contains(x) ? this : expand().add(x);
+        }
+
+        Container remove(int x) {
+            return contains(x) ? expand().remove(x) : this;
+        }
+
+        Container addRange(int from, int to) {
+            long[] words = toWords();
+            setRange(words, 0, from, to);
+            return fromWords(words);
+        }
+
+        Container removeRange(int from, int to) {
+            long[] words = toWords();
+            clearRange(words, from, to);
+            return fromWords(words);
+        }
+
+        int nextSetBit(int x) {
+            int r = runBefore(x);
+            if (r >= 0 && x <= runs[2 * r] + runs[2 * r + 1])
+                return x;
+            return (r + 1 < count) ? runs[2 * (r + 1)] : -1;
+        }
+
+        int previousSetBit(int x) {
+            int r = runBefore(x);
+            return (r >= 0) ? Math.min(x, runs[2 * r] + runs[2 * r + 1])
+                            : -1;
+        }
+
+        void orInto(long[] words, int offset) {
+            for (int i = 0; i < count; i++)
+                setRange(words, offset, runs[2 * i],
+                         runs[2 * i] + runs[2 * i + 1] + 1);
+        }
+
+        Container copy() {
+            // immutable
+            return this;
+        }
+
+        int type() {
+            return RUN;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int payloadBytes() {
+            return 4 * count;
+        }
+
+        void writePayload(ByteBuffer buf, int offset) {
+            for (int i = 0; i < 2 * count; i++)
+                buf.putChar(offset + 2 * i, runs[i]);
+        }
+
+        int runCount() {
+            return count;
+        }
+
+        RunContainer toRuns() {
+            return this;
+        }
+    }
+}
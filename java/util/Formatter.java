@@ -2533,6 +2533,53 @@ public final class Formatter implements Closeable, Flushable {
         return this;
     }
 
+    /**
+     * Compiles a format string into a template that can be used to format
+     * many sets of arguments.  The locale used is the default locale for
+     * {@linkplain Locale.Category#FORMAT formatting} at the time this method
+     * is invoked.
+     *
+     * @param  format
+     *         A format string as described in <a href="#syntax">Format string
+     *         syntax</a>
+     *
+     * @throws  IllegalFormatException
+     *          If the format string contains an illegal syntax
+     *
+     * @return  The compiled template
+     *
+     * @see Template
+     * @since 1.8
+     */
+    public static Template compile(String format) {
+        return new Template(Locale.getDefault(Locale.Category.FORMAT), format);
+    }
+
+    /**
+     * Compiles a format string into a template that formats using the given
+     * locale.
+     *
+     * @param  l
+     *         The {@linkplain java.util.Locale locale} to apply during
+     *         formatting.  If {@code l} is {@code null} then no localization
+     *         is applied.
+     *
+     * @param  format
+     *         A format string as described in <a href="#syntax">Format string
+     *         syntax</a>
+     *
+     * @throws  IllegalFormatException
+     *          If the format string contains an illegal syntax
+     *
+     * @return  The compiled template
+     *
+     * @see Template
+     * @since 1.8
+     */
+    public static Template compile(Locale l, String format) {
+        return new Template(l, format);
+    }
+
     // %[argument_index$][flags][width][.precision][t]conversion
     private static final String formatSpecifier
         = "%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])";
@@ -2596,6 +2643,379 @@ public final class Formatter implements Closeable, Flushable {
         public String toString() { return s; }
     }
 
+    /**
+     * A format string compiled for repeated use.
+     *
+     * <p> {@link Formatter#format(String, Object...) Formatter.format} and
+     * {@link String#format(String, Object...) String.format} parse their
+     * format string on every invocation.  A template parses it once, when it
+     * is {@linkplain Formatter#compile(String) compiled}, and then formats
+     * directly into a {@code StringBuilder} or any other {@code Appendable}:
+     *
+     * <blockquote><pre>
+     *   private static final Formatter.Template LATENCY =
+     *       Formatter.compile("%-24s %8.3f ms%n");
+     *   ...
+     *   LATENCY.formatTo(sb, name, millis);
+     * </pre></blockquote>
+     *
+     * <p> Templates whose format specifiers all refer to a single argument
+     * can be used with the {@code int}, {@code long} and {@code double}
+     * overloads, which format the value without boxing it when the
+     * conversion is integral or floating-point respectively.
+     *
+     * <p> The output of a template is the same as that of {@code
+     * Formatter.format} given the same locale, format string and arguments,
+     * and the same exceptions are thrown.  Instances of this class are
+     * immutable and are safe for use by multiple concurrent threads; each
+     * thread that uses a template keeps its own parsed copy of the format
+     * string.
+     *
+     * @see Formatter#compile(String)
+     * @since 1.8
+     */
+    public static final class Template {
+        // kinds of argument
+        static final int OBJECTS = 0;
+        static final int INT     = 1;
+        static final int LONG    = 2;
+        static final int DOUBLE  = 3;
+
+        private final Locale l;
+        private final String format;
+
+        /** A formatter that prints the parsed format string */
+        private static final class Bound {
+            final Formatter fmt;
+            final FormatString[] fsa;
+            boolean busy;
+
+            Bound(Locale l, String format) {
+                fmt = new Formatter(l, (Appendable) null);
+                fsa = fmt.parse(format);
+            }
+        }
+
+        private final ThreadLocal<Bound> bound = new ThreadLocal<Bound>() {
+            @Override
+            protected Bound initialValue() {
+                return new Bound(l, format);
+            }
+        };
+
+        Template(Locale l, String format) {
+            this.l = l;
+            this.format = Objects.requireNonNull(format);
+            // parse now so that an illegal format fails here
+            bound.get();
+        }
+
+        /**
+         * Returns the locale used by this template.
+         *
+         * @return  The locale used by this template, or {@code null} if no
+         *          localization is applied
+         */
+        public Locale locale() {
+            return l;
+        }
+
+        /**
+         * Returns the format string from which this template was compiled.
+         *
+         * @return  The format string
+         */
+        public String toString() {
+            return format;
+        }
+
+        /**
+         * Returns a string formatted using this template and the given
+         * arguments.
+         *
+         * @param  args
+         *         Arguments referenced by the format specifiers in the format
+         *         string.  If there are more arguments than format specifiers,
+         *         the extra arguments are ignored.
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the given
+         *          arguments, or there are insufficient arguments
+         *
+         * @return  The formatted string
+         */
+        public String format(Object... args) {
+            StringBuilder sb = new StringBuilder();
+            formatTo(sb, args);
+            return sb.toString();
+        }
+
+        /**
+         * Returns a string formatted using this template and the given
+         * argument.
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         *
+         * @return  The formatted string
+         */
+        public String format(int arg) {
+            StringBuilder sb = new StringBuilder();
+            formatTo(sb, arg);
+            return sb.toString();
+        }
+
+        /**
+         * Returns a string formatted using this template and the given
+         * argument.
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         *
+         * @return  The formatted string
+         */
+        public String format(long arg) {
+            StringBuilder sb = new StringBuilder();
+            formatTo(sb, arg);
+            return sb.toString();
+        }
+
+        /**
+         * Returns a string formatted using this template and the given
+         * argument.
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         *
+         * @return  The formatted string
+         */
+        public String format(double arg) {
+            StringBuilder sb = new StringBuilder();
+            formatTo(sb, arg);
+            return sb.toString();
+        }
+
+        /**
+         * Appends the formatted arguments to the given string builder.
+         *
+         * @param  sb
+         *         The destination
+         *
+         * @param  args
+         *         Arguments referenced by the format specifiers in the format
+         *         string.  If there are more arguments than format specifiers,
+         *         the extra arguments are ignored.
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the given
+         *          arguments, or there are insufficient arguments
+         */
+        public void formatTo(StringBuilder sb, Object... args) {
+            printTo(sb, OBJECTS, args, 0L);
+        }
+
+        /**
+         * Appends the formatted argument to the given string builder.
+         *
+         * @param  sb
+         *         The destination
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         */
+        public void formatTo(StringBuilder sb, int arg) {
+            printTo(sb, INT, null, arg);
+        }
+
+        /**
+         * Appends the formatted argument to the given string builder.
+         *
+         * @param  sb
+         *         The destination
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         */
+        public void formatTo(StringBuilder sb, long arg) {
+            printTo(sb, LONG, null, arg);
+        }
+
+        /**
+         * Appends the formatted argument to the given string builder.
+         *
+         * @param  sb
+         *         The destination
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         */
+        public void formatTo(StringBuilder sb, double arg) {
+            printTo(sb, DOUBLE, null, Double.doubleToRawLongBits(arg));
+        }
+
+        private void printTo(StringBuilder sb, int kind, Object[] args,
+                             long bits)
+        {
+            try {
+                print(Objects.requireNonNull(sb), kind, args, bits);
+            } catch (IOException x) {
+                // a StringBuilder does not throw IOException
+                throw new AssertionError(x);
+            }
+        }
+
+        /**
+         * Appends the formatted arguments to the given destination.
+         *
+         * @param  a
+         *         The destination
+         *
+         * @param  args
+         *         Arguments referenced by the format specifiers in the format
+         *         string.  If there are more arguments than format specifiers,
+         *         the extra arguments are ignored.
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the given
+         *          arguments, or there are insufficient arguments
+         *
+         * @throws  IOException
+         *          If appending to the destination fails
+         */
+        public void formatTo(Appendable a, Object... args) throws IOException {
+            print(Objects.requireNonNull(a), OBJECTS, args, 0L);
+        }
+
+        /**
+         * Appends the formatted argument to the given destination.
+         *
+         * @param  a
+         *         The destination
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         *
+         * @throws  IOException
+         *          If appending to the destination fails
+         */
+        public void formatTo(Appendable a, int arg) throws IOException {
+            print(Objects.requireNonNull(a), INT, null, arg);
+        }
+
+        /**
+         * Appends the formatted argument to the given destination.
+         *
+         * @param  a
+         *         The destination
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         *
+         * @throws  IOException
+         *          If appending to the destination fails
+         */
+        public void formatTo(Appendable a, long arg) throws IOException {
+            print(Objects.requireNonNull(a), LONG, null, arg);
+        }
+
+        /**
+         * Appends the formatted argument to the given destination.
+         *
+         * @param  a
+         *         The destination
+         *
+         * @param  arg
+         *         The argument referenced by every format specifier
+         *
+         * @throws  IllegalFormatException
+         *          If a format specifier is incompatible with the argument, or
+         *          refers to another argument
+         *
+         * @throws  IOException
+         *          If appending to the destination fails
+         */
+        public void formatTo(Appendable a, double arg) throws IOException {
+            print(Objects.requireNonNull(a), DOUBLE, null,
+                  Double.doubleToRawLongBits(arg));
+        }
+
+        /**
+         * Prints the arguments, which are args if kind is OBJECTS, and
+         * otherwise the single primitive argument whose bits are given.
+         */
+        private void print(Appendable a, int kind, Object[] args, long bits)
+            throws IOException
+        {
+            Bound b = bound.get();
+            if (b.busy) {
+                // an argument is being formatted with this template
+                b = new Bound(l, format);
+            }
+            Formatter fmt = b.fmt;
+            b.busy = true;
+            fmt.a = a;
+            try {
+                // number of arguments; null args supplies nulls
+                int count = (kind != OBJECTS) ? 1
+                    : (args == null) ? Integer.MAX_VALUE : args.length;
+                int last = -1;   // index of last argument referenced
+                int lasto = -1;  // last ordinary index
+                for (FormatString fs : b.fsa) {
+                    int index = fs.index();
+                    if (index == -2) {  // fixed string, "%n", or "%%"
+                        fs.print(null, l);
+                        continue;
+                    }
+                    if (index == 0)  // ordinary index
+                        last = ++lasto;
+                    else if (index > 0)  // explicit index
+                        last = index - 1;
+                    if (last < 0 || last >= count)
+                        throw new MissingFormatArgumentException(fs.toString());
+                    if (kind != OBJECTS)
+                        ((FormatSpecifier)fs).print(kind, bits, l);
+                    else
+                        fs.print((args == null ? null : args[last]), l);
+                }
+            } finally {
+                fmt.a = null;
+                b.busy = false;
+            }
+        }
+    }
+
     /**
      * Enum for {@code BigDecimal} formatting.
      */
@@ -2776,6 +3196,45 @@ public final class Formatter implements Closeable, Flushable {
             }
         }
 
+        /**
+         * Prints a primitive argument of a {@link Template}, given its kind
+         * and bits, boxing it only if the conversion is not numeric.
+         */
+        void print(int kind, long bits, Locale l) throws IOException {
+            if (!dt) {
+                switch (c) {
+                case Conversion.DECIMAL_INTEGER:
+                case Conversion.OCTAL_INTEGER:
+                case Conversion.HEXADECIMAL_INTEGER:
+                    if (kind == Template.INT) {
+                        print((int) bits, l);
+                        return;
+                    } else if (kind == Template.LONG) {
+                        print(bits, l);
+                        return;
+                    }
+                    break;
+                case Conversion.SCIENTIFIC:
+                case Conversion.GENERAL:
+                case Conversion.DECIMAL_FLOAT:
+                case Conversion.HEXADECIMAL_FLOAT:
+                    if (kind == Template.DOUBLE) {
+                        print(Double.longBitsToDouble(bits), l);
+                        return;
+                    }
+                    break;
+                }
+            }
+            Object arg;
+            if (kind == Template.INT)
+                arg = (int) bits;
+            else if (kind == Template.LONG)
+                arg = bits;
+            else
+                arg = Double.longBitsToDouble(bits);
+            print(arg, l);
+        }
+
         private void printInteger(Object arg, Locale l) throws IOException {
             if (arg == null)
                 print("null");
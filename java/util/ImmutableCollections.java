@@ -0,0 +1,893 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Container class for the compact immutable collections returned by the
+ * immutable collection factories of {@link Collections}.  Not part of the
+ * public API.
+ *
+ * <p>The collections hold their elements directly rather than wrapping
+ * another collection.  Lists, sets and maps of one or two elements keep
+ * them in fields; larger lists keep them in an array trimmed to size,
+ * and larger sets and maps keep them in an open-addressed table probed
+ * linearly, twice the size of the collection, with no entry objects.
+ * None of the collections permits null elements, keys or values.
+ *
+ * <p>All the collections are serialized through a {@link CollSer} proxy,
+ * so that the serialized form does not depend on the representation.
+ */
+final class ImmutableCollections {
+
+    private ImmutableCollections() { }
+
+    /**
+     * The table of a set or map of n elements has EXPAND_FACTOR * n slots,
+     * which leaves half of them empty so that probe sequences are short.
+     */
+    static final int EXPAND_FACTOR = 2;
+
+    static UnsupportedOperationException uoe() {
+        return new UnsupportedOperationException();
+    }
+
+    // ---------- Factories ----------
+
+    static final ListN<?> EMPTY_LIST = new ListN<>(new Object[0]);
+    static final SetN<?> EMPTY_SET = new SetN<>(new Object[0], 0);
+    static final MapN<?,?> EMPTY_MAP = new MapN<>(new Object[0], 0);
+
+    /**
+     * Returns an immutable list of the given elements, which must not be
+     * null, using the array for a list of more than two elements.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> List<E> listFromTrustedArray(Object[] elements) {
+        for (Object e : elements)
+            Objects.requireNonNull(e);
+        switch (elements.length) {
+        case 0:
+            return (List<E>) EMPTY_LIST;
+        case 1:
+            return new List12<>((E) elements[0]);
+        case 2:
+            return new List12<>((E) elements[0], (E) elements[1]);
+        default:
+            return new ListN<>((E[]) elements);
+        }
+    }
+
+    /**
+     * Returns an immutable set of the given elements, which must not be
+     * null.  If rejectDuplicates is true, a duplicate element is an
+     * IllegalArgumentException; otherwise duplicates are dropped.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> Set<E> setFromArray(Object[] elements,
+                                   boolean rejectDuplicates) {
+        for (Object e : elements)
+            Objects.requireNonNull(e);
+        switch (elements.length) {
+        case 0:
+            return (Set<E>) EMPTY_SET;
+        case 1:
+            return new Set12<>((E) elements[0]);
+        case 2:
+            if (!elements[0].equals(elements[1]))
+                return new Set12<>((E) elements[0], (E) elements[1]);
+            if (rejectDuplicates)
+                throw new IllegalArgumentException(
+                    "duplicate element: " + elements[0]);
+            return new Set12<>((E) elements[0]);
+        default:
+            Object[] table = new Object[EXPAND_FACTOR * elements.length];
+            int size = 0;
+            for (Object e : elements) {
+                int idx = SetN.probe(table, e);
+                if (idx >= 0) {
+                    if (rejectDuplicates)
+                        throw new IllegalArgumentException(
+                            "duplicate element: " + e);
+                } else {
+                    table[-(idx + 1)] = e;
+                    size++;
+                }
+            }
+            if (size <= 2) {
+                Object[] distinct = new Object[size];
+                for (int i = 0, n = 0; i < table.length; i++) {
+                    if (table[i] != null)
+                        distinct[n++] = table[i];
+                }
+                return setFromArray(distinct, false);
+            }
+            if (size < elements.length)
+                return setFromArray(SetN.toArray(table, size), false);
+            return new SetN<>(table, size);
+        }
+    }
+
+    /**
+     * Returns an immutable map of the given keys and values, which must
+     * not be null.  A duplicate key is an IllegalArgumentException.
+     */
+    @SuppressWarnings("unchecked")
+    static <K,V> Map<K,V> mapFromArrays(Object[] keys, Object[] values) {
+        int n = keys.length;
+        for (int i = 0; i < n; i++) {
+            Objects.requireNonNull(keys[i]);
+            Objects.requireNonNull(values[i]);
+        }
+        switch (n) {
+        case 0:
+            return (Map<K,V>) EMPTY_MAP;
+        case 1:
+            return new Map12<>((K) keys[0], (V) values[0]);
+        case 2:
+            if (keys[0].equals(keys[1]))
+                throw new IllegalArgumentException("duplicate key: " + keys[0]);
+            return new Map12<>((K) keys[0], (V) values[0],
+                               (K) keys[1], (V) values[1]);
+        default:
+            Object[] table = new Object[2 * EXPAND_FACTOR * n];
+            for (int i = 0; i < n; i++) {
+                int idx = MapN.probe(table, keys[i]);
+                if (idx >= 0)
+                    throw new IllegalArgumentException(
+                        "duplicate key: " + keys[i]);
+                int dest = -(idx + 1);
+                table[dest] = keys[i];
+                table[dest + 1] = values[i];
+            }
+            return new MapN<>(table, n);
+        }
+    }
+
+    // ---------- Lists ----------
+
+    abstract static class AbstractImmutableList<E> extends AbstractList<E>
+            implements RandomAccess {
+        // all mutating methods throw UnsupportedOperationException
+        @Override public boolean add(E e) { throw uoe(); }
+        @Override public void add(int index, E e) { throw uoe(); }
+        @Override public boolean addAll(Collection<? extends E> c) { throw uoe(); }
+        @Override public boolean addAll(int index, Collection<? extends E> c) { throw uoe(); }
+        @Override public void clear() { throw uoe(); }
+        @Override public boolean remove(Object o) { throw uoe(); }
+        @Override public E remove(int index) { throw uoe(); }
+        @Override public boolean removeAll(Collection<?> c) { throw uoe(); }
+        @Override public boolean removeIf(Predicate<? super E> filter) { throw uoe(); }
+        @Override public boolean retainAll(Collection<?> c) { throw uoe(); }
+        @Override public void replaceAll(UnaryOperator<E> operator) { throw uoe(); }
+        @Override public E set(int index, E element) { throw uoe(); }
+        @Override public void sort(Comparator<? super E> c) { throw uoe(); }
+        @Override protected void removeRange(int fromIndex, int toIndex) { throw uoe(); }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            Objects.requireNonNull(o);
+            for (int i = 0, n = size(); i < n; i++) {
+                if (o.equals(get(i)))
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            Objects.requireNonNull(o);
+            for (int i = size() - 1; i >= 0; i--) {
+                if (o.equals(get(i)))
+                    return i;
+            }
+            return -1;
+        }
+
+        IndexOutOfBoundsException outOfBounds(int index) {
+            return new IndexOutOfBoundsException("Index: " + index +
+                                                 " Size: " + size());
+        }
+    }
+
+    /** A list of one or two elements, held in fields. */
+    static final class List12<E> extends AbstractImmutableList<E>
+            implements Serializable {
+        private final E e0;
+        private final E e1;     // null for a list of one element
+
+        List12(E e0) {
+            this.e0 = e0;
+            this.e1 = null;
+        }
+
+        List12(E e0, E e1) {
+            this.e0 = e0;
+            this.e1 = e1;
+        }
+
+        @Override
+        public int size() {
+            return (e1 != null) ? 2 : 1;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index == 0)
+                return e0;
+            if (index == 1 && e1 != null)
+                return e1;
+            throw outOfBounds(index);
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            throw new InvalidObjectException("not serial proxy");
+        }
+
+        private Object writeReplace() {
+            return (e1 == null) ? new CollSer(CollSer.IMM_LIST, e0)
+                                : new CollSer(CollSer.IMM_LIST, e0, e1);
+        }
+    }
+
+    /** A list of any number of elements, held in an array of that size. */
+    static final class ListN<E> extends AbstractImmutableList<E>
+            implements Serializable {
+        private final E[] elements;
+
+        ListN(E[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return elements.length == 0;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= elements.length)
+                throw outOfBounds(index);
+            return elements[index];
+        }
+
+        @Override
+        public Object[] toArray() {
+            return Arrays.copyOf(elements, elements.length, Object[].class);
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(elements,
+                                            Spliterator.ORDERED |
+                                            Spliterator.IMMUTABLE |
+                                            Spliterator.NONNULL);
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            throw new InvalidObjectException("not serial proxy");
+        }
+
+        private Object writeReplace() {
+            return new CollSer(CollSer.IMM_LIST, elements);
+        }
+    }
+
+    // ---------- Sets ----------
+
+    abstract static class AbstractImmutableSet<E> extends AbstractSet<E> {
+        // all mutating methods throw UnsupportedOperationException
+        @Override public boolean add(E e) { throw uoe(); }
+        @Override public boolean addAll(Collection<? extends E> c) { throw uoe(); }
+        @Override public void clear() { throw uoe(); }
+        @Override public boolean remove(Object o) { throw uoe(); }
+        @Override public boolean removeAll(Collection<?> c) { throw uoe(); }
+        @Override public boolean removeIf(Predicate<? super E> filter) { throw uoe(); }
+        @Override public boolean retainAll(Collection<?> c) { throw uoe(); }
+    }
+
+    /** A set of one or two elements, held in fields. */
+    static final class Set12<E> extends AbstractImmutableSet<E>
+            implements Serializable {
+        private final E e0;
+        private final E e1;     // null for a set of one element
+
+        Set12(E e0) {
+            this.e0 = e0;
+            this.e1 = null;
+        }
+
+        Set12(E e0, E e1) {
+            this.e0 = e0;
+            this.e1 = e1;
+        }
+
+        @Override
+        public int size() {
+            return (e1 != null) ? 2 : 1;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o.equals(e0) || o.equals(e1);    // implicit null check
+        }
+
+        @Override
+        public int hashCode() {
+            return e0.hashCode() + ((e1 != null) ? e1.hashCode() : 0);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int idx = size();
+
+                @Override
+                public boolean hasNext() {
+                    return idx > 0;
+                }
+
+                @Override
+                public E next() {
+                    if (idx == 1) {
+                        idx = 0;
+                        return e0;
+                    } else if (idx == 2) {
+                        idx = 1;
+                        return e1;
+                    } else {
+                        throw new NoSuchElementException();
+                    }
+                }
+            };
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            throw new InvalidObjectException("not serial proxy");
+        }
+
+        private Object writeReplace() {
+            return (e1 == null) ? new CollSer(CollSer.IMM_SET, e0)
+                                : new CollSer(CollSer.IMM_SET, e0, e1);
+        }
+    }
+
+    /**
+     * A set of any number of elements, held in an open-addressed table
+     * with linear probing.
+     */
+    static final class SetN<E> extends AbstractImmutableSet<E>
+            implements Serializable {
+        private final Object[] table;   // null slots are empty
+        private final int size;
+
+        SetN(Object[] table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        /**
+         * Returns the index of pe in table, or if it is absent, -(i + 1)
+         * for the index i of the empty slot where it would be inserted.
+         * The table must have an empty slot.
+         */
+        static int probe(Object[] table, Object pe) {
+            int idx = Math.floorMod(pe.hashCode(), table.length);
+            while (true) {
+                Object ee = table[idx];
+                if (ee == null)
+                    return -idx - 1;
+                if (pe.equals(ee))
+                    return idx;
+                if (++idx == table.length)
+                    idx = 0;
+            }
+        }
+
+        /** Returns the size elements of the table in an array. */
+        static Object[] toArray(Object[] table, int size) {
+            Object[] array = new Object[size];
+            for (int i = 0, n = 0; i < table.length; i++) {
+                if (table[i] != null)
+                    array[n++] = table[i];
+            }
+            return array;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Objects.requireNonNull(o);
+            return size > 0 && probe(table, o) >= 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = 0;
+            for (Object e : table) {
+                if (e != null)
+                    h += e.hashCode();
+            }
+            return h;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int idx = 0;
+                private int remaining = size;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    if (remaining == 0)
+                        throw new NoSuchElementException();
+                    Object e;
+                    while ((e = table[idx++]) == null)
+                        ;
+                    remaining--;
+                    return (E) e;
+                }
+            };
+        }
+
+        @Override
+        public Object[] toArray() {
+            return toArray(table, size);
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            throw new InvalidObjectException("not serial proxy");
+        }
+
+        private Object writeReplace() {
+            return new CollSer(CollSer.IMM_SET, toArray(table, size));
+        }
+    }
+
+    // ---------- Maps ----------
+
+    abstract static class AbstractImmutableMap<K,V> extends AbstractMap<K,V> {
+        // all mutating methods throw UnsupportedOperationException
+        @Override public void clear() { throw uoe(); }
+        @Override public V compute(K key, BiFunction<? super K,? super V,? extends V> rf) { throw uoe(); }
+        @Override public V computeIfAbsent(K key, Function<? super K,? extends V> mf) { throw uoe(); }
+        @Override public V computeIfPresent(K key, BiFunction<? super K,? super V,? extends V> rf) { throw uoe(); }
+        @Override public V merge(K key, V value, BiFunction<? super V,? super V,? extends V> rf) { throw uoe(); }
+        @Override public V put(K key, V value) { throw uoe(); }
+        @Override public void putAll(Map<? extends K,? extends V> m) { throw uoe(); }
+        @Override public V putIfAbsent(K key, V value) { throw uoe(); }
+        @Override public V remove(Object key) { throw uoe(); }
+        @Override public boolean remove(Object key, Object value) { throw uoe(); }
+        @Override public V replace(K key, V value) { throw uoe(); }
+        @Override public boolean replace(K key, V oldValue, V newValue) { throw uoe(); }
+        @Override public void replaceAll(BiFunction<? super K,? super V,? extends V> f) { throw uoe(); }
+
+        @Override
+        public V getOrDefault(Object key, V defaultValue) {
+            V v = get(key);
+            return (v != null) ? v : defaultValue;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+    }
+
+    /**
+     * The entry set of an immutable map, whose entries are created as
+     * they are iterated.
+     */
+    abstract static class EntrySet<K,V>
+            extends AbstractImmutableSet<Map.Entry<K,V>> {
+        final Map<K,V> map;
+
+        EntrySet(Map<K,V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object key = e.getKey(), value = e.getValue();
+            return key != null && value != null && value.equals(map.get(key));
+        }
+
+        @Override
+        public int hashCode() {
+            return map.hashCode();
+        }
+    }
+
+    /** A map of one or two entries, held in fields. */
+    static final class Map12<K,V> extends AbstractImmutableMap<K,V>
+            implements Serializable {
+        private final K k0;
+        private final V v0;
+        private final K k1;     // null for a map of one entry
+        private final V v1;
+
+        Map12(K k0, V v0) {
+            this(k0, v0, null, null);
+        }
+
+        Map12(K k0, V v0, K k1, V v1) {
+            this.k0 = k0;
+            this.v0 = v0;
+            this.k1 = k1;
+            this.v1 = v1;
+        }
+
+        @Override
+        public int size() {
+            return (k1 != null) ? 2 : 1;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public V get(Object key) {
+            if (key.equals(k0))     // implicit null check
+                return v0;
+            return key.equals(k1) ? v1 : null;
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            return value.equals(v0) || value.equals(v1);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = k0.hashCode() ^ v0.hashCode();
+            return (k1 != null) ? h + (k1.hashCode() ^ v1.hashCode()) : h;
+        }
+
+        @Override
+        public Set<Map.Entry<K,V>> entrySet() {
+            return new EntrySet<K,V>(this) {
+                @Override
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new Iterator<Map.Entry<K,V>>() {
+                        private int idx = size();
+
+                        @Override
+                        public boolean hasNext() {
+                            return idx > 0;
+                        }
+
+                        @Override
+                        public Map.Entry<K,V> next() {
+                            if (idx == 1) {
+                                idx = 0;
+                                return new SimpleImmutableEntry<>(k0, v0);
+                            } else if (idx == 2) {
+                                idx = 1;
+                                return new SimpleImmutableEntry<>(k1, v1);
+                            } else {
+                                throw new NoSuchElementException();
+                            }
+                        }
+                    };
+                }
+            };
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            throw new InvalidObjectException("not serial proxy");
+        }
+
+        private Object writeReplace() {
+            return (k1 == null) ? new CollSer(CollSer.IMM_MAP, k0, v0)
+                                : new CollSer(CollSer.IMM_MAP, k0, v0, k1, v1);
+        }
+    }
+
+    /**
+     * A map of any number of entries, held in an open-addressed table
+     * with linear probing, whose even slots hold the keys and odd slots
+     * hold the values.
+     */
+    static final class MapN<K,V> extends AbstractImmutableMap<K,V>
+            implements Serializable {
+        private final Object[] table;   // pairs of key, value
+        private final int size;
+
+        MapN(Object[] table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        /**
+         * Returns the index of the key pk in table, or if it is absent,
+         * -(i + 1) for the index i of the empty slot where it would be
+         * inserted.  The table must have an empty slot.
+         */
+        static int probe(Object[] table, Object pk) {
+            int idx = Math.floorMod(pk.hashCode(), table.length >> 1) << 1;
+            while (true) {
+                Object ek = table[idx];
+                if (ek == null)
+                    return -idx - 1;
+                if (pk.equals(ek))
+                    return idx;
+                if ((idx += 2) == table.length)
+                    idx = 0;
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            Objects.requireNonNull(key);
+            if (size == 0)
+                return null;
+            int idx = probe(table, key);
+            return (idx >= 0) ? (V) table[idx + 1] : null;
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            Objects.requireNonNull(value);
+            for (int i = 1; i < table.length; i += 2) {
+                Object v = table[i];
+                if (v != null && value.equals(v))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = 0;
+            for (int i = 0; i < table.length; i += 2) {
+                Object k = table[i];
+                if (k != null)
+                    h += k.hashCode() ^ table[i + 1].hashCode();
+            }
+            return h;
+        }
+
+        @Override
+        public Set<Map.Entry<K,V>> entrySet() {
+            return new EntrySet<K,V>(this) {
+                @Override
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new Iterator<Map.Entry<K,V>>() {
+                        private int idx = 0;
+                        private int remaining = size;
+
+                        @Override
+                        public boolean hasNext() {
+                            return remaining > 0;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Map.Entry<K,V> next() {
+                            if (remaining == 0)
+                                throw new NoSuchElementException();
+                            while (table[idx] == null)
+                                idx += 2;
+                            Map.Entry<K,V> e = new SimpleImmutableEntry<>(
+                                (K) table[idx], (V) table[idx + 1]);
+                            idx += 2;
+                            remaining--;
+                            return e;
+                        }
+                    };
+                }
+            };
+        }
+
+        private void readObject(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            throw new InvalidObjectException("not serial proxy");
+        }
+
+        private Object writeReplace() {
+            Object[] array = new Object[2 * size];
+            for (int i = 0, n = 0; i < table.length; i += 2) {
+                if (table[i] != null) {
+                    array[n++] = table[i];
+                    array[n++] = table[i + 1];
+                }
+            }
+            return new CollSer(CollSer.IMM_MAP, array);
+        }
+    }
+}
+
+/**
+ * A unified serialization proxy class for the immutable collections.
+ *
+ * @serial
+ * @since 1.8
+ */
+final class CollSer implements Serializable {
+    private static final long serialVersionUID = 6309168927139932177L;
+
+    static final int IMM_LIST = 1;
+    static final int IMM_SET = 2;
+    static final int IMM_MAP = 3;
+
+    /**
+     * Indicates the type of collection that is serialized: 1 for a list,
+     * 2 for a set and 3 for a map.
+     *
+     * @serial
+     */
+    private final int tag;
+
+    /**
+     * The elements of the collection, or the alternating keys and values
+     * of the map.
+     *
+     * @serial
+     */
+    private transient Object[] array;
+
+    CollSer(int t, Object... a) {
+        tag = t;
+        array = a;
+    }
+
+    /**
+     * Reads objects from the stream and stores them in the transient
+     * {@code Object[] array} field.
+     *
+     * @serialData A nonnegative int, indicating the count of objects,
+     * followed by that many objects.
+     */
+    private void readObject(ObjectInputStream ois)
+            throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        int len = ois.readInt();
+        if (len < 0)
+            throw new InvalidObjectException("negative length " + len);
+        // the length is not trusted for the allocation: the array grows
+        // as the objects are actually read
+        Object[] a = new Object[Math.min(len, 16)];
+        for (int i = 0; i < len; i++) {
+            if (i == a.length)
+                a = Arrays.copyOf(a, (int)Math.min(len, 2L * i));
+            a[i] = ois.readObject();
+        }
+        array = a;
+    }
+
+    /**
+     * Writes objects to the stream from the transient {@code Object[]
+     * array} field.
+     *
+     * @serialData A nonnegative int, indicating the count of objects,
+     * followed by that many objects.
+     */
+    private void writeObject(java.io.ObjectOutputStream oos)
+            throws IOException {
+        oos.defaultWriteObject();
+        oos.writeInt(array.length);
+        for (Object o : array)
+            oos.writeObject(o);
+    }
+
+    /**
+     * Creates and returns an immutable collection from this proxy class.
+     *
+     * @return a new immutable collection
+     * @throws ObjectStreamException if the tag is invalid or the stream
+     *         holds null or duplicate elements
+     */
+    private Object readResolve() throws ObjectStreamException {
+        try {
+            if (array == null)
+                throw new InvalidObjectException("null array");
+            switch (tag) {
+            case IMM_LIST:
+                return ImmutableCollections.listFromTrustedArray(array);
+            case IMM_SET:
+                return ImmutableCollections.setFromArray(array, true);
+            case IMM_MAP:
+                if ((array.length & 1) != 0)
+                    throw new InvalidObjectException("odd map array length");
+                int n = array.length >> 1;
+                Object[] keys = new Object[n], values = new Object[n];
+                for (int i = 0; i < n; i++) {
+                    keys[i] = array[2 * i];
+                    values[i] = array[2 * i + 1];
+                }
+                return ImmutableCollections.mapFromArrays(keys, values);
+            default:
+                throw new InvalidObjectException(
+                    String.format("invalid flags 0x%x", tag));
+            }
+        } catch (NullPointerException | IllegalArgumentException ex) {
+            InvalidObjectException ioe = new InvalidObjectException(
+                "invalid object");
+            ioe.initCause(ex);
+            throw ioe;
+        }
+    }
+}
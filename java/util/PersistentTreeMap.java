@@ -0,0 +1,1567 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * An immutable, persistent {@link NavigableMap} implementation based on a
+ * Red-Black tree.  The map is sorted according to the {@linkplain
+ * Comparable natural ordering} of its keys, or by a {@link Comparator}
+ * provided at map creation time, depending on which constructor is used.
+ *
+ * <p>A persistent map is never modified once it is created.  Instead, the
+ * {@link #with with} and {@link #without without} methods return a new
+ * map that differs from this one by a single mapping, in log(n) time and
+ * space: the new map shares all of the tree with this one except for the
+ * path from the root to the affected node, which is copied.  Because maps
+ * are never modified, taking a snapshot of a map is simply a matter of
+ * keeping a reference to it, and a reader holding a snapshot never sees
+ * the effect of later updates, however many there are.  The trees are
+ * rebalanced with the functional insertion and deletion algorithms of
+ * Okasaki and Kahrs.
+ *
+ * <p>A series of updates can be made more cheaply with a {@link Builder},
+ * a transient, mutable map that updates in place the nodes that it has
+ * itself created, copying only the nodes that it shares with persistent
+ * maps.  The {@link Builder#build build} method takes a persistent
+ * snapshot of the builder in constant time, and the builder remains
+ * usable afterwards, so a single writer can apply its updates to a
+ * builder and publish a snapshot to readers whenever it likes.
+ *
+ * <p>The {@code put}, {@code remove}, {@code clear} and other mutative
+ * methods of the {@code Map} interface throw {@link
+ * UnsupportedOperationException}, as do the {@code remove} methods of the
+ * iterators and the {@code setValue} method of the entries of the map and
+ * its views.  The {@code subMap}, {@code headMap}, {@code tailMap} and
+ * {@code descendingMap} views are themselves persistent maps, created in
+ * constant time, and their {@code with} and {@code without} methods return
+ * views of the same range of the updated map.  The {@code size} of a
+ * view other than the descending view of a whole map takes time linear in
+ * the size of the view the first time it is computed.
+ *
+ * <p>As with {@link TreeMap}, the ordering maintained by the map must be
+ * <em>consistent with {@code equals}</em> if the map is to correctly
+ * implement the {@code Map} interface.  Null values are permitted; null
+ * keys are permitted only if the comparator permits them.
+ *
+ * <p>Persistent maps are safe for use by multiple concurrent threads
+ * without synchronization.  Builders are not; a builder must be
+ * synchronized externally if it is updated by more than one thread.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see TreeMap
+ * @since 1.8
+ */
+public final class PersistentTreeMap<K,V>
+    extends AbstractMap<K,V>
+    implements NavigableMap<K,V>, Serializable
+{
+    /**
+     * The comparator used to maintain order in this map, or null if it
+     * uses the natural ordering of its keys.  For a descending view, this
+     * is the comparator of the ascending map.
+     */
+    private final transient Comparator<? super K> comparator;
+
+    /**
+     * The root of the tree, which holds the mappings of the whole map of
+     * which this map may be a view.
+     */
+    private final transient Node<K,V> root;
+
+    /**
+     * The number of mappings in this map or view, or -1 if the size of a
+     * view has not been computed yet.  Since the map is immutable, racing
+     * threads compute the same size.
+     */
+    private transient int size;
+
+    /*
+     * The bounds of a view, in the ascending order of the tree.  A map
+     * that is not a view has fromStart and toEnd both true.
+     */
+    private final transient K lo, hi;
+    private final transient boolean fromStart, loInclusive;
+    private final transient boolean toEnd, hiInclusive;
+
+    /** True if this is a descending view. */
+    private final transient boolean descending;
+
+    /**
+     * Constructs a new, empty map, using the natural ordering of its
+     * keys.  All keys inserted into the map must implement the {@link
+     * Comparable} interface and must be <em>mutually comparable</em>.
+     */
+    public PersistentTreeMap() {
+        this(null, null, 0);
+    }
+
+    /**
+     * Constructs a new, empty map, ordered according to the given
+     * comparator.
+     *
+     * @param comparator the comparator that will be used to order this
+     *        map.  If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public PersistentTreeMap(Comparator<? super K> comparator) {
+        this(comparator, null, 0);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map,
+     * ordered according to the <em>natural ordering</em> of its keys.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in m are not {@link
+     *         Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified map is null
+     */
+    public PersistentTreeMap(Map<? extends K, ? extends V> m) {
+        this(new Builder<K,V>(null, null, 0).putAllFrom(m));
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.
+     *
+     * @param  m the sorted map whose mappings are to be placed in this
+     *         map, and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public PersistentTreeMap(SortedMap<K, ? extends V> m) {
+        this(new Builder<K,V>(m.comparator(), null, 0).putAllFrom(m));
+    }
+
+    private PersistentTreeMap(Builder<K,V> b) {
+        this(b.comparator, b.root, b.size);
+    }
+
+    PersistentTreeMap(Comparator<? super K> comparator, Node<K,V> root,
+                      int size) {
+        this(comparator, root, size, true, null, false, true, null, false,
+             false);
+    }
+
+    private PersistentTreeMap(Comparator<? super K> comparator,
+                              Node<K,V> root, int size,
+                              boolean fromStart, K lo, boolean loInclusive,
+                              boolean toEnd, K hi, boolean hiInclusive,
+                              boolean descending) {
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Returns a new, empty builder that orders its keys by their natural
+     * ordering.
+     *
+     * @param <K> the type of keys maintained by the builder
+     * @param <V> the type of mapped values
+     * @return a new, empty builder
+     */
+    public static <K,V> Builder<K,V> builder() {
+        return new Builder<>(null, null, 0);
+    }
+
+    /**
+     * Returns a new, empty builder that orders its keys by the given
+     * comparator.
+     *
+     * @param <K> the type of keys maintained by the builder
+     * @param <V> the type of mapped values
+     * @param comparator the comparator that will be used to order the
+     *        keys.  If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     * @return a new, empty builder
+     */
+    public static <K,V> Builder<K,V> builder(Comparator<? super K> comparator) {
+        return new Builder<>(comparator, null, 0);
+    }
+
+    /**
+     * Returns a new builder containing the mappings of this map and using
+     * the same ordering.  For a map that is not a view, this takes
+     * constant time, as the builder shares the tree of this map until it
+     * is updated.
+     *
+     * @return a new builder containing the mappings of this map
+     */
+    public Builder<K,V> toBuilder() {
+        if (fromStart && toEnd && !descending)
+            return new Builder<>(comparator, root, size);
+        Builder<K,V> b = new Builder<>(comparator(), null, 0);
+        for (Node<K,V> e = absFirst(); e != null; e = absNext(e))
+            b.put(e.key, e.value);
+        return b;
+    }
+
+    // Persistent updates
+
+    /**
+     * Returns a map containing the mappings of this map, with the
+     * specified value associated with the specified key.  If this map
+     * already maps the key to the value, this map is returned.  If this
+     * map is a view, the returned map is the same view of the updated
+     * backing map.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return a map that maps the key to the value
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException if this map is a view and the key
+     *         is outside its range
+     */
+    public PersistentTreeMap<K,V> with(K key, V value) {
+        if (!inRange(key))
+            throw new IllegalArgumentException("key out of range");
+        Updater<K,V> u = new Updater<>(comparator, null);
+        Node<K,V> r = u.insert(root, key, value);
+        if (r == root)
+            return this;
+        int n = (size < 0) ? -1 : size + u.delta;
+        return new PersistentTreeMap<>(comparator, r, n, fromStart, lo,
+                                       loInclusive, toEnd, hi, hiInclusive,
+                                       descending);
+    }
+
+    /**
+     * Returns a map containing the mappings of this map, except for the
+     * mapping for the specified key, if any.  If this map contains no
+     * mapping for the key, this map is returned.  If this map is a view,
+     * the returned map is the same view of the updated backing map.
+     *
+     * @param key key whose mapping is to be omitted
+     * @return a map that has no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public PersistentTreeMap<K,V> without(Object key) {
+        if (!inRange(key) || getNode(key) == null)
+            return this;
+        Updater<K,V> u = new Updater<>(comparator, null);
+        Node<K,V> r = u.delete(root, key);
+        return new PersistentTreeMap<>(comparator, r,
+                                       (size < 0) ? -1 : size - 1,
+                                       fromStart, lo, loInclusive,
+                                       toEnd, hi, hiInclusive, descending);
+    }
+
+    // Query Operations
+
+    public int size() {
+        int n = size;
+        if (n < 0) {
+            n = 0;
+            for (Node<K,V> e = absFirst(); e != null; e = absNext(e))
+                n++;
+            size = n;
+        }
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return (size >= 0) ? size == 0 : absFirst() == null;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public boolean containsKey(Object key) {
+        return inRange(key) && getNode(key) != null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public V get(Object key) {
+        Node<K,V> p = inRange(key) ? getNode(key) : null;
+        return (p == null) ? null : p.value;
+    }
+
+    public Comparator<? super K> comparator() {
+        return descending ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K firstKey() {
+        return key(firstEntry());
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K lastKey() {
+        return key(lastEntry());
+    }
+
+    public Map.Entry<K,V> firstEntry() {
+        return descending ? absLast() : absFirst();
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        return descending ? absFirst() : absLast();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public Map.Entry<K,V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public Map.Entry<K,V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return descending ? absHigher(key) : absLower(key);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K lowerKey(K key) {
+        return keyOrNull(lowerEntry(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        return descending ? absCeiling(key) : absFloor(key);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K floorKey(K key) {
+        return keyOrNull(floorEntry(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return descending ? absFloor(key) : absCeiling(key);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingEntry(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        return descending ? absLower(key) : absHigher(key);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K higherKey(K key) {
+        return keyOrNull(higherEntry(key));
+    }
+
+    // Unsupported Map operations
+
+    /**
+     * Always throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     * @see #with
+     */
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public void putAll(Map<? extends K, ? extends V> map) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     * @see #without
+     */
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    // Views
+
+    /**
+     * Returns a {@link NavigableSet} view of the keys contained in this
+     * map, in ascending order.  The set does not support any mutative
+     * operations.
+     */
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map,
+     * in ascending key order.  The set does not support any mutative
+     * operations, and neither do its entries.
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        return new EntrySet();
+    }
+
+    public PersistentTreeMap<K,V> descendingMap() {
+        return new PersistentTreeMap<>(comparator, root, size, fromStart, lo,
+                                       loInclusive, toEnd, hi, hiInclusive,
+                                       !descending);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public PersistentTreeMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                         K toKey, boolean toInclusive) {
+        return descending
+            ? view(false, toKey, toInclusive, false, fromKey, fromInclusive)
+            : view(false, fromKey, fromInclusive, false, toKey, toInclusive);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public PersistentTreeMap<K,V> headMap(K toKey, boolean inclusive) {
+        return descending
+            ? view(false, toKey, inclusive, true, null, false)
+            : view(true, null, false, false, toKey, inclusive);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public PersistentTreeMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        return descending
+            ? view(true, null, false, false, fromKey, inclusive)
+            : view(false, fromKey, inclusive, true, null, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public PersistentTreeMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public PersistentTreeMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public PersistentTreeMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Returns a view of the given range of this map, whose bounds are in
+     * the ascending order of the tree.  A true fromStart or toEnd means
+     * the view keeps the corresponding bound of this map.
+     */
+    private PersistentTreeMap<K,V> view(boolean fs, K l, boolean li,
+                                        boolean te, K h, boolean hii) {
+        if (!fs && !te) {
+            if (compare(l, h) > 0)
+                throw new IllegalArgumentException("fromKey > toKey");
+        } else {
+            if (!fs) // type check
+                compare(l, l);
+            if (!te)
+                compare(h, h);
+        }
+        if (!fs && !inRange(l, li))
+            throw new IllegalArgumentException("fromKey out of range");
+        if (!te && !inRange(h, hii))
+            throw new IllegalArgumentException("toKey out of range");
+        if (fs) {
+            fs = fromStart;
+            l = lo;
+            li = loInclusive;
+        }
+        if (te) {
+            te = toEnd;
+            h = hi;
+            hii = hiInclusive;
+        }
+        return new PersistentTreeMap<>(comparator, root, -1, fs, l, li,
+                                       te, h, hii, descending);
+    }
+
+    // Range checks, in the ascending order of the tree
+
+    private boolean tooLow(Object key) {
+        if (!fromStart) {
+            int c = compare(key, lo);
+            if (c < 0 || (c == 0 && !loInclusive))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean tooHigh(Object key) {
+        if (!toEnd) {
+            int c = compare(key, hi);
+            if (c > 0 || (c == 0 && !hiInclusive))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean inRange(Object key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    private boolean inClosedRange(Object key) {
+        return (fromStart || compare(key, lo) >= 0)
+            && (toEnd || compare(hi, key) >= 0);
+    }
+
+    private boolean inRange(Object key, boolean inclusive) {
+        return inclusive ? inRange(key) : inClosedRange(key);
+    }
+
+    // Navigation within the bounds, in the ascending order of the tree
+
+    private Node<K,V> absFirst() {
+        Node<K,V> e = fromStart ? first(root) :
+            (loInclusive ? ceiling(lo, true) : ceiling(lo, false));
+        return (e == null || tooHigh(e.key)) ? null : e;
+    }
+
+    private Node<K,V> absLast() {
+        Node<K,V> e = toEnd ? last(root) :
+            (hiInclusive ? floor(hi, true) : floor(hi, false));
+        return (e == null || tooLow(e.key)) ? null : e;
+    }
+
+    private Node<K,V> absCeiling(K key) {
+        if (tooLow(key))
+            return absFirst();
+        Node<K,V> e = ceiling(key, true);
+        return (e == null || tooHigh(e.key)) ? null : e;
+    }
+
+    private Node<K,V> absHigher(K key) {
+        if (tooLow(key))
+            return absFirst();
+        Node<K,V> e = ceiling(key, false);
+        return (e == null || tooHigh(e.key)) ? null : e;
+    }
+
+    private Node<K,V> absFloor(K key) {
+        if (tooHigh(key))
+            return absLast();
+        Node<K,V> e = floor(key, true);
+        return (e == null || tooLow(e.key)) ? null : e;
+    }
+
+    private Node<K,V> absLower(K key) {
+        if (tooHigh(key))
+            return absLast();
+        Node<K,V> e = floor(key, false);
+        return (e == null || tooLow(e.key)) ? null : e;
+    }
+
+    /** Returns the successor of e within the bounds, or null. */
+    private Node<K,V> absNext(Node<K,V> e) {
+        Node<K,V> s = ceiling(e.key, false);
+        return (s == null || tooHigh(s.key)) ? null : s;
+    }
+
+    // Navigation in the whole tree
+
+    @SuppressWarnings("unchecked")
+    final int compare(Object k1, Object k2) {
+        return comparator == null ? ((Comparable<? super K>)k1).compareTo((K)k2)
+            : comparator.compare((K)k1, (K)k2);
+    }
+
+    private Node<K,V> getNode(Object key) {
+        if (root == null) // type check
+            compare(key, key);
+        Node<K,V> p = root;
+        while (p != null) {
+            int c = compare(key, p.key);
+            if (c < 0)
+                p = p.left;
+            else if (c > 0)
+                p = p.right;
+            else
+                return p;
+        }
+        return null;
+    }
+
+    private static <K,V> Node<K,V> first(Node<K,V> p) {
+        if (p != null)
+            while (p.left != null)
+                p = p.left;
+        return p;
+    }
+
+    private static <K,V> Node<K,V> last(Node<K,V> p) {
+        if (p != null)
+            while (p.right != null)
+                p = p.right;
+        return p;
+    }
+
+    /**
+     * Returns the node with the least key greater than, or if inclusive
+     * equal to, the given key, or null if there is none.
+     */
+    private Node<K,V> ceiling(Object key, boolean inclusive) {
+        Node<K,V> p = root, best = null;
+        while (p != null) {
+            int c = compare(key, p.key);
+            if (c < 0 || (c == 0 && inclusive)) {
+                if (c == 0)
+                    return p;
+                best = p;
+                p = p.left;
+            } else {
+                p = p.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the node with the greatest key less than, or if inclusive
+     * equal to, the given key, or null if there is none.
+     */
+    private Node<K,V> floor(Object key, boolean inclusive) {
+        Node<K,V> p = root, best = null;
+        while (p != null) {
+            int c = compare(key, p.key);
+            if (c > 0 || (c == 0 && inclusive)) {
+                if (c == 0)
+                    return p;
+                best = p;
+                p = p.right;
+            } else {
+                p = p.left;
+            }
+        }
+        return best;
+    }
+
+    static <K> K keyOrNull(Map.Entry<K,?> e) {
+        return (e == null) ? null : e.getKey();
+    }
+
+    static <K> K key(Map.Entry<K,?> e) {
+        if (e == null)
+            throw new NoSuchElementException();
+        return e.getKey();
+    }
+
+    // Iterators
+
+    /**
+     * Base class for iterators over the nodes of this map, in the order
+     * of the map.  Iterators keep the path of nodes still to be visited
+     * on an explicit stack, as nodes have no parent links.
+     */
+    abstract class NodeIterator<T> implements Iterator<T> {
+        private final boolean ascending;
+        private Node<K,V>[] stack;
+        private int depth;
+        private Node<K,V> next;
+
+        @SuppressWarnings("unchecked")
+        NodeIterator(boolean ascending) {
+            this.ascending = ascending;
+            stack = (Node<K,V>[]) new Node<?,?>[16];
+            Node<K,V> p = root;
+            while (p != null) {
+                if (ascending ? tooLow(p.key) : tooHigh(p.key)) {
+                    p = ascending ? p.right : p.left;
+                } else {
+                    push(p);
+                    p = ascending ? p.left : p.right;
+                }
+            }
+            advance();
+        }
+
+        private void push(Node<K,V> p) {
+            if (depth == stack.length)
+                stack = Arrays.copyOf(stack, depth << 1);
+            stack[depth++] = p;
+        }
+
+        private void advance() {
+            if (depth == 0) {
+                next = null;
+                return;
+            }
+            Node<K,V> e = stack[--depth];
+            stack[depth] = null;
+            if (ascending ? tooHigh(e.key) : tooLow(e.key)) {
+                next = null;
+                depth = 0;
+                return;
+            }
+            for (Node<K,V> p = ascending ? e.right : e.left; p != null;
+                 p = ascending ? p.left : p.right)
+                push(p);
+            next = e;
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final Node<K,V> nextNode() {
+            Node<K,V> e = next;
+            if (e == null)
+                throw new NoSuchElementException();
+            advance();
+            return e;
+        }
+    }
+
+    final class EntryIterator extends NodeIterator<Map.Entry<K,V>> {
+        EntryIterator(boolean ascending) {
+            super(ascending);
+        }
+        public Map.Entry<K,V> next() {
+            return nextNode();
+        }
+    }
+
+    final class KeyIterator extends NodeIterator<K> {
+        KeyIterator(boolean ascending) {
+            super(ascending);
+        }
+        public K next() {
+            return nextNode().key;
+        }
+    }
+
+    final class ValueIterator extends NodeIterator<V> {
+        ValueIterator(boolean ascending) {
+            super(ascending);
+        }
+        public V next() {
+            return nextNode().value;
+        }
+    }
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator(!descending);
+    }
+
+    Iterator<K> descendingKeyIterator() {
+        return new KeyIterator(descending);
+    }
+
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            public Iterator<V> iterator() {
+                return new ValueIterator(!descending);
+            }
+            public int size() {
+                return PersistentTreeMap.this.size();
+            }
+            public boolean isEmpty() {
+                return PersistentTreeMap.this.isEmpty();
+            }
+            public boolean contains(Object o) {
+                return containsValue(o);
+            }
+        };
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator(!descending);
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Object key = entry.getKey();
+            if (!inRange(key))
+                return false;
+            Node<K,V> p = getNode(key);
+            return p != null && Objects.equals(p.value, entry.getValue());
+        }
+
+        public int size() {
+            return PersistentTreeMap.this.size();
+        }
+
+        public boolean isEmpty() {
+            return PersistentTreeMap.this.isEmpty();
+        }
+    }
+
+    /**
+     * The navigable key set of a persistent map or view.  It supports no
+     * mutative operations.
+     */
+    static final class KeySet<E> extends AbstractSet<E>
+        implements NavigableSet<E> {
+        private final PersistentTreeMap<E,?> m;
+        KeySet(PersistentTreeMap<E,?> map) { m = map; }
+        public Iterator<E> iterator() { return m.keyIterator(); }
+        public Iterator<E> descendingIterator() {
+            return m.descendingKeyIterator();
+        }
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+        public void clear() { throw new UnsupportedOperationException(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E pollFirst() { throw new UnsupportedOperationException(); }
+        public E pollLast() { throw new UnsupportedOperationException(); }
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive,
+                                      E toElement,   boolean toInclusive) {
+            return new KeySet<>(m.subMap(fromElement, fromInclusive,
+                                         toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(m.tailMap(fromElement, inclusive));
+        }
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(m.descendingMap());
+        }
+    }
+
+    // Tree nodes and updates
+
+    /**
+     * Node in the Tree.  A node is never modified once it is reachable
+     * from a persistent map.  A builder may modify the nodes whose edit
+     * token is its own current token, which no map can reach.
+     */
+    static final class Node<K,V> implements Map.Entry<K,V> {
+        final K key;
+        V value;
+        Node<K,V> left;
+        Node<K,V> right;
+        boolean red;
+        final Object edit;
+
+        Node(K key, V value, Node<K,V> left, Node<K,V> right, boolean red,
+             Object edit) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.red = red;
+            this.edit = edit;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Always throws {@code UnsupportedOperationException}, as the
+         * mappings of a persistent map cannot be changed.
+         */
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return Objects.equals(key, e.getKey())
+                && Objects.equals(value, e.getValue());
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Applies an insertion or a deletion to a tree, copying the nodes on
+     * the path from the root unless they carry the given edit token, in
+     * which case they are updated in place.  Nodes created by an updater
+     * carry its token.  Persistent maps use a null token, so that their
+     * updates copy every node they change.
+     *
+     * <p>The algorithms are the functional ones of Okasaki (insertion)
+     * and Kahrs (deletion).  Every node of a rebalanced subtree takes its
+     * key from a distinct node of the original subtree, which is what
+     * allows a node to be reused in place.
+     */
+    static final class Updater<K,V> {
+        private final Comparator<? super K> comparator;
+        private final Object edit;
+        private K key;
+        private V value;
+        /** The change in size made by the last insertion. */
+        int delta;
+        /** The previous value of the key of the last update. */
+        V oldValue;
+
+        Updater(Comparator<? super K> comparator, Object edit) {
+            this.comparator = comparator;
+            this.edit = edit;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(Object k1, Object k2) {
+            return comparator == null
+                ? ((Comparable<? super K>)k1).compareTo((K)k2)
+                : comparator.compare((K)k1, (K)k2);
+        }
+
+        /**
+         * Returns the tree with the given mapping added or replaced, or
+         * the same tree if it already had the mapping.
+         */
+        Node<K,V> insert(Node<K,V> root, K key, V value) {
+            if (root == null) // type (and possibly null) check
+                compare(key, key);
+            this.key = key;
+            this.value = value;
+            delta = 0;
+            oldValue = null;
+            Node<K,V> r = ins(root);
+            this.key = null;
+            this.value = null;
+            return blacken(r);
+        }
+
+        /**
+         * Returns the tree with the mapping for the given key, which must
+         * be present, removed.
+         */
+        @SuppressWarnings("unchecked")
+        Node<K,V> delete(Node<K,V> root, Object key) {
+            this.key = (K) key;
+            oldValue = null;
+            Node<K,V> r = del(root);
+            this.key = null;
+            return blacken(r);
+        }
+
+        private Node<K,V> ins(Node<K,V> t) {
+            if (t == null) {
+                delta = 1;
+                return new Node<>(key, value, null, null, true, edit);
+            }
+            int c = compare(key, t.key);
+            if (c < 0) {
+                Node<K,V> l = ins(t.left);
+                return t.red ? node(t, true, l, t.right)
+                             : balance(l, t, t.right);
+            } else if (c > 0) {
+                Node<K,V> r = ins(t.right);
+                return t.red ? node(t, true, t.left, r)
+                             : balance(t.left, t, r);
+            } else {
+                oldValue = t.value;
+                if (t.value == value)
+                    return t;
+                if (edit != null && t.edit == edit) {
+                    t.value = value;
+                    return t;
+                }
+                return new Node<>(t.key, value, t.left, t.right, t.red,
+                                  edit);
+            }
+        }
+
+        private Node<K,V> del(Node<K,V> t) {
+            int c = compare(key, t.key);
+            if (c < 0) {
+                if (isBlack(t.left))
+                    return balanceLeft(del(t.left), t, t.right);
+                return node(t, true, del(t.left), t.right);
+            } else if (c > 0) {
+                if (isBlack(t.right))
+                    return balanceRight(t.left, t, del(t.right));
+                return node(t, true, t.left, del(t.right));
+            } else {
+                oldValue = t.value;
+                return append(t.left, t.right);
+            }
+        }
+
+        private static boolean isRed(Node<?,?> p) {
+            return p != null && p.red;
+        }
+
+        private static boolean isBlack(Node<?,?> p) {
+            return p != null && !p.red;
+        }
+
+        private Node<K,V> blacken(Node<K,V> p) {
+            return (p == null) ? null : node(p, false, p.left, p.right);
+        }
+
+        /**
+         * Returns a node with the key and value of p and the given color
+         * and children: p itself if it already has them or may be updated
+         * in place, or else a copy.
+         */
+        private Node<K,V> node(Node<K,V> p, boolean red,
+                               Node<K,V> l, Node<K,V> r) {
+            if (p.red == red && p.left == l && p.right == r)
+                return p;
+            if (edit != null && p.edit == edit) {
+                p.red = red;
+                p.left = l;
+                p.right = r;
+                return p;
+            }
+            return new Node<>(p.key, p.value, l, r, red, edit);
+        }
+
+        /**
+         * Returns a tree with the key of p and subtrees l and r, removing
+         * a red node with a red child from the top of l or r.
+         */
+        private Node<K,V> balance(Node<K,V> l, Node<K,V> p, Node<K,V> r) {
+            if (isRed(l) && isRed(r))
+                return node(p, true, node(l, false, l.left, l.right),
+                            node(r, false, r.left, r.right));
+            if (isRed(l)) {
+                Node<K,V> ll = l.left, lr = l.right;
+                if (isRed(ll))
+                    return node(l, true, node(ll, false, ll.left, ll.right),
+                                node(p, false, lr, r));
+                if (isRed(lr)) {
+                    Node<K,V> b = lr.left, c = lr.right;
+                    return node(lr, true, node(l, false, ll, b),
+                                node(p, false, c, r));
+                }
+            }
+            if (isRed(r)) {
+                Node<K,V> rl = r.left, rr = r.right;
+                if (isRed(rr))
+                    return node(r, true, node(p, false, l, rl),
+                                node(rr, false, rr.left, rr.right));
+                if (isRed(rl)) {
+                    Node<K,V> b = rl.left, c = rl.right;
+                    return node(rl, true, node(p, false, l, b),
+                                node(r, false, c, rr));
+                }
+            }
+            return node(p, false, l, r);
+        }
+
+        /** Turns a black node red, after its subtree lost black height. */
+        private Node<K,V> redden(Node<K,V> p) {
+            return node(p, true, p.left, p.right);
+        }
+
+        /**
+         * Rebalances a node with the key of p whose left subtree l is
+         * one black node shorter than its right subtree r.
+         */
+        private Node<K,V> balanceLeft(Node<K,V> l, Node<K,V> p,
+                                      Node<K,V> r) {
+            if (isRed(l))
+                return node(p, true, node(l, false, l.left, l.right), r);
+            if (isBlack(r))
+                return balance(l, p, redden(r));
+            // r is red with a black left child
+            Node<K,V> rl = r.left, a = rl.left, b = rl.right, c = r.right;
+            return node(rl, true, node(p, false, l, a),
+                        balance(b, r, redden(c)));
+        }
+
+        /**
+         * Rebalances a node with the key of p whose right subtree r is
+         * one black node shorter than its left subtree l.
+         */
+        private Node<K,V> balanceRight(Node<K,V> l, Node<K,V> p,
+                                       Node<K,V> r) {
+            if (isRed(r))
+                return node(p, true, l, node(r, false, r.left, r.right));
+            if (isBlack(l))
+                return balance(redden(l), p, r);
+            // l is red with a black right child
+            Node<K,V> lr = l.right, a = l.left, b = lr.left, c = lr.right;
+            return node(lr, true, balance(redden(a), l, b),
+                        node(p, false, c, r));
+        }
+
+        /**
+         * Joins two subtrees of equal black height, all of whose keys of
+         * l precede those of r.
+         */
+        private Node<K,V> append(Node<K,V> l, Node<K,V> r) {
+            if (l == null)
+                return r;
+            if (r == null)
+                return l;
+            if (l.red && r.red) {
+                Node<K,V> m = append(l.right, r.left);
+                if (isRed(m)) {
+                    Node<K,V> ml = m.left, mr = m.right;
+                    return node(m, true, node(l, true, l.left, ml),
+                                node(r, true, mr, r.right));
+                }
+                return node(l, true, l.left, node(r, true, m, r.right));
+            }
+            if (!l.red && !r.red) {
+                Node<K,V> m = append(l.right, r.left);
+                if (isRed(m)) {
+                    Node<K,V> ml = m.left, mr = m.right;
+                    return node(m, true, node(l, false, l.left, ml),
+                                node(r, false, mr, r.right));
+                }
+                return balanceLeft(l.left, l, node(r, false, m, r.right));
+            }
+            if (r.red)
+                return node(r, true, append(l, r.left), r.right);
+            return node(l, true, l.left, append(l.right, r));
+        }
+    }
+
+    /**
+     * A transient, mutable map from which persistent maps are built.  A
+     * builder updates in place the tree nodes that it has created since
+     * its last {@link #build build}, and copies the nodes that it shares
+     * with persistent maps, so that a series of updates to a builder
+     * allocates less than the same series of persistent updates.
+     *
+     * <p>Builders are not thread-safe.
+     *
+     * @param <K> the type of keys maintained by the builder
+     * @param <V> the type of mapped values
+     * @since 1.8
+     */
+    public static final class Builder<K,V> {
+        final Comparator<? super K> comparator;
+        Node<K,V> root;
+        int size;
+        /**
+         * The updater whose edit token marks the nodes that this builder
+         * may update in place, or null.  It is discarded on every build,
+         * which freezes the nodes created so far.
+         */
+        private Updater<K,V> updater;
+
+        Builder(Comparator<? super K> comparator, Node<K,V> root, int size) {
+            this.comparator = comparator;
+            this.root = root;
+            this.size = size;
+        }
+
+        private Updater<K,V> updater() {
+            Updater<K,V> u = updater;
+            if (u == null)
+                updater = u = new Updater<>(comparator, new Object());
+            return u;
+        }
+
+        Builder<K,V> putAllFrom(Map<? extends K, ? extends V> m) {
+            putAll(m);
+            return this;
+        }
+
+        /**
+         * Associates the specified value with the specified key.
+         *
+         * @param key key with which the specified value is to be associated
+         * @param value value to be associated with the specified key
+         * @return the previous value associated with {@code key}, or
+         *         {@code null} if there was no mapping for {@code key}
+         * @throws ClassCastException if the specified key cannot be
+         *         compared with the keys currently in the builder
+         * @throws NullPointerException if the specified key is null
+         *         and the builder uses natural ordering, or its comparator
+         *         does not permit null keys
+         */
+        public V put(K key, V value) {
+            Updater<K,V> u = updater();
+            root = u.insert(root, key, value);
+            size += u.delta;
+            V old = u.oldValue;
+            u.oldValue = null;
+            return old;
+        }
+
+        /**
+         * Copies all of the mappings from the specified map to this
+         * builder.
+         *
+         * @param  m mappings to be stored in this builder
+         * @throws ClassCastException if the class of a key in the map
+         *         prevents it from being stored in this builder
+         * @throws NullPointerException if the specified map is null, or
+         *         a key in it is null and the builder does not permit
+         *         null keys
+         */
+        public void putAll(Map<? extends K, ? extends V> m) {
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+                put(e.getKey(), e.getValue());
+        }
+
+        /**
+         * Removes the mapping for the specified key, if present.
+         *
+         * @param key key whose mapping is to be removed
+         * @return the previous value associated with {@code key}, or
+         *         {@code null} if there was no mapping for {@code key}
+         * @throws ClassCastException if the specified key cannot be
+         *         compared with the keys currently in the builder
+         * @throws NullPointerException if the specified key is null
+         *         and the builder uses natural ordering, or its comparator
+         *         does not permit null keys
+         */
+        public V remove(Object key) {
+            if (getNode(key) == null)
+                return null;
+            Updater<K,V> u = updater();
+            root = u.delete(root, key);
+            size--;
+            V old = u.oldValue;
+            u.oldValue = null;
+            return old;
+        }
+
+        /**
+         * Returns the value to which the specified key is mapped, or
+         * {@code null} if this builder contains no mapping for the key.
+         *
+         * @param key the key whose associated value is to be returned
+         * @return the value to which the specified key is mapped
+         * @throws ClassCastException if the specified key cannot be
+         *         compared with the keys currently in the builder
+         * @throws NullPointerException if the specified key is null
+         *         and the builder uses natural ordering, or its comparator
+         *         does not permit null keys
+         */
+        public V get(Object key) {
+            Node<K,V> p = getNode(key);
+            return (p == null) ? null : p.value;
+        }
+
+        /**
+         * Returns {@code true} if this builder contains a mapping for the
+         * specified key.
+         *
+         * @param key key whose presence is to be tested
+         * @return {@code true} if this builder contains a mapping for the
+         *         specified key
+         * @throws ClassCastException if the specified key cannot be
+         *         compared with the keys currently in the builder
+         * @throws NullPointerException if the specified key is null
+         *         and the builder uses natural ordering, or its comparator
+         *         does not permit null keys
+         */
+        public boolean containsKey(Object key) {
+            return getNode(key) != null;
+        }
+
+        /**
+         * Returns the number of mappings in this builder.
+         *
+         * @return the number of mappings in this builder
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Removes all of the mappings from this builder.
+         */
+        public void clear() {
+            root = null;
+            size = 0;
+        }
+
+        /**
+         * Returns a persistent map containing the mappings of this
+         * builder, in constant time.  The builder remains usable, and its
+         * later updates do not affect the returned map.
+         *
+         * @return a persistent map containing the mappings of this builder
+         */
+        public PersistentTreeMap<K,V> build() {
+            updater = null; // freeze the nodes created so far
+            return new PersistentTreeMap<>(comparator, root, size);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<K,V> getNode(Object key) {
+            Comparator<? super K> cpr = comparator;
+            Node<K,V> p = root;
+            if (p == null) { // type check
+                if (cpr == null)
+                    ((Comparable<? super K>)key).compareTo((K)key);
+                else
+                    cpr.compare((K)key, (K)key);
+            }
+            while (p != null) {
+                int c = (cpr == null)
+                    ? ((Comparable<? super K>)key).compareTo(p.key)
+                    : cpr.compare((K)key, p.key);
+                if (c < 0)
+                    p = p.left;
+                else if (c > 0)
+                    p = p.right;
+                else
+                    return p;
+            }
+            return null;
+        }
+    }
+
+    // Serialization
+
+    private static final long serialVersionUID = 6522447402416352711L;
+
+    /**
+     * Serialization proxy for persistent maps and their views, which
+     * holds the comparator and the mappings of the map in order.  A view
+     * is deserialized as a map of the mappings of the view.
+     *
+     * @serial include
+     */
+    private static final class SerializationProxy<K,V>
+        implements Serializable
+    {
+        private static final long serialVersionUID = 3374508210925227407L;
+
+        /**
+         * The comparator of the map, or null for the natural ordering.
+         *
+         * @serial
+         */
+        private final Comparator<? super K> comparator;
+
+        /**
+         * The keys of the map, in order.
+         *
+         * @serial
+         */
+        private final Object[] keys;
+
+        /**
+         * The values of the map, in the order of their keys.
+         *
+         * @serial
+         */
+        private final Object[] values;
+
+        SerializationProxy(PersistentTreeMap<K,V> m) {
+            comparator = m.comparator();
+            int n = m.size();
+            keys = new Object[n];
+            values = new Object[n];
+            int i = 0;
+            for (Map.Entry<K,V> e : m.entrySet()) {
+                keys[i] = e.getKey();
+                values[i++] = e.getValue();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readResolve() {
+            Builder<K,V> b = new Builder<>(comparator, null, 0);
+            for (int i = 0; i < keys.length; i++)
+                b.put((K) keys[i], (V) values[i]);
+            return b.build();
+        }
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy<>(this);
+    }
+
+    private void readObject(ObjectInputStream stream)
+        throws InvalidObjectException {
+        throw new InvalidObjectException("Proxy required");
+    }
+}
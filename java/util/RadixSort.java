@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class implements least significant digit (LSD) radix sorts of
+ * {@code int} and {@code long} keys, with one byte per digit, and a
+ * parallel variant that distributes the keys on their most significant
+ * digit (MSD) and then sorts the buckets independently.  Keys are
+ * compared as signed values by flipping their sign bits when digits are
+ * extracted.
+ *
+ * Each LSD pass is a stable counting sort from one array into the
+ * other.  The histograms of all digits are counted in a single pass
+ * over the keys, and passes on digits whose value is the same for every
+ * key are skipped, so that small keys in wide types cost fewer passes.
+ * A sort of {@code n} keys takes time linear in {@code n} and needs a
+ * workspace of {@code n} keys.
+ *
+ * The parallel sort splits the keys into chunks.  Each chunk counts
+ * its own histogram of the most significant digit; the histograms are
+ * then combined into per-chunk offsets, in chunk order so that the
+ * distribution is stable, and each chunk scatters its keys into the
+ * workspace.  The 256 buckets are then sorted on the remaining digits
+ * as separate tasks, leaving the result in the original array.
+ *
+ * The {@code long} sorts may carry an {@code int} payload along with
+ * each key, which is used to sort objects by extracted keys: the keys
+ * are sorted together with the indices of their objects, and the
+ * objects are then permuted once.
+ *
+ * All exposed methods are package-private, designed to be invoked
+ * from public methods (in class Arrays) after performing any
+ * necessary array bounds checks and expanding parameters into the
+ * required forms.
+ *
+ * @since 1.8
+ */
+final class RadixSort {
+
+    /**
+     * Prevents instantiation.
+     */
+    private RadixSort() {}
+
+    /*
+     * Tuning parameters.
+     */
+
+    /**
+     * If the length of an array of primitives to be sorted is less than
+     * this constant, Dual-Pivot Quicksort is used in preference to radix
+     * sort.
+     */
+    private static final int RADIX_SORT_THRESHOLD = 1 << 10;
+
+    /**
+     * If the number of keys with payloads to be sorted is less than this
+     * constant, insertion sort is used in preference to radix sort.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 64;
+
+    /**
+     * The minimum number of keys in a chunk of a parallel sort.
+     */
+    private static final int MIN_CHUNK_LENGTH = 1 << 16;
+
+    /**
+     * The number of values of a digit.
+     */
+    private static final int RADIX = 256;
+
+    /*
+     * Sequential sorts.
+     */
+
+    /**
+     * Sorts the specified range of the array.
+     *
+     * @param a the array to be sorted
+     * @param lo the index of the first element, inclusive, to be sorted
+     * @param hi the index of the last element, exclusive, to be sorted
+     */
+    static void sort(int[] a, int lo, int hi) {
+        int n = hi - lo;
+        if (n < RADIX_SORT_THRESHOLD)
+            DualPivotQuicksort.sort(a, lo, hi - 1, null, 0, 0);
+        else
+            sort(a, lo, new int[n], 0, n, 4, false);
+    }
+
+    /**
+     * Sorts the specified range of the array.
+     *
+     * @param a the array to be sorted
+     * @param lo the index of the first element, inclusive, to be sorted
+     * @param hi the index of the last element, exclusive, to be sorted
+     */
+    static void sort(long[] a, int lo, int hi) {
+        int n = hi - lo;
+        if (n < RADIX_SORT_THRESHOLD)
+            DualPivotQuicksort.sort(a, lo, hi - 1, null, 0, 0);
+        else
+            sort(a, lo, new long[n], 0, null, null, n, 8, false);
+    }
+
+    /**
+     * Sorts the specified range of the array of objects into the
+     * ascending order of the keys extracted from them.  The sort is
+     * stable, and the array is not modified if the key extractor throws
+     * an exception.
+     *
+     * @param a the array to be sorted
+     * @param lo the index of the first element, inclusive, to be sorted
+     * @param hi the index of the last element, exclusive, to be sorted
+     * @param keyExtractor the function extracting the keys
+     * @param parallelism the number of threads sorting in parallel
+     */
+    static <T> void sort(T[] a, int lo, int hi,
+                         ToLongFunction<? super T> keyExtractor,
+                         int parallelism) {
+        int n = hi - lo;
+        if (n < 2)
+            return;
+        long[] keys = new long[n];
+        int[] indices = new int[n];
+        int chunks = chunks(n, parallelism);
+        if (chunks == 1) {
+            extract(a, lo, keyExtractor, keys, indices, 0, n);
+            sort(keys, 0, new long[n], 0, indices, new int[n], n, 8, false);
+        } else {
+            ForkJoinTask.invokeAll(extractors(a, lo, keyExtractor, keys,
+                                              indices, n, chunks));
+            parallelSort(keys, 0, n, indices, chunks);
+        }
+        Object[] copy = Arrays.copyOfRange(a, lo, hi, Object[].class);
+        for (int i = 0; i < n; i++) {
+            @SuppressWarnings("unchecked")
+            T t = (T) copy[indices[i]];
+            a[lo + i] = t;
+        }
+    }
+
+    private static <T> void extract(T[] a, int lo,
+                                    ToLongFunction<? super T> keyExtractor,
+                                    long[] keys, int[] indices,
+                                    int from, int to) {
+        for (int i = from; i < to; i++) {
+            keys[i] = keyExtractor.applyAsLong(a[lo + i]);
+            indices[i] = i;
+        }
+    }
+
+    /**
+     * Sorts the low {@code digits} digits of the {@code n} keys in
+     * {@code a}, from index {@code ab}, or in {@code w}, from index
+     * {@code wb}, if {@code inW} is true, leaving the result in {@code a}.
+     */
+    private static void sort(int[] a, int ab, int[] w, int wb, int n,
+                             int digits, boolean inW) {
+        if (n < RADIX_SORT_THRESHOLD) {
+            if (inW)
+                System.arraycopy(w, wb, a, ab, n);
+            DualPivotQuicksort.sort(a, ab, ab + n - 1, null, 0, 0);
+            return;
+        }
+        int[] x = inW ? w : a, y = inW ? a : w;
+        int xb = inW ? wb : ab, yb = inW ? ab : wb;
+
+        // Count the histograms of all digits in one pass
+        int[] count = new int[digits * RADIX];
+        for (int i = xb, end = xb + n; i < end; i++) {
+            int k = x[i] ^ Integer.MIN_VALUE;
+            for (int d = 0; d < digits; d++)
+                count[(d << 8) + ((k >>> (d << 3)) & 0xff)]++;
+        }
+
+        for (int d = 0; d < digits; d++) {
+            int shift = d << 3, base = d << 8;
+            if (count[base + (((x[xb] ^ Integer.MIN_VALUE) >>> shift)
+                              & 0xff)] == n)
+                continue;               // all keys have the same digit
+            for (int v = 0, sum = yb; v < RADIX; v++) {
+                int c = count[base + v];
+                count[base + v] = sum;
+                sum += c;
+            }
+            for (int i = xb, end = xb + n; i < end; i++) {
+                int k = x[i];
+                y[count[base + (((k ^ Integer.MIN_VALUE) >>> shift)
+                                & 0xff)]++] = k;
+            }
+            int[] t = x; x = y; y = t;
+            int tb = xb; xb = yb; yb = tb;
+        }
+        if (x != a)
+            System.arraycopy(x, xb, a, ab, n);
+    }
+
+    /**
+     * Sorts the low {@code digits} digits of the {@code n} keys in
+     * {@code a}, from index {@code ab}, or in {@code w}, from index
+     * {@code wb}, if {@code inW} is true, leaving the result in {@code a}.
+     * If {@code ia} is not null, the payloads in {@code ia} or {@code iw},
+     * at the same indices as the keys, are moved with the keys.
+     */
+    private static void sort(long[] a, int ab, long[] w, int wb,
+                             int[] ia, int[] iw, int n, int digits,
+                             boolean inW) {
+        if (ia == null && n < RADIX_SORT_THRESHOLD) {
+            if (inW)
+                System.arraycopy(w, wb, a, ab, n);
+            DualPivotQuicksort.sort(a, ab, ab + n - 1, null, 0, 0);
+            return;
+        }
+        if (ia != null && n < INSERTION_SORT_THRESHOLD) {
+            if (inW) {
+                System.arraycopy(w, wb, a, ab, n);
+                System.arraycopy(iw, wb, ia, ab, n);
+            }
+            insertionSort(a, ia, ab, ab + n);
+            return;
+        }
+        long[] x = inW ? w : a, y = inW ? a : w;
+        int[] ix = inW ? iw : ia, iy = inW ? ia : iw;
+        int xb = inW ? wb : ab, yb = inW ? ab : wb;
+
+        // Count the histograms of all digits in one pass
+        int[] count = new int[digits * RADIX];
+        for (int i = xb, end = xb + n; i < end; i++) {
+            long k = x[i] ^ Long.MIN_VALUE;
+            for (int d = 0; d < digits; d++)
+                count[(d << 8) + ((int) (k >>> (d << 3)) & 0xff)]++;
+        }
+
+        for (int d = 0; d < digits; d++) {
+            int shift = d << 3, base = d << 8;
+            if (count[base + ((int) ((x[xb] ^ Long.MIN_VALUE) >>> shift)
+                              & 0xff)] == n)
+                continue;               // all keys have the same digit
+            for (int v = 0, sum = yb; v < RADIX; v++) {
+                int c = count[base + v];
+                count[base + v] = sum;
+                sum += c;
+            }
+            if (ix == null) {
+                for (int i = xb, end = xb + n; i < end; i++) {
+                    long k = x[i];
+                    y[count[base + ((int) ((k ^ Long.MIN_VALUE) >>> shift)
+                                    & 0xff)]++] = k;
+                }
+            } else {
+                for (int i = xb, end = xb + n; i < end; i++) {
+                    long k = x[i];
+                    int j = count[base + ((int) ((k ^ Long.MIN_VALUE)
+                                                 >>> shift) & 0xff)]++;
+                    y[j] = k;
+                    iy[j] = ix[i];
+                }
+                int[] t = ix; ix = iy; iy = t;
+            }
+            long[] t = x; x = y; y = t;
+            int tb = xb; xb = yb; yb = tb;
+        }
+        if (x != a) {
+            System.arraycopy(x, xb, a, ab, n);
+            if (ix != null)
+                System.arraycopy(ix, xb, ia, ab, n);
+        }
+    }
+
+    /**
+     * Sorts the keys from index {@code lo} to {@code hi} and their
+     * payloads by stable insertion sort.
+     */
+    private static void insertionSort(long[] a, int[] ia, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            long k = a[i];
+            int p = ia[i];
+            int j = i - 1;
+            for (; j >= lo && a[j] > k; j--) {
+                a[j + 1] = a[j];
+                ia[j + 1] = ia[j];
+            }
+            a[j + 1] = k;
+            ia[j + 1] = p;
+        }
+    }
+
+    /*
+     * Parallel sorts.
+     */
+
+    /**
+     * Returns the number of chunks a parallel sort of {@code n} keys is
+     * split into, or 1 if it is to be sequential.
+     */
+    private static int chunks(int n, int parallelism) {
+        if (parallelism <= 1)
+            return 1;
+        return Math.max(1, Math.min(parallelism << 2, n / MIN_CHUNK_LENGTH));
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel, or sequentially
+     * if it is small or the parallelism is 1.
+     *
+     * @param a the array to be sorted
+     * @param lo the index of the first element, inclusive, to be sorted
+     * @param hi the index of the last element, exclusive, to be sorted
+     * @param parallelism the number of threads sorting in parallel
+     */
+    static void parallelSort(int[] a, int lo, int hi, int parallelism) {
+        int n = hi - lo;
+        int chunks = chunks(n, parallelism);
+        if (chunks == 1) {
+            sort(a, lo, hi);
+            return;
+        }
+        int[] w = new int[n];
+        int[][] count = new int[chunks][];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks];
+        for (int c = 0; c < chunks; c++)
+            tasks[c] = new IntHistogram(a, lo + chunk(n, chunks, c),
+                                        lo + chunk(n, chunks, c + 1),
+                                        count[c] = new int[RADIX]);
+        ForkJoinTask.invokeAll(tasks);
+        int[] start = offsets(count);
+        for (int c = 0; c < chunks; c++)
+            tasks[c] = new IntScatter(a, lo + chunk(n, chunks, c),
+                                      lo + chunk(n, chunks, c + 1),
+                                      w, count[c]);
+        ForkJoinTask.invokeAll(tasks);
+        List<IntBucket> buckets = new ArrayList<>(RADIX);
+        for (int v = 0; v < RADIX; v++) {
+            if (start[v + 1] > start[v])
+                buckets.add(new IntBucket(a, lo, w, start[v], start[v + 1]));
+        }
+        ForkJoinTask.invokeAll(buckets);
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel, or sequentially
+     * if it is small or the parallelism is 1.
+     *
+     * @param a the array to be sorted
+     * @param lo the index of the first element, inclusive, to be sorted
+     * @param hi the index of the last element, exclusive, to be sorted
+     * @param parallelism the number of threads sorting in parallel
+     */
+    static void parallelSort(long[] a, int lo, int hi, int parallelism) {
+        int n = hi - lo;
+        int chunks = chunks(n, parallelism);
+        if (chunks == 1)
+            sort(a, lo, hi);
+        else
+            parallelSort(a, lo, hi, null, chunks);
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel, split into
+     * {@code chunks} chunks, with the payloads at the same indices in
+     * {@code ia} if it is not null.
+     */
+    private static void parallelSort(long[] a, int lo, int hi, int[] ia,
+                                     int chunks) {
+        int n = hi - lo;
+        long[] w = new long[n];
+        int[] iw = (ia == null) ? null : new int[n];
+        int[][] count = new int[chunks][];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks];
+        for (int c = 0; c < chunks; c++)
+            tasks[c] = new LongHistogram(a, lo + chunk(n, chunks, c),
+                                         lo + chunk(n, chunks, c + 1),
+                                         count[c] = new int[RADIX]);
+        ForkJoinTask.invokeAll(tasks);
+        int[] start = offsets(count);
+        for (int c = 0; c < chunks; c++)
+            tasks[c] = new LongScatter(a, ia, lo + chunk(n, chunks, c),
+                                       lo + chunk(n, chunks, c + 1),
+                                       w, iw, count[c]);
+        ForkJoinTask.invokeAll(tasks);
+        List<LongBucket> buckets = new ArrayList<>(RADIX);
+        for (int v = 0; v < RADIX; v++) {
+            if (start[v + 1] > start[v])
+                buckets.add(new LongBucket(a, ia, lo, w, iw, start[v],
+                                           start[v + 1]));
+        }
+        ForkJoinTask.invokeAll(buckets);
+    }
+
+    /**
+     * Returns the index of the first key of chunk {@code c} of {@code n}
+     * keys split into {@code chunks} chunks.
+     */
+    private static int chunk(int n, int chunks, int c) {
+        return (int) ((long) n * c / chunks);
+    }
+
+    /**
+     * Replaces the per-chunk histograms of the most significant digit by
+     * the indices in the workspace of the first key of each digit value
+     * in each chunk, and returns the indices of the buckets, with an
+     * extra element for the end of the last bucket.
+     */
+    private static int[] offsets(int[][] count) {
+        int[] start = new int[RADIX + 1];
+        int sum = 0;
+        for (int v = 0; v < RADIX; v++) {
+            start[v] = sum;
+            for (int[] chunkCount : count) {
+                int c = chunkCount[v];
+                chunkCount[v] = sum;
+                sum += c;
+            }
+        }
+        start[RADIX] = sum;
+        return start;
+    }
+
+    private static <T> ForkJoinTask<?>[] extractors(
+            T[] a, int lo, ToLongFunction<? super T> keyExtractor,
+            long[] keys, int[] indices, int n, int chunks) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks];
+        for (int c = 0; c < chunks; c++)
+            tasks[c] = new Extractor<>(a, lo, keyExtractor, keys, indices,
+                                       chunk(n, chunks, c),
+                                       chunk(n, chunks, c + 1));
+        return tasks;
+    }
+
+    /*
+     * Style note: as in ArraysParallelSortHelpers, the task classes
+     * have a lot of parameters, which we pack into as few lines as
+     * possible.
+     */
+
+    static final class IntHistogram extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int[] a, count; final int lo, hi;
+        IntHistogram(int[] a, int lo, int hi, int[] count) {
+            this.a = a; this.lo = lo; this.hi = hi; this.count = count;
+        }
+        protected void compute() {
+            int[] a = this.a, count = this.count;
+            for (int i = lo; i < hi; i++)
+                count[(a[i] >>> 24) ^ 0x80]++;
+        }
+    }
+
+    static final class IntScatter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int[] a, w, offset; final int lo, hi;
+        IntScatter(int[] a, int lo, int hi, int[] w, int[] offset) {
+            this.a = a; this.lo = lo; this.hi = hi; this.w = w;
+            this.offset = offset;
+        }
+        protected void compute() {
+            int[] a = this.a, w = this.w, offset = this.offset;
+            for (int i = lo; i < hi; i++) {
+                int k = a[i];
+                w[offset[(k >>> 24) ^ 0x80]++] = k;
+            }
+        }
+    }
+
+    static final class IntBucket extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int[] a, w; final int base, lo, hi;
+        IntBucket(int[] a, int base, int[] w, int lo, int hi) {
+            this.a = a; this.base = base; this.w = w; this.lo = lo;
+            this.hi = hi;
+        }
+        protected void compute() {
+            sort(a, base + lo, w, lo, hi - lo, 3, true);
+        }
+    }
+
+    static final class LongHistogram extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final long[] a; final int[] count; final int lo, hi;
+        LongHistogram(long[] a, int lo, int hi, int[] count) {
+            this.a = a; this.lo = lo; this.hi = hi; this.count = count;
+        }
+        protected void compute() {
+            long[] a = this.a; int[] count = this.count;
+            for (int i = lo; i < hi; i++)
+                count[(int) (a[i] >>> 56) ^ 0x80]++;
+        }
+    }
+
+    static final class LongScatter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final long[] a, w; final int[] ia, iw, offset; final int lo, hi;
+        LongScatter(long[] a, int[] ia, int lo, int hi, long[] w, int[] iw,
+                    int[] offset) {
+            this.a = a; this.ia = ia; this.lo = lo; this.hi = hi;
+            this.w = w; this.iw = iw; this.offset = offset;
+        }
+        protected void compute() {
+            long[] a = this.a, w = this.w;
+            int[] ia = this.ia, iw = this.iw, offset = this.offset;
+            if (ia == null) {
+                for (int i = lo; i < hi; i++) {
+                    long k = a[i];
+                    w[offset[(int) (k >>> 56) ^ 0x80]++] = k;
+                }
+            } else {
+                for (int i = lo; i < hi; i++) {
+                    long k = a[i];
+                    int j = offset[(int) (k >>> 56) ^ 0x80]++;
+                    w[j] = k;
+                    iw[j] = ia[i];
+                }
+            }
+        }
+    }
+
+    static final class LongBucket extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final long[] a, w; final int[] ia, iw; final int base, lo, hi;
+        LongBucket(long[] a, int[] ia, int base, long[] w, int[] iw,
+                   int lo, int hi) {
+            this.a = a; this.ia = ia; this.base = base; this.w = w;
+            this.iw = iw; this.lo = lo; this.hi = hi;
+        }
+        protected void compute() {
+            sort(a, base + lo, w, lo, ia, iw, hi - lo, 7, true);
+        }
+    }
+
+    static final class Extractor<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final T[] a; final ToLongFunction<? super T> keyExtractor;
+        final long[] keys; final int[] indices; final int lo, from, to;
+        Extractor(T[] a, int lo, ToLongFunction<? super T> keyExtractor,
+                  long[] keys, int[] indices, int from, int to) {
+            this.a = a; this.lo = lo; this.keyExtractor = keyExtractor;
+            this.keys = keys; this.indices = indices; this.from = from;
+            this.to = to;
+        }
+        protected void compute() {
+            extract(a, lo, keyExtractor, keys, indices, from, to);
+        }
+    }
+}
@@ -0,0 +1,2278 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A scalable concurrent {@link ConcurrentNavigableMap} implementation
+ * based on a B+-tree.  The map is sorted according to the
+ * {@linkplain Comparable natural ordering} of its keys, or by a
+ * {@link Comparator} provided at map creation time, depending on which
+ * constructor is used.
+ *
+ * <p>This class provides guaranteed <i>log(n)</i> time cost for the
+ * {@code containsKey}, {@code get}, {@code put} and {@code remove}
+ * operations and their variants.  Insertion, removal, update, and
+ * access operations safely execute concurrently by multiple threads.
+ * Reads never write to shared memory: they proceed optimistically and
+ * are validated against per-node version numbers, in the manner of
+ * {@link java.util.concurrent.locks.StampedLock#tryOptimisticRead}.
+ * Updates lock only the nodes they modify.  Because mappings are
+ * stored contiguously in wide nodes, this map usually needs less
+ * memory and fewer cache misses per operation than
+ * {@link ConcurrentSkipListMap}, especially for range scans.
+ *
+ * <p>Iterators are
+ * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+ *
+ * <p>Ascending key ordered views and their iterators are faster than
+ * descending ones.
+ *
+ * <p>All {@code Map.Entry} pairs returned by methods in this class
+ * and its views represent snapshots of mappings at the time they were
+ * produced. They do <em>not</em> support the {@code Entry.setValue}
+ * method. (Note however that it is possible to change mappings in the
+ * associated map using {@code put}, {@code putIfAbsent}, or
+ * {@code replace}, depending on exactly which effect you need.)
+ *
+ * <p>The {@code size} method of this map is maintained by a striped
+ * counter, and so may report inaccurate results while the map is being
+ * concurrently modified; the {@code size} of submaps requires a
+ * traversal of their elements.  Additionally, the bulk operations
+ * {@code putAll}, {@code equals}, {@code toArray},
+ * {@code containsValue}, and {@code clear} are <em>not</em> guaranteed
+ * to be performed atomically.
+ *
+ * <p>The tree never shrinks: removing mappings frees their slots for
+ * later insertions of nearby keys, but nodes are not merged.  Maps whose
+ * key range drifts over time while their size stays small are better
+ * served by {@link ConcurrentSkipListMap}.
+ *
+ * <p>This class and its views and iterators implement all of the
+ * <em>optional</em> methods of the {@link Map} and {@link Iterator}
+ * interfaces. Like most other concurrent collections, this class does
+ * <em>not</em> permit the use of {@code null} keys or values because some
+ * null return values cannot be reliably distinguished from the absence of
+ * elements.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see ConcurrentSkipListMap
+ * @since 1.8
+ */
+public class ConcurrentBTreeMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentNavigableMap<K,V>, Cloneable, Serializable {
+    /*
+     * This class implements a B-link tree (Lehman and Yao, "Efficient
+     * Locking for Concurrent Operations on B-Trees") with optimistic
+     * version validation in place of read locks (Leis et al., "The
+     * ART of Practical Synchronization").
+     *
+     * All mappings live in leaves, which are chained in key order
+     * through their "next" fields.  Each leaf covers the half-open key
+     * range [lowKey, highKey), where a null bound is infinite.  The
+     * lowKey of a leaf never changes; splitting a leaf moves its upper
+     * part to a new right sibling and lowers its highKey accordingly.
+     * Nodes are never merged or unlinked, so a node that covered a key
+     * once still covers some prefix of the range it had, and the key
+     * can always be found by following "next" links rightwards from it.
+     * This lets traversals use stale inner nodes (and even a stale
+     * root) without harm: a leaf reached through them is validated
+     * against its own highKey and, if the key has moved on, the search
+     * simply "moves right".
+     *
+     * Each node carries a version word that is odd while the node is
+     * write-locked and is incremented on every unlock that published
+     * a change.  Readers wait for an even version, read the fields they
+     * need with plain loads, then validate (loadFence plus re-read of
+     * the version) before trusting what they saw, exactly as a
+     * StampedLock optimistic read does.  Reads racing with a writer may
+     * see torn state (keys shifted, nulls in cleared slots, stale
+     * counts), so all traversal code is written to be harmless on
+     * inconsistent data: array indices are bounded by node capacity,
+     * null keys are treated as a signal to retry, and nothing computed
+     * from unvalidated data escapes.  Comparator calls only ever see
+     * keys that were actually inserted.
+     *
+     * Writers lock just the leaf they change, by CASing its version
+     * from the value they validated against.  Only splits touch more
+     * than one node: a put that finds its leaf full releases it and
+     * calls splitPath, which descends from the root with optimistic
+     * lock coupling (child version read while the parent is still
+     * valid) and splits the first full node on the way down while
+     * holding the locks of it and its parent.  Splitting full inner
+     * nodes eagerly guarantees that a parent always has room for a
+     * new separator.  All lock acquisitions are non-blocking tryLocks
+     * that restart the operation on failure, so there is no lock
+     * ordering to get wrong and no deadlock.
+     *
+     * A leaf split usually divides the keys evenly, but when a key is
+     * appended past the last key of the rightmost leaf the new right
+     * sibling starts out empty, so that ascending insertion leaves
+     * full leaves behind it rather than half-empty ones.
+     *
+     * The map size is tracked with a LongAdder to avoid a contended
+     * counter.  Removing mappings never restructures the tree, which
+     * is what keeps the traversal argument above simple; empty leaves
+     * are skipped by searches and iterators.
+     */
+
+    private static final long serialVersionUID = 2806216463113580773L;
+
+    /**
+     * The maximum number of keys in a leaf, and of children of an inner
+     * node.
+     */
+    static final int NODE_CAPACITY = 64;
+
+    /**
+     * The comparator used to maintain order in this map, or null if
+     * using natural ordering.  (Non-private to simplify access in
+     * nested classes.)
+     * @serial
+     */
+    final Comparator<? super K> comparator;
+
+    /** The root of the tree; never null */
+    private transient volatile Node<K,V> root;
+    /** The number of mappings */
+    private transient LongAdder count;
+    /** Lazily initialized key set */
+    private transient KeySet<K> keySet;
+    /** Lazily initialized entry set */
+    private transient EntrySet<K,V> entrySet;
+    /** Lazily initialized values collection */
+    private transient Values<V> values;
+    /** Lazily initialized descending key set */
+    private transient ConcurrentNavigableMap<K,V> descendingMap;
+
+    /**
+     * Initializes or resets state. Needed by constructors, clone,
+     * and readObject. (Note that comparator must be separately
+     * initialized.)
+     */
+    private void initialize() {
+        keySet = null;
+        entrySet = null;
+        values = null;
+        descendingMap = null;
+        count = new LongAdder();
+        root = new Leaf<K,V>(null);
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * Tree nodes.  The version word doubles as a write lock: it is odd
+     * while the node is locked.
+     */
+    abstract static class Node<K,V> {
+        volatile long version;
+        /** Number of keys (leaves) or children (inner nodes) */
+        int n;
+        final Object[] keys;
+
+        Node(int keyCapacity) {
+            keys = new Object[keyCapacity];
+        }
+
+        /**
+         * Returns the current version, first waiting until the node is
+         * not write-locked.
+         */
+        final long awaitVersion() {
+            long v;
+            for (int spins = 0; ((v = version) & 1L) != 0L; )
+                if ((++spins & 63) == 0)
+                    Thread.yield();
+            return v;
+        }
+
+        /**
+         * Returns true if the node has not been write-locked since
+         * the given version was read, so that all plain reads made in
+         * between saw a consistent state.
+         */
+        final boolean validate(long v) {
+            UNSAFE.loadFence();
+            return version == v;
+        }
+
+        /**
+         * Write-locks the node if it is still at the given (unlocked)
+         * version.
+         */
+        final boolean tryLock(long v) {
+            return UNSAFE.compareAndSwapLong(this, versionOffset, v, v + 1L);
+        }
+
+        /** Write-locks the node, waiting if necessary. */
+        final void lock() {
+            while (!tryLock(awaitVersion()))
+                ;
+        }
+
+        /** Unlocks the node, publishing the changes made under the lock. */
+        final void unlock() {
+            version = version + 1L;
+        }
+
+        /**
+         * Unlocks a node that was not changed since it was locked at
+         * the given version, so that concurrent optimistic reads
+         * remain valid.
+         */
+        final void release(long v) {
+            version = v;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe UNSAFE;
+        private static final long versionOffset;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = Node.class;
+                versionOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("version"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * Leaf nodes, holding up to NODE_CAPACITY mappings.
+     */
+    static final class Leaf<K,V> extends Node<K,V> {
+        final Object[] vals = new Object[NODE_CAPACITY];
+        /** Inclusive lower bound of the keys of this leaf, or null */
+        final Object lowKey;
+        /** Exclusive upper bound, equal to next.lowKey, or null */
+        Object highKey;
+        Leaf<K,V> next;
+
+        Leaf(Object lowKey) {
+            super(NODE_CAPACITY);
+            this.lowKey = lowKey;
+        }
+
+        /** Inserts a mapping at index i; the caller holds the lock */
+        void insert(int i, Object key, Object value) {
+            int m = n - i;
+            if (m > 0) {
+                System.arraycopy(keys, i, keys, i + 1, m);
+                System.arraycopy(vals, i, vals, i + 1, m);
+            }
+            keys[i] = key;
+            vals[i] = value;
+            n++;
+        }
+
+        /** Deletes the mapping at index i; the caller holds the lock */
+        void delete(int i) {
+            int m = --n - i;
+            if (m > 0) {
+                System.arraycopy(keys, i + 1, keys, i, m);
+                System.arraycopy(vals, i + 1, vals, i, m);
+            }
+            keys[n] = null;
+            vals[n] = null;
+        }
+    }
+
+    /**
+     * Inner nodes, holding n children and n-1 separator keys.  All keys
+     * reachable through children[i] are at least keys[i-1] and less
+     * than keys[i].
+     */
+    static final class Inner<K,V> extends Node<K,V> {
+        @SuppressWarnings("unchecked")
+        final Node<K,V>[] children =
+            (Node<K,V>[])new Node<?,?>[NODE_CAPACITY];
+
+        Inner() {
+            super(NODE_CAPACITY - 1);
+        }
+    }
+
+    /* ---------------- Comparison utilities -------------- */
+
+    /**
+     * Compares using comparator or natural ordering if null.
+     * Called only by methods that have performed required type checks.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final int cpr(Comparator c, Object x, Object y) {
+        return (c != null) ? c.compare(x, y) : ((Comparable)x).compareTo(y);
+    }
+
+    /**
+     * Result of the search methods when they run into a null key, which
+     * can only happen when reading a node that is being modified.
+     */
+    static final int RETRY = Integer.MIN_VALUE;
+
+    /**
+     * Returns the index of key in leaf l if present, else
+     * -(insertion point) - 1, or RETRY.  Safe to call on a node that
+     * is concurrently modified.
+     */
+    final int leafIndex(Node<K,V> l, Object key) {
+        Comparator<? super K> cmp = comparator;
+        Object[] ks = l.keys;
+        int lo = 0, hi = l.n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Object k = ks[mid];
+            if (k == null)
+                return RETRY;
+            int c = cpr(cmp, k, key);
+            if (c < 0)
+                lo = mid + 1;
+            else if (c > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Returns the index of the child of q covering key, or, if before
+     * is true, the child covering the keys immediately less than key;
+     * or RETRY.  Safe to call on a node that is concurrently modified.
+     */
+    final int childIndex(Inner<K,V> q, Object key, boolean before) {
+        Comparator<? super K> cmp = comparator;
+        Object[] ks = q.keys;
+        int lo = 0, hi = q.n - 2;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Object k = ks[mid];
+            if (k == null)
+                return RETRY;
+            int c = cpr(cmp, key, k);
+            if (c > 0 || (c == 0 && !before))
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns true if a search for key (or, if before is true, for
+     * the keys immediately less than key) must move right from a leaf
+     * with the given highKey.  A null key stands for the end of the
+     * key space in the direction given by before.
+     */
+    final boolean pastHigh(Object key, Object highKey, boolean before) {
+        if (highKey == null)
+            return false;
+        if (key == null)
+            return before;
+        int c = cpr(comparator, key, highKey);
+        return c > 0 || (c == 0 && !before);
+    }
+
+    /* ---------------- Traversal -------------- */
+
+    /**
+     * Returns a leaf from which a search for key (or, if before is
+     * true, for the keys immediately less than key) can start by
+     * moving right.  A null key finds the first leaf, or the last one
+     * if before is true.
+     */
+    private Leaf<K,V> findLeaf(Object key, boolean before) {
+        Node<K,V> p = root;
+        while (p instanceof Inner) {
+            Inner<K,V> q = (Inner<K,V>)p;
+            long v = q.awaitVersion();
+            int i = (key != null) ? childIndex(q, key, before) :
+                before ? q.n - 1 : 0;
+            if (i >= 0) {
+                Node<K,V> c = q.children[i];
+                if (c != null && q.validate(v))
+                    p = c;
+            }
+        }
+        return (Leaf<K,V>)p;
+    }
+
+    /**
+     * Returns the leaf containing key, write-locked, or null if there
+     * is no such key.
+     */
+    private Leaf<K,V> lockLeafFor(Object key) {
+        Leaf<K,V> l = findLeaf(key, false);
+        for (;;) {
+            long v = l.awaitVersion();
+            Leaf<K,V> next = l.next;
+            if (pastHigh(key, l.highKey, false)) {
+                if (l.validate(v))
+                    l = next;
+            }
+            else {
+                int i = leafIndex(l, key);
+                if (i >= 0) {
+                    if (l.tryLock(v))
+                        return l;
+                }
+                else if (i != RETRY && l.validate(v))
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Splits the first full node on the path to key, if any, so that a
+     * subsequent insertion of key finds room in its leaf.
+     */
+    private void splitPath(Object key) {
+        restart: for (;;) {
+            Node<K,V> p = root;
+            long v = p.awaitVersion();
+            if (p != root)
+                continue;
+            Inner<K,V> parent = null;
+            long pv = 0L;
+            for (;;) {
+                if (p.n == NODE_CAPACITY) {
+                    if (parent != null && !parent.tryLock(pv))
+                        continue restart;
+                    if (!p.tryLock(v)) {
+                        if (parent != null)
+                            parent.release(pv);
+                        continue restart;
+                    }
+                    if (parent == null && p != root) {
+                        p.release(v);
+                        continue restart;
+                    }
+                    try {
+                        split(parent, p, key);
+                    } finally {
+                        p.unlock();
+                        if (parent != null)
+                            parent.unlock();
+                    }
+                    return;
+                }
+                if (p instanceof Leaf) {
+                    if (p.validate(v))
+                        return;
+                    continue restart;
+                }
+                Inner<K,V> q = (Inner<K,V>)p;
+                int i = childIndex(q, key, false);
+                Node<K,V> c = (i >= 0) ? q.children[i] : null;
+                if (c == null || !q.validate(v))
+                    continue restart;
+                long cv = c.awaitVersion();
+                if (!q.validate(v))
+                    continue restart;
+                parent = q;
+                pv = v;
+                p = c;
+                v = cv;
+            }
+        }
+    }
+
+    /**
+     * Splits full node p, whose parent (null if p is the root) has
+     * room for another child.  The caller holds the locks of both.
+     * The only comparison, which may throw, is made before any change.
+     */
+    private void split(Inner<K,V> parent, Node<K,V> p, Object key) {
+        Node<K,V> right;
+        Object sep;
+        int n = p.n;
+        if (p instanceof Leaf) {
+            Leaf<K,V> l = (Leaf<K,V>)p, r;
+            if (l.next == null && cpr(comparator, key, l.keys[n - 1]) > 0) {
+                sep = key;              // appending: leave l full
+                r = new Leaf<K,V>(sep);
+            } else {
+                int s = n >>> 1, m = n - s;
+                sep = l.keys[s];
+                r = new Leaf<K,V>(sep);
+                System.arraycopy(l.keys, s, r.keys, 0, m);
+                System.arraycopy(l.vals, s, r.vals, 0, m);
+                r.n = m;
+                for (int i = s; i < n; ++i) {
+                    l.keys[i] = null;
+                    l.vals[i] = null;
+                }
+                l.n = s;
+            }
+            r.highKey = l.highKey;
+            r.next = l.next;
+            l.highKey = sep;
+            l.next = r;
+            right = r;
+        } else {
+            Inner<K,V> q = (Inner<K,V>)p;
+            Inner<K,V> r = new Inner<K,V>();
+            int s = n >>> 1, m = n - s;
+            sep = q.keys[s - 1];
+            System.arraycopy(q.keys, s, r.keys, 0, m - 1);
+            System.arraycopy(q.children, s, r.children, 0, m);
+            r.n = m;
+            for (int i = s - 1; i < n - 1; ++i)
+                q.keys[i] = null;
+            for (int i = s; i < n; ++i)
+                q.children[i] = null;
+            q.n = s;
+            right = r;
+        }
+        if (parent == null) {
+            Inner<K,V> r = new Inner<K,V>();
+            r.keys[0] = sep;
+            r.children[0] = p;
+            r.children[1] = right;
+            r.n = 2;
+            root = r;
+        } else {
+            int pn = parent.n, i = 0;
+            while (parent.children[i] != p)
+                ++i;
+            System.arraycopy(parent.keys, i, parent.keys, i + 1, pn - 1 - i);
+            System.arraycopy(parent.children, i + 1,
+                             parent.children, i + 2, pn - 1 - i);
+            parent.keys[i] = sep;
+            parent.children[i + 1] = right;
+            parent.n = pn + 1;
+        }
+    }
+
+    /* ---------------- Core operations -------------- */
+
+    /**
+     * Gets value for key.
+     * @param key the key
+     * @return the value, or null if absent
+     */
+    private V doGet(Object key) {
+        if (key == null)
+            throw new NullPointerException();
+        Leaf<K,V> l = findLeaf(key, false);
+        for (;;) {
+            long v = l.awaitVersion();
+            Leaf<K,V> next = l.next;
+            if (pastHigh(key, l.highKey, false)) {
+                if (l.validate(v))
+                    l = next;
+                continue;
+            }
+            int i = leafIndex(l, key);
+            Object x = (i >= 0) ? l.vals[i] : null;
+            if (i != RETRY && l.validate(v)) {
+                @SuppressWarnings("unchecked") V vv = (V)x;
+                return vv;
+            }
+        }
+    }
+
+    /**
+     * Main insertion method.  Adds element if not present, or
+     * replaces value if present and onlyIfAbsent is false.
+     * @param key the key
+     * @param value the value that must be associated with key
+     * @param onlyIfAbsent if should not insert if already present
+     * @return the old value, or null if newly inserted
+     */
+    private V doPut(K key, V value, boolean onlyIfAbsent) {
+        if (key == null)
+            throw new NullPointerException();
+        Leaf<K,V> l = findLeaf(key, false);
+        for (;;) {
+            long v = l.awaitVersion();
+            Leaf<K,V> next = l.next;
+            if (pastHigh(key, l.highKey, false)) {
+                if (l.validate(v))
+                    l = next;
+                continue;
+            }
+            // compare before locking, so that a throwing comparator
+            // cannot leave the leaf locked
+            int i = leafIndex(l, key);
+            if (i == RETRY || !l.tryLock(v))
+                continue;
+            if (i >= 0) {
+                @SuppressWarnings("unchecked") V vv = (V)l.vals[i];
+                if (onlyIfAbsent)
+                    l.release(v);
+                else {
+                    l.vals[i] = value;
+                    l.unlock();
+                }
+                return vv;
+            }
+            if (l.n == NODE_CAPACITY) {
+                l.release(v);
+                splitPath(key);
+                l = findLeaf(key, false);
+                continue;
+            }
+            l.insert(-i - 1, key, value);
+            l.unlock();
+            count.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Main deletion method.
+     * @param key the key
+     * @param value if non-null, the value that must be
+     * associated with key
+     * @return the node, or null if not found
+     */
+    final V doRemove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        Leaf<K,V> l = lockLeafFor(key);
+        if (l == null)
+            return null;
+        V vv;
+        try {
+            int i = leafIndex(l, key);
+            @SuppressWarnings("unchecked") V x = (V)l.vals[i];
+            if (value != null && !value.equals(x))
+                return null;
+            l.delete(i);
+            vv = x;
+        } finally {
+            l.unlock();
+        }
+        count.decrement();
+        return vv;
+    }
+
+    /**
+     * Replaces the value for key if it is present and, if oldValue is
+     * non-null, currently mapped to oldValue.
+     * @return the previous value, or null if not replaced
+     */
+    private V doReplace(Object key, Object oldValue, V newValue) {
+        if (key == null || newValue == null)
+            throw new NullPointerException();
+        Leaf<K,V> l = lockLeafFor(key);
+        if (l == null)
+            return null;
+        try {
+            int i = leafIndex(l, key);
+            @SuppressWarnings("unchecked") V vv = (V)l.vals[i];
+            if (oldValue != null && !oldValue.equals(vv))
+                return null;
+            l.vals[i] = newValue;
+            return vv;
+        } finally {
+            l.unlock();
+        }
+    }
+
+    /* ---------------- Relational operations -------------- */
+
+    // Control values OR'ed as arguments to findNear
+
+    private static final int EQ = 1;
+    private static final int LT = 2;
+    private static final int GT = 0; // Actually checked as !LT
+
+    /**
+     * Utility for ceiling, floor, lower, higher, first and last methods.
+     * @param key the key, or null for the first (or, if rel includes LT,
+     * the last) mapping
+     * @param rel the relation -- OR'ed combination of EQ, LT, GT
+     * @return snapshot of the nearest mapping fitting relation, or null
+     * if no such mapping
+     */
+    final AbstractMap.SimpleImmutableEntry<K,V> findNear(Object key,
+                                                          int rel) {
+        boolean lt = (rel & LT) != 0;
+        boolean before = lt && (key == null || (rel & EQ) == 0);
+        Leaf<K,V> l = findLeaf(key, before);
+        for (;;) {
+            long v = l.awaitVersion();
+            Leaf<K,V> next = l.next;
+            if (pastHigh(key, l.highKey, before)) {
+                if (l.validate(v))
+                    l = next;
+                continue;
+            }
+            int n = l.n, i;
+            if (key == null)
+                i = lt ? n - 1 : 0;
+            else if ((i = leafIndex(l, key)) == RETRY)
+                continue;
+            else if (i >= 0)
+                i = ((rel & EQ) != 0) ? i : lt ? i - 1 : i + 1;
+            else
+                i = lt ? -i - 2 : -i - 1;
+            if (i >= 0 && i < n) {
+                Object k = l.keys[i], x = l.vals[i];
+                if (k != null && x != null && l.validate(v)) {
+                    @SuppressWarnings("unchecked") K kk = (K)k;
+                    @SuppressWarnings("unchecked") V vv = (V)x;
+                    return new AbstractMap.SimpleImmutableEntry<K,V>(kk, vv);
+                }
+            }
+            else if (l.validate(v)) {
+                if (lt) {
+                    if ((key = l.lowKey) == null)
+                        return null;
+                    before = true;
+                    l = findLeaf(key, true);
+                } else {
+                    if (next == null)
+                        return null;
+                    key = null;
+                    l = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the nearest mapping fitting the relation, or
+     * null if none.
+     */
+    final K findNearKey(Object key, int rel) {
+        Map.Entry<K,V> e = findNear(key, rel);
+        return (e == null) ? null : e.getKey();
+    }
+
+    /**
+     * Removes first mapping, or if rel is LT, last mapping.
+     * @return null if empty, else snapshot of the removed mapping
+     */
+    private Map.Entry<K,V> doRemoveEnd(int rel) {
+        for (;;) {
+            Map.Entry<K,V> e = findNear(null, rel);
+            if (e == null)
+                return null;
+            K k = e.getKey();
+            V v = doRemove(k, null);
+            if (v != null)
+                return new AbstractMap.SimpleImmutableEntry<K,V>(k, v);
+        }
+    }
+
+    /* ---------------- Constructors -------------- */
+
+    /**
+     * Constructs a new, empty map, sorted according to the
+     * {@linkplain Comparable natural ordering} of the keys.
+     */
+    public ConcurrentBTreeMap() {
+        this.comparator = null;
+        initialize();
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator the comparator that will be used to order this map.
+     *        If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public ConcurrentBTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        initialize();
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map,
+     * sorted according to the {@linkplain Comparable natural ordering} of
+     * the keys.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in {@code m} are not
+     *         {@link Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified map or any of its keys
+     *         or values are null
+     */
+    public ConcurrentBTreeMap(Map<? extends K, ? extends V> m) {
+        this.comparator = null;
+        initialize();
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.
+     *
+     * @param m the sorted map whose mappings are to be placed in this
+     *        map, and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified sorted map or any of
+     *         its keys or values are null
+     */
+    public ConcurrentBTreeMap(SortedMap<K, ? extends V> m) {
+        this.comparator = m.comparator();
+        initialize();
+        putAll(m);
+    }
+
+    /**
+     * Returns a shallow copy of this {@code ConcurrentBTreeMap}
+     * instance. (The keys and values themselves are not cloned.)
+     *
+     * @return a shallow copy of this map
+     */
+    public ConcurrentBTreeMap<K,V> clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            ConcurrentBTreeMap<K,V> clone =
+                (ConcurrentBTreeMap<K,V>) super.clone();
+            clone.initialize();
+            for (Iterator<Map.Entry<K,V>> it = entryIterator(); it.hasNext(); ) {
+                Map.Entry<K,V> e = it.next();
+                clone.doPut(e.getKey(), e.getValue(), false);
+            }
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /* ---------------- Serialization -------------- */
+
+    /**
+     * Saves this map to a stream (that is, serializes it).
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData The key (Object) and value (Object) for each
+     * key-value mapping represented by the map, followed by
+     * {@code null}. The key-value mappings are emitted in key-order
+     * (as determined by the Comparator, or by the keys' natural
+     * ordering if no Comparator).
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        // Write out the Comparator and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out keys and values (alternating)
+        for (Iterator<Map.Entry<K,V>> it = entryIterator(); it.hasNext(); ) {
+            Map.Entry<K,V> e = it.next();
+            s.writeObject(e.getKey());
+            s.writeObject(e.getValue());
+        }
+        s.writeObject(null);
+    }
+
+    /**
+     * Reconstitutes this map from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        // Read in the Comparator and any hidden stuff
+        s.defaultReadObject();
+        // Reset transients
+        initialize();
+        for (;;) {
+            Object k = s.readObject();
+            if (k == null)
+                break;
+            Object v = s.readObject();
+            if (v == null)
+                throw new NullPointerException();
+            doPut((K)k, (V)v, false);
+        }
+    }
+
+    /* ------ Map API methods ------ */
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified
+     * key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        return doGet(key) != null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * <p>More formally, if this map contains a mapping from a key
+     * {@code k} to a value {@code v} such that {@code key} compares
+     * equal to {@code k} according to the map's ordering, then this
+     * method returns {@code v}; otherwise it returns {@code null}.
+     * (There can be at most one such mapping.)
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        return doGet(key);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or the given defaultValue if this map contains no mapping for the key.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the defaultValue
+     * @throws NullPointerException if the specified key is null
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V v;
+        return (v = doGet(key)) == null ? defaultValue : v;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        return doPut(key, value, false);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        return doRemove(key, null);
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * map size. Additionally, it is possible for the map to change
+     * during execution of this method, in which case the returned
+     * result may be inaccurate.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if a mapping to {@code value} exists;
+     *         {@code false} otherwise
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        for (Iterator<V> it = valueIterator(); it.hasNext(); ) {
+            if (value.equals(it.next()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.  If this map
+     * contains more than {@code Integer.MAX_VALUE} elements, it
+     * returns {@code Integer.MAX_VALUE}.
+     *
+     * <p>The count is maintained by a striped counter, so this method
+     * is fast, but while the map is being concurrently modified it may
+     * transiently disagree with the mappings an iterator would see.
+     *
+     * @return the number of elements in this map
+     */
+    public int size() {
+        long n = count.sum();
+        return ((n < 0L) ? 0 :
+                (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE :
+                (int)n);
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return findNear(null, GT) == null;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        for (Leaf<K,V> l = findLeaf(null, false); l != null; ) {
+            l.lock();
+            int n = l.n;
+            for (int i = 0; i < n; ++i) {
+                l.keys[i] = null;
+                l.vals[i] = null;
+            }
+            l.n = 0;
+            Leaf<K,V> next = l.next;
+            l.unlock();
+            if (n != 0)
+                count.add(-n);
+            l = next;
+        }
+    }
+
+    /* ---------------- View methods -------------- */
+
+    /**
+     * Returns a {@link NavigableSet} view of the keys contained in this map.
+     *
+     * <p>The set's iterator returns the keys in ascending order.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, which removes the corresponding mapping from the map,
+     * via the {@code Iterator.remove}, {@code Set.remove},
+     * {@code removeAll}, {@code retainAll}, and {@code clear}
+     * operations.  It does not support the {@code add} or {@code addAll}
+     * operations.
+     *
+     * <p>The view's iterators are
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * <p>This method is equivalent to method {@code navigableKeySet}.
+     *
+     * @return a navigable set view of the keys in this map
+     */
+    public NavigableSet<K> keySet() {
+        KeySet<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet<K>(this));
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet<K>(this));
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this map.
+     * The collection's iterator returns the values in ascending order
+     * of the corresponding keys.
+     * The collection is backed by the map, so changes to the map are
+     * reflected in the collection, and vice-versa.  The collection
+     * supports element removal, which removes the corresponding
+     * mapping from the map, via the {@code Iterator.remove},
+     * {@code Collection.remove}, {@code removeAll},
+     * {@code retainAll} and {@code clear} operations.  It does not
+     * support the {@code add} or {@code addAll} operations.
+     *
+     * <p>The view's iterators are
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     */
+    public Collection<V> values() {
+        Values<V> vs = values;
+        return (vs != null) ? vs : (values = new Values<V>(this));
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     *
+     * <p>The set's iterator returns the entries in ascending key order.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, which removes the corresponding mapping from the map,
+     * via the {@code Iterator.remove}, {@code Set.remove},
+     * {@code removeAll}, {@code retainAll} and {@code clear}
+     * operations.  It does not support the {@code add} or
+     * {@code addAll} operations.
+     *
+     * <p>The view's iterators are
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * <p>The {@code Map.Entry} elements traversed by the {@code iterator}
+     * all return snapshots of mappings as they were at the time they
+     * were read.  They do <em>not</em> support the {@code setValue}
+     * operation.
+     *
+     * @return a set view of the mappings contained in this map,
+     *         sorted in ascending key order
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySet<K,V> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet<K,V>(this));
+    }
+
+    public ConcurrentNavigableMap<K,V> descendingMap() {
+        ConcurrentNavigableMap<K,V> dm = descendingMap;
+        return (dm != null) ? dm : (descendingMap = new SubMap<K,V>
+                                    (this, null, false, null, false, true));
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /* ------ ConcurrentMap API methods ------ */
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        return doPut(key, value, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && doRemove(key, value) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null)
+            throw new NullPointerException();
+        return doReplace(key, oldValue, newValue) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        return doReplace(key, null, value);
+    }
+
+    /* ------ SortedMap API methods ------ */
+
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K firstKey() {
+        K k = findNearKey(null, GT);
+        if (k == null)
+            throw new NoSuchElementException();
+        return k;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K lastKey() {
+        K k = findNearKey(null, LT);
+        if (k == null)
+            throw new NoSuchElementException();
+        return k;
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> subMap(K fromKey,
+                                              boolean fromInclusive,
+                                              K toKey,
+                                              boolean toInclusive) {
+        if (fromKey == null || toKey == null)
+            throw new NullPointerException();
+        return new SubMap<K,V>
+            (this, fromKey, fromInclusive, toKey, toInclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> headMap(K toKey,
+                                               boolean inclusive) {
+        if (toKey == null)
+            throw new NullPointerException();
+        return new SubMap<K,V>
+            (this, null, false, toKey, inclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> tailMap(K fromKey,
+                                               boolean inclusive) {
+        if (fromKey == null)
+            throw new NullPointerException();
+        return new SubMap<K,V>
+            (this, fromKey, inclusive, null, false, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public ConcurrentNavigableMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /* ---------------- Relational operations -------------- */
+
+    /**
+     * Returns a key-value mapping associated with the greatest key
+     * strictly less than the given key, or {@code null} if there is
+     * no such key. The returned entry does <em>not</em> support the
+     * {@code Entry.setValue} method.
+     *
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNear(key, LT);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K lowerKey(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNearKey(key, LT);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest key
+     * less than or equal to the given key, or {@code null} if there
+     * is no such key. The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     *
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNear(key, LT|EQ);
+    }
+
+    /**
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K floorKey(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNearKey(key, LT|EQ);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key
+     * greater than or equal to the given key, or {@code null} if
+     * there is no such entry. The returned entry does <em>not</em>
+     * support the {@code Entry.setValue} method.
+     *
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNear(key, GT|EQ);
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K ceilingKey(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNearKey(key, GT|EQ);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key
+     * strictly greater than the given key, or {@code null} if there
+     * is no such key. The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     *
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNear(key, GT);
+    }
+
+    /**
+     * @param key the key
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     */
+    public K higherKey(K key) {
+        if (key == null)
+            throw new NullPointerException();
+        return findNearKey(key, GT);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least
+     * key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> firstEntry() {
+        return findNear(null, GT);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest
+     * key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> lastEntry() {
+        return findNear(null, LT);
+    }
+
+    /**
+     * Removes and returns a key-value mapping associated with
+     * the least key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> pollFirstEntry() {
+        return doRemoveEnd(GT);
+    }
+
+    /**
+     * Removes and returns a key-value mapping associated with
+     * the greatest key in this map, or {@code null} if the map is empty.
+     * The returned entry does <em>not</em> support
+     * the {@code Entry.setValue} method.
+     */
+    public Map.Entry<K,V> pollLastEntry() {
+        return doRemoveEnd(LT);
+    }
+
+    /* ---------------- Iterators -------------- */
+
+    /**
+     * Base of iterator classes, also used for submaps.  Iterators copy
+     * one leaf at a time into a buffer under a validated optimistic
+     * read, and hand out mappings from the buffer.  Ascending iterators
+     * continue with the next leaf; descending ones look up the leaf
+     * preceding the lowKey of the one just consumed.
+     */
+    abstract class Iter<T> implements Iterator<T> {
+        /** Bounds, as in SubMap */
+        private final K lo, hi;
+        private final boolean loInclusive, hiInclusive, descending;
+        /** Keys and values of the current leaf */
+        private final Object[] bufKeys = new Object[NODE_CAPACITY];
+        private final Object[] bufVals = new Object[NODE_CAPACITY];
+        /** Number of buffered mappings, and index of the next one */
+        private int bufSize, index;
+        /** Leaf after the buffered one, for ascending traversals */
+        private Leaf<K,V> nextLeaf;
+        /** lowKey of the buffered leaf, for descending traversals */
+        private Object bufLow;
+        /** the last key returned by next() */
+        K lastReturned;
+        /** the next key to return from next(); */
+        K nextKey;
+        /** Cache of next value field to maintain weak consistency */
+        V nextValue;
+
+        Iter(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+             boolean descending) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+            if (descending) {
+                boolean before = hi == null || !hiInclusive;
+                load(findLeaf(hi, before), hi, before);
+            } else
+                load(findLeaf(lo, false), lo, false);
+            advance();
+        }
+
+        /**
+         * Copies the mappings of the leaf covering key (or the keys
+         * just below key if before is true), starting the search from
+         * leaf l.
+         */
+        private void load(Leaf<K,V> l, Object key, boolean before) {
+            for (;;) {
+                long v = l.awaitVersion();
+                Leaf<K,V> next = l.next;
+                if (pastHigh(key, l.highKey, before)) {
+                    if (l.validate(v))
+                        l = next;
+                    continue;
+                }
+                int n = l.n;
+                System.arraycopy(l.keys, 0, bufKeys, 0, n);
+                System.arraycopy(l.vals, 0, bufVals, 0, n);
+                if (l.validate(v)) {
+                    bufSize = n;
+                    index = descending ? n - 1 : 0;
+                    nextLeaf = next;
+                    bufLow = l.lowKey;
+                    return;
+                }
+            }
+        }
+
+        final boolean tooLow(Object key) {
+            int c;
+            return (lo != null && ((c = cpr(comparator, key, lo)) < 0 ||
+                                   (c == 0 && !loInclusive)));
+        }
+
+        final boolean tooHigh(Object key) {
+            int c;
+            return (hi != null && ((c = cpr(comparator, key, hi)) > 0 ||
+                                   (c == 0 && !hiInclusive)));
+        }
+
+        /** Advances nextKey and nextValue to the next mapping in range */
+        @SuppressWarnings("unchecked")
+        final void advance() {
+            nextKey = null;
+            nextValue = null;
+            for (;;) {
+                if (descending) {
+                    while (index >= 0) {
+                        Object k = bufKeys[index], v = bufVals[index--];
+                        if (tooHigh(k))
+                            continue;
+                        if (!tooLow(k)) {
+                            nextKey = (K)k;
+                            nextValue = (V)v;
+                        }
+                        return;
+                    }
+                    Object low = bufLow;
+                    if (low == null || tooLow(low))
+                        return;
+                    load(findLeaf(low, true), low, true);
+                } else {
+                    while (index < bufSize) {
+                        Object k = bufKeys[index], v = bufVals[index++];
+                        if (tooLow(k))
+                            continue;
+                        if (!tooHigh(k)) {
+                            nextKey = (K)k;
+                            nextValue = (V)v;
+                        }
+                        return;
+                    }
+                    Leaf<K,V> l = nextLeaf;
+                    if (l == null || tooHigh(l.lowKey))
+                        return;
+                    load(l, null, false);
+                }
+            }
+        }
+
+        public final boolean hasNext() {
+            return nextKey != null;
+        }
+
+        final K nextKeyAndAdvance() {
+            K k = nextKey;
+            if (k == null)
+                throw new NoSuchElementException();
+            lastReturned = k;
+            return k;
+        }
+
+        public final void remove() {
+            K k = lastReturned;
+            if (k == null)
+                throw new IllegalStateException();
+            // It would not be worth all of the overhead to directly
+            // unlink from here. Using remove is fast enough.
+            ConcurrentBTreeMap.this.remove(k);
+            lastReturned = null;
+        }
+    }
+
+    final class ValueIterator extends Iter<V> {
+        ValueIterator(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+                      boolean descending) {
+            super(lo, loInclusive, hi, hiInclusive, descending);
+        }
+        public V next() {
+            nextKeyAndAdvance();
+            V v = nextValue;
+            advance();
+            return v;
+        }
+    }
+
+    final class KeyIterator extends Iter<K> {
+        KeyIterator(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+                    boolean descending) {
+            super(lo, loInclusive, hi, hiInclusive, descending);
+        }
+        public K next() {
+            K k = nextKeyAndAdvance();
+            advance();
+            return k;
+        }
+    }
+
+    final class EntryIterator extends Iter<Map.Entry<K,V>> {
+        EntryIterator(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+                      boolean descending) {
+            super(lo, loInclusive, hi, hiInclusive, descending);
+        }
+        public Map.Entry<K,V> next() {
+            K k = nextKeyAndAdvance();
+            V v = nextValue;
+            advance();
+            return new AbstractMap.SimpleImmutableEntry<K,V>(k, v);
+        }
+    }
+
+    // Factory methods for iterators needed by ConcurrentSkipListSet etc
+
+    Iterator<K> keyIterator() {
+        return new KeyIterator(null, false, null, false, false);
+    }
+
+    Iterator<V> valueIterator() {
+        return new ValueIterator(null, false, null, false, false);
+    }
+
+    Iterator<Map.Entry<K,V>> entryIterator() {
+        return new EntryIterator(null, false, null, false, false);
+    }
+
+    /* ---------------- View Classes -------------- */
+
+    /*
+     * View classes are static, delegating to a ConcurrentNavigableMap
+     * to allow use by SubMaps, which outweighs the ugliness of
+     * needing type-tests for Iterator methods.
+     */
+
+    static final <E> List<E> toList(Collection<E> c) {
+        // Using size() here would be a pessimization.
+        ArrayList<E> list = new ArrayList<E>();
+        for (E e : c)
+            list.add(e);
+        return list;
+    }
+
+    static final class KeySet<E>
+            extends AbstractSet<E> implements NavigableSet<E> {
+        final ConcurrentNavigableMap<E,?> m;
+        KeySet(ConcurrentNavigableMap<E,?> map) { m = map; }
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public boolean remove(Object o) { return m.remove(o) != null; }
+        public void clear() { m.clear(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public E pollFirst() {
+            Map.Entry<E,?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public E pollLast() {
+            Map.Entry<E,?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof ConcurrentBTreeMap)
+                return ((ConcurrentBTreeMap<E,Object>)m).keyIterator();
+            else
+                return ((ConcurrentBTreeMap.SubMap<E,Object>)m).keyIterator();
+        }
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Set))
+                return false;
+            Collection<?> c = (Collection<?>) o;
+            try {
+                return containsAll(c) && c.containsAll(this);
+            } catch (ClassCastException unused) {
+                return false;
+            } catch (NullPointerException unused) {
+                return false;
+            }
+        }
+        public Object[] toArray()     { return toList(this).toArray();  }
+        public <T> T[] toArray(T[] a) { return toList(this).toArray(a); }
+        public Iterator<E> descendingIterator() {
+            return descendingSet().iterator();
+        }
+        public NavigableSet<E> subSet(E fromElement,
+                                      boolean fromInclusive,
+                                      E toElement,
+                                      boolean toInclusive) {
+            return new KeySet<E>(m.subMap(fromElement, fromInclusive,
+                                          toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<E>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<E>(m.tailMap(fromElement, inclusive));
+        }
+        public NavigableSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public NavigableSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public NavigableSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<E>(m.descendingMap());
+        }
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliteratorUnknownSize
+                (iterator(), Spliterator.CONCURRENT | Spliterator.DISTINCT |
+                 Spliterator.NONNULL | Spliterator.ORDERED);
+        }
+    }
+
+    static final class Values<E> extends AbstractCollection<E> {
+        final ConcurrentNavigableMap<?, E> m;
+        Values(ConcurrentNavigableMap<?, E> map) {
+            m = map;
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<E> iterator() {
+            if (m instanceof ConcurrentBTreeMap)
+                return ((ConcurrentBTreeMap<?,E>)m).valueIterator();
+            else
+                return ((SubMap<?,E>)m).valueIterator();
+        }
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+        public int size() {
+            return m.size();
+        }
+        public boolean contains(Object o) {
+            return m.containsValue(o);
+        }
+        public void clear() {
+            m.clear();
+        }
+        public Object[] toArray()     { return toList(this).toArray();  }
+        public <T> T[] toArray(T[] a) { return toList(this).toArray(a); }
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliteratorUnknownSize
+                (iterator(), Spliterator.CONCURRENT | Spliterator.NONNULL |
+                 Spliterator.ORDERED);
+        }
+    }
+
+    static final class EntrySet<K1,V1> extends AbstractSet<Map.Entry<K1,V1>> {
+        final ConcurrentNavigableMap<K1, V1> m;
+        EntrySet(ConcurrentNavigableMap<K1, V1> map) {
+            m = map;
+        }
+        @SuppressWarnings("unchecked")
+        public Iterator<Map.Entry<K1,V1>> iterator() {
+            if (m instanceof ConcurrentBTreeMap)
+                return ((ConcurrentBTreeMap<K1,V1>)m).entryIterator();
+            else
+                return ((SubMap<K1,V1>)m).entryIterator();
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            V1 v = m.get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return m.remove(e.getKey(),
+                            e.getValue());
+        }
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+        public int size() {
+            return m.size();
+        }
+        public void clear() {
+            m.clear();
+        }
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Set))
+                return false;
+            Collection<?> c = (Collection<?>) o;
+            try {
+                return containsAll(c) && c.containsAll(this);
+            } catch (ClassCastException unused) {
+                return false;
+            } catch (NullPointerException unused) {
+                return false;
+            }
+        }
+        public Object[] toArray()     { return toList(this).toArray();  }
+        public <T> T[] toArray(T[] a) { return toList(this).toArray(a); }
+        public Spliterator<Map.Entry<K1,V1>> spliterator() {
+            return Spliterators.spliteratorUnknownSize
+                (iterator(), Spliterator.CONCURRENT | Spliterator.DISTINCT |
+                 Spliterator.NONNULL | Spliterator.ORDERED);
+        }
+    }
+
+    /**
+     * Submaps returned by {@link ConcurrentBTreeMap} submap operations
+     * represent a subrange of mappings of their underlying
+     * maps. Instances of this class support all methods of their
+     * underlying maps, differing in that mappings outside their range are
+     * ignored, and attempts to add mappings outside their ranges result
+     * in {@link IllegalArgumentException}.  Instances of this class are
+     * constructed only using the {@code subMap}, {@code headMap}, and
+     * {@code tailMap} methods of their underlying maps.
+     *
+     * @serial include
+     */
+    static final class SubMap<K,V> extends AbstractMap<K,V>
+        implements ConcurrentNavigableMap<K,V>, Cloneable, Serializable {
+        private static final long serialVersionUID = 6392548375519217294L;
+
+        /** Underlying map */
+        private final ConcurrentBTreeMap<K,V> m;
+        /** lower bound key, or null if from start */
+        private final K lo;
+        /** upper bound key, or null if to end */
+        private final K hi;
+        /** inclusion flag for lo */
+        private final boolean loInclusive;
+        /** inclusion flag for hi */
+        private final boolean hiInclusive;
+        /** direction */
+        private final boolean isDescending;
+
+        // Lazily initialized view holders
+        private transient KeySet<K> keySetView;
+        private transient Set<Map.Entry<K,V>> entrySetView;
+        private transient Collection<V> valuesView;
+
+        /**
+         * Creates a new submap, initializing all fields.
+         */
+        SubMap(ConcurrentBTreeMap<K,V> map,
+               K fromKey, boolean fromInclusive,
+               K toKey, boolean toInclusive,
+               boolean isDescending) {
+            Comparator<? super K> cmp = map.comparator;
+            if (fromKey != null && toKey != null &&
+                cpr(cmp, fromKey, toKey) > 0)
+                throw new IllegalArgumentException("inconsistent range");
+            this.m = map;
+            this.lo = fromKey;
+            this.hi = toKey;
+            this.loInclusive = fromInclusive;
+            this.hiInclusive = toInclusive;
+            this.isDescending = isDescending;
+        }
+
+        /* ----------------  Utilities -------------- */
+
+        boolean tooLow(Object key, Comparator<? super K> cmp) {
+            int c;
+            return (lo != null && ((c = cpr(cmp, key, lo)) < 0 ||
+                                   (c == 0 && !loInclusive)));
+        }
+
+        boolean tooHigh(Object key, Comparator<? super K> cmp) {
+            int c;
+            return (hi != null && ((c = cpr(cmp, key, hi)) > 0 ||
+                                   (c == 0 && !hiInclusive)));
+        }
+
+        boolean inBounds(Object key, Comparator<? super K> cmp) {
+            return !tooLow(key, cmp) && !tooHigh(key, cmp);
+        }
+
+        void checkKeyBounds(K key, Comparator<? super K> cmp) {
+            if (key == null)
+                throw new NullPointerException();
+            if (!inBounds(key, cmp))
+                throw new IllegalArgumentException("key out of range");
+        }
+
+        /**
+         * Returns lowest absolute mapping (ignoring directionality),
+         * or null if none.
+         */
+        Map.Entry<K,V> lowestEntry() {
+            Map.Entry<K,V> e = (lo == null) ? m.findNear(null, GT) :
+                m.findNear(lo, loInclusive ? GT|EQ : GT);
+            return (e == null || tooHigh(e.getKey(), m.comparator)) ? null : e;
+        }
+
+        /**
+         * Returns highest absolute mapping (ignoring directionality),
+         * or null if none.
+         */
+        Map.Entry<K,V> highestEntry() {
+            Map.Entry<K,V> e = (hi == null) ? m.findNear(null, LT) :
+                m.findNear(hi, hiInclusive ? LT|EQ : LT);
+            return (e == null || tooLow(e.getKey(), m.comparator)) ? null : e;
+        }
+
+        K lowestKey() {
+            Map.Entry<K,V> e = lowestEntry();
+            if (e == null)
+                throw new NoSuchElementException();
+            return e.getKey();
+        }
+
+        K highestKey() {
+            Map.Entry<K,V> e = highestEntry();
+            if (e == null)
+                throw new NoSuchElementException();
+            return e.getKey();
+        }
+
+        Map.Entry<K,V> removeLowest() {
+            for (;;) {
+                Map.Entry<K,V> e = lowestEntry();
+                if (e == null)
+                    return null;
+                K k = e.getKey();
+                V v = m.doRemove(k, null);
+                if (v != null)
+                    return new AbstractMap.SimpleImmutableEntry<K,V>(k, v);
+            }
+        }
+
+        Map.Entry<K,V> removeHighest() {
+            for (;;) {
+                Map.Entry<K,V> e = highestEntry();
+                if (e == null)
+                    return null;
+                K k = e.getKey();
+                V v = m.doRemove(k, null);
+                if (v != null)
+                    return new AbstractMap.SimpleImmutableEntry<K,V>(k, v);
+            }
+        }
+
+        /**
+         * Submap version of ConcurrentBTreeMap.findNear
+         */
+        Map.Entry<K,V> getNearEntry(K key, int rel) {
+            Comparator<? super K> cmp = m.comparator;
+            if (key == null)
+                throw new NullPointerException();
+            if (isDescending) { // adjust relation for direction
+                if ((rel & LT) == 0)
+                    rel |= LT;
+                else
+                    rel &= ~LT;
+            }
+            if (tooLow(key, cmp))
+                return ((rel & LT) != 0) ? null : lowestEntry();
+            if (tooHigh(key, cmp))
+                return ((rel & LT) != 0) ? highestEntry() : null;
+            Map.Entry<K,V> e = m.findNear(key, rel);
+            return (e == null || !inBounds(e.getKey(), cmp)) ? null : e;
+        }
+
+        K getNearKey(K key, int rel) {
+            Map.Entry<K,V> e = getNearEntry(key, rel);
+            return (e == null) ? null : e.getKey();
+        }
+
+        /* ----------------  Map API methods -------------- */
+
+        public boolean containsKey(Object key) {
+            if (key == null) throw new NullPointerException();
+            return inBounds(key, m.comparator) && m.containsKey(key);
+        }
+
+        public V get(Object key) {
+            if (key == null) throw new NullPointerException();
+            return (!inBounds(key, m.comparator)) ? null : m.get(key);
+        }
+
+        public V put(K key, V value) {
+            checkKeyBounds(key, m.comparator);
+            return m.put(key, value);
+        }
+
+        public V remove(Object key) {
+            return (!inBounds(key, m.comparator)) ? null : m.remove(key);
+        }
+
+        public int size() {
+            long count = 0;
+            for (Iterator<K> it = keyIterator(); it.hasNext(); it.next())
+                ++count;
+            return count >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)count;
+        }
+
+        public boolean isEmpty() {
+            return lowestEntry() == null;
+        }
+
+        public boolean containsValue(Object value) {
+            if (value == null)
+                throw new NullPointerException();
+            for (Iterator<V> it = valueIterator(); it.hasNext(); ) {
+                if (value.equals(it.next()))
+                    return true;
+            }
+            return false;
+        }
+
+        public void clear() {
+            for (Iterator<K> it = keyIterator(); it.hasNext(); )
+                m.remove(it.next());
+        }
+
+        /* ----------------  ConcurrentMap API methods -------------- */
+
+        public V putIfAbsent(K key, V value) {
+            checkKeyBounds(key, m.comparator);
+            return m.putIfAbsent(key, value);
+        }
+
+        public boolean remove(Object key, Object value) {
+            return inBounds(key, m.comparator) && m.remove(key, value);
+        }
+
+        public boolean replace(K key, V oldValue, V newValue) {
+            checkKeyBounds(key, m.comparator);
+            return m.replace(key, oldValue, newValue);
+        }
+
+        public V replace(K key, V value) {
+            checkKeyBounds(key, m.comparator);
+            return m.replace(key, value);
+        }
+
+        /* ----------------  SortedMap API methods -------------- */
+
+        public Comparator<? super K> comparator() {
+            Comparator<? super K> cmp = m.comparator();
+            if (isDescending)
+                return Collections.reverseOrder(cmp);
+            else
+                return cmp;
+        }
+
+        /**
+         * Utility to create submaps, where given bounds override
+         * unbounded(null) ones and/or are checked against bounded ones.
+         */
+        SubMap<K,V> newSubMap(K fromKey, boolean fromInclusive,
+                              K toKey, boolean toInclusive) {
+            Comparator<? super K> cmp = m.comparator;
+            if (isDescending) { // flip senses
+                K tk = fromKey;
+                fromKey = toKey;
+                toKey = tk;
+                boolean ti = fromInclusive;
+                fromInclusive = toInclusive;
+                toInclusive = ti;
+            }
+            if (lo != null) {
+                if (fromKey == null) {
+                    fromKey = lo;
+                    fromInclusive = loInclusive;
+                }
+                else {
+                    int c = cpr(cmp, fromKey, lo);
+                    if (c < 0 || (c == 0 && !loInclusive && fromInclusive))
+                        throw new IllegalArgumentException("key out of range");
+                }
+            }
+            if (hi != null) {
+                if (toKey == null) {
+                    toKey = hi;
+                    toInclusive = hiInclusive;
+                }
+                else {
+                    int c = cpr(cmp, toKey, hi);
+                    if (c > 0 || (c == 0 && !hiInclusive && toInclusive))
+                        throw new IllegalArgumentException("key out of range");
+                }
+            }
+            return new SubMap<K,V>(m, fromKey, fromInclusive,
+                                   toKey, toInclusive, isDescending);
+        }
+
+        public SubMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                  K toKey, boolean toInclusive) {
+            if (fromKey == null || toKey == null)
+                throw new NullPointerException();
+            return newSubMap(fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        public SubMap<K,V> headMap(K toKey, boolean inclusive) {
+            if (toKey == null)
+                throw new NullPointerException();
+            return newSubMap(null, false, toKey, inclusive);
+        }
+
+        public SubMap<K,V> tailMap(K fromKey, boolean inclusive) {
+            if (fromKey == null)
+                throw new NullPointerException();
+            return newSubMap(fromKey, inclusive, null, false);
+        }
+
+        public SubMap<K,V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        public SubMap<K,V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        public SubMap<K,V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        public SubMap<K,V> descendingMap() {
+            return new SubMap<K,V>(m, lo, loInclusive,
+                                   hi, hiInclusive, !isDescending);
+        }
+
+        /* ----------------  Relational methods -------------- */
+
+        public Map.Entry<K,V> ceilingEntry(K key) {
+            return getNearEntry(key, GT|EQ);
+        }
+
+        public K ceilingKey(K key) {
+            return getNearKey(key, GT|EQ);
+        }
+
+        public Map.Entry<K,V> lowerEntry(K key) {
+            return getNearEntry(key, LT);
+        }
+
+        public K lowerKey(K key) {
+            return getNearKey(key, LT);
+        }
+
+        public Map.Entry<K,V> floorEntry(K key) {
+            return getNearEntry(key, LT|EQ);
+        }
+
+        public K floorKey(K key) {
+            return getNearKey(key, LT|EQ);
+        }
+
+        public Map.Entry<K,V> higherEntry(K key) {
+            return getNearEntry(key, GT);
+        }
+
+        public K higherKey(K key) {
+            return getNearKey(key, GT);
+        }
+
+        public K firstKey() {
+            return isDescending ? highestKey() : lowestKey();
+        }
+
+        public K lastKey() {
+            return isDescending ? lowestKey() : highestKey();
+        }
+
+        public Map.Entry<K,V> firstEntry() {
+            return isDescending ? highestEntry() : lowestEntry();
+        }
+
+        public Map.Entry<K,V> lastEntry() {
+            return isDescending ? lowestEntry() : highestEntry();
+        }
+
+        public Map.Entry<K,V> pollFirstEntry() {
+            return isDescending ? removeHighest() : removeLowest();
+        }
+
+        public Map.Entry<K,V> pollLastEntry() {
+            return isDescending ? removeLowest() : removeHighest();
+        }
+
+        /* ---------------- Submap Views -------------- */
+
+        public NavigableSet<K> keySet() {
+            KeySet<K> ks = keySetView;
+            return (ks != null) ? ks : (keySetView = new KeySet<K>(this));
+        }
+
+        public NavigableSet<K> navigableKeySet() {
+            KeySet<K> ks = keySetView;
+            return (ks != null) ? ks : (keySetView = new KeySet<K>(this));
+        }
+
+        public Collection<V> values() {
+            Collection<V> vs = valuesView;
+            return (vs != null) ? vs : (valuesView = new Values<V>(this));
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            Set<Map.Entry<K,V>> es = entrySetView;
+            return (es != null) ? es : (entrySetView = new EntrySet<K,V>(this));
+        }
+
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        Iterator<K> keyIterator() {
+            return m.new KeyIterator(lo, loInclusive, hi, hiInclusive,
+                                     isDescending);
+        }
+
+        Iterator<V> valueIterator() {
+            return m.new ValueIterator(lo, loInclusive, hi, hiInclusive,
+                                       isDescending);
+        }
+
+        Iterator<Map.Entry<K,V>> entryIterator() {
+            return m.new EntryIterator(lo, loInclusive, hi, hiInclusive,
+                                       isDescending);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2003, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.regex;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * An engine that finds matches of a {@link Pattern} in the bytes read from
+ * a {@link ReadableByteChannel}, each byte being taken as the ISO-8859-1
+ * (Latin-1) character of the same value.
+ *
+ * <p> A channel matcher is created by invoking a pattern's {@link
+ * Pattern#matcher(ReadableByteChannel) matcher} method.  Successive
+ * invocations of {@link #find()} return the matches of the pattern in the
+ * stream of bytes, as successive invocations of {@link Matcher#find()}
+ * would if the whole stream were held in one sequence; a match that spans
+ * two reads from the channel is found like any other.  Bytes are read into
+ * an internal buffer that is reused.  When the search needs more input,
+ * its position is moved past the bytes at which no match can start any
+ * more, and the bytes that precede it are discarded, save those that
+ * look-behind constructs may examine, so the whole stream is not held in
+ * memory.
+ * The buffer grows when a possible match does not fit in it, so a pattern
+ * that can match an unbounded amount of input may require the buffer to
+ * grow to the size of the remaining input.
+ *
+ * <p> ASCII input is matched as the equivalent string.  Input in other
+ * encodings, such as UTF-8, is matched byte by byte; patterns matching only
+ * ASCII characters will find the same matches in UTF-8 input as in the
+ * decoded text, but indices are byte offsets.
+ *
+ * <p> The positions reported by a channel matcher are offsets in the stream
+ * of bytes read by it, counting from zero.  The channel should be in
+ * blocking mode.  Instances of this class are not safe for use by multiple
+ * concurrent threads.
+ *
+ * @see Pattern#matcher(ReadableByteChannel)
+ * @since 1.8
+ */
+public final class ChannelMatcher {
+
+    /** Initial size of the buffer */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ReadableByteChannel source;
+
+    /** Matches within the buffered bytes */
+    private final Matcher matcher;
+
+    /** The buffered bytes as seen by matcher */
+    private final Latin1Sequence window = new Latin1Sequence();
+
+    private byte[] buf;
+
+    /** Wraps buf for reads from the channel */
+    private ByteBuffer readBuffer;
+
+    /** Number of bytes in buf */
+    private int count;
+
+    /** Offset in the stream of the first byte in buf */
+    private long base;
+
+    /** Index in buf at which the next search starts */
+    private int position;
+
+    /** Whether the end of the channel has been reached */
+    private boolean eof;
+
+    /** Whether matcher holds a match that has been returned */
+    private boolean matchValid;
+
+    ChannelMatcher(Pattern pattern, ReadableByteChannel source) {
+        this.source = Objects.requireNonNull(source, "source");
+        buf = new byte[BUFFER_SIZE];
+        readBuffer = ByteBuffer.wrap(buf);
+        matcher = pattern.matcher(window.set(buf, 0, 0));
+        // the buffer boundaries are not boundaries of the input
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+    }
+
+    /**
+     * Returns the pattern that is interpreted by this matcher.
+     *
+     * @return  The pattern for which this matcher was created
+     */
+    public Pattern pattern() {
+        return matcher.pattern();
+    }
+
+    /**
+     * Attempts to find the next subsequence of the input that matches the
+     * pattern, reading from the channel as needed.
+     *
+     * <p> The search starts at the end of the previous match, or one byte
+     * after it if that match was empty, and at the beginning of the input
+     * if there was no previous match.  Bytes are read until the match is
+     * known not to change with further input, or the end of the channel is
+     * reached.
+     *
+     * @return  <tt>true</tt> if, and only if, a subsequence of the input
+     *          matches this matcher's pattern
+     *
+     * @throws  IOException
+     *          If an I/O error occurs while reading from the channel
+     */
+    public boolean find() throws IOException {
+        matchValid = false;
+        for (;;) {
+            if (position <= count) {
+                matcher.reset(window.set(buf, 0, count));
+                boolean found = matcher.region(position, count).find();
+                if (eof || !matcher.hitEnd()) {
+                    if (found) {
+                        matchValid = true;
+                        int end = matcher.end();
+                        position = (end == matcher.start()) ? end + 1 : end;
+                        return true;
+                    }
+                    // no match can start before the end of the buffer
+                    position = count;
+                    if (eof)
+                        return false;
+                } else {
+                    // more input is needed; skip the starts that can no
+                    // longer match so that their bytes may be discarded
+                    position = firstPossibleStart(found ? matcher.start()
+                                                        : count);
+                }
+            } else if (eof) {
+                return false;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Returns the first index from the search position up to the given
+     * limit at which a match may start once more input has been read: the
+     * first at which an attempt to match succeeds or reads to the end of the
+     * buffer, or the limit if there is none.  A search that failed to find
+     * a match, or found one that further input may change, leaves no other
+     * way to tell which of the starts it tried are still live.
+     */
+    private int firstPossibleStart(int limit) {
+        for (int i = position; i < limit; i++) {
+            if (matcher.region(i, count).lookingAt() || matcher.hitEnd())
+                return i;
+        }
+        return limit;
+    }
+
+    /**
+     * Reads more bytes into the buffer, making room first by discarding the
+     * bytes that precede the search position, or by growing the buffer.
+     */
+    private void fill() throws IOException {
+        if (count == buf.length) {
+            // keep the bytes before the search position that look-behinds
+            // may examine, and one more for boundaries and so that the
+            // start of the buffer is not taken as the start of the input
+            int discard = Math.min(position, count) - 1
+                          - matcher.pattern().maxLookbehind;
+            if (discard > 0) {
+                System.arraycopy(buf, discard, buf, 0, count - discard);
+                count -= discard;
+                position -= discard;
+                base += discard;
+            } else {
+                if (buf.length > Integer.MAX_VALUE / 2)
+                    throw new OutOfMemoryError("Required buffer too large");
+                byte[] newBuf = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, newBuf, 0, count);
+                buf = newBuf;
+                readBuffer = ByteBuffer.wrap(buf);
+            }
+        }
+        readBuffer.limit(buf.length).position(count);
+        int n = source.read(readBuffer);
+        if (n < 0)
+            eof = true;
+        else
+            count += n;
+    }
+
+    private void checkMatch() {
+        if (!matchValid)
+            throw new IllegalStateException("No match available");
+    }
+
+    /**
+     * Returns the offset of the first byte of the previous match.
+     *
+     * @return  The offset of the first byte matched
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     */
+    public long start() {
+        checkMatch();
+        return base + matcher.start();
+    }
+
+    /**
+     * Returns the offset of the first byte of the subsequence captured by
+     * the given group during the previous match operation.
+     *
+     * @param  group
+     *         The index of a capturing group in this matcher's pattern
+     * @return  The offset of the first byte captured by the group,
+     *          or <tt>-1</tt> if the match was successful but the group
+     *          itself did not match anything
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     * @throws  IndexOutOfBoundsException
+     *          If there is no capturing group in the pattern
+     *          with the given index
+     */
+    public long start(int group) {
+        checkMatch();
+        int start = matcher.start(group);
+        return (start < 0) ? -1 : base + start;
+    }
+
+    /**
+     * Returns the offset after the last byte of the previous match.
+     *
+     * @return  The offset after the last byte matched
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     */
+    public long end() {
+        checkMatch();
+        return base + matcher.end();
+    }
+
+    /**
+     * Returns the offset after the last byte of the subsequence captured by
+     * the given group during the previous match operation.
+     *
+     * @param  group
+     *         The index of a capturing group in this matcher's pattern
+     * @return  The offset after the last byte captured by the group,
+     *          or <tt>-1</tt> if the match was successful but the group
+     *          itself did not match anything
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     * @throws  IndexOutOfBoundsException
+     *          If there is no capturing group in the pattern
+     *          with the given index
+     */
+    public long end(int group) {
+        checkMatch();
+        int end = matcher.end(group);
+        return (end < 0) ? -1 : base + end;
+    }
+
+    /**
+     * Returns the input subsequence matched by the previous match.
+     *
+     * @return  The subsequence matched by the previous match
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     */
+    public String group() {
+        checkMatch();
+        return matcher.group();
+    }
+
+    /**
+     * Returns the input subsequence captured by the given group during the
+     * previous match operation.
+     *
+     * @param  group
+     *         The index of a capturing group in this matcher's pattern
+     * @return  The subsequence captured by the group during the previous
+     *          match, or <tt>null</tt> if the group failed to match part of
+     *          the input
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     * @throws  IndexOutOfBoundsException
+     *          If there is no capturing group in the pattern
+     *          with the given index
+     */
+    public String group(int group) {
+        checkMatch();
+        return matcher.group(group);
+    }
+
+    /**
+     * Returns the number of capturing groups in this matcher's pattern.
+     *
+     * @return The number of capturing groups in this matcher's pattern
+     */
+    public int groupCount() {
+        return matcher.groupCount();
+    }
+
+    /**
+     * Returns the match state of this matcher as a {@link MatchResult}.
+     * The result is unaffected by subsequent operations performed upon this
+     * matcher.  Its indices are relative to the start of the previous
+     * match, or of the earliest group if a group was captured before it.
+     *
+     * @return  a <code>MatchResult</code> with the state of this matcher
+     * @throws  IllegalStateException
+     *          If no match has yet been attempted,
+     *          or if the previous match operation failed
+     */
+    public MatchResult toMatchResult() {
+        checkMatch();
+        // groups captured by lookaround may lie outside the match
+        int[] groups = matcher.groups;
+        int lo = matcher.start(), hi = matcher.end();
+        for (int i = 0; i < groups.length; i += 2) {
+            if (groups[i] >= 0 && groups[i + 1] >= 0) {
+                lo = Math.min(lo, groups[i]);
+                hi = Math.max(hi, groups[i + 1]);
+            }
+        }
+        Matcher result = pattern().matcher(
+            window.subSequence(lo, hi).toString());
+        result.first = matcher.start() - lo;
+        result.last = matcher.end() - lo;
+        for (int i = 0; i < groups.length; i++)
+            result.groups[i] = (groups[i] < 0) ? -1 : groups[i] - lo;
+        return result;
+    }
+
+    /**
+     * Returns the string representation of this channel matcher.
+     *
+     * @return  The string representation of this channel matcher
+     */
+    public String toString() {
+        return "java.util.regex.ChannelMatcher[pattern=" + pattern() +
+               " offset=" + (base + position) + "]";
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2003, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.regex;
+import java.nio.ByteBuffer;
+
+/**
+ * A character sequence view of a range of bytes, each byte being taken as
+ * the ISO-8859-1 (Latin-1) character of the same value.  The view can be
+ * rebound to other bytes, so that a matcher can be reset to new byte input
+ * without allocating.
+ */
+final class Latin1Sequence implements CharSequence {
+
+    /** the bytes, or null if they are read from buffer */
+    private byte[] array;
+
+    /** the buffer holding the bytes, if array is null */
+    private ByteBuffer buffer;
+
+    /** index of the first byte in array or buffer */
+    private int offset;
+
+    private int length;
+
+    Latin1Sequence set(byte[] array, int offset, int length) {
+        this.array = array;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    Latin1Sequence set(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.array = buffer.array();
+            this.buffer = null;
+            this.offset = buffer.arrayOffset() + buffer.position();
+        } else {
+            this.array = null;
+            this.buffer = buffer;
+            this.offset = buffer.position();
+        }
+        this.length = buffer.remaining();
+        return this;
+    }
+
+    /**
+     * Drops the reference to the bytes.
+     */
+    void clear() {
+        array = null;
+        buffer = null;
+        offset = length = 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new StringIndexOutOfBoundsException(index);
+        byte b = (array != null) ? array[offset + index]
+                                 : buffer.get(offset + index);
+        return (char)(b & 0xff);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length)
+            throw new StringIndexOutOfBoundsException(
+                "start " + start + ", end " + end + ", length " + length);
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = charAt(start + i);
+        return new String(chars);
+    }
+
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
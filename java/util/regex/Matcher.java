@@ -25,6 +25,7 @@
 
 package java.util.regex;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -207,6 +208,18 @@ public final class Matcher implements MatchResult {
      */
     boolean anchoringBounds = true;
 
+    /**
+     * Storage used to match patterns that are matched by an automaton,
+     * allocated on first use.
+     */
+    Pattern.NfaThreads nfaThreads;
+
+    /**
+     * The view of byte input given to the reset methods, reused so that
+     * resetting to new bytes does not allocate.
+     */
+    Latin1Sequence bytes;
+
     /**
      * No default constructor.
      */
@@ -329,6 +342,71 @@ public final class Matcher implements MatchResult {
         return reset();
     }
 
+    /**
+     * Resets this matcher with a range of a byte array as its input.
+     *
+     * <p> Each byte is taken as the ISO-8859-1 (Latin-1) character of the
+     * same value, so ASCII input is matched as the equivalent string.  The
+     * bytes are not copied: they must not be changed while this matcher
+     * uses them, and groups are copied out of them when requested.
+     * Resetting a matcher to bytes repeatedly does not allocate, so a matcher
+     * can be reused to match many inputs, such as the lines read from a
+     * file, without decoding each of them to a <tt>String</tt>.
+     *
+     * <p> Resetting a matcher discards all of its explicit state information
+     * and sets its append position to zero.  The matcher's region is set to
+     * the default region, which is the whole range of bytes.  The anchoring
+     * and transparency of this matcher's region boundaries are unaffected.
+     *
+     * @param  input
+     *         The bytes to be matched
+     * @param  offset
+     *         The index of the first byte to be matched
+     * @param  length
+     *         The number of bytes to be matched
+     *
+     * @return  This matcher
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If <tt>offset</tt> or <tt>length</tt> is negative, or if
+     *          <tt>offset + length</tt> is greater than the length of the
+     *          array
+     * @since 1.8
+     */
+    public Matcher reset(byte[] input, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > input.length - length)
+            throw new IndexOutOfBoundsException();
+        text = latin1().set(input, offset, length);
+        return reset();
+    }
+
+    /**
+     * Resets this matcher with the remaining bytes of a buffer as its input.
+     *
+     * <p> The bytes between the buffer's position and its limit are matched
+     * as by {@link #reset(byte[], int, int)}; indices reported by this
+     * matcher are relative to the buffer's position.  The buffer's position,
+     * limit and mark are not changed, and the bytes are not copied: they
+     * must not be changed while this matcher uses them.
+     *
+     * @param  input
+     *         The buffer holding the bytes to be matched
+     *
+     * @return  This matcher
+     * @since 1.8
+     */
+    public Matcher reset(ByteBuffer input) {
+        text = latin1().set(input);
+        return reset();
+    }
+
+    private Latin1Sequence latin1() {
+        Latin1Sequence seq = bytes;
+        if (seq == null)
+            bytes = seq = new Latin1Sequence();
+        return seq;
+    }
+
     /**
      * Returns the start index of the previous match.
      *
@@ -1245,7 +1323,10 @@ public final class Matcher implements MatchResult {
         for (int i = 0; i < groups.length; i++)
             groups[i] = -1;
         acceptMode = NOANCHOR;
-        boolean result = parentPattern.root.match(this, from, text);
+        Pattern.Nfa nfa = parentPattern.nfa;
+        boolean result = (nfa != null)
+            ? nfa.match(this, from, false, text)
+            : parentPattern.root.match(this, from, text);
         if (!result)
             this.first = -1;
         this.oldLast = this.last;
@@ -1267,7 +1348,10 @@ public final class Matcher implements MatchResult {
         for (int i = 0; i < groups.length; i++)
             groups[i] = -1;
         acceptMode = anchor;
-        boolean result = parentPattern.matchRoot.match(this, from, text);
+        Pattern.Nfa nfa = parentPattern.nfa;
+        boolean result = (nfa != null)
+            ? nfa.match(this, from, true, text)
+            : parentPattern.matchRoot.match(this, from, text);
         if (!result)
             this.first = -1;
         this.oldLast = this.last;
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2003, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.regex;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A pool of reusable matchers for one {@link Pattern}.
+ *
+ * <p> Creating a matcher allocates the storage used for groups and for the
+ * state of the match.  When a pattern is matched against many short inputs,
+ * as when classifying the lines of a log, that allocation can dominate.  A
+ * matcher pool keeps released matchers and resets them to new input, so
+ * that steady-state matching allocates nothing:
+ *
+ * <blockquote><pre>
+ * MatcherPool pool = new MatcherPool(Pattern.compile("status=(\\d{3})"), 16);
+ * ...
+ * Matcher m = pool.acquire(line, 0, lineLength);
+ * try {
+ *     if (m.find())
+ *         count(m.start(1));
+ * } finally {
+ *     pool.release(m);
+ * }</pre></blockquote>
+ *
+ * <p> A matcher acquired from a pool is used by one thread at a time, as any
+ * matcher is, and must not be used after it has been released.  When the
+ * pool is empty a new matcher is created, and when it is full a released
+ * matcher is discarded, so acquiring never blocks.  Instances of this class
+ * are safe for use by multiple concurrent threads.
+ *
+ * @see Pattern#matcher(CharSequence)
+ * @since 1.8
+ */
+public final class MatcherPool {
+
+    private final Pattern pattern;
+
+    /** Released matchers; empty slots are null */
+    private final AtomicReferenceArray<Matcher> slots;
+
+    /**
+     * Creates a pool of matchers for the given pattern, which holds at most
+     * the given number of released matchers.
+     *
+     * @param  pattern
+     *         The pattern of the matchers
+     * @param  capacity
+     *         The maximum number of released matchers kept by the pool
+     * @throws  IllegalArgumentException
+     *          If the capacity is negative
+     */
+    public MatcherPool(Pattern pattern, int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity");
+        this.pattern = Objects.requireNonNull(pattern, "pattern");
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Returns the pattern of the matchers in this pool.
+     *
+     * @return  The pattern of the matchers in this pool
+     */
+    public Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * Takes a released matcher from the pool, or creates one.
+     */
+    private Matcher take() {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                Matcher m = slots.getAndSet(i, null);
+                if (m != null)
+                    return m;
+            }
+        }
+        return pattern.matcher("");
+    }
+
+    /**
+     * Returns a matcher of this pool's pattern for the given input.
+     *
+     * @param  input
+     *         The character sequence to be matched
+     * @return  A matcher reset to the given input, with default bounds
+     */
+    public Matcher acquire(CharSequence input) {
+        return take().reset(input);
+    }
+
+    /**
+     * Returns a matcher of this pool's pattern for a range of a byte array.
+     *
+     * @param  input
+     *         The bytes to be matched
+     * @param  offset
+     *         The index of the first byte to be matched
+     * @param  length
+     *         The number of bytes to be matched
+     * @return  A matcher reset to the given input, with default bounds
+     * @throws  IndexOutOfBoundsException
+     *          If <tt>offset</tt> or <tt>length</tt> is negative, or if
+     *          <tt>offset + length</tt> is greater than the length of the
+     *          array
+     * @see Matcher#reset(byte[], int, int)
+     */
+    public Matcher acquire(byte[] input, int offset, int length) {
+        Matcher m = take();
+        try {
+            return m.reset(input, offset, length);
+        } catch (IndexOutOfBoundsException e) {
+            release(m);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a matcher of this pool's pattern for the remaining bytes of a
+     * buffer.
+     *
+     * @param  input
+     *         The buffer holding the bytes to be matched
+     * @return  A matcher reset to the given input, with default bounds
+     * @see Matcher#reset(ByteBuffer)
+     */
+    public Matcher acquire(ByteBuffer input) {
+        return take().reset(input);
+    }
+
+    /**
+     * Returns a matcher to this pool.  The matcher drops its reference to
+     * its input and is restored to default bounds.
+     *
+     * @param  m
+     *         A matcher acquired from this pool
+     * @throws  IllegalArgumentException
+     *          If the matcher's pattern is not this pool's pattern
+     */
+    public void release(Matcher m) {
+        if (m.pattern() != pattern)
+            throw new IllegalArgumentException("Matcher of another pattern");
+        m.useTransparentBounds(false);
+        m.useAnchoringBounds(true);
+        m.reset("");
+        if (m.bytes != null)
+            m.bytes.clear();
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, m))
+                return;
+        }
+    }
+}
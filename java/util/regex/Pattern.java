@@ -25,6 +25,8 @@
 
 package java.util.regex;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.text.Normalizer;
 import java.util.Locale;
 import java.util.Iterator;
@@ -917,6 +919,43 @@ public final class Pattern
      */
     public static final int UNICODE_CHARACTER_CLASS = 0x100;
 
+    /**
+     * Guarantees matching in time linear in the length of the input.
+     *
+     * <p> When this flag is specified the pattern is matched by simulating
+     * an automaton built from the pattern, which advances all possible
+     * matches at once instead of trying them one after another, so that no
+     * input can cause the catastrophic backtracking that some patterns, such
+     * as <tt>(a+)+b</tt>, are prone to.  The match found is the same as
+     * without this flag, and so are the subsequences captured by groups,
+     * except as described below for groups inside repeated groups.
+     *
+     * <p> Only patterns built from characters, character classes, boundary
+     * matchers, groups, alternations and greedy or reluctant quantifiers can
+     * be matched this way.  Back references, lookahead and lookbehind,
+     * independent groups and possessive quantifiers are not supported, nor
+     * are quantifiers applied to groups that can match the empty string.
+     * A capturing group inside a repeated group captures the subsequence it
+     * matched in the last iteration, of those that make up the match, in
+     * which it participated.  Without this flag such a group may instead
+     * report a subsequence that it matched in an iteration that was later
+     * abandoned; for example, <tt>(?:(.))+.{2}</tt> matching
+     * <tt>"abcd"</tt> captures <tt>"b"</tt> with this flag and <tt>"d"</tt>
+     * without it.  The automaton is limited to 10000 instructions,
+     * roughly one per character or class matched; as a counted quantifier
+     * such as <tt>{2,5}</tt> repeats its operand, nested counted quantifiers
+     * multiply its size.  Compiling a pattern that uses an unsupported
+     * construct, or whose automaton would exceed the limit, with this flag
+     * throws a {@link PatternSyntaxException}.
+     *
+     * <p> There is no embedded flag character for enabling linear-time
+     * matching.  The values returned by {@link Matcher#hitEnd hitEnd} may
+     * be more conservative when this mode is in effect.
+     *
+     * @since 1.8
+     */
+    public static final int LINEAR_TIME = 0x200;
+
     /* Pattern has only two serialized components: The pattern string
      * and the flags, which are all that is needed to recompile the pattern
      * when it is deserialized.
@@ -963,6 +1002,12 @@ public final class Pattern
      */
     transient Node matchRoot;
 
+    /**
+     * The automaton used instead of the object tree to match in linear
+     * time, or null.
+     */
+    transient Nfa nfa;
+
     /**
      * Temporary storage used by parsing pattern slice.
      */
@@ -996,6 +1041,12 @@ public final class Pattern
      */
     transient int localCount;
 
+    /**
+     * An upper bound on the number of characters before the start of a
+     * match that the look-behind constructs of this Pattern may examine.
+     */
+    transient int maxLookbehind;
+
     /**
      * Index into the pattern string that keeps track of how much has been
      * parsed.
@@ -1039,8 +1090,8 @@ public final class Pattern
      *         Match flags, a bit mask that may include
      *         {@link #CASE_INSENSITIVE}, {@link #MULTILINE}, {@link #DOTALL},
      *         {@link #UNICODE_CASE}, {@link #CANON_EQ}, {@link #UNIX_LINES},
-     *         {@link #LITERAL}, {@link #UNICODE_CHARACTER_CLASS}
-     *         and {@link #COMMENTS}
+     *         {@link #LITERAL}, {@link #UNICODE_CHARACTER_CLASS},
+     *         {@link #LINEAR_TIME} and {@link #COMMENTS}
      *
      * @return the given regular expression compiled into a pattern with the given flags
      * @throws  IllegalArgumentException
@@ -1094,6 +1145,62 @@ public final class Pattern
         return m;
     }
 
+    /**
+     * Creates a matcher that will match a range of a byte array against this
+     * pattern, each byte being taken as the ISO-8859-1 (Latin-1) character
+     * of the same value.
+     *
+     * @param  input
+     *         The bytes to be matched
+     * @param  offset
+     *         The index of the first byte to be matched
+     * @param  length
+     *         The number of bytes to be matched
+     *
+     * @return  A new matcher for this pattern
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If <tt>offset</tt> or <tt>length</tt> is negative, or if
+     *          <tt>offset + length</tt> is greater than the length of the
+     *          array
+     * @see Matcher#reset(byte[], int, int)
+     * @since 1.8
+     */
+    public Matcher matcher(byte[] input, int offset, int length) {
+        return matcher("").reset(input, offset, length);
+    }
+
+    /**
+     * Creates a matcher that will match the remaining bytes of a buffer
+     * against this pattern, each byte being taken as the ISO-8859-1
+     * (Latin-1) character of the same value.
+     *
+     * @param  input
+     *         The buffer holding the bytes to be matched
+     *
+     * @return  A new matcher for this pattern
+     * @see Matcher#reset(ByteBuffer)
+     * @since 1.8
+     */
+    public Matcher matcher(ByteBuffer input) {
+        return matcher("").reset(input);
+    }
+
+    /**
+     * Creates a matcher that will find matches of this pattern in the bytes
+     * read from a channel, each byte being taken as the ISO-8859-1
+     * (Latin-1) character of the same value.
+     *
+     * @param  source
+     *         The channel from which the bytes to be matched are read
+     *
+     * @return  A new channel matcher for this pattern
+     * @since 1.8
+     */
+    public ChannelMatcher matcher(ReadableByteChannel source) {
+        return new ChannelMatcher(this, source);
+    }
+
     /**
      * Returns this pattern's match flags.
      *
@@ -1716,6 +1823,14 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
             root = hasSupplementary ? new StartS(matchRoot) : new Start(matchRoot);
         }
 
+        // Linear-time matching, if requested
+        if (has(LINEAR_TIME)) {
+            nfa = Nfa.compile(matchRoot, capturingGroupCount, localCount,
+                              hasSupplementary);
+            if (nfa == null)
+                throw error("Pattern cannot be matched in linear time");
+        }
+
         // Release temporary storage
         temp = null;
         buffer = null;
@@ -1724,6 +1839,26 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
         compiled = true;
     }
 
+    /**
+     * Returns the automaton for this pattern, translating the object tree if
+     * it is not already matched by one, or null if the pattern cannot be
+     * matched in linear time.
+     */
+    Nfa nfa() {
+        if (!compiled) {
+            synchronized(this) {
+                if (!compiled)
+                    compile();
+            }
+        }
+        if (nfa != null)
+            return nfa;
+        if (pattern.length() == 0)
+            return null;
+        return Nfa.compile(matchRoot, capturingGroupCount, localCount,
+                           hasSupplementary);
+    }
+
     Map<String, Integer> namedGroups() {
         if (namedGroups == null)
             namedGroups = new HashMap<>(2);
@@ -2863,6 +2998,10 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
                     throw error("Look-behind group does not have "
                                 + "an obvious maximum length");
                 }
+                // look-behinds may be nested or follow each other, so
+                // their sum bounds how far any of them reaches back
+                maxLookbehind = (int)Math.min(Integer.MAX_VALUE,
+                                      (long)maxLookbehind + info.maxLength);
                 boolean hasSupplementary = findSupplementary(start, patternLength);
                 if (ch == '=') {
                     head = tail = (hasSupplementary ?
@@ -5537,6 +5676,735 @@ NEXT:       while (i <= last) {
         }
     }
 
+    /**
+     * A Thompson NFA program equivalent to a node tree, executed by a
+     * simulation that advances all candidate matches in lockstep, one input
+     * character at a time (a "Pike VM").  Candidate threads are kept in
+     * priority order, and a thread reaching a state already reached at the
+     * same position by a higher priority thread is discarded, so the match
+     * found, including its groups, is the one the backtracking nodes would
+     * find, while the time taken is linear in the length of the input.
+     *
+     * Only node trees built from characters, slices, classes, anchors,
+     * boundaries, groups, alternations and greedy or reluctant quantifiers
+     * whose bodies cannot match the empty string can be translated.
+     */
+    static final class Nfa {
+        // opcodes
+        static final int MATCH    = 0;  // accept
+        static final int JMP      = 1;  // goto x
+        static final int SPLIT    = 2;  // goto x, then y
+        static final int SAVE     = 3;  // slot x = position
+        static final int COMMIT   = 4;  // group y = (slot x, position)
+        static final int ASSERT   = 5;  // zero-width node aux
+        static final int BEGIN    = 6;  // \A or ^ in non-multiline mode
+        static final int CHAR     = 7;  // char x, case folding y
+        static final int CP       = 8;  // code point x, case folding y
+        static final int BMP_PROP = 9;  // char satisfying aux
+        static final int PROP     = 10; // code point satisfying aux
+        static final int LINE_END = 11; // \R
+        static final int SKIP     = 12; // any char (trailing low surrogate)
+
+        // case folding modes of CHAR and CP
+        static final int FOLD_NONE    = 0;
+        static final int FOLD_ASCII   = 1;
+        static final int FOLD_UNICODE = 2;
+
+        /**
+         * Maximum program size, beyond which a tree is not translated; the
+         * limit documented for LINEAR_TIME
+         */
+        static final int MAX_PROGRAM = 10000;
+
+        final int[] ops;
+        final int[] xs;
+        final int[] ys;
+        final Object[] aux;
+        /** number of capture slots of a thread */
+        final int ncap;
+        /** slot recording that an end anchor was passed at the end */
+        final int requireEndSlot;
+        /** number of group slots, two per capturing group */
+        final int groupSlots;
+        /** minimum length of a match */
+        final int minLength;
+        /** whether start positions advance by code point */
+        final boolean supplementary;
+
+        private Nfa(Builder b, int groupSlots, int localCount,
+                    int minLength, boolean supplementary) {
+            int n = b.size;
+            ops = Arrays.copyOf(b.ops, n);
+            xs = Arrays.copyOf(b.xs, n);
+            ys = Arrays.copyOf(b.ys, n);
+            aux = Arrays.copyOf(b.aux, n);
+            this.groupSlots = groupSlots;
+            ncap = groupSlots + localCount + 1;
+            requireEndSlot = ncap - 1;
+            this.minLength = minLength;
+            this.supplementary = supplementary;
+        }
+
+        private Nfa(int[] ops, int[] xs, int[] ys, Object[] aux) {
+            this.ops = ops;
+            this.xs = xs;
+            this.ys = ys;
+            this.aux = aux;
+            groupSlots = 0;
+            ncap = 1;
+            requireEndSlot = 0;
+            minLength = 0;
+            supplementary = false;
+        }
+
+        /**
+         * Translates the node tree rooted at matchRoot, returning null if
+         * it uses constructs that the NFA cannot represent.
+         */
+        static Nfa compile(Node matchRoot, int capturingGroupCount,
+                           int localCount, boolean supplementary) {
+            int groupSlots = capturingGroupCount * 2;
+            Builder b = new Builder(groupSlots);
+            try {
+                b.emitChain(matchRoot, null);
+            } catch (UnsupportedOperationException uoe) {
+                return null;
+            }
+            TreeInfo info = new TreeInfo();
+            matchRoot.study(info);
+            return new Nfa(b, groupSlots, localCount, info.minLength,
+                           supplementary);
+        }
+
+        /**
+         * Emits the program for a node tree.  Each emit method returns the
+         * minimum number of characters matched by the emitted fragment.
+         */
+        private static final class Builder {
+            int[] ops = new int[16];
+            int[] xs = new int[16];
+            int[] ys = new int[16];
+            Object[] aux = new Object[16];
+            int size;
+            final int groupSlots;
+
+            Builder(int groupSlots) {
+                this.groupSlots = groupSlots;
+            }
+
+            int emit(int op, int x, int y, Object a) {
+                if (size >= MAX_PROGRAM)
+                    throw new UnsupportedOperationException();
+                if (size == ops.length) {
+                    int n = Math.min(size * 2, MAX_PROGRAM);
+                    ops = Arrays.copyOf(ops, n);
+                    xs = Arrays.copyOf(xs, n);
+                    ys = Arrays.copyOf(ys, n);
+                    aux = Arrays.copyOf(aux, n);
+                }
+                ops[size] = op;
+                xs[size] = x;
+                ys[size] = y;
+                aux[size] = a;
+                return size++;
+            }
+
+            int emitSplit() {
+                return emit(SPLIT, -1, -1, null);
+            }
+
+            /**
+             * Emits the nodes from node up to, but excluding, stop.  The
+             * chain of the whole tree ends at a LastNode instead.
+             */
+            int emitChain(Node node, Node stop) {
+                int min = 0;
+                while (node != stop) {
+                    if (node instanceof LastNode) {
+                        emit(MATCH, 0, 0, null);
+                        return min;
+                    } else if (node == accept) {
+                        throw new UnsupportedOperationException();
+                    }
+                    min = add(min, emitNode(node));
+                    node = next(node);
+                }
+                return min;
+            }
+
+            /**
+             * Returns the node following the given node and any nodes
+             * nested in it.
+             */
+            static Node next(Node node) {
+                if (node instanceof Branch)
+                    return ((Branch)node).conn.next;
+                if (node instanceof Prolog)
+                    return ((Prolog)node).loop.next;
+                return node.next;
+            }
+
+            int emitNode(Node node) {
+                if (node instanceof CharProperty) {
+                    if (node instanceof BmpCharProperty) {
+                        emit(BMP_PROP, 0, 0, node);
+                    } else {
+                        emit(PROP, 0, 0, node);
+                        emit(SKIP, 0, 0, null);
+                    }
+                    return 1;
+                } else if (node instanceof SliceNode) {
+                    return emitSlice((SliceNode)node);
+                } else if (node instanceof LineEnding) {
+                    emit(LINE_END, 0, 0, null);
+                    emit(SKIP, 0, 0, null);
+                    return 1;
+                } else if (node instanceof Begin) {
+                    emit(BEGIN, 0, 0, null);
+                    return 0;
+                } else if (node instanceof End || node instanceof Caret ||
+                           node instanceof UnixCaret ||
+                           node instanceof LastMatch ||
+                           node instanceof Dollar ||
+                           node instanceof UnixDollar ||
+                           node instanceof Bound) {
+                    emit(ASSERT, 0, 0, probe(node));
+                    return 0;
+                } else if (node instanceof GroupHead) {
+                    emit(SAVE, groupSlots + ((GroupHead)node).localIndex,
+                         0, null);
+                    return 0;
+                } else if (node instanceof GroupTail) {
+                    GroupTail tail = (GroupTail)node;
+                    // anonymous groups have group index zero.  Inside a
+                    // loop, each thread keeps the captures of the
+                    // iterations on its own path, like the nodes, which
+                    // restore a group when an iteration is backtracked
+                    if (tail.groupIndex != 0)
+                        emit(COMMIT, groupSlots + tail.localIndex,
+                             tail.groupIndex, null);
+                    return 0;
+                } else if (node instanceof BranchConn) {
+                    return 0;
+                } else if (node instanceof Branch) {
+                    return emitBranch((Branch)node);
+                } else if (node instanceof Ques) {
+                    Ques ques = (Ques)node;
+                    if (ques.type != GREEDY && ques.type != LAZY)
+                        throw new UnsupportedOperationException();
+                    emitRepeat(ques.atom, accept, 0, 1, ques.type == LAZY,
+                               -1, 0);
+                    return 0;
+                } else if (node instanceof Curly) {
+                    Curly curly = (Curly)node;
+                    if (curly.type != GREEDY && curly.type != LAZY)
+                        throw new UnsupportedOperationException();
+                    return emitRepeat(curly.atom, accept, curly.cmin,
+                                      curly.cmax, curly.type == LAZY, -1, 0);
+                } else if (node instanceof GroupCurly) {
+                    GroupCurly gc = (GroupCurly)node;
+                    if (gc.type != GREEDY && gc.type != LAZY)
+                        throw new UnsupportedOperationException();
+                    Node stop = gc.atom;
+                    while (!(stop instanceof GroupTail) ||
+                           ((GroupTail)stop).localIndex != gc.localIndex) {
+                        if (stop == null || stop == accept)
+                            throw new UnsupportedOperationException();
+                        stop = next(stop);
+                    }
+                    return emitRepeat(gc.atom, stop, gc.cmin, gc.cmax,
+                                      gc.type == LAZY,
+                                      gc.capture ? gc.localIndex : -1,
+                                      gc.groupIndex);
+                } else if (node instanceof Prolog) {
+                    Loop loop = ((Prolog)node).loop;
+                    return emitRepeat(loop.body, loop, loop.cmin, loop.cmax,
+                                      loop instanceof LazyLoop, -1, 0);
+                }
+                // back references, lookaround, independent groups...
+                throw new UnsupportedOperationException();
+            }
+
+            int emitSlice(SliceNode slice) {
+                int[] buf = slice.buffer;
+                int fold = FOLD_NONE;
+                if (slice instanceof SliceI || slice instanceof SliceIS)
+                    fold = (slice instanceof SliceUS) ? FOLD_UNICODE
+                                                      : FOLD_ASCII;
+                else if (slice instanceof SliceU)
+                    fold = FOLD_UNICODE;
+                if (slice instanceof SliceS || slice instanceof SliceIS) {
+                    for (int j = 0; j < buf.length; j++) {
+                        emit(CP, buf[j], fold, null);
+                        emit(SKIP, 0, 0, null);
+                    }
+                } else {
+                    for (int j = 0; j < buf.length; j++)
+                        emit(CHAR, buf[j], fold, null);
+                }
+                return buf.length;
+            }
+
+            int emitBranch(Branch branch) {
+                int n = branch.size;
+                int[] jumps = new int[n];
+                int min = Integer.MAX_VALUE;
+                for (int k = 0; k < n; k++) {
+                    int split = (k < n - 1) ? emitSplit() : -1;
+                    if (split >= 0)
+                        xs[split] = size;
+                    Node atom = branch.atoms[k];
+                    int m = (atom == null) ? 0 : emitChain(atom, branch.conn);
+                    min = Math.min(min, m);
+                    jumps[k] = emit(JMP, -1, 0, null);
+                    if (split >= 0)
+                        ys[split] = size;
+                }
+                for (int k = 0; k < n; k++)
+                    xs[jumps[k]] = size;
+                return min;
+            }
+
+            /**
+             * Emits cmin mandatory copies of a body followed by cmax - cmin
+             * optional ones, or by a loop if cmax is unbounded.  If local is
+             * not negative, each copy records the group it matched.
+             */
+            int emitRepeat(Node body, Node stop, int cmin, int cmax,
+                           boolean lazy, int local, int groupIndex) {
+                if (cmax == 0)
+                    return 0;
+                // each copy is emitted once, so that nested repetitions
+                // take time proportional to the size of the program
+                int bodyMin = 0;
+                for (int k = 0; k < cmin; k++)
+                    bodyMin = emitBody(body, stop, local, groupIndex);
+                if (cmax > cmin) {
+                    if (cmax == MAX_REPS) {
+                        int split = emitSplit();
+                        int first = size;
+                        emitBody(body, stop, local, groupIndex);
+                        emit(JMP, split, 0, null);
+                        setTargets(split, first, size, lazy);
+                    } else {
+                        int n = cmax - cmin;
+                        if (n >= MAX_PROGRAM)
+                            throw new UnsupportedOperationException();
+                        int[] splits = new int[n];
+                        for (int k = 0; k < n; k++) {
+                            splits[k] = emitSplit();
+                            emitBody(body, stop, local, groupIndex);
+                        }
+                        for (int k = 0; k < n; k++)
+                            setTargets(splits[k], splits[k] + 1, size, lazy);
+                    }
+                }
+                return mul(cmin, bodyMin);
+            }
+
+            /**
+             * Emits one copy of the body of a repetition, which must not
+             * match the empty string: repetitions of empty matches end
+             * differently when backtracking, so they are left to the nodes.
+             */
+            int emitBody(Node body, Node stop, int local, int groupIndex) {
+                if (local >= 0)
+                    emit(SAVE, groupSlots + local, 0, null);
+                int min = emitChain(body, stop);
+                if (min == 0)
+                    throw new UnsupportedOperationException();
+                if (local >= 0)
+                    emit(COMMIT, groupSlots + local, groupIndex, null);
+                return min;
+            }
+
+            void setTargets(int split, int body, int exit, boolean lazy) {
+                xs[split] = lazy ? exit : body;
+                ys[split] = lazy ? body : exit;
+            }
+
+            static int add(int a, int b) {
+                int r = a + b;
+                return (r < 0) ? Integer.MAX_VALUE : r;
+            }
+
+            static int mul(int a, int b) {
+                long r = (long)a * b;
+                return (r > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)r;
+            }
+
+            /**
+             * Returns a copy of a zero-width node that evaluates only the
+             * assertion itself.
+             */
+            static Node probe(Node node) {
+                Node copy;
+                if (node instanceof End)
+                    copy = new End();
+                else if (node instanceof Caret)
+                    copy = new Caret();
+                else if (node instanceof UnixCaret)
+                    copy = new UnixCaret();
+                else if (node instanceof LastMatch)
+                    copy = new LastMatch();
+                else if (node instanceof Dollar)
+                    copy = new Dollar(((Dollar)node).multiline);
+                else if (node instanceof UnixDollar)
+                    copy = new UnixDollar(((UnixDollar)node).multiline);
+                else
+                    copy = new Bound(((Bound)node).type,
+                                     ((Bound)node).useUWORD);
+                copy.next = PROBE_END;
+                return copy;
+            }
+        }
+
+        /** Successor of assertion probes, which succeeds without effects */
+        static final Node PROBE_END = new Node() {
+            boolean match(Matcher matcher, int i, CharSequence seq) {
+                return true;
+            }
+        };
+
+        /**
+         * Searches for a match starting at or after from, or matches at
+         * from if anchored, setting the match state of the matcher.
+         */
+        boolean match(Matcher matcher, int from, boolean anchored,
+                      CharSequence seq) {
+            NfaThreads t = matcher.nfaThreads;
+            if (t == null || t.nfa != this)
+                matcher.nfaThreads = t = new NfaThreads(this);
+            NfaThreads.ThreadList clist = t.clist;
+            NfaThreads.ThreadList nlist = t.nlist;
+            clist.clear();
+            nlist.clear();
+            int[] scratch = t.scratch;
+            int to = matcher.to;
+            int guard = to - minLength;
+            int nextStart = from;
+            int matchEnd = -1;
+            for (int i = from; i <= to; i++) {
+                if (matchEnd < 0 && i == nextStart &&
+                    (anchored || i <= guard)) {
+                    // lowest priority: a new attempt starting here
+                    Arrays.fill(scratch, -1);
+                    scratch[0] = i;
+                    addThread(t, clist, 0, i, matcher, seq);
+                    nextStart = anchored ? -1 : nextStart(i, seq);
+                }
+                if (clist.n == 0) {
+                    if (matchEnd >= 0 || nextStart < 0 || nextStart > guard)
+                        break;
+                    clist.clear();
+                    continue;
+                }
+                int[] caps = clist.caps;
+                for (int k = 0, n = clist.n; k < n; k++) {
+                    int pc = clist.pcs[k];
+                    if (ops[pc] == MATCH) {
+                        if (matcher.acceptMode == Matcher.ENDANCHOR &&
+                            i != to)
+                            continue;
+                        System.arraycopy(caps, k * ncap, t.best, 0, ncap);
+                        matchEnd = i;
+                        // threads of lower priority are cut off
+                        break;
+                    }
+                    int next = step(pc, i, to, matcher, seq);
+                    if (next >= 0) {
+                        System.arraycopy(caps, k * ncap, scratch, 0, ncap);
+                        addThread(t, nlist, next, i + 1, matcher, seq);
+                    }
+                }
+                NfaThreads.ThreadList tmp = clist;
+                clist = nlist;
+                nlist = tmp;
+                nlist.clear();
+            }
+
+            if (matchEnd < 0) {
+                if (!anchored)
+                    matcher.hitEnd = true;
+                return false;
+            }
+            int[] best = t.best;
+            int[] groups = matcher.groups;
+            matcher.first = best[0];
+            matcher.last = matchEnd;
+            groups[0] = best[0];
+            groups[1] = matchEnd;
+            System.arraycopy(best, 2, groups, 2, groupSlots - 2);
+            matcher.requireEnd = (best[requireEndSlot] > 0);
+            return true;
+        }
+
+        /**
+         * Executes the instruction at pc, which consumes input, at index i,
+         * returning the instruction that continues at index i + 1, or -1 if
+         * the instruction does not match.
+         */
+        int step(int pc, int i, int to, Matcher matcher, CharSequence seq) {
+            if (ops[pc] == SKIP)
+                return pc + 1;
+            if (i >= to) {
+                matcher.hitEnd = true;
+                return -1;
+            }
+            int ch;
+            switch (ops[pc]) {
+            case CHAR:
+                return fold(seq.charAt(i), xs[pc], ys[pc]) ? pc + 1 : -1;
+            case BMP_PROP:
+                return ((CharProperty)aux[pc]).isSatisfiedBy(seq.charAt(i))
+                       ? pc + 1 : -1;
+            case CP:
+            case PROP:
+                ch = codePointAt(seq, i, to);
+                if (ops[pc] == CP ? fold(ch, xs[pc], ys[pc])
+                        : ((CharProperty)aux[pc]).isSatisfiedBy(ch))
+                    return Character.isBmpCodePoint(ch) ? pc + 2 : pc + 1;
+                return -1;
+            case LINE_END:
+                ch = seq.charAt(i);
+                if (ch == 0x0D)
+                    return (i + 1 < to && seq.charAt(i + 1) == 0x0A)
+                           ? pc + 1 : pc + 2;
+                if (ch == 0x0A || ch == 0x0B || ch == 0x0C ||
+                    ch == 0x85 || ch == 0x2028 || ch == 0x2029)
+                    return pc + 2;
+                return -1;
+            default:
+                throw new InternalError();
+            }
+        }
+
+        /**
+         * Returns a program that runs the given programs side by side,
+         * without captures: part k starts at entries[k], which this method
+         * sets, and its MATCH instructions hold k in x.
+         */
+        static Nfa union(Nfa[] parts, int[] entries) {
+            int size = 0;
+            for (Nfa part : parts)
+                size += part.ops.length;
+            int[] ops = new int[size];
+            int[] xs = new int[size];
+            int[] ys = new int[size];
+            Object[] aux = new Object[size];
+            int base = 0;
+            for (int k = 0; k < parts.length; k++) {
+                Nfa part = parts[k];
+                entries[k] = base;
+                for (int pc = 0; pc < part.ops.length; pc++) {
+                    int op = part.ops[pc];
+                    int x = part.xs[pc];
+                    int y = part.ys[pc];
+                    switch (op) {
+                    case MATCH:
+                        x = k;
+                        break;
+                    case JMP:
+                    case SPLIT:
+                        x += base;
+                        y += base;
+                        break;
+                    case SAVE:
+                    case COMMIT:
+                        // captures are not reported
+                        op = JMP;
+                        x = base + pc + 1;
+                        break;
+                    default:
+                        break;
+                    }
+                    ops[base + pc] = op;
+                    xs[base + pc] = x;
+                    ys[base + pc] = y;
+                    aux[base + pc] = part.aux[pc];
+                }
+                base += part.ops.length;
+            }
+            return new Nfa(ops, xs, ys, aux);
+        }
+
+        /**
+         * Adds the thread at pc, with the captures in scratch, to the list,
+         * following all transitions that do not consume input in priority
+         * order.
+         */
+        void addThread(NfaThreads t, NfaThreads.ThreadList list, int pc,
+                       int pos, Matcher matcher, CharSequence seq) {
+            int[] caps = t.scratch;
+            int[] stack = t.stack;
+            int sp = 0;
+            stack[sp++] = pc;
+            while (sp > 0) {
+                pc = stack[--sp];
+                if (pc < 0) {
+                    // restore a capture slot after exploring past it
+                    caps[~pc] = stack[--sp];
+                    continue;
+                }
+                if (!list.mark(pc))
+                    continue;
+                int slot;
+                switch (ops[pc]) {
+                case JMP:
+                    stack[sp++] = xs[pc];
+                    break;
+                case SPLIT:
+                    stack[sp++] = ys[pc];
+                    stack[sp++] = xs[pc];
+                    break;
+                case SAVE:
+                    slot = xs[pc];
+                    stack[sp++] = caps[slot];
+                    stack[sp++] = ~slot;
+                    caps[slot] = pos;
+                    stack[sp++] = pc + 1;
+                    break;
+                case COMMIT:
+                    slot = ys[pc];
+                    stack[sp++] = caps[slot];
+                    stack[sp++] = ~slot;
+                    stack[sp++] = caps[slot + 1];
+                    stack[sp++] = ~(slot + 1);
+                    caps[slot] = caps[xs[pc]];
+                    caps[slot + 1] = pos;
+                    stack[sp++] = pc + 1;
+                    break;
+                case BEGIN:
+                    if (pos == (matcher.anchoringBounds ? matcher.from : 0))
+                        stack[sp++] = pc + 1;
+                    break;
+                case ASSERT:
+                    boolean requireEnd = matcher.requireEnd;
+                    matcher.requireEnd = false;
+                    if (((Node)aux[pc]).match(matcher, pos, seq)) {
+                        if (matcher.requireEnd) {
+                            stack[sp++] = caps[requireEndSlot];
+                            stack[sp++] = ~requireEndSlot;
+                            caps[requireEndSlot] = 1;
+                        }
+                        stack[sp++] = pc + 1;
+                    }
+                    matcher.requireEnd = requireEnd;
+                    break;
+                default:
+                    list.add(pc, caps, ncap);
+                }
+            }
+        }
+
+        private int nextStart(int i, CharSequence seq) {
+            if (supplementary && i < seq.length() &&
+                Character.isHighSurrogate(seq.charAt(i))) {
+                i++;
+                if (i < seq.length() && Character.isLowSurrogate(seq.charAt(i)))
+                    i++;
+                return i;
+            }
+            return i + 1;
+        }
+
+        /**
+         * Returns the code point at index i, treating a surrogate pair that
+         * straddles the end of the region as a single char.
+         */
+        private static int codePointAt(CharSequence seq, int i, int to) {
+            char c1 = seq.charAt(i);
+            if (Character.isHighSurrogate(c1) && i + 1 < to) {
+                char c2 = seq.charAt(i + 1);
+                if (Character.isLowSurrogate(c2))
+                    return Character.toCodePoint(c1, c2);
+            }
+            return c1;
+        }
+
+        private static boolean fold(int c, int expected, int fold) {
+            if (c == expected)
+                return true;
+            switch (fold) {
+            case FOLD_ASCII:
+                return expected == ASCII.toLower(c);
+            case FOLD_UNICODE:
+                return expected ==
+                    Character.toLowerCase(Character.toUpperCase(c));
+            default:
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The thread lists and scratch storage used by a matcher to run an NFA.
+     */
+    static final class NfaThreads {
+        final Nfa nfa;
+        ThreadList clist;
+        ThreadList nlist;
+        /** captures of the thread being added */
+        final int[] scratch;
+        /** captures of the best match found */
+        final int[] best;
+        /** work stack of addThread */
+        final int[] stack;
+
+        NfaThreads(Nfa nfa) {
+            this.nfa = nfa;
+            int n = nfa.ops.length;
+            clist = new ThreadList(n, nfa.ncap);
+            nlist = new ThreadList(n, nfa.ncap);
+            scratch = new int[nfa.ncap];
+            best = new int[nfa.ncap];
+            // each instruction is visited at most once per list, and pushes
+            // at most five entries
+            stack = new int[5 * n + 1];
+        }
+
+        /**
+         * An ordered list of threads, at most one per instruction.  The
+         * instructions visited while adding threads are marked with the
+         * current stamp, so that clearing the list is constant time.
+         */
+        static final class ThreadList {
+            final int[] pcs;
+            final int[] caps;
+            final int[] marks;
+            int stamp;
+            int n;
+
+            ThreadList(int size, int ncap) {
+                pcs = new int[size];
+                caps = new int[size * ncap];
+                marks = new int[size];
+            }
+
+            void clear() {
+                n = 0;
+                if (++stamp == 0) {
+                    Arrays.fill(marks, 0);
+                    stamp = 1;
+                }
+            }
+
+            /** Marks pc, returning false if it was already marked */
+            boolean mark(int pc) {
+                if (marks[pc] == stamp)
+                    return false;
+                marks[pc] = stamp;
+                return true;
+            }
+
+            void add(int pc, int[] threadCaps, int ncap) {
+                pcs[n] = pc;
+                System.arraycopy(threadCaps, 0, caps, n * ncap, ncap);
+                n++;
+            }
+        }
+    }
+
 ///////////////////////////////////////////////////////////////////////////////
 ///////////////////////////////////////////////////////////////////////////////
 
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2003, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * An immutable set of compiled regular expressions that are matched against
+ * an input sequence together.
+ *
+ * <p> A pattern set answers the question "which of these patterns occur in
+ * this input?" in a single pass over the input, instead of running a
+ * {@link Matcher} for each pattern in turn.  A typical use is classifying
+ * lines of text against many rules:
+ *
+ * <blockquote><pre>
+ * PatternSet rules = PatternSet.compile("ERROR", "timeout after \\d+ms",
+ *                                       "user=(\\w+) denied");
+ * BitSet hits = rules.find(line);
+ * for (int i = hits.nextSetBit(0); i &gt;= 0; i = hits.nextSetBit(i + 1))
+ *     route(line, i);</pre></blockquote>
+ *
+ * <p> Patterns that can be matched in linear time (see {@link
+ * Pattern#LINEAR_TIME}) are combined into a single automaton.  The literal
+ * prefixes of such patterns are located with an Aho-Corasick automaton, so
+ * that a pattern beginning with a literal is only tried where that literal
+ * occurs; the remaining patterns are tried at every position, all within
+ * the same pass.  Other patterns, for example those that use back
+ * references, are matched individually after the pass.
+ *
+ * <p> The patterns in a set are matched as by {@link Matcher#find()}
+ * against the whole input, using default bounds.  Which patterns match, and
+ * not where, is reported; to obtain the location and groups of a match, use
+ * a {@link Matcher} for the pattern concerned.
+ *
+ * <p> Instances of this class are immutable and are safe for use by multiple
+ * concurrent threads.
+ *
+ * @see Pattern
+ * @since 1.8
+ */
+public final class PatternSet {
+
+    /** The patterns, in index order */
+    private final Pattern[] patterns;
+
+    /** The automaton running the translatable patterns side by side, or null */
+    private final Pattern.Nfa nfa;
+
+    /** Maps union parts to pattern indices */
+    private final int[] partPatterns;
+
+    /** Entry instructions of the parts without a literal prefix */
+    private final int[] unprefixedEntries;
+
+    /** Parts of the entries in unprefixedEntries */
+    private final int[] unprefixedParts;
+
+    /** Locates the literal prefixes of the other parts, or null */
+    private final PrefixAutomaton prefixes;
+
+    /**
+     * For each literal prefix, the instruction that continues its part
+     * after the prefix
+     */
+    private final int[] prefixResumes;
+
+    /** Indices of the patterns matched individually */
+    private final int[] individual;
+
+    private PatternSet(Pattern[] patterns) {
+        this.patterns = patterns;
+        List<Pattern.Nfa> parts = new ArrayList<>();
+        List<Integer> partList = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        for (int i = 0; i < patterns.length; i++) {
+            Pattern.Nfa part = patterns[i].nfa();
+            if (part != null) {
+                parts.add(part);
+                partList.add(i);
+            } else {
+                others.add(i);
+            }
+        }
+        individual = toArray(others);
+        partPatterns = toArray(partList);
+        if (parts.isEmpty()) {
+            nfa = null;
+            unprefixedEntries = unprefixedParts = prefixResumes = new int[0];
+            prefixes = null;
+            return;
+        }
+
+        Pattern.Nfa[] partArray = parts.toArray(new Pattern.Nfa[parts.size()]);
+        int[] entries = new int[partArray.length];
+        nfa = Pattern.Nfa.union(partArray, entries);
+
+        List<Integer> unprefixed = new ArrayList<>();
+        List<Integer> unprefixedPartList = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<Integer> resumes = new ArrayList<>();
+        for (int k = 0; k < partArray.length; k++) {
+            Pattern.Nfa part = partArray[k];
+            StringBuilder prefix = new StringBuilder();
+            int resume = 0;
+            for (int pc = 0; pc < part.ops.length; pc++) {
+                int op = part.ops[pc];
+                if (op == Pattern.Nfa.CHAR &&
+                    part.ys[pc] == Pattern.Nfa.FOLD_NONE) {
+                    prefix.append((char)part.xs[pc]);
+                    resume = pc + 1;
+                } else if (op != Pattern.Nfa.SAVE &&
+                           op != Pattern.Nfa.COMMIT) {
+                    break;
+                }
+            }
+            if (prefix.length() == 0) {
+                unprefixed.add(entries[k]);
+                unprefixedPartList.add(k);
+            } else {
+                keys.add(prefix.toString());
+                resumes.add(entries[k] + resume);
+            }
+        }
+        unprefixedEntries = toArray(unprefixed);
+        unprefixedParts = toArray(unprefixedPartList);
+        prefixResumes = toArray(resumes);
+        prefixes = keys.isEmpty() ? null
+            : new PrefixAutomaton(keys.toArray(new String[keys.size()]));
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++)
+            a[i] = list.get(i);
+        return a;
+    }
+
+    /**
+     * Compiles the given regular expressions into a pattern set.  The index
+     * of each pattern in the set is the index of its expression.
+     *
+     * @param  regexes
+     *         The expressions to be compiled
+     * @return the pattern set
+     * @throws  PatternSyntaxException
+     *          If the syntax of an expression is invalid
+     */
+    public static PatternSet compile(String... regexes) {
+        return compile(Arrays.asList(regexes), 0);
+    }
+
+    /**
+     * Compiles the given regular expressions into a pattern set, with the
+     * given flags.  The index of each pattern in the set is the position of
+     * its expression in the iteration order of the collection.
+     *
+     * @param  regexes
+     *         The expressions to be compiled
+     * @param  flags
+     *         Match flags, as for {@link Pattern#compile(String, int)}
+     * @return the pattern set
+     * @throws  PatternSyntaxException
+     *          If the syntax of an expression is invalid
+     */
+    public static PatternSet compile(Collection<String> regexes, int flags) {
+        Pattern[] patterns = new Pattern[regexes.size()];
+        int i = 0;
+        for (String regex : regexes)
+            patterns[i++] = Pattern.compile(regex, flags);
+        return new PatternSet(patterns);
+    }
+
+    /**
+     * Returns a pattern set of the given patterns.  The index of each
+     * pattern in the set is its index in the array.
+     *
+     * @param  patterns
+     *         The patterns
+     * @return the pattern set
+     */
+    public static PatternSet of(Pattern... patterns) {
+        Pattern[] copy = patterns.clone();
+        for (Pattern p : copy)
+            Objects.requireNonNull(p);
+        return new PatternSet(copy);
+    }
+
+    /**
+     * Returns the number of patterns in this set.
+     *
+     * @return the number of patterns
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Returns the pattern with the given index.
+     *
+     * @param  index
+     *         The index of the pattern
+     * @return the pattern
+     * @throws  IndexOutOfBoundsException
+     *          If the index is negative or not less than {@link #size()}
+     */
+    public Pattern pattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * Returns the indices of the patterns in this set that match a
+     * subsequence of the given input.
+     *
+     * @param  input
+     *         The character sequence to be matched
+     * @return a new bit set in which the bit of each matching pattern is set
+     */
+    public BitSet find(CharSequence input) {
+        BitSet result = new BitSet(patterns.length);
+        search(input, result, false);
+        return result;
+    }
+
+    /**
+     * Tells whether any pattern in this set matches a subsequence of the
+     * given input.  The search stops as soon as a match is found.
+     *
+     * @param  input
+     *         The character sequence to be matched
+     * @return <tt>true</tt> if, and only if, some pattern matches
+     */
+    public boolean findAny(CharSequence input) {
+        return search(input, new BitSet(patterns.length), true);
+    }
+
+    /**
+     * Sets in result the indices of the patterns that match, stopping at
+     * the first match if any is true.  Returns whether a pattern matched.
+     */
+    private boolean search(CharSequence input, BitSet result, boolean any) {
+        Objects.requireNonNull(input);
+        if (nfa != null && scan(input, result, any) && any)
+            return true;
+        for (int i : individual) {
+            if (patterns[i].matcher(input).find()) {
+                result.set(i);
+                if (any)
+                    return true;
+            }
+        }
+        return !result.isEmpty();
+    }
+
+    /**
+     * Runs the combined automaton over the input in a single pass.
+     */
+    private boolean scan(CharSequence input, BitSet result, boolean any) {
+        Pattern.Nfa nfa = this.nfa;
+        int[] ops = nfa.ops;
+        // the matcher supplies the bounds used by anchors and boundaries
+        Matcher matcher = patterns[partPatterns[0]].matcher(input);
+        matcher.oldLast = 0;
+        Pattern.NfaThreads t = new Pattern.NfaThreads(nfa);
+        Pattern.NfaThreads.ThreadList clist = t.clist;
+        Pattern.NfaThreads.ThreadList nlist = t.nlist;
+        clist.clear();
+        nlist.clear();
+        boolean[] matched = new boolean[partPatterns.length];
+        int remaining = matched.length;
+        int to = input.length();
+        int state = 0;
+        for (int i = 0; i <= to; i++) {
+            for (int j = 0; j < unprefixedEntries.length; j++) {
+                if (!matched[unprefixedParts[j]])
+                    nfa.addThread(t, clist, unprefixedEntries[j], i,
+                                  matcher, input);
+            }
+            for (int k = 0; k < clist.n; k++) {
+                int pc = clist.pcs[k];
+                if (ops[pc] == Pattern.Nfa.MATCH) {
+                    int part = nfa.xs[pc];
+                    if (!matched[part]) {
+                        matched[part] = true;
+                        result.set(partPatterns[part]);
+                        if (any || --remaining == 0)
+                            return true;
+                    }
+                    continue;
+                }
+                int next = nfa.step(pc, i, to, matcher, input);
+                if (next >= 0)
+                    nfa.addThread(t, nlist, next, i + 1, matcher, input);
+            }
+            if (prefixes != null && i < to) {
+                state = prefixes.next(state, input.charAt(i));
+                for (int key : prefixes.outputs[state])
+                    nfa.addThread(t, nlist, prefixResumes[key], i + 1,
+                                  matcher, input);
+            }
+            Pattern.NfaThreads.ThreadList tmp = clist;
+            clist = nlist;
+            nlist = tmp;
+            nlist.clear();
+        }
+        return remaining < matched.length;
+    }
+
+    /**
+     * Returns a string representation of this pattern set, listing the
+     * source of each pattern.
+     *
+     * @return the string representation of this pattern set
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PatternSet[");
+        for (int i = 0; i < patterns.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(patterns[i].pattern());
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * An Aho-Corasick automaton recognizing occurrences of a set of
+     * strings, which are identified by their index.
+     */
+    private static final class PrefixAutomaton {
+        /** transition characters of each state, in ascending order */
+        private final char[][] labels;
+        /** transition targets of each state, parallel to labels */
+        private final int[][] targets;
+        /** failure transition of each state */
+        private final int[] fail;
+        /** keys recognized on entering each state */
+        final int[][] outputs;
+
+        PrefixAutomaton(String[] keys) {
+            // build the trie
+            List<TreeMap<Character,Integer>> trie = new ArrayList<>();
+            List<List<Integer>> out = new ArrayList<>();
+            trie.add(new TreeMap<Character,Integer>());
+            out.add(new ArrayList<Integer>());
+            for (int k = 0; k < keys.length; k++) {
+                String key = keys[k];
+                int s = 0;
+                for (int j = 0; j < key.length(); j++) {
+                    Integer t = trie.get(s).get(key.charAt(j));
+                    if (t == null) {
+                        t = trie.size();
+                        trie.get(s).put(key.charAt(j), t);
+                        trie.add(new TreeMap<Character,Integer>());
+                        out.add(new ArrayList<Integer>());
+                    }
+                    s = t;
+                }
+                out.get(s).add(k);
+            }
+
+            int n = trie.size();
+            labels = new char[n][];
+            targets = new int[n][];
+            for (int s = 0; s < n; s++) {
+                TreeMap<Character,Integer> map = trie.get(s);
+                labels[s] = new char[map.size()];
+                targets[s] = new int[map.size()];
+                int j = 0;
+                for (java.util.Map.Entry<Character,Integer> e : map.entrySet()) {
+                    labels[s][j] = e.getKey();
+                    targets[s][j++] = e.getValue();
+                }
+            }
+
+            // failure transitions, breadth first so that the failure state
+            // of a state is computed before those of its children
+            fail = new int[n];
+            outputs = new int[n][];
+            outputs[0] = toArray(out.get(0));
+            int[] queue = new int[n];
+            int head = 0, tail = 0;
+            for (int t : targets[0])
+                queue[tail++] = t;
+            while (head < tail) {
+                int s = queue[head++];
+                List<Integer> o = out.get(s);
+                for (int key : outputs[fail[s]])
+                    o.add(key);
+                outputs[s] = toArray(o);
+                for (int j = 0; j < labels[s].length; j++) {
+                    char c = labels[s][j];
+                    int u = targets[s][j];
+                    int f = fail[s];
+                    int v;
+                    while ((v = transition(f, c)) < 0 && f != 0)
+                        f = fail[f];
+                    fail[u] = (v >= 0 && v != u) ? v : 0;
+                    queue[tail++] = u;
+                }
+            }
+        }
+
+        private int transition(int state, char c) {
+            int j = Arrays.binarySearch(labels[state], c);
+            return (j >= 0) ? targets[state][j] : -1;
+        }
+
+        /**
+         * Returns the state entered from the given state on the given
+         * character.
+         */
+        int next(int state, char c) {
+            for (;;) {
+                int t = transition(state, c);
+                if (t >= 0)
+                    return t;
+                if (state == 0)
+                    return 0;
+                state = fail[state];
+            }
+        }
+    }
+}
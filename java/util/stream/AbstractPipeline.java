@@ -148,6 +148,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
      */
     private boolean parallel;
 
+    /**
+     * The policy governing parallel execution, or null for the default
+     * policy; only valid for the source stage.
+     */
+    private ParallelPolicy parallelPolicy;
+
     /**
      * Constructor for the head of a stream pipeline.
      *
@@ -230,7 +236,8 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         linkedOrConsumed = true;
 
         return isParallel()
-               ? terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags()))
+               ? getParallelPolicy().invoke(
+                       () -> terminalOp.evaluateParallel(this, sourceSpliterator(terminalOp.getOpFlags())))
                : terminalOp.evaluateSequential(this, sourceSpliterator(terminalOp.getOpFlags()));
     }
 
@@ -254,7 +261,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
             // upstream slice and upstream operations will not be included
             // in this slice
             depth = 0;
-            return opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator);
+            return getParallelPolicy().invoke(
+                    () -> opEvaluateParallel(previousStage, previousStage.sourceSpliterator(0), generator));
+        }
+        else if (isParallel()) {
+            return getParallelPolicy().invoke(
+                    () -> evaluate(sourceSpliterator(0), true, generator));
         }
         else {
             return evaluate(sourceSpliterator(0), true, generator);
@@ -312,6 +324,14 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return (S) this;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public final S parallel(ParallelPolicy policy) {
+        sourceStage.parallelPolicy = Objects.requireNonNull(policy);
+        sourceStage.parallel = true;
+        return (S) this;
+    }
+
     @Override
     public void close() {
         linkedOrConsumed = true;
@@ -504,6 +524,12 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return combinedFlags;
     }
 
+    @Override
+    final ParallelPolicy getParallelPolicy() {
+        ParallelPolicy p = sourceStage.parallelPolicy;
+        return p != null ? p : ParallelPolicy.defaultPolicy();
+    }
+
     final boolean isOrdered() {
         return StreamOpFlag.ORDERED.isKnown(combinedFlags);
     }
@@ -185,6 +185,20 @@ abstract class AbstractTask<P_IN, P_OUT, R,
         return est > 0L ? est : 1L;
     }
 
+    /**
+     * Returns a suggested target leaf size based on the initial size estimate
+     * and the {@link ParallelPolicy} of the given pipeline.
+     *
+     * @param helper the pipeline helper, or null to use the default policy
+     * @param sizeEstimate the initial size estimate
+     * @return suggested target leaf size
+     */
+    static long suggestTargetSize(PipelineHelper<?> helper, long sizeEstimate) {
+        return helper == null
+               ? suggestTargetSize(sizeEstimate)
+               : helper.getParallelPolicy().suggestTargetSize(sizeEstimate);
+    }
+
     /**
      * Returns the targetSize, initializing it via the supplied
      * size estimate if not already initialized.
@@ -192,7 +206,7 @@ abstract class AbstractTask<P_IN, P_OUT, R,
     protected final long getTargetSize(long sizeEstimate) {
         long s;
         return ((s = targetSize) != 0 ? s :
-                (targetSize = suggestTargetSize(sizeEstimate)));
+                (targetSize = suggestTargetSize(helper, sizeEstimate)));
     }
 
     /**
@@ -313,7 +327,14 @@ abstract class AbstractTask<P_IN, P_OUT, R,
             taskToFork.fork();
             sizeEstimate = rs.estimateSize();
         }
-        task.setLocalResult(task.doLeaf());
+        ParallelPolicy policy = helper.getParallelPolicy();
+        if (policy.isAdaptive()) {
+            long start = System.nanoTime();
+            task.setLocalResult(task.doLeaf());
+            policy.recordLeaf(sizeEstimate, System.nanoTime() - start);
+        }
+        else
+            task.setLocalResult(task.doLeaf());
         task.tryComplete();
     }
 
@@ -29,6 +29,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.IntConsumer;
@@ -116,6 +117,33 @@ public interface BaseStream<T, S extends BaseStream<T, S>>
      */
     S parallel();
 
+    /**
+     * Returns an equivalent stream that is parallel and whose parallel
+     * execution is governed by the given {@link ParallelPolicy}.  The policy
+     * determines the {@link java.util.concurrent.ForkJoinPool} in which the
+     * tasks of the terminal operation run and how the stream source is split
+     * into leaf tasks.  May return itself, either because the stream was
+     * already parallel with the same policy, or because the underlying stream
+     * state was modified.
+     *
+     * <p>This is an <a href="package-summary.html#StreamOps">intermediate
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation checks that {@code policy} is non-null,
+     * ignores it, and returns {@link #parallel()}.  The stream implementations
+     * in the JDK honor the policy.
+     *
+     * @param policy the parallel execution policy
+     * @return a parallel stream
+     * @throws NullPointerException if {@code policy} is null
+     * @since 1.8
+     */
+    default S parallel(ParallelPolicy policy) {
+        Objects.requireNonNull(policy);
+        return parallel();
+    }
+
     /**
      * Returns an equivalent stream that is
      * <a href="package-summary.html#Ordering">unordered</a>.  May return
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2012, 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Describes how a parallel stream pipeline is executed: the
+ * {@link ForkJoinPool} that runs its tasks, and the policy used to decide
+ * when a task stops splitting its input and processes it directly as a
+ * leaf.
+ *
+ * <p>By default a parallel pipeline runs in the
+ * {@link ForkJoinPool#commonPool() common pool} and over-partitions its input
+ * into approximately four leaf tasks per unit of common pool parallelism.
+ * A policy bound to a pipeline with {@link BaseStream#parallel(ParallelPolicy)}
+ * can instead direct all of the pipeline's tasks to a dedicated pool, so that
+ * expensive pipelines cannot starve other users of the common pool, and can
+ * change how finely the input is partitioned:
+ *
+ * <pre>{@code
+ *     ForkJoinPool analytics = new ForkJoinPool(4);
+ *     ParallelPolicy policy = ParallelPolicy.of(analytics)
+ *                                           .withMinimumLeafSize(1024);
+ *     long count = events.stream()
+ *                        .parallel(policy)
+ *                        .filter(e -> e.matches(query))
+ *                        .count();
+ * }</pre>
+ *
+ * <p>An {@link #adaptive adaptive} policy measures the time spent
+ * processing leaf tasks and sizes later leaves so that each takes
+ * approximately a given target duration.  Measurements accumulate in the
+ * policy instance, so an adaptive policy is most effective when it is reused
+ * across executions of pipelines with a similar per-element cost.
+ *
+ * <p>Instances of this class are immutable, except for the cost estimate
+ * maintained by adaptive policies, and are safe for use by multiple threads.
+ *
+ * @since 1.8
+ */
+public final class ParallelPolicy {
+
+    /**
+     * Weight, as a right shift, given to the previous cost estimate when a
+     * new leaf measurement is folded into an adaptive policy's moving
+     * average: the new estimate is {@code old - (old >> 3) + (sample >> 3)}.
+     */
+    private static final int COST_DECAY_SHIFT = 3;
+
+    /**
+     * Fixed point scale, as a left shift, of the per-element cost estimate,
+     * so that sub-nanosecond element costs can be represented.
+     */
+    private static final int COST_SCALE_SHIFT = 10;
+
+    /** The policy used by pipelines with no explicit policy */
+    private static final ParallelPolicy DEFAULT
+            = new ParallelPolicy(null, 0, 1L, 0L);
+
+    /** The pool executing tasks, or null for the common pool */
+    private final ForkJoinPool pool;
+
+    /** Leaf task factor, or zero to derive it from the pool parallelism */
+    private final int leafTarget;
+
+    /** Lower bound of the target leaf size */
+    private final long minLeafSize;
+
+    /** Target duration, in nanoseconds, of a leaf task; zero if not adaptive */
+    private final long targetLeafNanos;
+
+    /**
+     * Moving average of the nanoseconds taken to process an element, scaled
+     * by {@code 1 << COST_SCALE_SHIFT}, or zero if no leaf has been measured.
+     * Updates race benignly; a lost sample only delays convergence.
+     */
+    private volatile long scaledElementNanos;
+
+    private ParallelPolicy(ForkJoinPool pool, int leafTarget,
+                           long minLeafSize, long targetLeafNanos) {
+        this.pool = pool;
+        this.leafTarget = leafTarget;
+        this.minLeafSize = minLeafSize;
+        this.targetLeafNanos = targetLeafNanos;
+    }
+
+    /**
+     * Returns the policy used by parallel pipelines for which no policy has
+     * been set: tasks run in the common pool and the input is split into
+     * approximately four leaves per unit of common pool parallelism.
+     *
+     * @return the default policy
+     */
+    public static ParallelPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a policy that runs pipeline tasks in the given pool, with
+     * otherwise default splitting.
+     *
+     * @param pool the pool in which to run pipeline tasks
+     * @return a policy running tasks in {@code pool}
+     * @throws NullPointerException if {@code pool} is null
+     */
+    public static ParallelPolicy of(ForkJoinPool pool) {
+        return new ParallelPolicy(Objects.requireNonNull(pool), 0, 1L, 0L);
+    }
+
+    /**
+     * Returns an adaptive policy that runs pipeline tasks in the given pool
+     * and sizes leaf tasks so that each takes approximately
+     * {@code targetLeafNanos} nanoseconds, based on the per-element cost
+     * measured for previously executed leaves.  Until a leaf has been
+     * measured, the input is split as for a non-adaptive policy.
+     *
+     * @param pool the pool in which to run pipeline tasks
+     * @param targetLeafNanos the desired duration of a leaf task, in
+     *        nanoseconds
+     * @return an adaptive policy
+     * @throws NullPointerException if {@code pool} is null
+     * @throws IllegalArgumentException if {@code targetLeafNanos} is not
+     *         positive
+     */
+    public static ParallelPolicy adaptive(ForkJoinPool pool, long targetLeafNanos) {
+        Objects.requireNonNull(pool);
+        if (targetLeafNanos <= 0L)
+            throw new IllegalArgumentException("Illegal target leaf time: " + targetLeafNanos);
+        return new ParallelPolicy(pool, 0, 1L, targetLeafNanos);
+    }
+
+    /**
+     * Returns a policy like this one, but that splits the input into
+     * approximately {@code leafTarget} leaf tasks.  Larger values give
+     * finer grained load balancing at the expense of more task overhead.
+     *
+     * @param leafTarget the number of leaf tasks to aim for
+     * @return a policy with the given leaf target
+     * @throws IllegalArgumentException if {@code leafTarget} is not positive
+     */
+    public ParallelPolicy withLeafTarget(int leafTarget) {
+        if (leafTarget <= 0)
+            throw new IllegalArgumentException("Illegal leaf target: " + leafTarget);
+        return new ParallelPolicy(pool, leafTarget, minLeafSize, targetLeafNanos);
+    }
+
+    /**
+     * Returns a policy like this one, but that does not split the input into
+     * leaves of fewer than {@code minLeafSize} elements, as far as can be
+     * determined from the size estimates of the source spliterator.
+     *
+     * @param minLeafSize the minimum leaf size
+     * @return a policy with the given minimum leaf size
+     * @throws IllegalArgumentException if {@code minLeafSize} is not positive
+     */
+    public ParallelPolicy withMinimumLeafSize(long minLeafSize) {
+        if (minLeafSize <= 0L)
+            throw new IllegalArgumentException("Illegal minimum leaf size: " + minLeafSize);
+        return new ParallelPolicy(pool, leafTarget, minLeafSize, targetLeafNanos);
+    }
+
+    /**
+     * Returns the pool in which pipeline tasks are run.
+     *
+     * @return the pool in which pipeline tasks are run
+     */
+    public ForkJoinPool getPool() {
+        return pool != null ? pool : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Returns whether this policy sizes leaves from measured element costs.
+     *
+     * @return {@code true} if this policy is adaptive
+     */
+    public boolean isAdaptive() {
+        return targetLeafNanos != 0L;
+    }
+
+    /**
+     * Returns the number of leaf tasks this policy aims to split the input
+     * into, when not adapting to measured costs.
+     *
+     * @return the leaf target
+     */
+    public int getLeafTarget() {
+        int t;
+        if ((t = leafTarget) != 0)
+            return t;
+        return pool == null ? AbstractTask.LEAF_TARGET : pool.getParallelism() << 2;
+    }
+
+    /**
+     * Returns a suggested target leaf size based on the initial size
+     * estimate of the input of a computation.
+     *
+     * @param sizeEstimate the size estimate of the input
+     * @return suggested target leaf size
+     */
+    long suggestTargetSize(long sizeEstimate) {
+        long est = sizeEstimate / getLeafTarget();
+        long cost;
+        if (targetLeafNanos != 0L && (cost = scaledElementNanos) != 0L) {
+            // Size leaves from the measured cost, but never so large that
+            // the pool cannot be kept busy
+            long adapted = (targetLeafNanos << COST_SCALE_SHIFT) / cost;
+            long max = sizeEstimate / getPool().getParallelism();
+            est = Math.min(adapted, max);
+        }
+        return est > minLeafSize ? est : minLeafSize;
+    }
+
+    /**
+     * Records the time taken to process a leaf, if this policy is adaptive.
+     *
+     * @param size the size estimate of the leaf
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void recordLeaf(long size, long nanos) {
+        if (size <= 0L || nanos <= 0L || size == Long.MAX_VALUE)
+            return;
+        long sample = Math.max(1L, (nanos << COST_SCALE_SHIFT) / size);
+        long old = scaledElementNanos;
+        scaledElementNanos = (old == 0L)
+                             ? sample
+                             : old - (old >> COST_DECAY_SHIFT) + (sample >> COST_DECAY_SHIFT);
+    }
+
+    /**
+     * Evaluates a parallel computation in this policy's pool.  If the caller
+     * is already running in that pool, the computation is evaluated
+     * directly, otherwise the caller waits for its completion in the pool.
+     *
+     * @param <R> the type of the result
+     * @param computation the computation to evaluate
+     * @return the result of the computation
+     */
+    <R> R invoke(Supplier<R> computation) {
+        ForkJoinPool p = pool;
+        if (p == null || ForkJoinTask.getPool() == p)
+            return computation.get();
+        return p.invoke(ForkJoinTask.adapt(computation::get));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[pool=%s, leafTarget=%d, minLeafSize=%d, targetLeafNanos=%d]",
+                             getClass().getSimpleName(),
+                             pool == null ? "common" : pool.toString(),
+                             getLeafTarget(), minLeafSize, targetLeafNanos);
+    }
+}
@@ -71,6 +71,14 @@ abstract class PipelineHelper<P_OUT> {
      */
     abstract int getStreamAndOpFlags();
 
+    /**
+     * Gets the policy governing the parallel execution of the pipeline,
+     * including the pool in which its tasks run and how its input is split.
+     *
+     * @return the parallel execution policy, never null
+     */
+    abstract ParallelPolicy getParallelPolicy();
+
     /**
      * Returns the exact output size of the portion of the output resulting from
      * applying the pipeline stages described by this {@code PipelineHelper} to
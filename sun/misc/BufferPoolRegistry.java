@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package sun.misc;
+
+import java.lang.management.BufferPoolMXBean;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Keeps track of the buffer pools created by applications, such as those of
+ * <code>java.nio.DirectBufferPool</code>, so that they are reported by the
+ * management interface alongside the platform's <code>direct</code> and
+ * <code>mapped</code> buffer pools.
+ *
+ * <p>Pools are held weakly until the platform MBeanServer is created.  From
+ * then on each pool is registered with that server when it is created, and
+ * remains registered, and so reachable, for the lifetime of the VM.  A pool
+ * whose object name is already registered, for example because another pool
+ * has the same name, is not registered with the server but is still returned
+ * by {@link #getBufferPools()}.
+ */
+public final class BufferPoolRegistry {
+
+    private BufferPoolRegistry() { }
+
+    private static final Map<BufferPoolMXBean,Boolean> pools = new WeakHashMap<>();
+
+    // The platform MBeanServer, once it has been created
+    private static MBeanServer server;
+
+    /**
+     * Adds a buffer pool to the registry, registering it with the platform
+     * MBeanServer if that server has already been created.
+     */
+    public static synchronized void register(BufferPoolMXBean pool) {
+        pools.put(pool, Boolean.TRUE);
+        if (server != null)
+            registerMBean(server, pool);
+    }
+
+    /**
+     * Returns the buffer pools in the registry.
+     */
+    public static synchronized List<BufferPoolMXBean> getBufferPools() {
+        return new ArrayList<>(pools.keySet());
+    }
+
+    /**
+     * Invoked by <code>java.lang.management.ManagementFactory</code> once it
+     * has created the platform MBeanServer and registered the platform
+     * MXBeans with it.  Registers the pools created so far with the server
+     * and arranges for pools created later to be registered as well.
+     */
+    public static synchronized void setPlatformMBeanServer(MBeanServer mbs) {
+        server = mbs;
+        for (BufferPoolMXBean pool : pools.keySet())
+            registerMBean(mbs, pool);
+    }
+
+    private static void registerMBean(final MBeanServer mbs,
+                                      final BufferPoolMXBean pool) {
+        final ObjectName name = pool.getObjectName();
+        if (mbs.isRegistered(name))
+            return;
+        try {
+            AccessController.doPrivileged(new PrivilegedExceptionAction<Void>() {
+                public Void run() throws Exception {
+                    mbs.registerMBean(new StandardMBean(pool,
+                                                        BufferPoolMXBean.class,
+                                                        true),
+                                      name);
+                    return null;
+                }
+            });
+        } catch (PrivilegedActionException e) {
+            // name already taken, possibly by a concurrent registration;
+            // the pool remains available through getBufferPools
+        }
+    }
+}